@@ -0,0 +1,100 @@
+/*
+ * BenchmarkSupport.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import org.underworldlabs.util.SystemProperties;
+
+/**
+ * Shared setup for the benchmarks - the application code reads its settings
+ * through the user properties bundle, which is seeded with the shipped
+ * defaults so no user settings directory is read or written.
+ *
+ * @author Takis Diakoumis
+ */
+final class BenchmarkSupport {
+
+    private static final String DEFAULT_PROPERTIES_PATH = "org/executequery/eq.default.properties";
+
+    private static final String[] PROPERTY_BUNDLES = {"defaults", "user"};
+
+    private BenchmarkSupport() {
+    }
+
+    static synchronized void initProperties() {
+
+        System.setProperty("java.awt.headless", "true");
+        for (String bundle : PROPERTY_BUNDLES) {
+
+            if (!SystemProperties.hasProperties(bundle)) {
+
+                SystemProperties.loadPropertiesResource(bundle, DEFAULT_PROPERTIES_PATH);
+            }
+
+        }
+
+    }
+
+    /**
+     * Builds a script of the specified number of statements mixing DDL, DML,
+     * comments, quoted strings with delimiters and procedural blocks.
+     */
+    static String createScript(int statementCount) {
+
+        StringBuilder sb = new StringBuilder(statementCount * 96);
+        for (int i = 0; i < statementCount; i++) {
+
+            switch (i % 5) {
+
+                case 0:
+                    sb.append("-- row ").append(i).append('\n');
+                    sb.append("INSERT INTO EMPLOYEE (EMP_NO, FIRST_NAME, NOTES) VALUES (")
+                            .append(i).append(", 'Name ").append(i).append("', 'semi; colon ''quoted''');\n");
+                    break;
+
+                case 1:
+                    sb.append("UPDATE EMPLOYEE SET SALARY = SALARY * 1.05 /* raise; */ WHERE EMP_NO = ")
+                            .append(i).append(";\n");
+                    break;
+
+                case 2:
+                    sb.append("SELECT E.EMP_NO, E.FIRST_NAME, D.DEPARTMENT\n  FROM EMPLOYEE E\n")
+                            .append("  JOIN DEPARTMENT D ON D.DEPT_NO = E.DEPT_NO\n WHERE E.EMP_NO > ")
+                            .append(i).append(" ORDER BY 1;\n");
+                    break;
+
+                case 3:
+                    sb.append("EXECUTE BLOCK AS\nDECLARE VARIABLE N INTEGER;\nBEGIN\n")
+                            .append("  N = ").append(i).append(";\n")
+                            .append("  IF (N > 0) THEN\n  BEGIN\n    N = N - 1;\n  END\nEND;\n");
+                    break;
+
+                default:
+                    sb.append("DELETE FROM EMPLOYEE WHERE EMP_NO = ").append(i).append(";\n");
+                    break;
+            }
+
+        }
+
+        return sb.toString();
+    }
+
+}
+
@@ -0,0 +1,114 @@
+/*
+ * DelimitedValuesBenchmark.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import org.executequery.gui.importexport.ImportDelimitedWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.underworldlabs.util.MiscUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splitting delimited rows - <code>MiscUtils.splitSeparatedValues</code>
+ * and the value pattern the delimited file import matches rows with.
+ *
+ * @author Takis Diakoumis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DelimitedValuesBenchmark {
+
+    private static final int ROW_COUNT = 10000;
+
+    private static final String DELIMITER = ",";
+
+    private String[] rows;
+
+    private Matcher valueMatcher;
+
+    private Matcher quoteMatcher;
+
+    @Setup
+    public void setUp() {
+
+        rows = new String[ROW_COUNT];
+        for (int i = 0; i < ROW_COUNT; i++) {
+
+            rows[i] = i + ",Name " + i + ",\"Street " + i + ", \"\"Flat\"\" " + (i % 50) + "\","
+                    + (i * 12.5) + ",2017-10-24 12:30:49," + (i % 2 == 0 ? "Y" : "N");
+        }
+
+        valueMatcher = ImportDelimitedWorker.createValuePattern(DELIMITER).matcher("");
+        quoteMatcher = Pattern.compile("\"\"", Pattern.COMMENTS).matcher("");
+    }
+
+    @Benchmark
+    public void splitSeparatedValues(Blackhole blackhole) {
+
+        for (String row : rows) {
+
+            blackhole.consume(MiscUtils.splitSeparatedValues(row, DELIMITER));
+        }
+
+    }
+
+    @Benchmark
+    public void importValuePattern(Blackhole blackhole) {
+
+        for (String row : rows) {
+
+            valueMatcher.reset(row);
+            int index = 0;
+            while (index < row.length() && valueMatcher.find(index)) {
+
+                String value = valueMatcher.group(2);
+                if (value == null) {
+
+                    quoteMatcher.reset(valueMatcher.group(1));
+                    value = quoteMatcher.replaceAll("\"");
+                }
+
+                blackhole.consume(value);
+                index = Math.max(valueMatcher.end(), index + 1);
+            }
+
+        }
+
+    }
+
+}
+
@@ -0,0 +1,126 @@
+/*
+ * EventMediatorBenchmark.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import org.executequery.EventMediator;
+import org.executequery.event.ApplicationEvent;
+import org.executequery.event.DefaultUserPreferenceEvent;
+import org.executequery.event.UserPreferenceEvent;
+import org.executequery.event.UserPreferenceListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatching application events with <code>EventMediator.fireEvent</code>
+ * to a set of registered listeners, half of which handle the event.
+ *
+ * @author Takis Diakoumis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventMediatorBenchmark {
+
+    @Param({"10", "100", "500"})
+    private int listenerCount;
+
+    private List<PreferenceListener> listeners;
+
+    private UserPreferenceEvent event;
+
+    @Setup
+    public void setUp() {
+
+        listeners = new ArrayList<PreferenceListener>(listenerCount);
+        for (int i = 0; i < listenerCount; i++) {
+
+            PreferenceListener listener = new PreferenceListener(i % 2 == 0);
+            listeners.add(listener);
+            EventMediator.registerListener(listener);
+        }
+
+        event = new DefaultUserPreferenceEvent(this, null, UserPreferenceEvent.ALL);
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        for (PreferenceListener listener : listeners) {
+
+            EventMediator.deregisterListener(listener);
+        }
+
+    }
+
+    @Benchmark
+    public int fireEvent() {
+
+        EventMediator.fireEvent(event);
+        return listeners.get(0).count;
+    }
+
+    /**
+     * Listeners are invoked reflectively and so must be public.
+     */
+    public static class PreferenceListener implements UserPreferenceListener {
+
+        private final boolean handles;
+
+        private int count;
+
+        PreferenceListener(boolean handles) {
+
+            this.handles = handles;
+        }
+
+        @Override
+        public boolean canHandleEvent(ApplicationEvent event) {
+
+            return handles && event instanceof UserPreferenceEvent;
+        }
+
+        @Override
+        public void preferencesChanged(UserPreferenceEvent event) {
+
+            count++;
+        }
+
+    }
+
+}
+
@@ -0,0 +1,92 @@
+/*
+ * LogMessageBenchmark.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import org.executequery.gui.browser.managment.tracemanager.net.LogMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing trace manager events into <code>LogMessage</code>s.
+ *
+ * @author Takis Diakoumis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogMessageBenchmark {
+
+    private static final String ATTACH_EVENT =
+            "2017-10-24T12:30:49.8680 (3668:00000000016B0040) ATTACH_DATABASE\n" +
+                    "\t/var/db/EMPLOYEE.FDB (ATT_5, SYSDBA:NONE, UTF8, TCPv4:127.0.0.1/56254)\n" +
+                    "\t/opt/RedExpert/bin/java:1234\n";
+
+    private static final String STATEMENT_EVENT =
+            "2017-10-24T12:30:49.9120 (3668:00000000016B0040) EXECUTE_STATEMENT_FINISH\n" +
+                    "\t/var/db/EMPLOYEE.FDB (ATT_5, SYSDBA:NONE, UTF8, TCPv4:127.0.0.1/56254)\n" +
+                    "\t/opt/RedExpert/bin/java:1234\n" +
+                    "\t\t(TRA_12, READ_COMMITTED | REC_VERSION | WAIT | READ_WRITE)\n" +
+                    "\n" +
+                    "Statement 45:\n" +
+                    "-------------------------------------------------------------------------------\n" +
+                    "SELECT E.EMP_NO, E.FIRST_NAME, D.DEPARTMENT\n" +
+                    "  FROM EMPLOYEE E JOIN DEPARTMENT D ON D.DEPT_NO = E.DEPT_NO\n" +
+                    " WHERE E.EMP_NO > ?\n" +
+                    "^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^^\n" +
+                    "PLAN JOIN (E NATURAL, D INDEX (RDB$PRIMARY5))\n" +
+                    "param0 = smallint, \"2\"\n" +
+                    "\n" +
+                    "42 records fetched\n" +
+                    "      3 ms, 128 fetch(es)\n";
+
+    @Setup
+    public void setUp() {
+
+        BenchmarkSupport.initProperties();
+    }
+
+    @Benchmark
+    public LogMessage parseAttachEvent() {
+
+        return new LogMessage(ATTACH_EVENT);
+    }
+
+    @Benchmark
+    public LogMessage parseStatementEvent() {
+
+        return new LogMessage(STATEMENT_EVENT);
+    }
+
+}
+
@@ -0,0 +1,81 @@
+/*
+ * QueryTokenizerBenchmark.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import org.executequery.sql.DerivedQuery;
+import org.executequery.sql.QueryTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting large scripts into statements with <code>QueryTokenizer.tokenize</code>.
+ *
+ * @author Takis Diakoumis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryTokenizerBenchmark {
+
+    @Param({"1000", "10000"})
+    private int statementCount;
+
+    private String script;
+
+    private QueryTokenizer queryTokenizer;
+
+    @Setup
+    public void setUp() {
+
+        BenchmarkSupport.initProperties();
+        script = BenchmarkSupport.createScript(statementCount);
+        queryTokenizer = new QueryTokenizer();
+    }
+
+    @Benchmark
+    public List<DerivedQuery> tokenize() {
+
+        return queryTokenizer.tokenize(script);
+    }
+
+    @Benchmark
+    public String removeComments() {
+
+        return queryTokenizer.removeComments(script);
+    }
+
+}
+
@@ -0,0 +1,89 @@
+/*
+ * ResultSetTableModelBenchmark.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import org.executequery.gui.resultset.ResultSetTableModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Populating the result set table model - every row read through
+ * <code>ResultSetTableModel.addingRecord</code> - from a synthetic result set.
+ *
+ * @author Takis Diakoumis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetTableModelBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rowCount;
+
+    private SyntheticResultSet resultSet;
+
+    @Setup
+    public void setUp() {
+
+        BenchmarkSupport.initProperties();
+        resultSet = new SyntheticResultSet(rowCount);
+    }
+
+    @Benchmark
+    public ResultSetTableModel fetchAllRecords() {
+
+        return new ResultSetTableModel(resultSet.open(), -1, false);
+    }
+
+    @Benchmark
+    public Object fetchAndReadAllCells() {
+
+        ResultSetTableModel model = new ResultSetTableModel(resultSet.open(), -1, false);
+
+        Object value = null;
+        for (int row = 0, rows = model.getRowCount(); row < rows; row++) {
+
+            for (int column = 0, columns = model.getColumnCount(); column < columns; column++) {
+
+                value = model.getValueAt(row, column);
+            }
+
+        }
+
+        return value;
+    }
+
+}
+
@@ -0,0 +1,97 @@
+/*
+ * SQLSyntaxDocumentBenchmark.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import org.executequery.gui.text.syntax.SQLSyntaxDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.text.BadLocationException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Editing a script of about 10k lines in the syntax highlighting document. Each
+ * operation inserts into the middle of the document and removes the
+ * inserted text again so the document stays the same size.
+ *
+ * @author Takis Diakoumis
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SQLSyntaxDocumentBenchmark {
+
+    private static final int LINE_COUNT = 10000;
+
+    private static final List<String> KEYWORDS = Arrays.asList(
+            "SELECT", "FROM", "WHERE", "INSERT", "INTO", "VALUES", "UPDATE", "SET", "DELETE",
+            "JOIN", "ON", "ORDER", "BY", "EXECUTE", "BLOCK", "AS", "DECLARE", "VARIABLE",
+            "INTEGER", "BEGIN", "END", "IF", "THEN");
+
+    private static final String LINE = "SELECT E.EMP_NO, 'it''s' FROM EMPLOYEE E WHERE E.EMP_NO > 10; -- note\n";
+
+    private SQLSyntaxDocument document;
+
+    private int offset;
+
+    @Setup
+    public void setUp() throws BadLocationException {
+
+        BenchmarkSupport.initProperties();
+        document = new SQLSyntaxDocument(KEYWORDS);
+
+        String script = BenchmarkSupport.createScript(LINE_COUNT / 3);
+        document.insertString(0, script, null);
+
+        offset = script.lastIndexOf('\n', script.length() / 2) + 1;
+    }
+
+    @Benchmark
+    public int insertLine() throws BadLocationException {
+
+        document.insertString(offset, LINE, null);
+        document.remove(offset, LINE.length());
+        return document.getLength();
+    }
+
+    @Benchmark
+    public int typeCharacter() throws BadLocationException {
+
+        document.insertString(offset, "x", null);
+        document.remove(offset, 1);
+        return document.getLength();
+    }
+
+}
+
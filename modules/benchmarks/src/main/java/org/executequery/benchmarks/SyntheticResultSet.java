@@ -0,0 +1,190 @@
+/*
+ * SyntheticResultSet.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Forward only in-memory result set over generated rows - a typical
+ * table with integer, character, numeric, timestamp and nullable columns.
+ * <p/>
+ * Row values are generated up front so the benchmark measures the
+ * consumer of the result set rather than the value generation.
+ *
+ * @author Takis Diakoumis
+ */
+final class SyntheticResultSet {
+
+    private static final String[] COLUMN_NAMES = {"ID", "NAME", "AMOUNT", "CREATED", "STATUS", "NOTES"};
+
+    private static final int[] COLUMN_TYPES = {
+            Types.INTEGER, Types.VARCHAR, Types.NUMERIC, Types.TIMESTAMP, Types.SMALLINT, Types.VARCHAR};
+
+    private static final String[] COLUMN_TYPE_NAMES = {"INTEGER", "VARCHAR", "NUMERIC", "TIMESTAMP", "SMALLINT", "VARCHAR"};
+
+    private final Object[][] rows;
+
+    SyntheticResultSet(int rowCount) {
+
+        rows = new Object[rowCount][];
+        long time = 1500000000000L;
+        for (int i = 0; i < rowCount; i++) {
+
+            rows[i] = new Object[]{
+                    i,
+                    "Name " + i,
+                    BigDecimal.valueOf(i * 1234L, 2),
+                    new Timestamp(time + i * 60000L),
+                    (short) (i % 7),
+                    i % 3 == 0 ? null : "Some notes for row " + i
+            };
+        }
+
+    }
+
+    int getColumnCount() {
+
+        return COLUMN_NAMES.length;
+    }
+
+    /**
+     * Returns a new cursor positioned before the first row.
+     */
+    ResultSet open() {
+
+        return (ResultSet) Proxy.newProxyInstance(SyntheticResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new Cursor());
+    }
+
+    private ResultSetMetaData metaData() {
+
+        return (ResultSetMetaData) Proxy.newProxyInstance(SyntheticResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+
+                        String name = method.getName();
+                        if (name.equals("getColumnCount")) {
+
+                            return COLUMN_NAMES.length;
+                        }
+
+                        int column = args != null && args.length == 1 && args[0] instanceof Integer
+                                ? (Integer) args[0] - 1 : 0;
+
+                        if (name.equals("getColumnLabel") || name.equals("getColumnName")) {
+
+                            return COLUMN_NAMES[column];
+
+                        } else if (name.equals("getColumnType")) {
+
+                            return COLUMN_TYPES[column];
+
+                        } else if (name.equals("getColumnTypeName")) {
+
+                            return COLUMN_TYPE_NAMES[column];
+                        }
+
+                        return defaultValue(method.getReturnType());
+                    }
+
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+
+        if (type == boolean.class) {
+
+            return Boolean.FALSE;
+
+        } else if (type == int.class) {
+
+            return 0;
+
+        } else if (type == long.class) {
+
+            return 0L;
+        }
+
+        return null;
+    }
+
+    private class Cursor implements InvocationHandler {
+
+        private int row = -1;
+
+        private boolean closed;
+
+        private boolean wasNull;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+
+            String name = method.getName();
+            if (name.equals("next")) {
+
+                row++;
+                return row < rows.length;
+
+            } else if (name.equals("isClosed")) {
+
+                return closed;
+
+            } else if (name.equals("close")) {
+
+                closed = true;
+                return null;
+
+            } else if (name.equals("wasNull")) {
+
+                return wasNull;
+
+            } else if (name.equals("getMetaData")) {
+
+                return metaData();
+
+            } else if (name.startsWith("get") && args != null && args.length == 1 && args[0] instanceof Integer) {
+
+                Object value = rows[row][(Integer) args[0] - 1];
+                wasNull = value == null;
+                if (name.equals("getString")) {
+
+                    return value != null ? value.toString() : null;
+                }
+
+                return value;
+            }
+
+            return defaultValue(method.getReturnType());
+        }
+
+    }
+
+}
+
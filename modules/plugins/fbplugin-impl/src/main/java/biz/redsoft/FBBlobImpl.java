@@ -1,9 +1,6 @@
 package biz.redsoft;
 
 import org.firebirdsql.gds.DatabaseParameterBuffer;
-import org.firebirdsql.gds.TransactionParameterBuffer;
-import org.firebirdsql.gds.impl.TransactionParameterBufferImpl;
-import org.firebirdsql.gds.ng.FbTransaction;
 import org.firebirdsql.jdbc.FBBlob;
 import org.firebirdsql.jdbc.FirebirdBlob;
 
@@ -17,7 +14,6 @@ public class FBBlobImpl implements IFBBlob {
     DatabaseParameterBuffer buffer;
     FirebirdBlob detached = null;
     long lenght = 0;
-    FbTransaction transaction = null;
 
     @Override
     public void detach(Blob blob) throws SQLException {
@@ -28,13 +24,12 @@ public class FBBlobImpl implements IFBBlob {
     }
 
     @Override
-    public byte[] getBytes(long pos, int lenght) throws SQLException {
-        if (((FBBlob) detached).getGdsHelper().getCurrentTransaction() == null) {
-            TransactionParameterBuffer tpb = new TransactionParameterBufferImpl();
-            transaction = ((FBBlob) detached).getGdsHelper().startTransaction(tpb);
-            ((FBBlob) detached).getGdsHelper().setCurrentTransaction(transaction);
-        }
-        return detached.getBytes(pos, lenght);
+    public byte[] getBytes(final long pos, final int lenght) throws SQLException {
+        return LobReads.read((FBBlob) detached, new LobReads.Read<byte[]>() {
+            public byte[] read() throws SQLException {
+                return detached.getBytes(pos, lenght);
+            }
+        });
     }
 
     @Override
@@ -44,8 +39,9 @@ public class FBBlobImpl implements IFBBlob {
 
     @Override
     public void close() throws SQLException {
-        transaction.commit();
+        if (detached == null)
+            return;
         ((FBBlob) detached).free();
-        ((FBBlob) detached).getGdsHelper().setCurrentTransaction(null);
+        detached = null;
     }
 }
@@ -1,14 +1,10 @@
 package biz.redsoft;
 
 import org.firebirdsql.gds.DatabaseParameterBuffer;
-import org.firebirdsql.gds.TransactionParameterBuffer;
-import org.firebirdsql.gds.impl.TransactionParameterBufferImpl;
-import org.firebirdsql.gds.ng.FbTransaction;
 import org.firebirdsql.jdbc.FBBlob;
 import org.firebirdsql.jdbc.FBClob;
 import org.firebirdsql.jdbc.FirebirdBlob;
 
-import java.io.InputStream;
 import java.sql.Clob;
 import java.sql.SQLException;
 
@@ -18,7 +14,7 @@ import java.sql.SQLException;
 public class FBClobImpl implements IFBClob {
     DatabaseParameterBuffer buffer;
     FirebirdBlob detached = null;
-    FbTransaction transaction = null;
+    long length = -1;
 
     @Override
     public void detach(Clob clob) throws SQLException {
@@ -28,21 +24,31 @@ public class FBClobImpl implements IFBClob {
     }
 
     @Override
-    public InputStream open() throws SQLException {
-        if (((FBBlob) detached).getGdsHelper().getCurrentTransaction() == null) {
-            TransactionParameterBuffer tpb = new TransactionParameterBufferImpl();
-            transaction = ((FBBlob) detached).getGdsHelper().startTransaction(tpb);
-            ((FBBlob) detached).getGdsHelper().setCurrentTransaction(transaction);
+    public byte[] getBytes(final long pos, final int length) throws SQLException {
+        return LobReads.read((FBBlob) detached, new LobReads.Read<byte[]>() {
+            public byte[] read() throws SQLException {
+                return detached.getBytes(pos, length);
+            }
+        });
+    }
+
+    @Override
+    public long length() throws SQLException {
+        if (length < 0) {
+            length = LobReads.read((FBBlob) detached, new LobReads.Read<Long>() {
+                public Long read() throws SQLException {
+                    return detached.length();
+                }
+            });
         }
-        return detached.getBinaryStream();
+        return length;
     }
 
     @Override
     public void close() throws SQLException {
-        if (transaction == null)
+        if (detached == null)
             return;
-        transaction.commit();
-        detached.free();
-        ((FBBlob) detached).getGdsHelper().setCurrentTransaction(null);
+        ((FBBlob) detached).free();
+        detached = null;
     }
 }
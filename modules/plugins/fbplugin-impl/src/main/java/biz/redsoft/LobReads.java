@@ -0,0 +1,56 @@
+package biz.redsoft;
+
+import org.firebirdsql.gds.ISCConstants;
+import org.firebirdsql.gds.TransactionParameterBuffer;
+import org.firebirdsql.gds.impl.GDSHelper;
+import org.firebirdsql.gds.impl.TransactionParameterBufferImpl;
+import org.firebirdsql.gds.ng.FbTransaction;
+import org.firebirdsql.jdbc.FBBlob;
+
+import java.sql.SQLException;
+
+/**
+ * Runs reads of detached LOBs, each in a read only, read committed
+ * transaction of its own committed as soon as the read completes,
+ * unless the connection has a transaction of its own to read in.
+ *
+ * @author vasiliy
+ */
+final class LobReads {
+
+    interface Read<T> {
+        T read() throws SQLException;
+    }
+
+    static <T> T read(FBBlob blob, Read<T> read) throws SQLException {
+        if (blob == null)
+            throw new SQLException("LOB is closed");
+
+        GDSHelper gdsHelper = blob.getGdsHelper();
+        synchronized (gdsHelper) {
+            if (gdsHelper.getCurrentTransaction() != null)
+                return read.read();
+
+            FbTransaction transaction = gdsHelper.startTransaction(readTransaction());
+            gdsHelper.setCurrentTransaction(transaction);
+            try {
+                return read.read();
+            } finally {
+                gdsHelper.setCurrentTransaction(null);
+                transaction.commit();
+            }
+        }
+    }
+
+    private static TransactionParameterBuffer readTransaction() {
+        TransactionParameterBuffer tpb = new TransactionParameterBufferImpl();
+        tpb.addArgument(ISCConstants.isc_tpb_read);
+        tpb.addArgument(ISCConstants.isc_tpb_read_committed);
+        tpb.addArgument(ISCConstants.isc_tpb_rec_version);
+        tpb.addArgument(ISCConstants.isc_tpb_wait);
+        return tpb;
+    }
+
+    private LobReads() {
+    }
+}
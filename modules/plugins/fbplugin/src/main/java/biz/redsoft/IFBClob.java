@@ -1,6 +1,5 @@
 package biz.redsoft;
 
-import java.io.InputStream;
 import java.sql.Clob;
 import java.sql.SQLException;
 
@@ -11,7 +10,13 @@ public interface IFBClob {
 
     void detach(Clob clob) throws SQLException;
 
-    InputStream open() throws SQLException;
+    /**
+     * Reads up to <code>length</code> bytes of the CLOB
+     * starting at the specified one based position.
+     */
+    byte[] getBytes(long pos, int length) throws SQLException;
+
+    long length() throws SQLException;
 
     void close() throws SQLException;
 }
@@ -0,0 +1,20 @@
+package org.executequery.actions.toolscommands;
+
+import org.executequery.GUIUtilities;
+import org.executequery.actions.OpenFrameCommand;
+import org.executequery.gui.browser.ConnectionStatisticsPanel;
+import org.underworldlabs.swing.actions.BaseCommand;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+
+public class ConnectionStatisticsCommand extends OpenFrameCommand implements BaseCommand {
+
+    public void execute(ActionEvent e) {
+            GUIUtilities.addCentralPane(ConnectionStatisticsPanel.TITLE,
+                    (Icon) null,
+                    new ConnectionStatisticsPanel(),
+                    null,
+                    true);
+    }
+}
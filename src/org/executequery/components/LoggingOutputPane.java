@@ -114,10 +114,20 @@ public class LoggingOutputPane extends JTextPane {
         return false;
     }
 
+    /**
+     * Sets the maximum number of lines kept by the pane - the oldest
+     * lines are removed as new text is appended. Zero or less keeps all lines.
+     */
+    public void setMaxLines(int maxLines) {
+        document.setMaxLines(maxLines);
+    }
+
     class OutputPaneDocument extends DefaultStyledDocument {
 
         private StringBuffer textBuffer;
 
+        private int maxLines;
+
         // normal font
         protected MutableAttributeSet plain;
         protected MutableAttributeSet error;
@@ -135,6 +145,10 @@ public class LoggingOutputPane extends JTextPane {
             textBuffer = new StringBuffer();
         }
 
+        protected void setMaxLines(int maxLines) {
+            this.maxLines = maxLines;
+        }
+
         protected void initStyles() {
             // normal font styles
             plain = new SimpleAttributeSet();
@@ -213,7 +227,8 @@ public class LoggingOutputPane extends JTextPane {
 
                     try {
 
-                        insertString(length, textBuffer.toString(), attrs);
+                        insertString(length, lastLines(textBuffer), attrs);
+                        removeExcessLines();
 
                     } catch (BadLocationException e) {
                     }
@@ -226,6 +241,46 @@ public class LoggingOutputPane extends JTextPane {
 
         }
 
+        /**
+         * Returns the text to insert - only its last lines where
+         * it alone would exceed the maximum.
+         */
+        private String lastLines(StringBuffer text) {
+
+            if (maxLines > 0) {
+
+                int lines = 0;
+                for (int i = text.length() - 2; i >= 0; i--) {
+
+                    if (text.charAt(i) == Constants.NEW_LINE_CHAR && ++lines == maxLines) {
+
+                        return text.substring(i + 1);
+                    }
+
+                }
+
+            }
+
+            return text.toString();
+        }
+
+        private void removeExcessLines() throws BadLocationException {
+
+            if (maxLines > 0) {
+
+                Element root = getDefaultRootElement();
+
+                // the last element is the empty line after the final new line
+                int excess = root.getElementCount() - 1 - maxLines;
+                if (excess > 0) {
+
+                    remove(0, root.getElement(excess - 1).getEndOffset());
+                }
+
+            }
+
+        }
+
     } // class OutputPaneDocument
 
 }
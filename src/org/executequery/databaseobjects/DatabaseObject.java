@@ -112,6 +112,25 @@ public interface DatabaseObject extends NamedObject {
      */
     int getDataRowCount() throws DataSourceException;
 
+    /**
+     * Returns an estimate of the data row count for this object taken
+     * from the index statistics, or -1 where no estimate is available.
+     * The exact count is returned where it has already been retrieved.
+     *
+     * @return the estimated data row count for this object
+     */
+    long getEstimatedRowCount() throws DataSourceException;
+
+    /**
+     * Cancels the data row count query currently executing for this object.
+     */
+    void cancelDataRowCount();
+
+    /**
+     * Clears the cached exact and estimated data row counts.
+     */
+    void resetRowsCount();
+
     /**
      * Retrieves the data for this object (where applicable).
      *
@@ -119,6 +138,20 @@ public interface DatabaseObject extends NamedObject {
      */
     ResultSet getData() throws DataSourceException;
 
+    /**
+     * Retrieves the data for this object restricted and ordered by the
+     * specified clauses (where applicable). Blank clauses are omitted.
+     *
+     * @param columns    the select list
+     * @param where      the WHERE condition with <code>?</code> parameter markers
+     * @param orderBy    the ORDER BY expression list
+     * @param rows       the ROWS clause value
+     * @param parameters the values for the parameter markers
+     * @return the selected data for this object
+     */
+    ResultSet getData(String columns, String where, String orderBy,
+                      String rows, List<Object> parameters) throws DataSourceException;
+
     /**
      * Cancels any open running statement against this object.
      */
@@ -198,8 +198,6 @@ public interface DatabaseTable extends DatabaseTableObject {
 
     boolean hasTableDefinitionChanges();
 
-    void resetRowsCount();
-
     String getExternalFile();
 
     String getAdapter();
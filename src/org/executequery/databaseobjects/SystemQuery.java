@@ -0,0 +1,385 @@
+/*
+ * SystemQuery.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databaseobjects;
+
+import org.executequery.databasemediators.spi.StatementExecutor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Named, parameterized queries of the Firebird and RedDatabase
+ * system tables.
+ * <p/>
+ * Object names are always bound rather than written into the query
+ * text, so the text of each query is constant. Closing a statement
+ * prepared on a pooled connection returns it to the statement cache
+ * of the connection, and later prepares of the query on the same
+ * connection reuse it for as long as the real connection stays open -
+ * across returns to the pool, but not where the pool closes its
+ * connections on return, and not past a schema change, which clears
+ * the caches. Statements prepared with an executor are returned when
+ * the executor releases its resources.
+ * <p/>
+ * Batched queries take a list of object names for an <code>IN</code>
+ * list. The list is padded to one of a few fixed sizes so that the
+ * number of distinct query texts stays small.
+ *
+ * @author Takis Diakoumis
+ */
+public enum SystemQuery {
+
+    /**
+     * The field names of a relation.
+     */
+    RELATION_FIELD_NAMES(
+            "select rdb$field_name\n" +
+                    "from rdb$relation_fields\n" +
+                    "where rdb$relation_name = ?"),
+
+    /**
+     * The constraint type and field name of each primary and
+     * foreign key segment of a relation.
+     */
+    RELATION_KEY_COLUMNS(
+            "select rc.rdb$constraint_type,\n" +
+                    "s.rdb$field_name\n" +
+                    "from rdb$relation_constraints rc\n" +
+                    "join rdb$index_segments s on s.rdb$index_name = rc.rdb$index_name\n" +
+                    "where rc.rdb$relation_name = ?\n" +
+                    "and rc.rdb$constraint_type in ('PRIMARY KEY', 'FOREIGN KEY')"),
+
+    /**
+     * A user index and the type of the constraint it enforces, if any.
+     */
+    INDEX_BY_NAME(
+            "select " +
+                    "I.RDB$INDEX_NAME, " +
+                    "I.RDB$RELATION_NAME, " +
+                    "I.RDB$SYSTEM_FLAG," +
+                    "I.RDB$INDEX_TYPE," +
+                    "I.RDB$UNIQUE_FLAG," +
+                    "I.RDB$INDEX_INACTIVE," +
+                    "I.RDB$DESCRIPTION," +
+                    "C.RDB$CONSTRAINT_TYPE\n" +
+                    "FROM RDB$INDICES AS I LEFT JOIN rdb$relation_constraints as c on i.rdb$index_name=c.rdb$index_name\n" +
+                    "where I.RDB$SYSTEM_FLAG = 0 \n" +
+                    "AND I.RDB$INDEX_NAME=?"),
+
+    /**
+     * The update and delete rules of a batch of foreign keys.
+     */
+    REF_CONSTRAINT_RULES(
+            "select rdb$constraint_name,\n" +
+                    "rdb$update_rule,\n" +
+                    "rdb$delete_rule\n" +
+                    "from rdb$ref_constraints\n" +
+                    "where rdb$constraint_name in (%s)"),
+
+    /**
+     * The stored fields of a relation followed by its computed fields
+     * with the fields they depend on - the relation name is bound twice.
+     */
+    RELATION_FIELD_DEPENDENCIES(
+            "select rdb$relation_fields.rdb$field_name, rdb$relation_fields.rdb$field_name\n"
+                    + "from rdb$relation_fields\n"
+                    + "inner join rdb$fields on rdb$fields.rdb$field_name = rdb$relation_fields.rdb$field_source\n"
+                    + "where rdb$relation_fields.rdb$relation_name = ? and rdb$fields.rdb$computed_source is null\n"
+                    + "\n"
+                    + "union all\n"
+                    + "\n"
+                    + "select iif(rdb$dependencies.rdb$field_name is null,  '', rdb$dependencies.rdb$field_name),\n"
+                    + "       rdb$relation_fields.rdb$field_name\n"
+                    + "from rdb$relation_fields\n"
+                    + "inner join rdb$fields on rdb$fields.rdb$field_name = rdb$relation_fields.rdb$field_source\n"
+                    + "left outer join rdb$dependencies on rdb$dependencies.rdb$dependent_name = rdb$fields.rdb$field_name\n"
+                    + "where rdb$relation_fields.rdb$relation_name = ? and rdb$fields.rdb$computed_source is not null"),
+
+    /**
+     * The definition of a field of a relation - bound with the
+     * relation name and the field name.
+     */
+    RELATION_FIELD_DEFINITION(
+            "select rdb$relation_fields.rdb$field_name, \n" + //1
+                    "rdb$fields.rdb$field_type, \n" + //2
+                    "rdb$fields.rdb$character_length, \n" + //3
+                    "rdb$fields.rdb$field_sub_type, \n" + //4
+                    "rdb$fields.rdb$segment_length, \n" + //5
+                    "rdb$fields.rdb$field_precision, \n" + //6
+                    "abs(rdb$fields.rdb$field_scale), \n" + //7
+                    "rdb$relation_fields.rdb$null_flag, \n" + //8
+                    "rdb$relation_fields.rdb$field_source, \n" + //9
+                    "rdb$relation_fields.rdb$default_source, \n" + //10
+                    "rdb$fields.rdb$computed_source \n" + //11
+                    "from rdb$relation_fields \n"
+                    + "inner join rdb$fields on rdb$fields.rdb$field_name = rdb$relation_fields.rdb$field_source \n"
+                    + "where rdb$relation_fields.rdb$relation_name = ? and rdb$relation_fields.rdb$field_name = ?"),
+
+    /**
+     * The data type of a field of a relation - bound with the
+     * field name and the relation name.
+     */
+    RELATION_FIELD_TYPE(
+            "select rdb$fields.rdb$field_type,\n"
+                    + "       rdb$fields.rdb$field_length / 4,\n"
+                    + "       rdb$fields.rdb$field_scale,\n"
+                    + "       rdb$fields.rdb$field_sub_type,\n"
+                    + "       rdb$fields.rdb$field_precision,\n"
+                    + "       rdb$fields.rdb$segment_length\n"
+                    + "from rdb$fields\n"
+                    + "inner join rdb$relation_fields on rdb$relation_fields.rdb$field_source = rdb$fields.rdb$field_name\n"
+                    + "where rdb$relation_fields.rdb$field_name = ?\n"
+                    + "and rdb$relation_fields.rdb$relation_name = ?"),
+
+    /**
+     * The tables the computed fields of a relation depend on.
+     */
+    RELATION_COMPUTED_DEPENDENCIES(
+            "select distinct rdb$dependencies.rdb$field_name,\n"
+                    + "       rdb$dependencies.rdb$depended_on_name\n"
+                    + "from rdb$dependencies\n"
+                    + "inner join rdb$relation_fields on rdb$relation_fields.rdb$field_source = rdb$dependencies.rdb$dependent_name\n"
+                    + "where rdb$dependencies.rdb$depended_on_type = 0\n"
+                    + "and rdb$dependencies.rdb$dependent_type = 3\n"
+                    + "and rdb$relation_fields.rdb$relation_name = ?");
+
+    /**
+     * The largest number of names bound to a batched query.
+     */
+    public static final int MAX_BATCH_SIZE = 64;
+
+    private static final Set<String> TEXTS = texts();
+
+    private final String sql;
+
+    private final String[] batchSql;
+
+    private SystemQuery(String sql) {
+
+        this.sql = sql;
+        if (sql.contains("%s")) {
+
+            batchSql = new String[Batch.SIZES.length];
+            for (int i = 0; i < Batch.SIZES.length; i++) {
+
+                batchSql[i] = String.format(sql, placeholders(Batch.SIZES[i]));
+            }
+
+        } else {
+
+            batchSql = null;
+        }
+
+    }
+
+    /**
+     * Returns whether this query takes a batch of names.
+     */
+    public boolean isBatched() {
+
+        return batchSql != null;
+    }
+
+    /**
+     * Returns the text of this query.
+     */
+    public String getSql() {
+
+        if (isBatched()) {
+
+            throw new IllegalStateException("Query " + name() + " takes a batch of names");
+        }
+
+        return sql;
+    }
+
+    /**
+     * Returns the text of this batched query for the specified
+     * number of names, padded to the next batch size.
+     */
+    public String getSql(int count) {
+
+        if (!isBatched()) {
+
+            throw new IllegalStateException("Query " + name() + " is not batched");
+        }
+
+        return batchSql[batchIndex(count)];
+    }
+
+    /**
+     * Prepares this query with the specified executor and binds the
+     * specified values. The statement is released with the executor.
+     */
+    public PreparedStatement prepare(StatementExecutor executor, Object... values) throws SQLException {
+
+        return bind(checkPrepared(executor.getPreparedStatement(getSql())), values);
+    }
+
+    /**
+     * Prepares this query on the specified connection and binds
+     * the specified values.
+     */
+    public PreparedStatement prepare(Connection connection, Object... values) throws SQLException {
+
+        return bind(connection.prepareStatement(getSql()), values);
+    }
+
+    /**
+     * Prepares this batched query with the specified executor and binds
+     * the specified names - at most {@link #MAX_BATCH_SIZE} of them.
+     */
+    public PreparedStatement prepareBatch(StatementExecutor executor, List<String> names) throws SQLException {
+
+        return bindBatch(checkPrepared(executor.getPreparedStatement(getSql(names.size()))), names);
+    }
+
+    /**
+     * Prepares this batched query on the specified connection and binds
+     * the specified names - at most {@link #MAX_BATCH_SIZE} of them.
+     */
+    public PreparedStatement prepareBatch(Connection connection, List<String> names) throws SQLException {
+
+        return bindBatch(connection.prepareStatement(getSql(names.size())), names);
+    }
+
+    /**
+     * Returns whether the specified text is that of one of these
+     * queries, a batched query padded to any of its batch sizes.
+     */
+    public static boolean isSystemQuery(String sql) {
+
+        return TEXTS.contains(sql);
+    }
+
+    private static Set<String> texts() {
+
+        Set<String> texts = new HashSet<String>();
+        for (SystemQuery query : values()) {
+
+            if (query.isBatched()) {
+
+                texts.addAll(Arrays.asList(query.batchSql));
+
+            } else {
+
+                texts.add(query.sql);
+            }
+
+        }
+
+        return texts;
+    }
+
+    /**
+     * Splits the specified names into batches of at most
+     * {@link #MAX_BATCH_SIZE} names.
+     */
+    public static List<List<String>> batches(List<String> names) {
+
+        List<List<String>> batches = new ArrayList<List<String>>();
+        for (int i = 0; i < names.size(); i += MAX_BATCH_SIZE) {
+
+            batches.add(names.subList(i, Math.min(i + MAX_BATCH_SIZE, names.size())));
+        }
+
+        return batches;
+    }
+
+    private PreparedStatement checkPrepared(PreparedStatement statement) throws SQLException {
+
+        if (statement == null) {
+
+            throw new SQLException("Unable to prepare system query " + name());
+        }
+
+        return statement;
+    }
+
+    private static PreparedStatement bind(PreparedStatement statement, Object... values) throws SQLException {
+
+        for (int i = 0; i < values.length; i++) {
+
+            statement.setObject(i + 1, values[i]);
+        }
+
+        return statement;
+    }
+
+    private static PreparedStatement bindBatch(PreparedStatement statement, List<String> names) throws SQLException {
+
+        // pad with the last name - it matches nothing further
+        int size = Batch.SIZES[batchIndex(names.size())];
+        for (int i = 0; i < size; i++) {
+
+            statement.setString(i + 1, names.get(Math.min(i, names.size() - 1)));
+        }
+
+        return statement;
+    }
+
+    private static int batchIndex(int count) {
+
+        if (count < 1 || count > MAX_BATCH_SIZE) {
+
+            throw new IllegalArgumentException("Batch of " + count + " names, expected 1 to " + MAX_BATCH_SIZE);
+        }
+
+        int index = 0;
+        while (Batch.SIZES[index] < count) {
+
+            index++;
+        }
+
+        return index;
+    }
+
+    // enum constants are created before the static fields of the
+    // enum are assigned, so the sizes are held by a nested class
+    private static final class Batch {
+
+        private static final int[] SIZES = {1, 4, 16, MAX_BATCH_SIZE};
+
+    }
+
+    private static String placeholders(int count) {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+
+            if (i > 0) {
+
+                sb.append(", ");
+            }
+
+            sb.append("?");
+        }
+
+        return sb.toString();
+    }
+
+}
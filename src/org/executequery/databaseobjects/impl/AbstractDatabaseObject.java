@@ -24,6 +24,7 @@ import org.apache.commons.lang.StringUtils;
 import org.executequery.GUIUtilities;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databaseobjects.*;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshots;
 import org.executequery.datasource.PooledConnection;
 import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.util.Log;
@@ -39,6 +40,13 @@ import java.util.List;
 public abstract class AbstractDatabaseObject extends AbstractNamedObject
         implements DatabaseObject {
 
+    private static final long NOT_ESTIMATED = -2;
+
+    private static final String ESTIMATED_ROW_COUNT_QUERY =
+            "select min(rdb$statistics) from rdb$indices\n" +
+            "where rdb$relation_name = ? and rdb$statistics > 0 and rdb$unique_flag = 1\n" +
+            "and (rdb$index_inactive is null or rdb$index_inactive = 0)";
+
     /**
      * the host parent object
      */
@@ -69,6 +77,16 @@ public abstract class AbstractDatabaseObject extends AbstractNamedObject
      */
     private int dataRowCount = -1;
 
+    /**
+     * the estimated data row count
+     */
+    private long estimatedRowCount = NOT_ESTIMATED;
+
+    /**
+     * statement object for an executing row count query
+     */
+    private volatile Statement countStatement;
+
     /**
      * statement object for open queries
      */
@@ -248,12 +266,16 @@ public abstract class AbstractDatabaseObject extends AbstractNamedObject
     }
 
     /**
-     * Override to clear the columns.
+     * Override to clear the columns, including those held
+     * by the metadata snapshot of the host.
      */
     public void reset() {
         super.reset();
         dataRowCount = -1;
+        estimatedRowCount = NOT_ESTIMATED;
         columns = null;
+        if (host != null)
+            MetadataSnapshots.invalidateRelation(host.getDatabaseConnection(), getName());
     }
 
     /**
@@ -343,6 +365,7 @@ public abstract class AbstractDatabaseObject extends AbstractNamedObject
 
             connection = getHost().getTemporaryConnection();
             stmnt = connection.createStatement();
+            countStatement = stmnt;
             rs = stmnt.executeQuery(recordCountQueryString());
 
             if (rs.next()) {
@@ -358,12 +381,91 @@ public abstract class AbstractDatabaseObject extends AbstractNamedObject
 
         } finally {
 
+            countStatement = null;
             releaseResources(stmnt, rs);
             releaseResources(connection);
         }
 
     }
 
+    /**
+     * Retrieves an estimate of the data row count from the selectivity of
+     * the object's unique indices. The selectivity of an index is one over the
+     * number of distinct keys as of the last index rebuild or SET STATISTICS,
+     * which for a unique index is the row count then. The distinct keys of
+     * other indices say nothing of the row count, so a relation without an
+     * active unique index has no estimate.
+     *
+     * @return the estimated data row count or -1 where no estimate is available
+     */
+    public long getEstimatedRowCount() throws DataSourceException {
+
+        if (dataRowCount != -1) {
+
+            return dataRowCount;
+        }
+
+        if (estimatedRowCount != NOT_ESTIMATED) {
+
+            return estimatedRowCount;
+        }
+
+        ResultSet rs = null;
+        PreparedStatement stmnt = null;
+        Connection connection = null;
+        try {
+
+            connection = getHost().getTemporaryConnection();
+            stmnt = connection.prepareStatement(ESTIMATED_ROW_COUNT_QUERY);
+            stmnt.setString(1, getName());
+            rs = stmnt.executeQuery();
+
+            long estimate = -1;
+            if (rs.next()) {
+
+                double selectivity = rs.getDouble(1);
+                if (!rs.wasNull() && selectivity > 0) {
+
+                    estimate = Math.round(1 / selectivity);
+                }
+            }
+
+            estimatedRowCount = estimate;
+            return estimatedRowCount;
+
+        } catch (SQLException e) {
+
+            throw new DataSourceException(e);
+
+        } finally {
+
+            releaseResources(stmnt, rs);
+            releaseResources(connection);
+        }
+
+    }
+
+    /**
+     * Cancels the data row count query currently executing for this object.
+     */
+    public void cancelDataRowCount() {
+
+        Statement stmnt = countStatement;
+        if (stmnt != null) {
+
+            try {
+
+                stmnt.cancel();
+
+            } catch (SQLException e) {
+
+                Log.debug("Error cancelling data row count for " + getName() + " - " + e.getMessage());
+            }
+
+        }
+
+    }
+
     /**
      * Retrieves the data for this object (where applicable).
      *
@@ -374,6 +476,27 @@ public abstract class AbstractDatabaseObject extends AbstractNamedObject
         return executeQuery(recordsQueryString());
     }
 
+    public ResultSet getData(String columns, String where, String orderBy,
+                             String rows, List<Object> parameters) throws DataSourceException {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ").append(columns).append(" FROM ").append(getNameWithPrefixForQuery());
+        if (StringUtils.isNotBlank(where)) {
+
+            sb.append(" WHERE ").append(where);
+        }
+        if (StringUtils.isNotBlank(orderBy)) {
+
+            sb.append(" ORDER BY ").append(orderBy);
+        }
+        if (StringUtils.isNotBlank(rows)) {
+
+            sb.append(" ROWS ").append(rows);
+        }
+
+        return executeQuery(sb.toString(), parameters);
+    }
+
     /**
      * Retrieves the data for this object (where applicable).
      *
@@ -416,24 +539,48 @@ public abstract class AbstractDatabaseObject extends AbstractNamedObject
 
     private ResultSet executeQuery(String query) throws DataSourceException {
 
-        Connection connection = null;
-        ResultSet rs = null;
+        return executeQuery(query, null);
+    }
+
+    /**
+     * Executes the query on a temporary connection replacing any statement
+     * still open for this object - the query is prepared when parameters
+     * are specified.
+     */
+    private ResultSet executeQuery(String query, List<Object> parameters) throws DataSourceException {
+
+        if (statement != null) {
+            try {
+
+                statement.close();
+
+            } catch (SQLException e) {
+            }
+        }
 
         try {
 
-            if (statement != null) {
-                try {
+            Connection connection = getHost().getTemporaryConnection();
 
-                    statement.close();
+            ResultSet rs;
+            if (parameters == null) {
+
+                statement = ((PooledConnection) connection).createIndividualStatement();
+                rs = statement.executeQuery(query);
+
+            } else {
 
-                } catch (SQLException e) {
+                PreparedStatement preparedStatement = ((PooledConnection) connection).prepareIndividualStatement(query);
+                statement = preparedStatement;
+
+                for (int i = 0; i < parameters.size(); i++) {
+
+                    preparedStatement.setObject(i + 1, parameters.get(i));
                 }
-            }
 
-            connection = getHost().getTemporaryConnection();
-            statement = ((PooledConnection) connection).createIndividualStatement();
+                rs = preparedStatement.executeQuery();
+            }
 
-            rs = statement.executeQuery(query);
             return new TransactionAgnosticResultSet(connection, statement, rs);
 
         } catch (SQLException e) {
@@ -604,6 +751,7 @@ public abstract class AbstractDatabaseObject extends AbstractNamedObject
 
     public void resetRowsCount() {
         dataRowCount = -1;
+        estimatedRowCount = NOT_ESTIMATED;
     }
 
     @Override
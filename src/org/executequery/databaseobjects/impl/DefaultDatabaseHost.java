@@ -26,20 +26,23 @@ import org.executequery.databasemediators.ConnectionMediator;
 import org.executequery.databasemediators.DatabaseConnection;
 import org.executequery.databasemediators.DatabaseDriver;
 import org.executequery.databaseobjects.*;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshot;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshotLoader;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshots;
 import org.executequery.datasource.ConnectionManager;
 import org.executequery.datasource.DefaultDriverLoader;
 import org.executequery.gui.browser.tree.TreePanel;
 import org.executequery.log.Log;
 import org.underworldlabs.jdbc.DataSourceException;
+import org.underworldlabs.util.DynamicLibraryLoader;
 import org.underworldlabs.util.MiscUtils;
 import org.underworldlabs.util.SystemProperties;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Default database host object implementation.
@@ -49,7 +52,7 @@ import java.util.*;
 public class DefaultDatabaseHost extends AbstractNamedObject
         implements DatabaseHost {
 
-    private int countFinishedMetaTags;
+    private final AtomicInteger countFinishedMetaTags = new AtomicInteger();
 
     private int typeTree;
 
@@ -92,7 +95,6 @@ public class DefaultDatabaseHost extends AbstractNamedObject
 
     public DefaultDatabaseHost(DatabaseConnection databaseConnection, int typeTree) {
         this.databaseConnection = databaseConnection;
-        countFinishedMetaTags = 0;
         this.typeTree = typeTree;
     }
 
@@ -108,7 +110,7 @@ public class DefaultDatabaseHost extends AbstractNamedObject
     public boolean connect() throws DataSourceException {
 
         if (!isConnected()) {
-            countFinishedMetaTags = 0;
+            countFinishedMetaTags.set(0);
 
             boolean connected = connectionMediator().connect(getDatabaseConnection());
             try {
@@ -139,10 +141,21 @@ public class DefaultDatabaseHost extends AbstractNamedObject
             catalogs = null;
             databaseMetaData = null;
             connection = null;
+            MetadataSnapshots.release(getDatabaseConnection());
         }
 
     }
 
+    /**
+     * Marks this host for reload, dropping its metadata snapshot
+     * and the stored copy of it.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        MetadataSnapshots.discard(getDatabaseConnection());
+    }
+
     /**
      * Closes the connection associated with this host.
      */
@@ -201,12 +214,12 @@ public class DefaultDatabaseHost extends AbstractNamedObject
 
     @Override
     public int countFinishedMetaTags() {
-        return countFinishedMetaTags;
+        return countFinishedMetaTags.get();
     }
 
     @Override
     public void incCountFinishedMetaTags() {
-        countFinishedMetaTags++;
+        countFinishedMetaTags.incrementAndGet();
     }
 
     /**
@@ -710,6 +723,19 @@ public class DefaultDatabaseHost extends AbstractNamedObject
     public synchronized List<DatabaseColumn> getColumns(String catalog, String schema, String table)
             throws DataSourceException {
 
+        MetadataSnapshot snapshot = MetadataSnapshots.get(getDatabaseConnection());
+        if (snapshot != null) {
+
+            List<MetadataSnapshot.Field> fields = snapshot.getFields(table);
+            if (fields != null) {
+
+                List<DatabaseColumn> columns = createColumns(fields);
+                markKeyColumns(columns, snapshot.getKeys(table));
+                return columns;
+            }
+
+        }
+
         ResultSet rs = null;
 
         List<DatabaseColumn> columns = new ArrayList<DatabaseColumn>();
@@ -726,58 +752,14 @@ public class DefaultDatabaseHost extends AbstractNamedObject
 
             // retrieve the base column info
 
-            Statement statement = null;
-
             if (isFirebirdConnection) {
-                String identity = null;
-                if (getDatabaseMetaData().getDatabaseMajorVersion() >= 3) {
-                    identity = "    RF.RDB$IDENTITY_TYPE AS IDENTITY\n";
-                } else {
-                    identity = "    CAST(NULL AS INTEGER) AS IDENTITY\n";
-                }
-                String firebirdSql = "SELECT\n" +
-                        "    '' AS CATALOG,\n" +
-                        "    '' AS SCHEME,\n" +
-                        "    cast(RF.RDB$RELATION_NAME as varchar(63)) AS RELATION_NAME,\n" +
-                        "    cast(RF.RDB$FIELD_NAME as varchar(63)) AS FIELD_NAME,\n" +
-                        "    F.RDB$FIELD_TYPE AS FIELD_TYPE,\n" +
-                        "    F.RDB$FIELD_SUB_TYPE AS FIELD_SUB_TYPE,\n" +
-                        "    F.RDB$FIELD_PRECISION AS FIELD_PRECISION,\n" +
-                        "    F.RDB$FIELD_SCALE AS FIELD_SCALE,\n" +
-                        "    F.RDB$FIELD_LENGTH AS FIELD_LENGTH,\n" +
-                        "    F.RDB$CHARACTER_LENGTH AS CHAR_LEN,\n" +
-                        "    RF.RDB$DESCRIPTION AS REMARKS,\n" +
-                        "    RF.RDB$DEFAULT_SOURCE AS DEFAULT_SOURCE,\n" +
-                        "    F.RDB$DEFAULT_SOURCE AS DOMAIN_DEFAULT_SOURCE,\n" +
-                        "    RF.RDB$FIELD_POSITION + 1 AS FIELD_POSITION,\n" +
-                        "    RF.RDB$NULL_FLAG AS NULL_FLAG,\n" +
-                        "    F.RDB$NULL_FLAG AS SOURCE_NULL_FLAG,\n" +
-                        "    F.RDB$COMPUTED_BLR AS COMPUTED_BLR,\n" +
-                        "    F.RDB$CHARACTER_SET_ID,\n" +
-                        identity +
-                        "FROM\n" +
-                        "    RDB$RELATION_FIELDS RF,\n" +
-                        "    RDB$FIELDS F\n" +
-                        "WHERE\n" +
-                        "    RF.RDB$RELATION_NAME = " +
-                        "'" +
-                        table +
-                        "'" +
-                        "and\n" +
-                        "    RF.RDB$FIELD_SOURCE = F.RDB$FIELD_NAME\n" +
-                        "order by\n" +
-                        "    RF.RDB$RELATION_NAME, RF.RDB$FIELD_POSITION";
-
-                statement = connection.createStatement();
-                rs = statement.executeQuery(firebirdSql);
-            } else {
-                rs = dmd.getColumns(_catalog, _schema, table, null);
-            }
 
-            if (isFirebirdConnection) {
-                columns = createColumns(rs, table);
+                columns = createColumns(MetadataSnapshotLoader.loadFields(connection, table));
+
             } else {
 
+                rs = dmd.getColumns(_catalog, _schema, table, null);
+
                 while (rs.next()) {
 
                     DefaultDatabaseColumn column = new DefaultDatabaseColumn();
@@ -799,7 +781,11 @@ public class DefaultDatabaseHost extends AbstractNamedObject
             releaseResources(rs, connection);
 
             int columnCount = columns.size();
-            if (columnCount > 0) {
+            if (columnCount > 0 && isFirebirdConnection) {
+
+                markKeyColumns(columns, connection, table);
+
+            } else if (columnCount > 0) {
 
                 // check for primary keys
                 rs = dmd.getPrimaryKeys(_catalog, _schema, table);
@@ -863,21 +849,21 @@ public class DefaultDatabaseHost extends AbstractNamedObject
 
     }
 
-    private List<DatabaseColumn> createColumns (ResultSet rs, String table) throws SQLException {
-        List<DatabaseColumn> columns = new ArrayList<>();
+    private List<DatabaseColumn> createColumns(List<MetadataSnapshot.Field> fields) {
+
+        List<DatabaseColumn> columns = new ArrayList<>(fields.size());
+        for (MetadataSnapshot.Field field : fields) {
 
-        while (rs.next()) {
             DefaultDatabaseColumn column = new DefaultDatabaseColumn();
-            final short fieldType = rs.getShort("FIELD_TYPE");
-            final short fieldSubType = rs.getShort("FIELD_SUB_TYPE");
-            final short fieldScale = rs.getShort("FIELD_SCALE");
-            final int characterSetId = rs.getInt("RDB$CHARACTER_SET_ID");
-            final int dataType = getDataType(fieldType, fieldSubType, fieldScale, characterSetId);
+            final int fieldType = field.getFieldType();
+            final int fieldSubType = field.getFieldSubType();
+            final int fieldScale = field.getFieldScale();
+            final int dataType = getDataType(fieldType, fieldSubType, fieldScale, field.getCharacterSetId());
 
             column.setTypeInt(dataType);
             column.setColumnSubtype(fieldSubType);
             column.setColumnScale(fieldScale);
-            column.setName(rs.getString("FIELD_NAME").trim());
+            column.setName(field.getName());
             column.setTypeName(DatabaseTypeConverter.getDataTypeName(fieldType, fieldSubType, fieldScale));
 
             switch (dataType) {
@@ -890,64 +876,22 @@ public class DefaultDatabaseHost extends AbstractNamedObject
                 case Types.VARCHAR:
                 case Types.BINARY:
                 case Types.VARBINARY:
-                    //valueBuilder.at(15).set(createInt(rs.getShort("FIELD_LENGTH")));
-                    column.setColumnSize(rs.getShort("FIELD_LENGTH"));
-                    short charLen = rs.getShort("CHAR_LEN");
+                    column.setColumnSize(field.getFieldLength());
                     break;
-                case Types.FLOAT:
-                    // TODO column precision
-//                    valueBuilder.at(6).set(FLOAT_PRECISION);
-                    break;
-                case Types.DOUBLE:
-                    // TODO column precision
-//                    valueBuilder.at(6).set(DOUBLE_PRECISION);
-                    break;
-                case Types.BIGINT:
-                    // TODO column precision
-//                    valueBuilder
-//                            .at(6).set(BIGINT_PRECISION)
-//                            .at(8).set(INT_ZERO);
-                    break;
-                case Types.INTEGER:
-                    // TODO column precision
-//                    valueBuilder
-//                            .at(6).set(INTEGER_PRECISION)
-//                            .at(8).set(INT_ZERO);
-                    break;
-                case Types.SMALLINT:
-                    // TODO column precision
-//                    valueBuilder
-//                            .at(6).set(SMALLINT_PRECISION)
-//                            .at(8).set(INT_ZERO);
-                    break;
-                case Types.DATE:
-                    // TODO column precision
-//                    valueBuilder.at(6).set(DATE_PRECISION);
-                    break;
-                case Types.TIME:
-                    // TODO column precision
-//                    valueBuilder.at(6).set(TIME_PRECISION);
-                    break;
-                case Types.TIMESTAMP:
-                    // TODO column precision
-//                    valueBuilder.at(6).set(TIMESTAMP_PRECISION);
-                    break;
-                case Types.BOOLEAN:
-                    // TODO column precision
-//                    valueBuilder
-//                            .at(6).set(BOOLEAN_PRECISION)
-//                            .at(9).set(RADIX_BINARY);
+                case Types.LONGVARBINARY:
+                case Types.LONGVARCHAR:
+                case Types.BLOB:
+                    // blob size is its segment size
+                    column.setColumnSize(field.getSegmentLength());
                     break;
             }
 
-            final short nullFlag = rs.getShort("NULL_FLAG");
-            final short sourceNullFlag = rs.getShort("SOURCE_NULL_FLAG");
-            column.setRemarks(rs.getString("REMARKS"));
-            column.setRequired(nullFlag == 1 || sourceNullFlag == 1);
+            column.setRemarks(field.getRemarks());
+            column.setRequired(field.getNullFlag() == 1 || field.getSourceNullFlag() == 1);
 
-            String column_def = rs.getString("DEFAULT_SOURCE");
+            String column_def = field.getDefaultSource();
             if (column_def == null) {
-                column_def = rs.getString("DOMAIN_DEFAULT_SOURCE");
+                column_def = field.getDomainDefaultSource();
             }
             if (column_def != null) {
                 // TODO This looks suspicious (what if it contains default)
@@ -957,102 +901,77 @@ public class DefaultDatabaseHost extends AbstractNamedObject
                 column.setDefaultValue(column_def);
             }
 
-            column.setIdentity(rs.getInt("IDENTITY") == 1);
+            column.setIdentity(field.isIdentity());
+
+            String domain = field.getDomain();
+            if (domain != null && !domain.isEmpty()) {
+                column.setDomain(domain);
+            }
+
+            String computedSource = field.getComputedSource();
+            if (computedSource != null && !computedSource.isEmpty()) {
+                column.setGenerated(true);
+                column.setComputedSource(computedSource);
+            }
 
             columns.add(column);
         }
 
-        releaseResources(rs, connection);
-
-        Statement statement = null;
+        return columns;
+    }
 
-        for (Iterator it = columns.iterator(); it.hasNext();) {
-            DefaultDatabaseColumn column = (DefaultDatabaseColumn)it.next();
-            String computedSource = null;
+    private void markKeyColumns(List<DatabaseColumn> columns, List<MetadataSnapshot.Key> keys) {
 
-            statement = connection.createStatement();
-            try {
-                ResultSet sourceRS = statement.executeQuery("select " +
-                        " RRF.RDB$FIELD_SOURCE" +
-                        " from RDB$FIELDS RF, " +
-                        "rdb$relation_fields RRF\n" +
-                        "where\n" +
-                        "    RRF.rdb$field_name = '" + column.getName() + "'\n" +
-                        "    and\n" +
-                        "    RRF.rdb$relation_name = '" + table + "'\n" +
-                        "    and\n" +
-                        "    RF.rdb$field_name = RRF.rdb$field_source");
-                if (sourceRS.next()) {
-                    computedSource = sourceRS.getString(1);
-                }
+        if (keys == null) {
+            return;
+        }
 
-                releaseResources(sourceRS, connection);
+        for (MetadataSnapshot.Key key : keys) {
 
-                if (computedSource != null && !computedSource.isEmpty()) {
-                    column.setDomain(computedSource);
-                }
+            boolean primary = MetadataSnapshot.Key.PRIMARY_KEY.equals(key.getType());
+            boolean foreign = MetadataSnapshot.Key.FOREIGN_KEY.equals(key.getType());
+            if (!primary && !foreign) {
+                continue;
+            }
 
-                computedSource = null;
-
-                // TODO check for RDB 3.0
-//                if (isGen.compareToIgnoreCase("YES") == 0) {
-//                    column.setGenerated(true);
-//                        Statement statement = dmd.getConnection().createStatement();
-                    /*ResultSet*/
-                    statement = connection.createStatement();
-                    sourceRS = statement.executeQuery("select RF.RDB$COMPUTED_SOURCE, " +
-                            " RRF.RDB$FIELD_NAME" +
-                            " from RDB$FIELDS RF, " +
-                            "rdb$relation_fields RRF\n" +
-                            "where\n" +
-                            "    RRF.rdb$field_name = '" + column.getName() + "'\n" +
-                            "    and\n" +
-                            "    RRF.rdb$relation_name = '" + table + "'\n" +
-                            "    and\n" +
-                            "    RF.rdb$field_name = RRF.rdb$field_source");
-                    if (sourceRS.next()) {
-                        computedSource = sourceRS.getString(1);
-                    }
-                releaseResources(sourceRS, connection);
-                    if (computedSource != null && !computedSource.isEmpty()) {
-//                            column.setTypeName(computedSource);
-                        column.setGenerated(true);
-                        column.setComputedSource(computedSource);
-                    }
-//                }
-            } finally {
-                if (!statement.isClosed())
-                    statement.close();
+            for (String keyColumn : key.getColumns()) {
+                markKeyColumn(columns, keyColumn, primary);
             }
+        }
+    }
 
-            // if column is blob, get segment size
-            if (column.getTypeInt() == Types.LONGVARBINARY ||
-                    column.getTypeInt() == Types.LONGVARCHAR ||
-                    column.getTypeInt() == Types.BLOB) {
-                Statement st = connection.createStatement();
-                try {
-                    ResultSet sourceRS = st.executeQuery("select\n" +
-                            "f.rdb$field_sub_type as field_subtype,\n" +
-                            "f.rdb$segment_length as segment_length\n" +
-                            "from rdb$relation_fields rf,\n" +
-                            "rdb$fields f\n" +
-                            "where rf.rdb$relation_name = '" + table + "'\n" +
-                            "and rf.rdb$field_name = '" + column.getName() + "'\n" +
-                            "and rf.rdb$field_source = f.rdb$field_name");
-                    if (sourceRS.next()) {
-                        column.setColumnSubtype(sourceRS.getInt(1));
-                        column.setColumnSize(sourceRS.getInt(2));
-                        releaseResources(sourceRS, connection);
-                    }
+    private void markKeyColumns(List<DatabaseColumn> columns, Connection connection, String table)
+            throws SQLException {
 
-                } finally {
-                    releaseResources(st);
-                }
+        PreparedStatement statement = SystemQuery.RELATION_KEY_COLUMNS.prepare(connection, table);
+        try {
+
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+
+                boolean primary = MetadataSnapshot.Key.PRIMARY_KEY.equals(rs.getString(1).trim());
+                markKeyColumn(columns, rs.getString(2).trim(), primary);
             }
 
+        } finally {
+
+            // returns the statement to the statement cache of the connection
+            statement.close();
         }
 
-        return columns;
+    }
+
+    private void markKeyColumn(List<DatabaseColumn> columns, String keyColumn, boolean primary) {
+
+        for (DatabaseColumn column : columns) {
+            if (column.getName().equalsIgnoreCase(keyColumn)) {
+                if (primary)
+                    ((DefaultDatabaseColumn) column).setPrimaryKey(true);
+                else
+                    ((DefaultDatabaseColumn) column).setForeignKey(true);
+                break;
+            }
+        }
     }
 
     private static final int smallint_type = 7;
@@ -1447,6 +1366,8 @@ public class DefaultDatabaseHost extends AbstractNamedObject
                                           DatabaseSchema schema, List<DatabaseMetaTag> metaObjects)
             throws Exception {
 
+        // the server version is read once for all types
+        int majorVersion = firebirdMajorVersion();
         for (int i = 0; i < META_TYPES.length; i++) {
 
             DefaultDatabaseMetaTag metaTag =
@@ -1454,37 +1375,39 @@ public class DefaultDatabaseHost extends AbstractNamedObject
 
             metaTag.setCatalog(catalog);
             metaTag.setSchema(schema);
-            DatabaseConnection databaseConnection = metaTag.getHost().getDatabaseConnection();
-            if (supportedObject(i))
+            if (supportedObject(i, majorVersion))
                 metaObjects.add(metaTag);
-            if (SystemProperties.getBooleanProperty("user", "treeconnection.alphabet.sorting"))
-                metaObjects.sort(new Comparator<DatabaseMetaTag>() {
-                    @Override
-                    public int compare(DatabaseMetaTag o1, DatabaseMetaTag o2) {
-                        return o1.getName().compareTo(o2.getName());
-                    }
-                });
-
         }
+
+        if (SystemProperties.getBooleanProperty("user", "treeconnection.alphabet.sorting"))
+            metaObjects.sort(new Comparator<DatabaseMetaTag>() {
+                @Override
+                public int compare(DatabaseMetaTag o1, DatabaseMetaTag o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
     }
 
-    boolean supportedObject(int type) throws Exception {
-        DefaultDriverLoader driverLoader = new DefaultDriverLoader();
+    /**
+     * Returns the major version of the Firebird or RedDatabase server
+     * of this host, or -1 for other servers.
+     */
+    private int firebirdMajorVersion() throws Exception {
         Map<String, Driver> loadedDrivers = DefaultDriverLoader.getLoadedDrivers();
         DatabaseDriver jdbcDriver = databaseConnection.getJDBCDriver();
         Driver driver = loadedDrivers.get(jdbcDriver.getId() + "-" + jdbcDriver.getClassName());
         if (driver.getClass().getName().contains("FBDriver")) {
             Connection conn = connection.unwrap(Connection.class);
-            URL[] urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            ClassLoader cl = new URLClassLoader(urls, conn.getClass().getClassLoader());
-            IFBDatabaseConnection db;
-            Class clazzdb;
-            Object odb;
-            clazzdb = cl.loadClass("biz.redsoft.FBDatabaseConnectionImpl");
-            odb = clazzdb.newInstance();
-            db = (IFBDatabaseConnection) odb;
+            IFBDatabaseConnection db = (IFBDatabaseConnection) DynamicLibraryLoader.loadingObjectFromClassLoader(conn, "FBDatabaseConnectionImpl");
             db.setConnection(conn);
-            switch (db.getMajorVersion()) {
+            return db.getMajorVersion();
+        }
+        return -1;
+    }
+
+    boolean supportedObject(int type, int majorVersion) {
+        if (majorVersion != -1) {
+            switch (majorVersion) {
                 case 2:
                     switch (type) {
                         case NamedObject.SYNONYM:
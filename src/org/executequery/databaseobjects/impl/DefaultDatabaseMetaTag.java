@@ -24,6 +24,8 @@ import biz.redsoft.IFBDatabaseConnection;
 import org.apache.commons.lang.StringUtils;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databaseobjects.*;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshot;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshots;
 import org.executequery.datasource.PooledConnection;
 import org.executequery.datasource.PooledResultSet;
 import org.executequery.gui.browser.tree.TreePanel;
@@ -144,7 +146,7 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
      *
      * @return this meta tag's child database objects.
      */
-    public List<NamedObject> getObjects() throws DataSourceException {
+    public synchronized List<NamedObject> getObjects() throws DataSourceException {
 
         if (!isMarkedForReload() && children != null) {
 
@@ -442,6 +444,27 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
     }
 
     private List<NamedObject> getTables(String metaDataKey) {
+
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null && MetadataSnapshot.isRelationType(metaDataKey)) {
+
+            List<NamedObject> tables = new ArrayList<NamedObject>();
+            for (MetadataSnapshot.Relation relation : snapshot.getRelations(metaDataKey)) {
+
+                DefaultDatabaseObject object = new DefaultDatabaseObject(this.getHost(), metaDataKey);
+                object.setName(relation.getName());
+                object.setCatalogName("");
+                object.setSchemaName("");
+                object.setRemarks(relation.getDescription());
+                object.setSource(relation.getViewSource());
+                if (metaDataKey.contains("SYSTEM"))
+                    object.setSystemFlag(true);
+                tables.add(object);
+            }
+
+            return tables;
+        }
+
         ResultSet rs = null;
         try {
 
@@ -609,6 +632,12 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
                 } else {
 
+                    MetadataSnapshot snapshot = snapshot();
+                    if (snapshot != null && MetadataSnapshot.isRelationType(getMetaDataKey())) {
+
+                        return !snapshot.getRelations(getMetaDataKey()).isEmpty();
+                    }
+
                     return getHost().hasTablesForType(getCatalogName(), getSchemaName(), getMetaDataKey());
                 }
 
@@ -712,6 +741,40 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
         return type == PACKAGE;
     }
 
+    /**
+     * Returns the metadata snapshot of the host to list this tag's
+     * objects from, or <code>null</code> to query the server.
+     */
+    private MetadataSnapshot snapshot() {
+
+        if (typeTree != TreePanel.DEFAULT) {
+
+            return null;
+        }
+
+        return MetadataSnapshots.get(getHost().getDatabaseConnection());
+    }
+
+    /**
+     * Marks this tag for reload, dropping the metadata snapshot its
+     * objects are listed from together with the stored copy, so that
+     * the reload reads all fields from the server again.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        if (getHost() != null)
+            MetadataSnapshots.discard(getHost().getDatabaseConnection());
+    }
+
+    /**
+     * Marks this tag's objects to be listed again, keeping the metadata
+     * snapshot, in which the changed objects are invalidated separately.
+     */
+    public void resetObjects() {
+        super.reset();
+    }
+
     private String procedureTerm() throws SQLException {
         return getHost().getDatabaseMetaData().getProcedureTerm();
     }
@@ -741,6 +804,12 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private boolean hasProcedures() {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            return !snapshot.getProcedures().isEmpty();
+        }
+
         ResultSet rs = null;
         try {
 
@@ -764,6 +833,12 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private boolean hasIndices() {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            return !snapshot.getIndices(false).isEmpty();
+        }
+
         ResultSet rs = null;
         try {
 
@@ -787,6 +862,12 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private boolean hasTriggers() {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            return !snapshot.getTriggers(false).isEmpty();
+        }
+
         ResultSet rs = null;
         try {
 
@@ -976,6 +1057,12 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private boolean hasSystemIndex() {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            return !snapshot.getIndices(true).isEmpty();
+        }
+
         ResultSet rs = null;
         try {
 
@@ -999,6 +1086,12 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private boolean hasSystemTrigger() {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            return !snapshot.getTriggers(true).isEmpty();
+        }
+
         ResultSet rs = null;
         try {
 
@@ -1135,6 +1228,20 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
      */
     private List<NamedObject> getProcedures() throws DataSourceException {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            List<NamedObject> list = new ArrayList<NamedObject>();
+            for (String name : snapshot.getProcedures()) {
+
+                DefaultDatabaseProcedure procedure = new DefaultDatabaseProcedure(this, name);
+                procedure.setHost(getHost());
+                list.add(procedure);
+            }
+
+            return list;
+        }
+
         ResultSet rs = null;
         try {
 
@@ -1180,6 +1287,21 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
      */
     private List<NamedObject> getIndices() throws DataSourceException {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            List<NamedObject> list = new ArrayList<NamedObject>();
+            for (MetadataSnapshot.Index snapshotIndex : snapshot.getIndices(false)) {
+
+                DefaultDatabaseIndex index = new DefaultDatabaseIndex(this, snapshotIndex.getName());
+                index.setHost(this.getHost());
+                index.setActive(!snapshotIndex.isInactive());
+                list.add(index);
+            }
+
+            return list;
+        }
+
         ResultSet rs = null;
         try {
 
@@ -1251,6 +1373,20 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
      */
     private List<NamedObject> getTriggers() throws DataSourceException {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            List<NamedObject> list = new ArrayList<NamedObject>();
+            for (MetadataSnapshot.Trigger snapshotTrigger : snapshot.getTriggers(false)) {
+
+                DefaultDatabaseTrigger trigger = new DefaultDatabaseTrigger(this, snapshotTrigger.getName());
+                trigger.setTriggerActive(!snapshotTrigger.isInactive());
+                list.add(trigger);
+            }
+
+            return list;
+        }
+
         ResultSet rs = null;
         try {
 
@@ -1524,6 +1660,21 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private List<NamedObject> getSystemIndices() throws DataSourceException {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            List<NamedObject> list = new ArrayList<NamedObject>();
+            for (MetadataSnapshot.Index snapshotIndex : snapshot.getIndices(true)) {
+
+                DefaultDatabaseIndex index = new DefaultDatabaseIndex(this, snapshotIndex.getName());
+                index.setHost(this.getHost());
+                index.setSystemFlag(true);
+                list.add(index);
+            }
+
+            return list;
+        }
+
         ResultSet rs = null;
         try {
 
@@ -1556,6 +1707,20 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
 
     private List<NamedObject> getSystemTriggers() throws DataSourceException {
 
+        MetadataSnapshot snapshot = snapshot();
+        if (snapshot != null) {
+
+            List<NamedObject> list = new ArrayList<NamedObject>();
+            for (MetadataSnapshot.Trigger snapshotTrigger : snapshot.getTriggers(true)) {
+
+                DefaultDatabaseTrigger trigger = new DefaultDatabaseTrigger(this, snapshotTrigger.getName());
+                trigger.setSystemFlag(true);
+                list.add(trigger);
+            }
+
+            return list;
+        }
+
         ResultSet rs = null;
         try {
 
@@ -1734,21 +1899,8 @@ public class DefaultDatabaseMetaTag extends AbstractNamedObject
     }
 
     private ResultSet getIndexFromNameResultSet(String name) throws SQLException {
-        String query = "select " +
-                "I.RDB$INDEX_NAME, " +
-                "I.RDB$RELATION_NAME, " +
-                "I.RDB$SYSTEM_FLAG," +
-                "I.RDB$INDEX_TYPE," +
-                "I.RDB$UNIQUE_FLAG," +
-                "I.RDB$INDEX_INACTIVE," +
-                "I.RDB$DESCRIPTION," +
-                "C.RDB$CONSTRAINT_TYPE\n" +
-                "FROM RDB$INDICES AS I LEFT JOIN rdb$relation_constraints as c on i.rdb$index_name=c.rdb$index_name\n" +
-                "where I.RDB$SYSTEM_FLAG = 0 \n" +
-                "AND I.RDB$INDEX_NAME=?";
         DefaultStatementExecutor querySender = new DefaultStatementExecutor(getHost().getDatabaseConnection());
-        PreparedStatement st = querySender.getPreparedStatement(query);
-        st.setString(1, name);
+        PreparedStatement st = SystemQuery.INDEX_BY_NAME.prepare(querySender, name);
         ResultSet resultSet = querySender.getResultSet(-1, st).getResultSet();
         return resultSet;
     }
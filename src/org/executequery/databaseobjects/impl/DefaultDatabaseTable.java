@@ -24,6 +24,8 @@ import org.apache.commons.lang.StringUtils;
 import org.executequery.databasemediators.QueryTypes;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.databaseobjects.*;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshot;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshots;
 import org.executequery.gui.browser.ColumnData;
 import org.executequery.gui.browser.tree.TreePanel;
 import org.executequery.gui.resultset.RecordDataItem;
@@ -38,7 +40,9 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Takis Diakoumis
@@ -265,6 +269,7 @@ public class DefaultDatabaseTable extends AbstractTableObject implements Databas
           }
           releaseResources(rs, null);
 
+          DefaultStatementExecutor querySender = new DefaultStatementExecutor(getHost().getDatabaseConnection());
           try {
 
             // TODO: XXX
@@ -273,6 +278,8 @@ public class DefaultDatabaseTable extends AbstractTableObject implements Databas
             // surround with try/catch hack to get at least a columns list
 
             rs = dmd.getImportedKeys(_catalog, _schema, getName());
+            List<TableColumnConstraint> withoutRules = new ArrayList<>();
+            MetadataSnapshot snapshot = MetadataSnapshots.getLoaded(host.getDatabaseConnection());
 
             while (rs.next()) {
 
@@ -281,7 +288,6 @@ public class DefaultDatabaseTable extends AbstractTableObject implements Databas
               for (DatabaseColumn i : columns) {
 
                 if (i.getName().equalsIgnoreCase(fkColumn)) {
-                  DefaultStatementExecutor querySender = new DefaultStatementExecutor(getHost().getDatabaseConnection());
                   DatabaseTableColumn column = (DatabaseTableColumn) i;
                   List<String> row = new ArrayList<>();
                   for (int g = 1; g <= rs.getMetaData().getColumnCount(); g++)
@@ -294,25 +300,16 @@ public class DefaultDatabaseTable extends AbstractTableObject implements Databas
                   constraint.setName(rs.getString(12));
                   constraint.setDeferrability(rs.getShort(14));
                   constraint.setMetaData(resultSetRowToMap(rs));
-                  ResultSet rulesRS = querySender.getResultSet("select RDB$REF_CONSTRAINTS.RDB$UPDATE_RULE, RDB$REF_CONSTRAINTS.RDB$DELETE_RULE" +
-                          " from rdb$ref_constraints where RDB$REF_CONSTRAINTS.RDB$CONSTRAINT_NAME='" + constraint.getName() + "'").getResultSet();
-                  try {
-                    if (rulesRS.next()) {
-                      for (int g = 1; g <= 2; g++) {
-                        String rule = rulesRS.getString(g);
-                        if (rule != null) {
-                          if (g == 1)
-                            constraint.setUpdateRule(rule.trim());
-                          else
-                            constraint.setDeleteRule(rule.trim());
-                        }
-                      }
-                    }
-                  } catch (Exception e) {
-                    e.printStackTrace();
-                  } finally {
-                    querySender.releaseResources();
+                  MetadataSnapshot.Key snapshotKey = snapshot != null ? snapshot.getKey(constraint.getName()) : null;
+                  if (snapshotKey != null) {
+                    if (snapshotKey.getUpdateRule() != null)
+                      constraint.setUpdateRule(snapshotKey.getUpdateRule());
+                    if (snapshotKey.getDeleteRule() != null)
+                      constraint.setDeleteRule(snapshotKey.getDeleteRule());
+                    column.addConstraint(constraint);
+                    break;
                   }
+                  withoutRules.add(constraint);
                   column.addConstraint(constraint);
                   break;
 
@@ -320,8 +317,13 @@ public class DefaultDatabaseTable extends AbstractTableObject implements Databas
               }
             }
 
+            if (!withoutRules.isEmpty())
+              loadReferentialRules(querySender, withoutRules);
+
           } catch (SQLException e) {
             Log.error("Error get imported keys for " + getName() + ": " + e.getMessage());
+          } finally {
+            querySender.releaseResources();
           }
         }
 
@@ -1316,6 +1318,60 @@ public class DefaultDatabaseTable extends AbstractTableObject implements Databas
     return true;
   }
 
+  /**
+   * Loads the update and delete rules of the specified foreign keys
+   * in batches rather than with a query per key.
+   */
+  private void loadReferentialRules(DefaultStatementExecutor querySender,
+                                    List<TableColumnConstraint> constraints) {
+
+    Map<String, List<TableColumnConstraint>> byName = new HashMap<>();
+    for (TableColumnConstraint constraint : constraints) {
+      if (constraint.getName() == null)
+        continue;
+      String name = constraint.getName().trim();
+      List<TableColumnConstraint> named = byName.get(name);
+      if (named == null) {
+        named = new ArrayList<>();
+        byName.put(name, named);
+      }
+      named.add(constraint);
+    }
+
+    for (List<String> batch : SystemQuery.batches(new ArrayList<>(byName.keySet()))) {
+      ResultSet rulesRS = null;
+      try {
+        PreparedStatement statement = SystemQuery.REF_CONSTRAINT_RULES.prepareBatch(querySender, batch);
+        rulesRS = statement.executeQuery();
+        while (rulesRS.next()) {
+          List<TableColumnConstraint> named = byName.get(rulesRS.getString(1).trim());
+          if (named == null)
+            continue;
+          String updateRule = rulesRS.getString(2);
+          String deleteRule = rulesRS.getString(3);
+          for (TableColumnConstraint constraint : named) {
+            if (updateRule != null)
+              constraint.setUpdateRule(updateRule.trim());
+            if (deleteRule != null)
+              constraint.setDeleteRule(deleteRule.trim());
+          }
+        }
+      } catch (SQLException e) {
+        Log.error("Error get referential rules for " + getName() + ": " + e.getMessage());
+      } finally {
+        if (rulesRS != null) {
+          try {
+            rulesRS.close();
+          } catch (SQLException e) {
+            Log.debug("Error closing result set: " + e.getMessage());
+          }
+        }
+        querySender.releaseResources();
+      }
+    }
+  }
+
+
   public String prepareStatement(List<String> columns, List<RecordDataItem> changes) {
 
     StringBuilder sb = new StringBuilder();
@@ -10,6 +10,7 @@ import org.executequery.sql.SqlStatementResult;
 import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.util.SQLUtils;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -40,8 +41,10 @@ public class DefaultTemporaryDatabaseTable extends DefaultDatabaseTable {
         querySender.setDatabaseConnection(getHost().getDatabaseConnection());
         int type = -1;
         try {
-            SqlStatementResult result=querySender.getResultSet("Select RDB$RELATION_TYPE FROM RDB$RELATIONS R \n" +
-                    "WHERE R.RDB$RELATION_NAME = '" + getName() + "'");
+            PreparedStatement statement = querySender.getPreparedStatement("Select RDB$RELATION_TYPE FROM RDB$RELATIONS R \n" +
+                    "WHERE R.RDB$RELATION_NAME = ?");
+            statement.setString(1, getName());
+            SqlStatementResult result=querySender.getResultSet(-1, statement);
             if(result.isException())
                 throw result.getSqlException();
             ResultSet resultSet=result.getResultSet();
@@ -0,0 +1,802 @@
+/*
+ * MetadataSnapshot.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databaseobjects.snapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory model of the relations, fields, constraints, indices,
+ * triggers and procedures of a database, loaded in bulk by the
+ * {@link MetadataSnapshotLoader}.
+ * <p/>
+ * Relations whose fields are invalidated remain listed, while
+ * their fields and keys are reloaded from the server on request.
+ * A kind of object invalidated after a change of the schema is
+ * read again by itself before the snapshot is next used.
+ *
+ * @author Takis Diakoumis
+ */
+public final class MetadataSnapshot {
+
+    /**
+     * Null system flags and relation types are held as this value.
+     */
+    public static final int NULL = -1;
+
+    /**
+     * The kinds of object read by a query of their own.
+     */
+    public enum Kind {
+        RELATIONS, KEYS, INDICES, TRIGGERS, PROCEDURES
+    }
+
+    private final long loaded;
+
+    private volatile List<Relation> relations;
+
+    private volatile Map<String, Relation> relationsByName;
+
+    private final Map<String, List<Field>> fields;
+
+    private volatile Map<String, List<Key>> keys;
+
+    private volatile Map<String, Key> keysByName;
+
+    private volatile List<Index> indices;
+
+    private volatile List<Trigger> triggers;
+
+    private volatile List<String> procedures;
+
+    private final Set<Kind> stale = Collections.synchronizedSet(EnumSet.noneOf(Kind.class));
+
+    MetadataSnapshot(long loaded,
+                     List<Relation> relations,
+                     Map<String, List<Field>> fields,
+                     List<Key> keys,
+                     List<Index> indices,
+                     List<Trigger> triggers,
+                     List<String> procedures) {
+
+        this.loaded = loaded;
+        this.indices = indices;
+        this.triggers = triggers;
+        this.procedures = procedures;
+        this.fields = new ConcurrentHashMap<String, List<Field>>(fields);
+
+        setRelations(relations);
+        setKeys(keys);
+    }
+
+    /**
+     * Returns the time in milliseconds this snapshot was loaded.
+     */
+    public long getLoaded() {
+
+        return loaded;
+    }
+
+    /**
+     * Returns the relations listed under the specified meta data key -
+     * TABLE, SYSTEM TABLE, VIEW, SYSTEM VIEW or GLOBAL TEMPORARY.
+     */
+    public List<Relation> getRelations(String metaDataKey) {
+
+        List<Relation> list = new ArrayList<Relation>();
+        for (Relation relation : relations) {
+
+            if (relation.isOfType(metaDataKey)) {
+
+                list.add(relation);
+            }
+
+        }
+
+        return list;
+    }
+
+    public List<Relation> getRelations() {
+
+        return Collections.unmodifiableList(relations);
+    }
+
+    /**
+     * Returns the relation with the specified name or <code>null</code>.
+     */
+    public Relation getRelation(String name) {
+
+        return name != null ? relationsByName.get(name) : null;
+    }
+
+    /**
+     * Returns whether relations of the specified meta data key are
+     * held by this snapshot - other keys are not loaded in bulk.
+     */
+    public static boolean isRelationType(String metaDataKey) {
+
+        return "TABLE".equals(metaDataKey)
+                || "SYSTEM TABLE".equals(metaDataKey)
+                || "VIEW".equals(metaDataKey)
+                || "SYSTEM VIEW".equals(metaDataKey)
+                || "GLOBAL TEMPORARY".equals(metaDataKey);
+    }
+
+    /**
+     * Returns the fields of the specified relation in position order,
+     * or <code>null</code> if the relation is unknown or invalidated.
+     */
+    public List<Field> getFields(String relation) {
+
+        return relation != null ? fields.get(relation) : null;
+    }
+
+    /**
+     * Returns the primary, unique and foreign keys of the specified relation,
+     * or <code>null</code> if the relation is unknown or invalidated.
+     */
+    public List<Key> getKeys(String relation) {
+
+        if (relation == null || !fields.containsKey(relation)) {
+
+            return null;
+        }
+
+        List<Key> relationKeys = keys.get(relation);
+        return relationKeys != null ? relationKeys : Collections.<Key>emptyList();
+    }
+
+    /**
+     * Returns the key constraint with the specified name or <code>null</code>.
+     */
+    public Key getKey(String name) {
+
+        if (name == null) {
+
+            return null;
+        }
+
+        Key key = keysByName.get(name.trim());
+        if (key != null && fields.containsKey(key.relation)) {
+
+            return key;
+        }
+
+        return null;
+    }
+
+    public List<Index> getIndices(boolean system) {
+
+        List<Index> list = new ArrayList<Index>();
+        for (Index index : indices) {
+
+            if (system ? index.systemFlag == 1 : index.systemFlag == 0) {
+
+                list.add(index);
+            }
+
+        }
+
+        return list;
+    }
+
+    public List<Trigger> getTriggers(boolean system) {
+
+        List<Trigger> list = new ArrayList<Trigger>();
+        for (Trigger trigger : triggers) {
+
+            if (system ? trigger.systemFlag != 0 && trigger.systemFlag != NULL
+                    : trigger.systemFlag == 0 && trigger.type <= 114) {
+
+                list.add(trigger);
+            }
+
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns the names of the procedures not belonging to a package.
+     */
+    public List<String> getProcedures() {
+
+        return Collections.unmodifiableList(procedures);
+    }
+
+    /**
+     * Drops the fields and keys of the specified relation so that
+     * they are reloaded from the server when next requested.
+     */
+    public void invalidateRelation(String relation) {
+
+        fields.remove(relation);
+        keys.remove(relation);
+    }
+
+    /**
+     * Marks the objects of the specified kind to be read again
+     * from the server before this snapshot is next used.
+     */
+    public void invalidate(Kind kind) {
+
+        stale.add(kind);
+    }
+
+    /**
+     * Returns the kinds of object invalidated since last read.
+     */
+    Set<Kind> getStaleKinds() {
+
+        synchronized (stale) {
+
+            return EnumSet.copyOf(stale);
+        }
+
+    }
+
+    boolean hasStaleKinds() {
+
+        return !stale.isEmpty();
+    }
+
+    /**
+     * Replaces the relations with those read again, dropping the
+     * fields and keys of relations changed or dropped since.
+     */
+    void refreshRelations(List<Relation> refreshed) {
+
+        stale.remove(Kind.RELATIONS);
+
+        Map<String, Relation> earlier = relationsByName;
+        setRelations(refreshed);
+        for (String name : earlier.keySet()) {
+
+            Relation relation = relationsByName.get(name);
+            if (relation == null || !relation.hasSameFields(earlier.get(name))) {
+
+                invalidateRelation(name);
+            }
+
+        }
+
+    }
+
+    void refreshKeys(List<Key> refreshed) {
+
+        stale.remove(Kind.KEYS);
+        setKeys(refreshed);
+    }
+
+    void refreshIndices(List<Index> refreshed) {
+
+        stale.remove(Kind.INDICES);
+        indices = refreshed;
+    }
+
+    void refreshTriggers(List<Trigger> refreshed) {
+
+        stale.remove(Kind.TRIGGERS);
+        triggers = refreshed;
+    }
+
+    void refreshProcedures(List<String> refreshed) {
+
+        stale.remove(Kind.PROCEDURES);
+        procedures = refreshed;
+    }
+
+    private void setRelations(List<Relation> relations) {
+
+        Map<String, Relation> byName = new ConcurrentHashMap<String, Relation>();
+        for (Relation relation : relations) {
+
+            byName.put(relation.name, relation);
+        }
+
+        this.relationsByName = byName;
+        this.relations = relations;
+    }
+
+    private void setKeys(List<Key> keys) {
+
+        Map<String, List<Key>> byRelation = new ConcurrentHashMap<String, List<Key>>();
+        Map<String, Key> byName = new ConcurrentHashMap<String, Key>();
+        for (Key key : keys) {
+
+            List<Key> relationKeys = byRelation.get(key.relation);
+            if (relationKeys == null) {
+
+                relationKeys = new ArrayList<Key>();
+                byRelation.put(key.relation, relationKeys);
+            }
+
+            relationKeys.add(key);
+            byName.put(key.name, key);
+        }
+
+        this.keysByName = byName;
+        this.keys = byRelation;
+    }
+
+    List<Index> allIndices() {
+
+        return indices;
+    }
+
+    List<Trigger> allTriggers() {
+
+        return triggers;
+    }
+
+    List<Key> allKeys() {
+
+        List<Key> list = new ArrayList<Key>();
+        for (List<Key> relationKeys : keys.values()) {
+
+            list.addAll(relationKeys);
+        }
+
+        return list;
+    }
+
+    public static final class Relation {
+
+        private final String name;
+
+        private final String description;
+
+        private final String viewSource;
+
+        private final int systemFlag;
+
+        private final int relationType;
+
+        private final boolean view;
+
+        private final int relationId;
+
+        private final int format;
+
+        private final int fieldCount;
+
+        private final long fieldsChecksum;
+
+        Relation(String name, String description, String viewSource,
+                 int systemFlag, int relationType, boolean view,
+                 int relationId, int format, int fieldCount, long fieldsChecksum) {
+
+            this.name = name;
+            this.description = description;
+            this.viewSource = viewSource;
+            this.systemFlag = systemFlag;
+            this.relationType = relationType;
+            this.view = view;
+            this.relationId = relationId;
+            this.format = format;
+            this.fieldCount = fieldCount;
+            this.fieldsChecksum = fieldsChecksum;
+        }
+
+        public String getName() {
+
+            return name;
+        }
+
+        public String getDescription() {
+
+            return description;
+        }
+
+        public String getViewSource() {
+
+            return viewSource;
+        }
+
+        int getSystemFlag() {
+
+            return systemFlag;
+        }
+
+        int getRelationType() {
+
+            return relationType;
+        }
+
+        boolean isView() {
+
+            return view;
+        }
+
+        int getRelationId() {
+
+            return relationId;
+        }
+
+        int getFormat() {
+
+            return format;
+        }
+
+        int getFieldCount() {
+
+            return fieldCount;
+        }
+
+        long getFieldsChecksum() {
+
+            return fieldsChecksum;
+        }
+
+        /**
+         * Returns whether the fields of the specified relation, loaded
+         * earlier, are unchanged - the relation was not recreated, no
+         * new format was created by an alter, no field was added or
+         * dropped and the checksum over the field and domain attributes
+         * (names, positions, types, nullability and the hashes of the
+         * default and comment texts) is the same.
+         */
+        boolean hasSameFields(Relation earlier) {
+
+            return earlier != null
+                    && relationId == earlier.relationId
+                    && format == earlier.format
+                    && fieldCount == earlier.fieldCount
+                    && fieldsChecksum == earlier.fieldsChecksum
+                    && view == earlier.view
+                    && (!view || equal(viewSource, earlier.viewSource));
+        }
+
+        private static boolean equal(String value, String other) {
+
+            return value == null ? other == null : value.equals(other);
+        }
+
+        boolean isOfType(String metaDataKey) {
+
+            boolean user = systemFlag == NULL || systemFlag == 0;
+            if ("TABLE".equals(metaDataKey)) {
+
+                return !view && user
+                        && (relationType == 0 || relationType == 2 || relationType == NULL);
+
+            } else if ("SYSTEM TABLE".equals(metaDataKey)) {
+
+                return !view && systemFlag == 1;
+
+            } else if ("VIEW".equals(metaDataKey)) {
+
+                return view && user;
+
+            } else if ("SYSTEM VIEW".equals(metaDataKey)) {
+
+                return view && systemFlag == 1;
+
+            } else if ("GLOBAL TEMPORARY".equals(metaDataKey)) {
+
+                return relationType == 4 || relationType == 5;
+            }
+
+            return false;
+        }
+
+    }
+
+    public static final class Field {
+
+        private final String name;
+
+        private final String domain;
+
+        private final int fieldType;
+
+        private final int fieldSubType;
+
+        private final int fieldScale;
+
+        private final int fieldLength;
+
+        private final int characterSetId;
+
+        private final String remarks;
+
+        private final String defaultSource;
+
+        private final String domainDefaultSource;
+
+        private final int nullFlag;
+
+        private final int sourceNullFlag;
+
+        private final String computedSource;
+
+        private final int segmentLength;
+
+        private final boolean identity;
+
+        Field(String name, String domain, int fieldType, int fieldSubType,
+              int fieldScale, int fieldLength, int characterSetId, String remarks,
+              String defaultSource, String domainDefaultSource, int nullFlag,
+              int sourceNullFlag, String computedSource, int segmentLength, boolean identity) {
+
+            this.name = name;
+            this.domain = domain;
+            this.fieldType = fieldType;
+            this.fieldSubType = fieldSubType;
+            this.fieldScale = fieldScale;
+            this.fieldLength = fieldLength;
+            this.characterSetId = characterSetId;
+            this.remarks = remarks;
+            this.defaultSource = defaultSource;
+            this.domainDefaultSource = domainDefaultSource;
+            this.nullFlag = nullFlag;
+            this.sourceNullFlag = sourceNullFlag;
+            this.computedSource = computedSource;
+            this.segmentLength = segmentLength;
+            this.identity = identity;
+        }
+
+        public String getName() {
+
+            return name;
+        }
+
+        /**
+         * Returns the field source - the domain, as stored.
+         */
+        public String getDomain() {
+
+            return domain;
+        }
+
+        public int getFieldType() {
+
+            return fieldType;
+        }
+
+        public int getFieldSubType() {
+
+            return fieldSubType;
+        }
+
+        public int getFieldScale() {
+
+            return fieldScale;
+        }
+
+        public int getFieldLength() {
+
+            return fieldLength;
+        }
+
+        public int getCharacterSetId() {
+
+            return characterSetId;
+        }
+
+        public String getRemarks() {
+
+            return remarks;
+        }
+
+        public String getDefaultSource() {
+
+            return defaultSource;
+        }
+
+        public String getDomainDefaultSource() {
+
+            return domainDefaultSource;
+        }
+
+        public int getNullFlag() {
+
+            return nullFlag;
+        }
+
+        public int getSourceNullFlag() {
+
+            return sourceNullFlag;
+        }
+
+        public String getComputedSource() {
+
+            return computedSource;
+        }
+
+        public int getSegmentLength() {
+
+            return segmentLength;
+        }
+
+        public boolean isIdentity() {
+
+            return identity;
+        }
+
+    }
+
+    public static final class Key {
+
+        public static final String PRIMARY_KEY = "PRIMARY KEY";
+
+        public static final String FOREIGN_KEY = "FOREIGN KEY";
+
+        public static final String UNIQUE = "UNIQUE";
+
+        private final String name;
+
+        private final String type;
+
+        private final String relation;
+
+        private final List<String> columns;
+
+        private final String updateRule;
+
+        private final String deleteRule;
+
+        Key(String name, String type, String relation, List<String> columns,
+            String updateRule, String deleteRule) {
+
+            this.name = name;
+            this.type = type;
+            this.relation = relation;
+            this.columns = columns;
+            this.updateRule = updateRule;
+            this.deleteRule = deleteRule;
+        }
+
+        public String getName() {
+
+            return name;
+        }
+
+        public String getType() {
+
+            return type;
+        }
+
+        public String getRelation() {
+
+            return relation;
+        }
+
+        /**
+         * Returns the key columns in segment order.
+         */
+        public List<String> getColumns() {
+
+            return columns;
+        }
+
+        /**
+         * Returns the update rule of a foreign key or <code>null</code>.
+         */
+        public String getUpdateRule() {
+
+            return updateRule;
+        }
+
+        /**
+         * Returns the delete rule of a foreign key or <code>null</code>.
+         */
+        public String getDeleteRule() {
+
+            return deleteRule;
+        }
+
+    }
+
+    public static final class Index {
+
+        private final String name;
+
+        private final String relation;
+
+        private final boolean inactive;
+
+        private final int systemFlag;
+
+        Index(String name, String relation, boolean inactive, int systemFlag) {
+
+            this.name = name;
+            this.relation = relation;
+            this.inactive = inactive;
+            this.systemFlag = systemFlag;
+        }
+
+        public String getName() {
+
+            return name;
+        }
+
+        public String getRelation() {
+
+            return relation;
+        }
+
+        public boolean isInactive() {
+
+            return inactive;
+        }
+
+        int getSystemFlag() {
+
+            return systemFlag;
+        }
+
+    }
+
+    public static final class Trigger {
+
+        private final String name;
+
+        private final String relation;
+
+        private final boolean inactive;
+
+        private final int systemFlag;
+
+        private final long type;
+
+        Trigger(String name, String relation, boolean inactive, int systemFlag, long type) {
+
+            this.name = name;
+            this.relation = relation;
+            this.inactive = inactive;
+            this.systemFlag = systemFlag;
+            this.type = type;
+        }
+
+        public String getName() {
+
+            return name;
+        }
+
+        public String getRelation() {
+
+            return relation;
+        }
+
+        public boolean isInactive() {
+
+            return inactive;
+        }
+
+        int getSystemFlag() {
+
+            return systemFlag;
+        }
+
+        long getType() {
+
+            return type;
+        }
+
+    }
+
+}
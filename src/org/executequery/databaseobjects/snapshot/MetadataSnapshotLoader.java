@@ -0,0 +1,510 @@
+/*
+ * MetadataSnapshotLoader.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databaseobjects.snapshot;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a {@link MetadataSnapshot} of a Firebird or RedDatabase
+ * database with one set based query per kind of object, rather
+ * than a query per object.
+ *
+ * @author Takis Diakoumis
+ */
+public final class MetadataSnapshotLoader {
+
+    /**
+     * Above this number of changed relations all fields are
+     * reloaded with one query rather than a query per relation.
+     */
+    private static final int MAX_CHANGED_RELATIONS = 100;
+
+    private static final String RELATIONS_QUERY =
+            "select r.rdb$relation_name,\n" +
+                    "r.rdb$description,\n" +
+                    "r.rdb$view_source,\n" +
+                    "r.rdb$system_flag,\n" +
+                    "r.rdb$relation_type,\n" +
+                    "case when r.rdb$view_blr is null then 0 else 1 end,\n" +
+                    "r.rdb$relation_id,\n" +
+                    "r.rdb$format,\n" +
+                    "(select count(*) from rdb$relation_fields rf\n" +
+                    "where rf.rdb$relation_name = r.rdb$relation_name),\n" +
+                    "(select sum(hash(rf.rdb$field_name || rf.rdb$field_source\n" +
+                    "|| ',' || coalesce(rf.rdb$field_position, -1)\n" +
+                    "|| ',' || coalesce(rf.rdb$null_flag, 0) || ',' || coalesce(f.rdb$null_flag, 0)\n" +
+                    "|| ',' || coalesce(f.rdb$field_type, 0) || ',' || coalesce(f.rdb$field_sub_type, 0)\n" +
+                    "|| ',' || coalesce(f.rdb$field_length, 0) || ',' || coalesce(f.rdb$field_scale, 0)\n" +
+                    "|| ',' || coalesce(f.rdb$character_set_id, -1)\n" +
+                    "|| ',' || coalesce(hash(rf.rdb$default_source), -1)\n" +
+                    "|| ',' || coalesce(hash(f.rdb$default_source), -1)\n" +
+                    "|| ',' || coalesce(hash(rf.rdb$description), -1)))\n" +
+                    "from rdb$relation_fields rf\n" +
+                    "join rdb$fields f on rf.rdb$field_source = f.rdb$field_name\n" +
+                    "where rf.rdb$relation_name = r.rdb$relation_name)\n" +
+                    "from rdb$relations r\n" +
+                    "order by r.rdb$relation_name";
+
+    private static final String FIELDS_QUERY =
+            "select rf.rdb$relation_name,\n" +
+                    "rf.rdb$field_name,\n" +
+                    "rf.rdb$field_source,\n" +
+                    "f.rdb$field_type,\n" +
+                    "f.rdb$field_sub_type,\n" +
+                    "f.rdb$field_scale,\n" +
+                    "f.rdb$field_length,\n" +
+                    "f.rdb$character_set_id,\n" +
+                    "rf.rdb$description,\n" +
+                    "rf.rdb$default_source,\n" +
+                    "f.rdb$default_source,\n" +
+                    "rf.rdb$null_flag,\n" +
+                    "f.rdb$null_flag,\n" +
+                    "f.rdb$computed_source,\n" +
+                    "f.rdb$segment_length,\n" +
+                    "%s\n" +
+                    "from rdb$relation_fields rf\n" +
+                    "join rdb$fields f on rf.rdb$field_source = f.rdb$field_name\n" +
+                    "%s" +
+                    "order by rf.rdb$relation_name, rf.rdb$field_position";
+
+    private static final String KEYS_QUERY =
+            "select rc.rdb$constraint_name,\n" +
+                    "rc.rdb$constraint_type,\n" +
+                    "rc.rdb$relation_name,\n" +
+                    "s.rdb$field_name,\n" +
+                    "ref.rdb$update_rule,\n" +
+                    "ref.rdb$delete_rule\n" +
+                    "from rdb$relation_constraints rc\n" +
+                    "join rdb$index_segments s on s.rdb$index_name = rc.rdb$index_name\n" +
+                    "left join rdb$ref_constraints ref on ref.rdb$constraint_name = rc.rdb$constraint_name\n" +
+                    "where rc.rdb$constraint_type in ('PRIMARY KEY', 'FOREIGN KEY', 'UNIQUE')\n" +
+                    "order by rc.rdb$relation_name, rc.rdb$constraint_name, s.rdb$field_position";
+
+    private static final String INDICES_QUERY =
+            "select i.rdb$index_name,\n" +
+                    "i.rdb$relation_name,\n" +
+                    "i.rdb$index_inactive,\n" +
+                    "i.rdb$system_flag\n" +
+                    "from rdb$indices i\n" +
+                    "order by i.rdb$index_name";
+
+    private static final String TRIGGERS_QUERY =
+            "select t.rdb$trigger_name,\n" +
+                    "t.rdb$relation_name,\n" +
+                    "t.rdb$trigger_inactive,\n" +
+                    "t.rdb$system_flag,\n" +
+                    "t.rdb$trigger_type\n" +
+                    "from rdb$triggers t\n" +
+                    "order by t.rdb$trigger_name";
+
+    private static final String PROCEDURES_QUERY =
+            "select p.rdb$procedure_name\n" +
+                    "from rdb$procedures p\n" +
+                    "%s" +
+                    "order by p.rdb$procedure_name";
+
+    /**
+     * Loads the snapshot of the database of the specified connection.
+     *
+     * @param connection the connection to load with
+     * @return the snapshot
+     */
+    public static MetadataSnapshot load(Connection connection) throws SQLException {
+
+        return refresh(connection, null);
+    }
+
+    /**
+     * Loads the snapshot of the database of the specified connection,
+     * reusing the fields of relations unchanged since the specified
+     * earlier snapshot was loaded. Other objects are always reloaded.
+     *
+     * @param connection the connection to load with
+     * @param earlier    the earlier snapshot or <code>null</code>
+     * @return the snapshot
+     */
+    public static MetadataSnapshot refresh(Connection connection, MetadataSnapshot earlier)
+            throws SQLException {
+
+        long loaded = System.currentTimeMillis();
+        int majorVersion = connection.getMetaData().getDatabaseMajorVersion();
+
+        Statement statement = connection.createStatement();
+        try {
+
+            List<MetadataSnapshot.Relation> relations = readRelations(statement.executeQuery(RELATIONS_QUERY));
+
+            Map<String, List<MetadataSnapshot.Field>> fields = new HashMap<String, List<MetadataSnapshot.Field>>();
+            List<String> changed = new ArrayList<String>();
+            for (MetadataSnapshot.Relation relation : relations) {
+
+                String name = relation.getName();
+                List<MetadataSnapshot.Field> earlierFields = earlier != null ? earlier.getFields(name) : null;
+                if (earlierFields != null && relation.hasSameFields(earlier.getRelation(name))) {
+
+                    fields.put(name, earlierFields);
+
+                } else {
+
+                    changed.add(name);
+                }
+
+            }
+
+            if (earlier == null || changed.size() > MAX_CHANGED_RELATIONS) {
+
+                fields = readFields(statement.executeQuery(fieldsQuery(majorVersion, false)));
+
+            } else if (!changed.isEmpty()) {
+
+                PreparedStatement fieldsStatement = connection.prepareStatement(fieldsQuery(majorVersion, true));
+                try {
+
+                    for (String name : changed) {
+
+                        fields.put(name, readRelationFields(fieldsStatement, name));
+                    }
+
+                } finally {
+
+                    fieldsStatement.close();
+                }
+
+            }
+
+            List<MetadataSnapshot.Key> keys = readKeys(statement.executeQuery(KEYS_QUERY));
+            List<MetadataSnapshot.Index> indices = readIndices(statement.executeQuery(INDICES_QUERY));
+            List<MetadataSnapshot.Trigger> triggers = readTriggers(statement.executeQuery(TRIGGERS_QUERY));
+            List<String> procedures = readNames(statement.executeQuery(proceduresQuery(majorVersion)));
+
+            // relations without fields are still known
+            for (MetadataSnapshot.Relation relation : relations) {
+
+                if (!fields.containsKey(relation.getName())) {
+
+                    fields.put(relation.getName(), new ArrayList<MetadataSnapshot.Field>(0));
+                }
+
+            }
+
+            return new MetadataSnapshot(loaded, relations, fields, keys, indices, triggers, procedures);
+
+        } finally {
+
+            statement.close();
+        }
+
+    }
+
+    /**
+     * Reads the objects of the specified kinds of the snapshot again,
+     * each kind with its own query, keeping the fields of relations
+     * unchanged since the snapshot was loaded.
+     *
+     * @param connection the connection to load with
+     * @param snapshot   the snapshot to refresh
+     * @param kinds      the kinds of object to read again
+     */
+    public static void refresh(Connection connection, MetadataSnapshot snapshot,
+                               Set<MetadataSnapshot.Kind> kinds) throws SQLException {
+
+        int majorVersion = connection.getMetaData().getDatabaseMajorVersion();
+
+        Statement statement = connection.createStatement();
+        try {
+
+            if (kinds.contains(MetadataSnapshot.Kind.RELATIONS)) {
+
+                snapshot.refreshRelations(readRelations(statement.executeQuery(RELATIONS_QUERY)));
+            }
+
+            if (kinds.contains(MetadataSnapshot.Kind.KEYS)) {
+
+                snapshot.refreshKeys(readKeys(statement.executeQuery(KEYS_QUERY)));
+            }
+
+            if (kinds.contains(MetadataSnapshot.Kind.INDICES)) {
+
+                snapshot.refreshIndices(readIndices(statement.executeQuery(INDICES_QUERY)));
+            }
+
+            if (kinds.contains(MetadataSnapshot.Kind.TRIGGERS)) {
+
+                snapshot.refreshTriggers(readTriggers(statement.executeQuery(TRIGGERS_QUERY)));
+            }
+
+            if (kinds.contains(MetadataSnapshot.Kind.PROCEDURES)) {
+
+                snapshot.refreshProcedures(readNames(statement.executeQuery(proceduresQuery(majorVersion))));
+            }
+
+        } finally {
+
+            statement.close();
+        }
+
+    }
+
+    /**
+     * Loads the fields of the specified relation alone, in position order.
+     *
+     * @param connection the connection to load with
+     * @param relation   the relation name
+     * @return the relation fields
+     */
+    public static List<MetadataSnapshot.Field> loadFields(Connection connection, String relation)
+            throws SQLException {
+
+        int majorVersion = connection.getMetaData().getDatabaseMajorVersion();
+        PreparedStatement statement = connection.prepareStatement(fieldsQuery(majorVersion, true));
+        try {
+
+            return readRelationFields(statement, relation);
+
+        } finally {
+
+            statement.close();
+        }
+
+    }
+
+    private static List<MetadataSnapshot.Field> readRelationFields(PreparedStatement statement, String relation)
+            throws SQLException {
+
+        statement.setString(1, relation);
+        List<MetadataSnapshot.Field> fields = readFields(statement.executeQuery()).get(relation);
+        return fields != null ? fields : new ArrayList<MetadataSnapshot.Field>(0);
+    }
+
+    private static String fieldsQuery(int majorVersion, boolean forRelation) {
+
+        String identity = majorVersion >= 3 ? "rf.rdb$identity_type" : "cast(null as integer)";
+        String condition = forRelation ? "where rf.rdb$relation_name = ?\n" : "";
+        return String.format(FIELDS_QUERY, identity, condition);
+    }
+
+    private static String proceduresQuery(int majorVersion) {
+
+        return String.format(PROCEDURES_QUERY, majorVersion > 2 ? "where p.rdb$package_name is null\n" : "");
+    }
+
+    private static List<MetadataSnapshot.Relation> readRelations(ResultSet rs) throws SQLException {
+
+        List<MetadataSnapshot.Relation> relations = new ArrayList<MetadataSnapshot.Relation>();
+        try {
+
+            while (rs.next()) {
+
+                relations.add(new MetadataSnapshot.Relation(
+                        trim(rs.getString(1)),
+                        rs.getString(2),
+                        rs.getString(3),
+                        nullableInt(rs, 4),
+                        nullableInt(rs, 5),
+                        rs.getInt(6) == 1,
+                        rs.getInt(7),
+                        rs.getInt(8),
+                        rs.getInt(9),
+                        rs.getLong(10)));
+            }
+
+        } finally {
+
+            rs.close();
+        }
+
+        return relations;
+    }
+
+    private static Map<String, List<MetadataSnapshot.Field>> readFields(ResultSet rs) throws SQLException {
+
+        Map<String, List<MetadataSnapshot.Field>> fields = new HashMap<String, List<MetadataSnapshot.Field>>();
+        try {
+
+            while (rs.next()) {
+
+                String relation = trim(rs.getString(1));
+                List<MetadataSnapshot.Field> relationFields = fields.get(relation);
+                if (relationFields == null) {
+
+                    relationFields = new ArrayList<MetadataSnapshot.Field>();
+                    fields.put(relation, relationFields);
+                }
+
+                relationFields.add(new MetadataSnapshot.Field(
+                        trim(rs.getString(2)),
+                        rs.getString(3),
+                        rs.getShort(4),
+                        rs.getShort(5),
+                        rs.getShort(6),
+                        rs.getShort(7),
+                        rs.getInt(8),
+                        rs.getString(9),
+                        rs.getString(10),
+                        rs.getString(11),
+                        rs.getShort(12),
+                        rs.getShort(13),
+                        rs.getString(14),
+                        rs.getInt(15),
+                        rs.getInt(16) == 1));
+            }
+
+        } finally {
+
+            rs.close();
+        }
+
+        return fields;
+    }
+
+    private static List<MetadataSnapshot.Key> readKeys(ResultSet rs) throws SQLException {
+
+        List<MetadataSnapshot.Key> keys = new ArrayList<MetadataSnapshot.Key>();
+        try {
+
+            String name = null;
+            String type = null;
+            String relation = null;
+            String updateRule = null;
+            String deleteRule = null;
+            List<String> columns = null;
+
+            while (rs.next()) {
+
+                String keyName = trim(rs.getString(1));
+                if (!keyName.equals(name)) {
+
+                    if (name != null) {
+
+                        keys.add(new MetadataSnapshot.Key(name, type, relation, columns, updateRule, deleteRule));
+                    }
+
+                    name = keyName;
+                    type = trim(rs.getString(2));
+                    relation = trim(rs.getString(3));
+                    updateRule = trim(rs.getString(5));
+                    deleteRule = trim(rs.getString(6));
+                    columns = new ArrayList<String>();
+                }
+
+                columns.add(trim(rs.getString(4)));
+            }
+
+            if (name != null) {
+
+                keys.add(new MetadataSnapshot.Key(name, type, relation, columns, updateRule, deleteRule));
+            }
+
+        } finally {
+
+            rs.close();
+        }
+
+        return keys;
+    }
+
+    private static List<MetadataSnapshot.Index> readIndices(ResultSet rs) throws SQLException {
+
+        List<MetadataSnapshot.Index> indices = new ArrayList<MetadataSnapshot.Index>();
+        try {
+
+            while (rs.next()) {
+
+                indices.add(new MetadataSnapshot.Index(
+                        trim(rs.getString(1)),
+                        trim(rs.getString(2)),
+                        rs.getInt(3) == 1,
+                        nullableInt(rs, 4)));
+            }
+
+        } finally {
+
+            rs.close();
+        }
+
+        return indices;
+    }
+
+    private static List<MetadataSnapshot.Trigger> readTriggers(ResultSet rs) throws SQLException {
+
+        List<MetadataSnapshot.Trigger> triggers = new ArrayList<MetadataSnapshot.Trigger>();
+        try {
+
+            while (rs.next()) {
+
+                triggers.add(new MetadataSnapshot.Trigger(
+                        trim(rs.getString(1)),
+                        trim(rs.getString(2)),
+                        rs.getInt(3) == 1,
+                        nullableInt(rs, 4),
+                        rs.getLong(5)));
+            }
+
+        } finally {
+
+            rs.close();
+        }
+
+        return triggers;
+    }
+
+    private static List<String> readNames(ResultSet rs) throws SQLException {
+
+        List<String> names = new ArrayList<String>();
+        try {
+
+            while (rs.next()) {
+
+                names.add(trim(rs.getString(1)));
+            }
+
+        } finally {
+
+            rs.close();
+        }
+
+        return names;
+    }
+
+    private static int nullableInt(ResultSet rs, int column) throws SQLException {
+
+        int value = rs.getInt(column);
+        return rs.wasNull() ? MetadataSnapshot.NULL : value;
+    }
+
+    private static String trim(String value) {
+
+        return value != null ? value.trim() : null;
+    }
+
+    private MetadataSnapshotLoader() {
+    }
+
+}
@@ -0,0 +1,409 @@
+/*
+ * MetadataSnapshotStore.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databaseobjects.snapshot;
+
+import org.executequery.log.Log;
+import org.executequery.util.UserSettingsProperties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores metadata snapshots in compact binary files under the
+ * user settings directory, one file per connection.
+ * <p/>
+ * A stored snapshot is the starting point of the next load of the
+ * connection - only the relations changed since are fetched again.
+ * Files of an unknown format are ignored.
+ *
+ * @author Takis Diakoumis
+ */
+final class MetadataSnapshotStore {
+
+    private static final int MAGIC = 0x52454d53;
+
+    private static final int VERSION = 3;
+
+    private static final String DIRECTORY = "metadata";
+
+    private static final String EXTENSION = ".snapshot";
+
+    /**
+     * Writes the specified snapshot of the connection with the specified id.
+     */
+    static void save(String id, MetadataSnapshot snapshot) {
+
+        File file = file(id);
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+
+            Log.debug("Unable to create metadata directory " + directory);
+            return;
+        }
+
+        File temp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(new FileOutputStream(temp))));
+            write(out, snapshot);
+            out.close();
+            out = null;
+
+            // replace only once completely written
+            if ((file.exists() && !file.delete()) || !temp.renameTo(file)) {
+
+                Log.debug("Unable to replace metadata snapshot file " + file);
+            }
+
+        } catch (IOException e) {
+
+            Log.warning("Error writing metadata snapshot file " + file + ": " + e.getMessage());
+
+        } finally {
+
+            close(out);
+            if (temp.exists()) {
+
+                temp.delete();
+            }
+
+        }
+
+    }
+
+    /**
+     * Reads the stored snapshot of the connection with the specified id.
+     *
+     * @return the snapshot or <code>null</code> if none is stored
+     * or it can not be read
+     */
+    static MetadataSnapshot read(String id) {
+
+        File file = file(id);
+        if (!file.exists()) {
+
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+
+            in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(new FileInputStream(file))));
+            return read(in);
+
+        } catch (IOException e) {
+
+            Log.debug("Ignoring metadata snapshot file " + file + ": " + e.getMessage());
+            return null;
+
+        } finally {
+
+            close(in);
+        }
+
+    }
+
+    /**
+     * Deletes the stored snapshot of the connection with the specified id.
+     */
+    static void delete(String id) {
+
+        File file = file(id);
+        if (file.exists() && !file.delete()) {
+
+            Log.debug("Unable to delete metadata snapshot file " + file);
+        }
+
+    }
+
+    private static File file(String id) {
+
+        String home = new UserSettingsProperties().getUserSettingsBaseHome();
+        return new File(home + DIRECTORY, id + EXTENSION);
+    }
+
+    private static void write(DataOutputStream out, MetadataSnapshot snapshot) throws IOException {
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshot.getLoaded());
+
+        List<MetadataSnapshot.Relation> relations = snapshot.getRelations();
+        out.writeInt(relations.size());
+        for (MetadataSnapshot.Relation relation : relations) {
+
+            writeString(out, relation.getName());
+            writeString(out, relation.getDescription());
+            writeString(out, relation.getViewSource());
+            out.writeInt(relation.getSystemFlag());
+            out.writeInt(relation.getRelationType());
+            out.writeBoolean(relation.isView());
+            out.writeInt(relation.getRelationId());
+            out.writeInt(relation.getFormat());
+            out.writeInt(relation.getFieldCount());
+            out.writeLong(relation.getFieldsChecksum());
+
+            // invalidated relations are stored without fields
+            List<MetadataSnapshot.Field> fields = snapshot.getFields(relation.getName());
+            if (fields == null) {
+
+                out.writeInt(-1);
+                continue;
+            }
+
+            out.writeInt(fields.size());
+            for (MetadataSnapshot.Field field : fields) {
+
+                writeString(out, field.getName());
+                writeString(out, field.getDomain());
+                out.writeInt(field.getFieldType());
+                out.writeInt(field.getFieldSubType());
+                out.writeInt(field.getFieldScale());
+                out.writeInt(field.getFieldLength());
+                out.writeInt(field.getCharacterSetId());
+                writeString(out, field.getRemarks());
+                writeString(out, field.getDefaultSource());
+                writeString(out, field.getDomainDefaultSource());
+                out.writeInt(field.getNullFlag());
+                out.writeInt(field.getSourceNullFlag());
+                writeString(out, field.getComputedSource());
+                out.writeInt(field.getSegmentLength());
+                out.writeBoolean(field.isIdentity());
+            }
+
+        }
+
+        List<MetadataSnapshot.Key> keys = snapshot.allKeys();
+        out.writeInt(keys.size());
+        for (MetadataSnapshot.Key key : keys) {
+
+            writeString(out, key.getName());
+            writeString(out, key.getType());
+            writeString(out, key.getRelation());
+            writeStrings(out, key.getColumns());
+            writeString(out, key.getUpdateRule());
+            writeString(out, key.getDeleteRule());
+        }
+
+        List<MetadataSnapshot.Index> indices = snapshot.allIndices();
+        out.writeInt(indices.size());
+        for (MetadataSnapshot.Index index : indices) {
+
+            writeString(out, index.getName());
+            writeString(out, index.getRelation());
+            out.writeBoolean(index.isInactive());
+            out.writeInt(index.getSystemFlag());
+        }
+
+        List<MetadataSnapshot.Trigger> triggers = snapshot.allTriggers();
+        out.writeInt(triggers.size());
+        for (MetadataSnapshot.Trigger trigger : triggers) {
+
+            writeString(out, trigger.getName());
+            writeString(out, trigger.getRelation());
+            out.writeBoolean(trigger.isInactive());
+            out.writeInt(trigger.getSystemFlag());
+            out.writeLong(trigger.getType());
+        }
+
+        writeStrings(out, snapshot.getProcedures());
+    }
+
+    private static MetadataSnapshot read(DataInputStream in) throws IOException {
+
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+
+            throw new IOException("unknown format");
+        }
+
+        long loaded = in.readLong();
+
+        int relationCount = in.readInt();
+        List<MetadataSnapshot.Relation> relations = new ArrayList<MetadataSnapshot.Relation>(relationCount);
+        Map<String, List<MetadataSnapshot.Field>> fields = new HashMap<String, List<MetadataSnapshot.Field>>();
+        for (int i = 0; i < relationCount; i++) {
+
+            MetadataSnapshot.Relation relation = new MetadataSnapshot.Relation(
+                    readString(in),
+                    readString(in),
+                    readString(in),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readBoolean(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readLong());
+            relations.add(relation);
+
+            int fieldCount = in.readInt();
+            if (fieldCount < 0) {
+
+                continue;
+            }
+
+            List<MetadataSnapshot.Field> relationFields = new ArrayList<MetadataSnapshot.Field>(fieldCount);
+            for (int j = 0; j < fieldCount; j++) {
+
+                relationFields.add(new MetadataSnapshot.Field(
+                        readString(in),
+                        readString(in),
+                        in.readInt(),
+                        in.readInt(),
+                        in.readInt(),
+                        in.readInt(),
+                        in.readInt(),
+                        readString(in),
+                        readString(in),
+                        readString(in),
+                        in.readInt(),
+                        in.readInt(),
+                        readString(in),
+                        in.readInt(),
+                        in.readBoolean()));
+            }
+
+            fields.put(relation.getName(), relationFields);
+        }
+
+        int keyCount = in.readInt();
+        List<MetadataSnapshot.Key> keys = new ArrayList<MetadataSnapshot.Key>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+
+            keys.add(new MetadataSnapshot.Key(
+                    readString(in),
+                    readString(in),
+                    readString(in),
+                    readStrings(in),
+                    readString(in),
+                    readString(in)));
+        }
+
+        int indexCount = in.readInt();
+        List<MetadataSnapshot.Index> indices = new ArrayList<MetadataSnapshot.Index>(indexCount);
+        for (int i = 0; i < indexCount; i++) {
+
+            indices.add(new MetadataSnapshot.Index(
+                    readString(in),
+                    readString(in),
+                    in.readBoolean(),
+                    in.readInt()));
+        }
+
+        int triggerCount = in.readInt();
+        List<MetadataSnapshot.Trigger> triggers = new ArrayList<MetadataSnapshot.Trigger>(triggerCount);
+        for (int i = 0; i < triggerCount; i++) {
+
+            triggers.add(new MetadataSnapshot.Trigger(
+                    readString(in),
+                    readString(in),
+                    in.readBoolean(),
+                    in.readInt(),
+                    in.readLong()));
+        }
+
+        List<String> procedures = readStrings(in);
+
+        return new MetadataSnapshot(loaded, relations, fields, keys, indices, triggers, procedures);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+
+        if (value == null) {
+
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+
+        int length = in.readInt();
+        if (length < 0) {
+
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+
+        out.writeInt(values.size());
+        for (String value : values) {
+
+            writeString(out, value);
+        }
+
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+
+        int count = in.readInt();
+        List<String> values = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+
+            values.add(readString(in));
+        }
+
+        return values;
+    }
+
+    private static void close(Closeable closeable) {
+
+        if (closeable != null) {
+
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.debug("Error closing metadata snapshot file: " + e.getMessage());
+            }
+
+        }
+
+    }
+
+    private MetadataSnapshotStore() {
+    }
+
+}
@@ -0,0 +1,334 @@
+/*
+ * MetadataSnapshots.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.databaseobjects.snapshot;
+
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.datasource.ConnectionManager;
+import org.executequery.log.Log;
+import org.underworldlabs.util.SystemProperties;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The metadata snapshots of connected Firebird and RedDatabase
+ * connections, each loaded when first requested.
+ * <p/>
+ * A snapshot is dropped when its connection is disconnected
+ * or reloaded. Callers fall back to querying the server directly
+ * where no snapshot is available. After a change of the schema only
+ * the kinds of object changed are invalidated, each read again by
+ * its own query when the snapshot is next requested. A snapshot
+ * invalidated as a whole is kept as the base of its next load,
+ * which then fetches the fields of changed relations only.
+ * <p/>
+ * Where enabled, each snapshot loaded is also stored on disk and
+ * the next load of the connection, in this or a later session,
+ * fetches the fields of changed relations only.
+ *
+ * @author Takis Diakoumis
+ */
+public final class MetadataSnapshots {
+
+    private static final Map<String, MetadataSnapshot> snapshots = new ConcurrentHashMap<String, MetadataSnapshot>();
+
+    private static final Map<String, MetadataSnapshot> invalidated = new ConcurrentHashMap<String, MetadataSnapshot>();
+
+    private static final Map<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+    private static final Map<String, Boolean> failed = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * Returns the snapshot of the specified connection, loading it
+     * if not yet loaded.
+     *
+     * @param databaseConnection the connection
+     * @return the snapshot or <code>null</code> if not available
+     * for the connection or its loading failed
+     */
+    public static MetadataSnapshot get(DatabaseConnection databaseConnection) {
+
+        if (!isSupported(databaseConnection)) {
+
+            return null;
+        }
+
+        String id = databaseConnection.getId();
+        MetadataSnapshot snapshot = snapshots.get(id);
+        if (snapshot != null && snapshot.hasStaleKinds()) {
+
+            synchronized (lock(id)) {
+
+                if (snapshot.hasStaleKinds() && !refreshStale(databaseConnection, snapshot)) {
+
+                    invalidate(databaseConnection);
+                    return null;
+                }
+
+            }
+
+        }
+
+        if (snapshot != null || failed.containsKey(id)) {
+
+            return snapshot;
+        }
+
+        synchronized (lock(id)) {
+
+            snapshot = snapshots.get(id);
+            if (snapshot == null && !failed.containsKey(id)) {
+
+                snapshot = load(databaseConnection);
+                if (snapshot != null) {
+
+                    snapshots.put(id, snapshot);
+
+                } else {
+
+                    failed.put(id, Boolean.TRUE);
+                }
+
+            }
+
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns the snapshot of the specified connection if already
+     * loaded and none of its objects invalidated, otherwise <code>null</code>.
+     */
+    public static MetadataSnapshot getLoaded(DatabaseConnection databaseConnection) {
+
+        MetadataSnapshot snapshot = databaseConnection != null ? snapshots.get(databaseConnection.getId()) : null;
+        return snapshot != null && !snapshot.hasStaleKinds() ? snapshot : null;
+    }
+
+    /**
+     * Drops the snapshot of the specified connection, keeping it
+     * as the base of the next load of the connection.
+     */
+    public static void invalidate(DatabaseConnection databaseConnection) {
+
+        if (databaseConnection != null) {
+
+            String id = databaseConnection.getId();
+            MetadataSnapshot snapshot = snapshots.remove(id);
+            if (snapshot != null) {
+
+                invalidated.put(id, snapshot);
+            }
+
+            failed.remove(id);
+        }
+
+    }
+
+    /**
+     * Drops the snapshot of the specified connection from memory,
+     * as when the connection is closed.
+     */
+    public static void release(DatabaseConnection databaseConnection) {
+
+        if (databaseConnection != null) {
+
+            invalidate(databaseConnection);
+            invalidated.remove(databaseConnection.getId());
+        }
+
+    }
+
+    /**
+     * Drops the snapshot of the specified connection together
+     * with its stored copy, so that it is next loaded in full.
+     */
+    public static void discard(DatabaseConnection databaseConnection) {
+
+        if (databaseConnection != null) {
+
+            release(databaseConnection);
+            MetadataSnapshotStore.delete(databaseConnection.getId());
+        }
+
+    }
+
+    /**
+     * Marks the objects of the specified kinds in the snapshot of the
+     * specified connection, if loaded, to be read again when next requested.
+     */
+    public static void invalidate(DatabaseConnection databaseConnection, MetadataSnapshot.Kind... kinds) {
+
+        MetadataSnapshot snapshot = databaseConnection != null ? snapshots.get(databaseConnection.getId()) : null;
+        if (snapshot != null) {
+
+            for (MetadataSnapshot.Kind kind : kinds) {
+
+                snapshot.invalidate(kind);
+            }
+
+        }
+
+    }
+
+    /**
+     * Drops the fields and keys of the specified relation from the
+     * snapshot of the specified connection, if loaded.
+     */
+    public static void invalidateRelation(DatabaseConnection databaseConnection, String relation) {
+
+        MetadataSnapshot snapshot = databaseConnection != null ? snapshots.get(databaseConnection.getId()) : null;
+        if (snapshot != null && relation != null) {
+
+            snapshot.invalidateRelation(relation);
+        }
+
+    }
+
+    private static boolean isSupported(DatabaseConnection databaseConnection) {
+
+        return databaseConnection != null
+                && databaseConnection.isConnected()
+                && databaseConnection.getJDBCDriver() != null
+                && databaseConnection.getJDBCDriver().getClassName().contains("FBDriver");
+    }
+
+    private static Object lock(String id) {
+
+        Object lock = locks.get(id);
+        if (lock == null) {
+
+            Object newLock = new Object();
+            lock = locks.putIfAbsent(id, newLock);
+            if (lock == null) {
+
+                lock = newLock;
+            }
+
+        }
+
+        return lock;
+    }
+
+    private static MetadataSnapshot load(DatabaseConnection databaseConnection) {
+
+        long start = System.currentTimeMillis();
+        Connection connection = null;
+        try {
+
+            boolean cached = isCacheEnabled();
+            MetadataSnapshot stored = invalidated.remove(databaseConnection.getId());
+            if (stored == null && cached) {
+
+                stored = MetadataSnapshotStore.read(databaseConnection.getId());
+            }
+
+            connection = ConnectionManager.getConnection(databaseConnection);
+            MetadataSnapshot snapshot = MetadataSnapshotLoader.refresh(connection, stored);
+
+            Log.debug("Metadata snapshot of " + databaseConnection.getName()
+                    + (stored != null ? " refreshed in " : " loaded in ")
+                    + (System.currentTimeMillis() - start) + " ms");
+
+            if (cached) {
+
+                MetadataSnapshotStore.save(databaseConnection.getId(), snapshot);
+            }
+
+            return snapshot;
+
+        } catch (Exception e) {
+
+            Log.error("Error loading metadata snapshot of " + databaseConnection.getName()
+                    + ": " + e.getMessage(), e);
+            return null;
+
+        } finally {
+
+            if (connection != null) {
+
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    Log.debug("Error closing connection: " + e.getMessage());
+                }
+
+            }
+
+        }
+
+    }
+
+    private static boolean refreshStale(DatabaseConnection databaseConnection, MetadataSnapshot snapshot) {
+
+        long start = System.currentTimeMillis();
+        Connection connection = null;
+        try {
+
+            Set<MetadataSnapshot.Kind> kinds = snapshot.getStaleKinds();
+            connection = ConnectionManager.getConnection(databaseConnection);
+            MetadataSnapshotLoader.refresh(connection, snapshot, kinds);
+
+            Log.debug("Metadata snapshot of " + databaseConnection.getName() + " refreshed " + kinds
+                    + " in " + (System.currentTimeMillis() - start) + " ms");
+
+            if (isCacheEnabled()) {
+
+                MetadataSnapshotStore.save(databaseConnection.getId(), snapshot);
+            }
+
+            return true;
+
+        } catch (Exception e) {
+
+            Log.error("Error refreshing metadata snapshot of " + databaseConnection.getName()
+                    + ": " + e.getMessage(), e);
+            return false;
+
+        } finally {
+
+            if (connection != null) {
+
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    Log.debug("Error closing connection: " + e.getMessage());
+                }
+
+            }
+
+        }
+
+    }
+
+    private static boolean isCacheEnabled() {
+
+        return SystemProperties.getBooleanProperty("user", "connection.metadata.cache");
+    }
+
+    private MetadataSnapshots() {
+    }
+
+}
@@ -0,0 +1,741 @@
+/*
+ * ConcurrentConnectionPool.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+import org.underworldlabs.util.SystemProperties;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection pool that does not lock on borrowing a connection.
+ * <p/>
+ * Idle connections are held in a concurrent deque - the most recently
+ * returned is borrowed first so that the least used age out. Borrowers
+ * take one of a fair semaphore's permits, waiting in turn up to the
+ * borrow timeout when the maximum number of connections is in use.
+ * The initial connections are opened in the background after the
+ * first, and idle connections are periodically validated and closed
+ * once idle longer than the idle timeout, down to the minimum. The
+ * pool is refilled to the minimum by that maintenance task only, each
+ * connection it opens reserving its slot beforehand so that concurrent
+ * fills do not open more than the minimum or the maximum.
+ *
+ * @author Takis Diakoumis
+ */
+public class ConcurrentConnectionPool extends AbstractConnectionPool implements PooledConnectionListener {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final DatabaseConnection databaseConnection;
+
+    private final Deque<IdleConnection> idleConnections = new ConcurrentLinkedDeque<IdleConnection>();
+
+    private final Set<PooledConnection> openConnections =
+            Collections.newSetFromMap(new ConcurrentHashMap<PooledConnection, Boolean>());
+
+    private final Set<PooledConnection> borrowedConnections =
+            Collections.newSetFromMap(new ConcurrentHashMap<PooledConnection, Boolean>());
+
+    /** the connections open and being opened */
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private final BorrowPermits borrowPermits;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final long borrowTimeout;
+
+    private final long idleTimeout;
+
+    private final long validationInterval;
+
+    private volatile int maximumConnections;
+
+    private volatile int minimumConnections = MIN_POOL_SIZE;
+
+    private volatile int initialConnections = INITIAL_POOL_SIZE;
+
+    private volatile boolean closed;
+
+    private int defaultTxIsolation = -1;
+
+    private boolean supportsTransactions;
+
+    private DataSource dataSource;
+
+    private SshTunnel sshTunnel;
+
+    private ScheduledFuture<?> maintenance;
+
+    public ConcurrentConnectionPool(DatabaseConnection databaseConnection) {
+
+        this.databaseConnection = databaseConnection;
+
+        maximumConnections = Math.max(1, SystemProperties.getIntProperty("user", "connection.pool.max.total"));
+        borrowTimeout = SystemProperties.getIntProperty("user", "connection.pool.borrow.timeout");
+        idleTimeout = SystemProperties.getIntProperty("user", "connection.pool.idle.timeout");
+        validationInterval = SystemProperties.getIntProperty("user", "connection.pool.validation.interval");
+
+        borrowPermits = new BorrowPermits(maximumConnections);
+
+        if (Log.isDebugEnabled()) {
+
+            Log.debug("Creating new concurrent pool for connection " + databaseConnection.getName());
+        }
+
+    }
+
+    public DatabaseConnection getDatabaseConnection() {
+
+        return databaseConnection;
+    }
+
+    public Connection getConnection() {
+
+        if (closed) {
+
+            throw new DataSourceException("The connection pool for " + databaseConnection.getName() + " is closed");
+        }
+
+        try {
+
+            if (!borrowPermits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+
+                throw new DataSourceException("Timed out waiting for a connection to "
+                        + databaseConnection.getName() + " - all " + maximumConnections + " connections are in use");
+            }
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            rethrowAsDataSourceException(e);
+        }
+
+        PooledConnection connection = null;
+        try {
+
+            connection = nextIdleConnection();
+            if (connection == null) {
+
+                // the borrow permit bounds the connections opened here
+                connectionCount.incrementAndGet();
+                connection = openReserved();
+            }
+
+            connection.setInUse(true);
+            borrowedConnections.add(connection);
+
+        } finally {
+
+            if (connection == null) {
+
+                borrowPermits.release();
+            }
+
+        }
+
+        if (started.compareAndSet(false, true)) {
+
+            start();
+        }
+
+        if (Log.isTraceEnabled()) {
+
+            Log.trace("Borrowed connection " + connection.getId() + " - "
+                    + borrowedConnections.size() + " of " + openConnections.size() + " in use");
+        }
+
+        return connection;
+    }
+
+    /**
+     * Returns a borrowed connection to the idle connections once closed.
+     */
+    public void connectionClosed(PooledConnection connection) {
+
+        if (!borrowedConnections.remove(connection)) {
+
+            return;
+        }
+
+        try {
+
+            // a statement left open still holds the connection's lock
+            if (closed || connection.isClosed() || connection.mutex.availablePermits() == 0) {
+
+                discard(connection);
+
+            } else {
+
+                idleConnections.offerFirst(new IdleConnection(connection));
+            }
+
+        } catch (SQLException e) {
+
+            discard(connection);
+
+        } finally {
+
+            borrowPermits.release();
+        }
+
+    }
+
+    public void close(Connection connection) {
+
+        if (connection == null) {
+
+            return;
+        }
+
+        PooledConnection pooledConnection = (PooledConnection) connection;
+        for (IdleConnection idleConnection : idleConnections) {
+
+            if (idleConnection.connection == pooledConnection) {
+
+                idleConnections.remove(idleConnection);
+            }
+
+        }
+
+        discard(pooledConnection);
+        if (borrowedConnections.remove(pooledConnection)) {
+
+            borrowPermits.release();
+        }
+
+    }
+
+    public void close() {
+
+        if (Log.isDebugEnabled()) {
+
+            Log.debug("Closing concurrent connection pool for connection " + databaseConnection.getName());
+        }
+
+        closed = true;
+        synchronized (this) {
+
+            if (maintenance != null) {
+
+                maintenance.cancel(false);
+                maintenance = null;
+            }
+
+        }
+
+        idleConnections.clear();
+        for (PooledConnection connection : openConnections) {
+
+            discard(connection);
+        }
+
+        borrowedConnections.clear();
+        destroySshTunnel();
+    }
+
+    private PooledConnection nextIdleConnection() {
+
+        long now = System.currentTimeMillis();
+
+        IdleConnection idleConnection;
+        while ((idleConnection = idleConnections.pollFirst()) != null) {
+
+            PooledConnection connection = idleConnection.connection;
+            boolean usable;
+            try {
+
+                usable = !connection.isClosed()
+                        && (now - idleConnection.since < validationInterval || isValid(connection));
+
+            } catch (SQLException e) {
+
+                usable = false;
+            }
+
+            if (usable) {
+
+                return connection;
+            }
+
+            discard(connection);
+        }
+
+        return null;
+    }
+
+    /**
+     * Opens the initial connections in the background and
+     * schedules the validation and eviction of idle connections.
+     */
+    private void start() {
+
+        ConnectionHealthScheduler.schedule(new Runnable() {
+
+            public void run() {
+
+                fill(initialConnections);
+            }
+
+        }, 0);
+
+        if (validationInterval > 0) {
+
+            synchronized (this) {
+
+                if (!closed) {
+
+                    maintenance = ConnectionHealthScheduler.scheduleWithFixedDelay(new Runnable() {
+
+                        public void run() {
+
+                            maintain();
+                        }
+
+                    }, validationInterval);
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Closes idle connections that are no longer valid or that have
+     * been idle longer than the idle timeout, then reopens the minimum.
+     */
+    private void maintain() {
+
+        long now = System.currentTimeMillis();
+        for (IdleConnection idleConnection : idleConnections) {
+
+            // only a connection removed here is not borrowed meanwhile
+            if (closed || !idleConnections.remove(idleConnection)) {
+
+                continue;
+            }
+
+            PooledConnection connection = idleConnection.connection;
+            boolean expired = idleTimeout > 0 && now - idleConnection.since > idleTimeout
+                    && connectionCount.get() > minimumConnections;
+
+            if (expired || !isValid(connection)) {
+
+                if (Log.isDebugEnabled()) {
+
+                    Log.debug("Closing " + (expired ? "idle" : "invalid") + " connection " + connection.getId());
+                }
+
+                discard(connection);
+
+            } else {
+
+                idleConnections.offerLast(idleConnection);
+            }
+
+        }
+
+        fill(minimumConnections);
+    }
+
+    /**
+     * Opens idle connections until the pool holds the specified number.
+     */
+    private void fill(int count) {
+
+        int limit = Math.min(count, maximumConnections);
+        try {
+
+            while (!closed && reserve(limit)) {
+
+                // a permit is held while opening so that borrowers
+                // and this fill together stay within the maximum
+                if (!borrowPermits.tryAcquire()) {
+
+                    connectionCount.decrementAndGet();
+                    return;
+                }
+
+                try {
+
+                    PooledConnection connection = openReserved();
+                    idleConnections.offerLast(new IdleConnection(connection));
+                    if (closed) {
+
+                        discard(connection);
+                    }
+
+                } finally {
+
+                    borrowPermits.release();
+                }
+
+            }
+
+        } catch (DataSourceException e) {
+
+            Log.warning("Error opening pooled connection to " + databaseConnection.getName() + ": " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Reserves the slot of a connection to be opened
+     * if fewer than the specified number are open.
+     */
+    private boolean reserve(int limit) {
+
+        while (true) {
+
+            int count = connectionCount.get();
+            if (count >= limit) {
+
+                return false;
+            }
+
+            if (connectionCount.compareAndSet(count, count + 1)) {
+
+                return true;
+            }
+
+        }
+
+    }
+
+    /**
+     * Opens a connection in a slot already reserved,
+     * releasing the slot if the connection fails.
+     */
+    private PooledConnection openReserved() {
+
+        boolean opened = false;
+        try {
+
+            PooledConnection connection = createConnection();
+            opened = true;
+            return connection;
+
+        } finally {
+
+            if (!opened) {
+
+                connectionCount.decrementAndGet();
+            }
+
+        }
+
+    }
+
+    private boolean isValid(PooledConnection connection) {
+
+        try {
+
+            Connection realConnection = connection.getRealConnection();
+            return realConnection != null && realConnection.isValid(VALIDATION_TIMEOUT_SECONDS);
+
+        } catch (SQLException e) {
+
+            return false;
+        }
+
+    }
+
+    private void discard(PooledConnection connection) {
+
+        if (openConnections.remove(connection)) {
+
+            connectionCount.decrementAndGet();
+            connection.closeRealConnection();
+        }
+
+    }
+
+    private PooledConnection createConnection() {
+
+        PooledConnection connection = null;
+
+        try {
+
+            Connection realConnection = dataSource().getConnection();
+            if (realConnection == null) {
+
+                throw new DataSourceException(
+                        "A connection to the database could not be " +
+                                "established.\nPlease ensure that the details " +
+                                "are correct and the supplied host is available.");
+            }
+
+            configureTransactionIsolationLevel(realConnection);
+
+            int transactionIsolation = databaseConnection.getTransactionIsolation();
+            if (transactionIsolation != -1) {
+
+                try {
+
+                    realConnection.setTransactionIsolation(transactionIsolation);
+
+                } catch (SQLException e) {
+
+                    Log.warning("Error setting transaction isolation level: " + e.getMessage());
+                }
+            }
+
+            connection = new PooledConnection(realConnection, databaseConnection);
+            connection.addPooledConnectionListener(this);
+            openConnections.add(connection);
+
+            if (Log.isDebugEnabled()) {
+
+                Log.debug("Added new connection to the concurrent pool - " + connection.getId());
+            }
+
+        } catch (SQLException e) {
+
+            rethrowAsDataSourceException(e);
+        }
+
+        return connection;
+    }
+
+    private synchronized DataSource dataSource() {
+
+        if (dataSource == null) {
+
+            DatabaseConnection _databaseConnection = databaseConnection;
+            if (databaseConnection.isSshTunnel()) {
+
+                if (sshTunnel == null) {
+
+                    sshTunnel = new JschSshTunnel();
+                    sshTunnel.connect(databaseConnection);
+                }
+
+                _databaseConnection = databaseConnection.copy();
+                _databaseConnection.setHost("localhost");
+                _databaseConnection.setPort(String.valueOf(sshTunnel.getTunnelPort()));
+            }
+
+            dataSource = new SimpleDataSource(_databaseConnection);
+        }
+
+        return dataSource;
+    }
+
+    private synchronized void destroySshTunnel() {
+
+        if (sshTunnel != null) {
+
+            sshTunnel.disconnect(databaseConnection);
+            sshTunnel = null;
+        }
+    }
+
+    private synchronized void configureTransactionIsolationLevel(Connection connection) throws SQLException {
+
+        if (defaultTxIsolation == -1) {
+
+            defaultTxIsolation = connection.getTransactionIsolation();
+            supportsTransactions = connection.getMetaData().supportsTransactions();
+        }
+
+    }
+
+    public DataSource getDataSource() {
+
+        return dataSource;
+    }
+
+    public synchronized void setDataSource(DataSource dataSource) {
+
+        this.dataSource = dataSource;
+    }
+
+    public int getMaximumConnections() {
+
+        return maximumConnections;
+    }
+
+    public synchronized void setMaximumConnections(int maximumConnections) {
+
+        if (maximumConnections < 1) {
+
+            throw new IllegalArgumentException("Maximum connection count must be at least 1");
+        }
+
+        int difference = maximumConnections - this.maximumConnections;
+        if (difference > 0) {
+
+            borrowPermits.release(difference);
+
+        } else if (difference < 0) {
+
+            borrowPermits.reduce(-difference);
+        }
+
+        this.maximumConnections = maximumConnections;
+    }
+
+    public int getMinimumConnections() {
+
+        return minimumConnections;
+    }
+
+    public void setMinimumConnections(int minimumConnections) {
+
+        if (minimumConnections < 1) {
+
+            throw new IllegalArgumentException("Minimum connection count must be at least 1");
+        }
+
+        this.minimumConnections = minimumConnections;
+    }
+
+    public int getInitialConnections() {
+
+        return initialConnections;
+    }
+
+    public void setInitialConnections(int initialConnections) {
+
+        if (initialConnections < 1) {
+
+            throw new IllegalArgumentException("Initial connection count must be at least 1");
+        }
+
+        this.initialConnections = initialConnections;
+    }
+
+    public int getMaximumUseCount() {
+
+        return 0;
+    }
+
+    public void setMaximumUseCount(int maximumUseCount) {
+    }
+
+    public int getPoolActiveSize() {
+
+        return borrowedConnections.size();
+    }
+
+    public int getSize() {
+
+        return openConnections.size();
+    }
+
+    public boolean isTransactionSupported() {
+
+        if (defaultTxIsolation == -1) {
+
+            try {
+
+                getConnection().close();
+
+            } catch (SQLException e) {
+
+                rethrowAsDataSourceException(e);
+            }
+
+        }
+
+        return supportsTransactions;
+    }
+
+    public void setTransactionIsolationLevel(int isolationLevel) {
+
+        if (!isTransactionSupported()) {
+
+            return;
+        }
+
+        int isolationLevelToApply = isolationLevel;
+        if (isolationLevelToApply == -1) {
+
+            isolationLevelToApply = defaultTxIsolation;
+        }
+
+        try {
+
+            for (PooledConnection connection : openConnections) {
+
+                if (!connection.isClosed()) {
+
+                    connection.setTransactionIsolation(isolationLevelToApply);
+                }
+
+            }
+
+        } catch (SQLException e) {
+
+            rethrowAsDataSourceException(e);
+        }
+
+    }
+
+    static final class IdleConnection {
+
+        final PooledConnection connection;
+
+        final long since;
+
+        IdleConnection(PooledConnection connection) {
+
+            this.connection = connection;
+            this.since = System.currentTimeMillis();
+        }
+
+    }
+
+    /**
+     * Fair semaphore whose permits may be reduced
+     * when the maximum number of connections is lowered.
+     */
+    static final class BorrowPermits extends Semaphore {
+
+        BorrowPermits(int permits) {
+
+            super(permits, true);
+        }
+
+        void reduce(int reduction) {
+
+            reducePermits(reduction);
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * ConnectionHealthScheduler.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+import org.executequery.log.Log;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Application wide scheduler of the keep-alive and server
+ * responsiveness checks of all pooled connections, and of
+ * connection pool maintenance.
+ * <p/>
+ * A small pool of daemon threads is shared by all connections -
+ * the threads exit when no checks are scheduled. A second thread
+ * is kept so that a check blocked on a server that is not responding
+ * does not delay the task timing it out.
+ *
+ * @author Takis Diakoumis
+ */
+public final class ConnectionHealthScheduler {
+
+    private static final int POOL_SIZE = 2;
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private static ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Runs the specified task once after the specified delay.
+     *
+     * @param task  the task to run
+     * @param delay the delay in milliseconds
+     * @return the future to cancel the task
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+
+        return executor().schedule(guard(task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the specified task repeatedly with the specified
+     * delay between the end of one run and the start of the next.
+     *
+     * @param task  the task to run
+     * @param delay the delay in milliseconds
+     * @return the future to cancel the task
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+
+        return executor().scheduleWithFixedDelay(guard(task), delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor executor() {
+
+        if (executor == null) {
+
+            executor = new ScheduledThreadPoolExecutor(POOL_SIZE, new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+
+                    Thread thread = new Thread(runnable, "ConnectionHealth-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+
+            executor.setRemoveOnCancelPolicy(true);
+            executor.setKeepAliveTime(THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Wraps the specified task so that an exception does not
+     * cancel further runs of a repeated task.
+     */
+    private static Runnable guard(final Runnable task) {
+
+        return new Runnable() {
+
+            public void run() {
+
+                try {
+
+                    task.run();
+
+                } catch (RuntimeException e) {
+
+                    Log.error("Error running connection check: " + e.getMessage(), e);
+                }
+
+            }
+
+        };
+    }
+
+    private ConnectionHealthScheduler() {
+    }
+
+}
@@ -20,24 +20,18 @@
 
 package org.executequery.datasource;
 
-import org.executequery.GUIUtilities;
 import org.executequery.databasemediators.DatabaseConnection;
 import org.executequery.databasemediators.DatabaseDriver;
-import org.executequery.databaseobjects.DatabaseHost;
-import org.executequery.databaseobjects.NamedObject;
-import org.executequery.databaseobjects.impl.DefaultDatabaseMetaTag;
-import org.executequery.gui.browser.ConnectionsTreePanel;
-import org.executequery.gui.browser.nodes.DatabaseObjectNode;
+import org.executequery.datasource.metrics.ConnectionMetrics;
+import org.executequery.datasource.metrics.ConnectionMetricsRegistry;
 import org.executequery.log.Log;
 import org.executequery.repository.DatabaseDriverRepository;
 import org.executequery.repository.RepositoryCache;
 import org.underworldlabs.jdbc.DataSourceException;
-import org.underworldlabs.swing.util.SwingWorker;
 import org.underworldlabs.util.SystemProperties;
 
 import javax.resource.ResourceException;
 import javax.sql.DataSource;
-import javax.swing.tree.TreeNode;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
@@ -51,6 +45,8 @@ import java.util.*;
  */
 public final class ConnectionManager {
 
+    private static final String CONCURRENT_POOL = "concurrent";
+
     private static Map<DatabaseConnection, ConnectionPool> connectionPools = Collections.synchronizedMap(new HashMap<DatabaseConnection, ConnectionPool>());
     /**
      * Creates a stored data source for the specified database
@@ -78,51 +74,27 @@ public final class ConnectionManager {
         }
 
         Log.info("Initialising data source for " + databaseConnection.getName());
-        ConnectionPool pool = new ConnectionPoolImpl(databaseConnection);
+        ConnectionPool pool = createPool(databaseConnection);
         pool.setMinimumConnections(SystemProperties.getIntProperty("user", "connection.initialcount"));
         pool.setInitialConnections(SystemProperties.getIntProperty("user", "connection.initialcount"));
         connectionPools.put(databaseConnection, pool);
         databaseConnection.setConnected(true);
-        DatabaseObjectNode hostNode = ((ConnectionsTreePanel) GUIUtilities.getDockedTabComponent(ConnectionsTreePanel.PROPERTY_KEY)).getHostNode(databaseConnection);
-        loadTree(hostNode);
-        DatabaseHost host = (DatabaseHost) hostNode.getDatabaseObject();
-        try {
-            while (host.countFinishedMetaTags() < hostNode.getChildCount()) {
-
-                Thread.sleep(100);
-            }
-
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
         Log.info("Data source " + databaseConnection.getName() + " initialized.");
     }
 
 
-    public static void loadTree(DatabaseObjectNode root) {
-        root.populateChildren();
-        Enumeration<TreeNode> nodes = root.children();
-        while (nodes.hasMoreElements()) {
-            DatabaseObjectNode node = (DatabaseObjectNode) nodes.nextElement();
-            if (node.isHostNode() || node.getType() == NamedObject.META_TAG) {
-                SwingWorker sw = new SwingWorker() {
-                    @Override
-                    public Object construct() {
-                        loadTree(node);
-                        return null;
-                    }
-
-                    @Override
-                    public void finished() {
-                        if (node.getType() == NamedObject.META_TAG) {
-                            ((DefaultDatabaseMetaTag) node.getDatabaseObject()).getHost().incCountFinishedMetaTags();
-                        }
-                    }
-                };
-                sw.start();
-            }
+    /**
+     * Creates the connection pool of the type selected by the
+     * connection.pool.type user property.
+     */
+    private static ConnectionPool createPool(DatabaseConnection databaseConnection) {
+
+        if (CONCURRENT_POOL.equals(SystemProperties.getProperty("user", "connection.pool.type"))) {
+
+            return new ConcurrentConnectionPool(databaseConnection);
         }
 
+        return new ConnectionPoolImpl(databaseConnection);
     }
 
     /**
@@ -138,17 +110,37 @@ public final class ConnectionManager {
             return null;
         }
 
-        synchronized (databaseConnection) {
+        ConnectionPool pool = connectionPools.get(databaseConnection);
+        if (pool == null) {
 
-            if (connectionPools == null || !connectionPools.containsKey(databaseConnection)) {
+            synchronized (databaseConnection) {
 
-                createDataSource(databaseConnection);
+                if (!connectionPools.containsKey(databaseConnection)) {
+
+                    createDataSource(databaseConnection);
+                }
+
+                pool = connectionPools.get(databaseConnection);
             }
 
-            ConnectionPool pool = connectionPools.get(databaseConnection);
+        }
+
+        // the pool itself regulates concurrent borrowers
+        long borrowStart = System.nanoTime();
+        try {
+
             Connection connection = pool.getConnection();
+            if (connection instanceof PooledConnection) {
+
+                ((PooledConnection) connection).borrowed();
+            }
 
             return connection;
+
+        } finally {
+
+            ConnectionMetricsRegistry.forConnection(databaseConnection).recordSince(
+                    ConnectionMetrics.Timing.BORROW_WAIT, borrowStart);
         }
 
     }
@@ -170,7 +162,9 @@ public final class ConnectionManager {
             ConnectionPool pool = connectionPools.get(databaseConnection);
             DataSource dataSource = getDataSource(databaseConnection);
             try {
-                return new PooledConnection(dataSource.getConnection(), databaseConnection);
+                PooledConnection connection = new PooledConnection(dataSource.getConnection(), databaseConnection);
+                connection.borrowed();
+                return connection;
             } catch (SQLException e) {
                 Log.error("Error get connection", e);
                 return pool.getConnection();
@@ -207,7 +201,8 @@ public final class ConnectionManager {
             ConnectionPool pool = connectionPools.get(databaseConnection);
             SimpleDataSource dataSource = (SimpleDataSource) pool.getDataSource();
             try {
-                dataSource.close();
+                if (dataSource != null)
+                    dataSource.close();
             } catch (ResourceException e) {
                 e.printStackTrace();
             }
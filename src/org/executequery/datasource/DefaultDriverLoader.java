@@ -25,6 +25,7 @@ import org.executequery.log.Log;
 import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.util.DynamicLibraryLoader;
 import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.PluginBridgeRegistry;
 
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -138,6 +139,7 @@ public class DefaultDriverLoader implements DriverLoader {
                 e.printStackTrace();
             }
             LOADED_DRIVERS.remove(key);
+            PluginBridgeRegistry.release(driver.getClass().getClassLoader());
             driver = null;
         }
 
@@ -0,0 +1,406 @@
+/*
+ * LeakDetector.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+import org.executequery.log.Log;
+import org.underworldlabs.util.SystemProperties;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Opt-in detector of borrowed connections, statements and
+ * result sets that are not closed.
+ * <p/>
+ * When enabled each resource is tracked from its allocation with the
+ * allocating stack and time. A resource is reported when still open
+ * after the configured threshold or when garbage collected without
+ * being closed - the latter is detected with phantom references so
+ * tracking does not keep the resource itself reachable.
+ * <p/>
+ * Reports are written to the log and kept for the connection
+ * statistics view.
+ *
+ * @author Takis Diakoumis
+ */
+public final class LeakDetector {
+
+    public enum Kind {
+
+        CONNECTION,
+
+        STATEMENT,
+
+        RESULT_SET
+
+    }
+
+    private static final String ENABLED_KEY = "connection.leak.detection";
+
+    private static final String THRESHOLD_KEY = "connection.leak.threshold";
+
+    private static final long MAX_SCAN_INTERVAL = 10000;
+
+    private static final int MAX_LEAKS = 500;
+
+    private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    private static final Set<Resource> open = Collections.newSetFromMap(new ConcurrentHashMap<Resource, Boolean>());
+
+    private static final LinkedList<Leak> leaks = new LinkedList<Leak>();
+
+    private static ScheduledFuture<?> scan;
+
+    public static boolean isEnabled() {
+
+        return SystemProperties.getBooleanProperty("user", ENABLED_KEY);
+    }
+
+    /**
+     * Starts tracking the specified resource if leak detection is enabled.
+     *
+     * @param resource    the resource
+     * @param kind        the kind of resource
+     * @param description the connection name or other detail reported with a leak
+     * @param owner       the tracked resource the resource was created from or <code>null</code>
+     * @return the handle to release when the resource is closed
+     * or <code>null</code> if not tracked
+     */
+    public static Resource track(Object resource, Kind kind, String description, Resource owner) {
+
+        if (!isEnabled()) {
+
+            return null;
+        }
+
+        Resource tracked = new Resource(resource, kind, description, owner);
+        open.add(tracked);
+        if (owner != null) {
+
+            owner.children.add(tracked);
+        }
+
+        ensureScanning();
+        return tracked;
+    }
+
+    /**
+     * Stops tracking the specified resource once closed. A resource
+     * may be released again to release the resources created from it
+     * when they are closed later.
+     *
+     * @param resource   the handle returned on tracking, may be <code>null</code>
+     * @param withOwned  whether the resources created from it were closed with it
+     */
+    public static void release(Resource resource, boolean withOwned) {
+
+        if (resource == null) {
+
+            return;
+        }
+
+        if (open.remove(resource)) {
+
+            resource.clear();
+            if (resource.owner != null) {
+
+                resource.owner.children.remove(resource);
+            }
+
+        }
+
+        if (withOwned) {
+
+            for (Resource child : resource.children) {
+
+                release(child, true);
+            }
+
+        }
+
+    }
+
+    /**
+     * Returns whether the specified resource is tracked and not yet released.
+     */
+    public static boolean isOpen(Resource resource) {
+
+        return resource != null && open.contains(resource);
+    }
+
+    /**
+     * Returns the reported leaks, most recent last.
+     */
+    public static List<Leak> getLeaks() {
+
+        synchronized (leaks) {
+
+            return new ArrayList<Leak>(leaks);
+        }
+
+    }
+
+    public static void clearLeaks() {
+
+        synchronized (leaks) {
+
+            leaks.clear();
+        }
+
+    }
+
+    /**
+     * Returns the number of tracked resources not yet closed.
+     */
+    public static int getOpenCount() {
+
+        return open.size();
+    }
+
+    private static synchronized void ensureScanning() {
+
+        if (scan == null) {
+
+            long interval = Math.max(1000, Math.min(threshold() / 2, MAX_SCAN_INTERVAL));
+            scan = ConnectionHealthScheduler.scheduleWithFixedDelay(new Runnable() {
+
+                public void run() {
+
+                    scan();
+                }
+
+            }, interval);
+        }
+
+    }
+
+    private static long threshold() {
+
+        return SystemProperties.getIntProperty("user", THRESHOLD_KEY);
+    }
+
+    private static void scan() {
+
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+
+            Resource resource = (Resource) reference;
+            if (!open.remove(resource)) {
+
+                continue;
+            }
+
+            if (resource.owner != null) {
+
+                resource.owner.children.remove(resource);
+
+                // a result set is closed with its statement - only
+                // reported if the statement is not closed either
+                if (resource.kind == Kind.RESULT_SET && open.contains(resource.owner)) {
+
+                    continue;
+                }
+
+            }
+
+            report(resource, false);
+
+        }
+
+        long threshold = threshold();
+        long now = System.currentTimeMillis();
+        for (Resource resource : open) {
+
+            if (!resource.reported && now - resource.created > threshold) {
+
+                resource.reported = true;
+                report(resource, true);
+            }
+
+        }
+
+        synchronized (LeakDetector.class) {
+
+            // stop until the next resource is tracked
+            if (open.isEmpty() && scan != null) {
+
+                scan.cancel(false);
+                scan = null;
+            }
+
+        }
+
+    }
+
+    private static void report(Resource resource, boolean stillOpen) {
+
+        Leak leak = new Leak(resource, stillOpen);
+        synchronized (leaks) {
+
+            leaks.add(leak);
+            if (leaks.size() > MAX_LEAKS) {
+
+                leaks.removeFirst();
+            }
+
+        }
+
+        Log.warning(leak.getMessage(), resource.allocation);
+    }
+
+    /**
+     * A tracked resource - the handle to release when it is closed.
+     */
+    public static final class Resource extends PhantomReference<Object> {
+
+        private final Kind kind;
+
+        private final String description;
+
+        private final String thread;
+
+        private final long created;
+
+        private final Throwable allocation;
+
+        private final Resource owner;
+
+        private final Set<Resource> children;
+
+        private volatile boolean reported;
+
+        Resource(Object resource, Kind kind, String description, Resource owner) {
+
+            super(resource, queue);
+
+            this.kind = kind;
+            this.description = description;
+            this.owner = owner;
+
+            thread = Thread.currentThread().getName();
+            created = System.currentTimeMillis();
+            allocation = new Throwable("Allocated by thread " + thread);
+            children = Collections.newSetFromMap(new ConcurrentHashMap<Resource, Boolean>());
+        }
+
+    }
+
+    /**
+     * A reported resource leak.
+     */
+    public static final class Leak {
+
+        private final Kind kind;
+
+        private final String description;
+
+        private final String thread;
+
+        private final long allocated;
+
+        private final long reported;
+
+        private final boolean stillOpen;
+
+        private final String allocationStack;
+
+        Leak(Resource resource, boolean stillOpen) {
+
+            this.stillOpen = stillOpen;
+
+            kind = resource.kind;
+            description = resource.description;
+            thread = resource.thread;
+            allocated = resource.created;
+            reported = System.currentTimeMillis();
+
+            StringWriter writer = new StringWriter();
+            resource.allocation.printStackTrace(new PrintWriter(writer));
+            allocationStack = writer.toString();
+        }
+
+        public Kind getKind() {
+
+            return kind;
+        }
+
+        public String getDescription() {
+
+            return description;
+        }
+
+        public String getThread() {
+
+            return thread;
+        }
+
+        public long getAllocated() {
+
+            return allocated;
+        }
+
+        public long getReported() {
+
+            return reported;
+        }
+
+        /**
+         * Returns whether the resource was still open when reported,
+         * rather than garbage collected without being closed.
+         */
+        public boolean isStillOpen() {
+
+            return stillOpen;
+        }
+
+        public String getAllocationStack() {
+
+            return allocationStack;
+        }
+
+        public String getMessage() {
+
+            String name = kind.name().toLowerCase().replace('_', ' ');
+            if (stillOpen) {
+
+                return "Possible leak - " + name + " for " + description + " still open after "
+                        + (reported - allocated) + " ms";
+            }
+
+            return "Leak - " + name + " for " + description + " was garbage collected without being closed";
+        }
+
+    }
+
+    private LeakDetector() {
+    }
+
+}
@@ -24,16 +24,20 @@ import biz.redsoft.IFBDatabasePerformance;
 import org.executequery.GUIUtilities;
 import org.executequery.databasemediators.ConnectionMediator;
 import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.datasource.metrics.ConnectionMetrics;
+import org.executequery.datasource.metrics.ConnectionMetricsRegistry;
 import org.executequery.log.Log;
+import org.underworldlabs.swing.GUIUtils;
 import org.underworldlabs.util.DynamicLibraryLoader;
 import org.underworldlabs.util.SystemProperties;
 
 import javax.swing.*;
 import java.sql.*;
-import java.util.Timer;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Pooled connection wrapper.
@@ -77,13 +81,41 @@ public class PooledConnection implements Connection {
 
     private List<PooledConnectionListener> listeners;
 
-    private Timer timer;
-    private Timer timerDelay;
-    private TimerTask task;
+    /**
+     * minimum interval in milliseconds between checks of the server
+     */
+    private static final long CHECK_INTERVAL = 1000;
+
+    private ScheduledFuture<?> keepAlive;
+    private IFBDatabasePerformance databasePerformance;
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private volatile long lastCheck;
     private int timeoutShutdown;
     private PooledStatement lastStatement;
     private boolean timerCheckConnection;
 
+    /**
+     * prepared statements of the real connection not currently in use
+     */
+    private StatementCache statementCache;
+
+    /**
+     * the open connections by database - the statement caches of all
+     * connections to a database are cleared before its schema changes
+     */
+    private static final Map<DatabaseConnection, Set<PooledConnection>> CACHING_CONNECTIONS =
+            new HashMap<DatabaseConnection, Set<PooledConnection>>();
+
+    /**
+     * timings of the statements run over the connections to this database
+     */
+    private final ConnectionMetrics metrics;
+
+    /**
+     * the leak detector's handle while the connection is borrowed
+     */
+    private LeakDetector.Resource leakTracking;
+
 
     /**
      * Creates a new PooledConnection object with the
@@ -108,21 +140,21 @@ public class PooledConnection implements Connection {
     public PooledConnection(Connection realConnection, DatabaseConnection databaseConnection, boolean closeOnReturn,boolean timerCheckConnection) {
         this.databaseConnection = databaseConnection;
         this.timerCheckConnection=timerCheckConnection;
+        metrics = ConnectionMetricsRegistry.forConnection(databaseConnection);
         mutex = new Semaphore(1);
         useCount = 0;
         timeoutShutdown = SystemProperties.getIntProperty("user", "connection.shutdown.timeout");
         this.realConnection = realConnection;
         this.closeOnReturn = closeOnReturn;
-        timer = new Timer();
-        timerDelay = new Timer();
-        task = new TimerTask() {
-            @Override
-            public void run() {
-                checkConnectionToServer();
-            }
-        };
-        if(this.timerCheckConnection)
-            timer.schedule(task, timeoutShutdown);
+        statementCache = new StatementCache(SystemProperties.getIntProperty("user", "connection.statement.cache.size"));
+        registerStatementCache();
+        if (this.timerCheckConnection && timeoutShutdown > 0)
+            keepAlive = ConnectionHealthScheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    keepAlive();
+                }
+            }, timeoutShutdown);
         try {
 
             originalAutoCommit = realConnection.getAutoCommit();
@@ -200,6 +232,7 @@ public class PooledConnection implements Connection {
             e.printStackTrace();
         }
 
+        releaseStatementCache();
         //realConnection = null;
     }
 
@@ -210,8 +243,10 @@ public class PooledConnection implements Connection {
     public void close() throws SQLException {
 
         inUse = false;
-        if(timerCheckConnection)
-            timer.cancel();
+        cancelKeepAlive();
+
+        // statements are only closed with the connection if not returned open to the pool
+        LeakDetector.release(leakTracking, closeOnReturn);
 
         if (realConnection != null) {
 
@@ -222,6 +257,7 @@ public class PooledConnection implements Connection {
 
             if (closeOnReturn) {
 
+                releaseStatementCache();
                 realConnection.close();
                 realConnection = null;
 
@@ -243,6 +279,32 @@ public class PooledConnection implements Connection {
         }
     }
 
+    /**
+     * Closes the real connection whether or not it is closed on return.
+     */
+    void closeRealConnection() {
+
+        inUse = false;
+        cancelKeepAlive();
+        releaseStatementCache();
+        LeakDetector.release(leakTracking, true);
+
+        if (realConnection != null) {
+
+            try {
+
+                realConnection.close();
+
+            } catch (SQLException e) {
+
+                Log.debug("Error closing connection " + id + ": " + e.getMessage());
+            }
+
+            realConnection = null;
+        }
+
+    }
+
     private void fireConnectionClosed() {
 
         if (listeners != null)
@@ -258,45 +320,110 @@ public class PooledConnection implements Connection {
         throw e;
     }
 
+    /**
+     * Checks the server while this connection is not executing a statement.
+     */
+    private void keepAlive() {
+
+        if (realConnection == null || !mutex.tryAcquire()) {
+
+            return;
+        }
+
+        try {
+
+            checkConnectionToServer();
+
+        } finally {
+
+            mutex.release();
+        }
+
+    }
+
+    /**
+     * Checks that the server is still responding, offering to close the
+     * connection if it takes longer than the shutdown timeout. Checks are
+     * skipped while one is running or if one ran within the last second.
+     */
     public void checkConnectionToServer()
     {
+        long now = System.currentTimeMillis();
+        if (now - lastCheck < CHECK_INTERVAL || !checking.compareAndSet(false, true))
+            return;
+
+        ScheduledFuture<?> timeout = null;
         try {
-            IFBDatabasePerformance db = (IFBDatabasePerformance) DynamicLibraryLoader.loadingObjectFromClassLoader(realConnection, "FBDatabasePerformanceImpl");
-            db.setConnection(realConnection);
-            TimerTask task = new TimerTask() {
-                @Override
-                public void run() {
-                    if (databaseConnection.isConnected()) {
-                        if (GUIUtilities.displayConfirmDialog("The server is not responding. do you want to close the connection?") == JOptionPane.OK_OPTION) {
-                            closeDatabaseConnection();
-                            timerDelay.cancel();
-                        }
-                    } else
-                        timerDelay.cancel();
-                }
-            };
-            timerDelay = new Timer();
-            /*StackTraceElement[] stack = Thread.currentThread().getStackTrace();
-            Log.info("---------------------------------Start check----------------------------------\n\n\n");
-            for (int i = 0; i < stack.length - 2; i++)
-                Log.info(stack[stack.length - 1 - i]);*/
-            timerDelay.schedule(task, timeoutShutdown);
+            IFBDatabasePerformance db = databasePerformance();
+            if (timeoutShutdown > 0)
+                timeout = ConnectionHealthScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        serverNotResponding();
+                    }
+                }, timeoutShutdown);
             db.getPerformanceInfo();
-            timerDelay.cancel();
-            //Log.info("---------------------------------Finish check.----------------------------------\n\n\n");
         } catch (SQLException e)
         {
             if (databaseConnection.isConnected())
-                closeDatabaseConnection();
-            timerDelay.cancel();
+                connectionLost();
         } catch (ClassNotFoundException e) {
-            if (databaseConnection.isConnected()) {
-                if (GUIUtilities.displayConfirmDialog("The server is not responding. do you want to close the connection?") == JOptionPane.OK_OPTION) {
-                    closeDatabaseConnection();
+            serverNotResponding();
+        } finally {
+            if (timeout != null)
+                timeout.cancel(false);
+            lastCheck = System.currentTimeMillis();
+            checking.set(false);
+        }
+    }
+
+    /**
+     * Returns the performance handle of the real connection, loading it on first use.
+     */
+    private synchronized IFBDatabasePerformance databasePerformance() throws ClassNotFoundException {
+
+        if (databasePerformance == null) {
+
+            databasePerformance = (IFBDatabasePerformance) DynamicLibraryLoader.loadingObjectFromClassLoader(realConnection, "FBDatabasePerformanceImpl");
+            databasePerformance.setConnection(realConnection);
+        }
+
+        return databasePerformance;
+    }
+
+    private void serverNotResponding() {
+
+        GUIUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (databaseConnection.isConnected()) {
+                    if (GUIUtilities.displayConfirmDialog("The server is not responding. do you want to close the connection?") == JOptionPane.OK_OPTION) {
+                        closeDatabaseConnection();
+                    }
                 }
             }
-            timerDelay.cancel();
+        });
+    }
+
+    private void connectionLost() {
+
+        GUIUtils.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (databaseConnection.isConnected())
+                    closeDatabaseConnection();
+            }
+        });
+    }
+
+    private void cancelKeepAlive() {
+
+        if (keepAlive != null) {
+
+            keepAlive.cancel(false);
+            keepAlive = null;
         }
+
     }
 
     public Statement createStatement() throws SQLException {
@@ -338,8 +465,16 @@ public class PooledConnection implements Connection {
         PreparedStatement statement = null;
         lock(true);
         try {
-            statement = realConnection.prepareStatement(sql);
-            lastStatement = new PooledStatement(this, statement);
+            String key = statementCache.keyFor(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement = takeCachedStatement(key, sql);
+            if (statement == null) {
+
+                long prepareStart = System.nanoTime();
+                statement = realConnection.prepareStatement(sql);
+                metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
+            }
+
+            lastStatement = new PooledStatement(this, statement, key);
             return lastStatement;
         } catch (SQLException e) {
             if (statement == null)
@@ -357,8 +492,16 @@ public class PooledConnection implements Connection {
         PreparedStatement statement = null;
         lock(true);
         try {
-            statement = realConnection.prepareStatement(sql, resultSetType, resultSetConcurrency);
-            lastStatement = new PooledStatement(this, statement);
+            String key = statementCache.keyFor(sql, resultSetType, resultSetConcurrency);
+            statement = takeCachedStatement(key, sql);
+            if (statement == null) {
+
+                long prepareStart = System.nanoTime();
+                statement = realConnection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+                metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
+            }
+
+            lastStatement = new PooledStatement(this, statement, key);
             return lastStatement;
         } catch (SQLException e) {
             if (statement == null)
@@ -368,12 +511,151 @@ public class PooledConnection implements Connection {
         }
     }
 
+    /**
+     * Takes the statement with the specified key from the statement cache,
+     * or clears the cache before the specified statement changes the schema.
+     *
+     * @return the cached statement or <code>null</code> if not cached
+     */
+    private PreparedStatement takeCachedStatement(String key, String sql) throws SQLException {
+
+        if (key == null) {
+
+            evictCachedStatements(sql);
+            return null;
+        }
+
+        PreparedStatement statement = statementCache.take(key);
+        metrics.statementCacheLookup(statement != null);
+        if (statement != null && statement.isClosed()) {
+
+            return null;
+        }
+
+        return statement;
+    }
+
+    /**
+     * Returns a prepared statement no longer in use to the statement cache.
+     *
+     * @return whether the statement was cached - it should be closed otherwise
+     */
+    boolean returnToCache(String key, PreparedStatement statement) {
+
+        return key != null && realConnection != null && statementCache.put(key, statement);
+    }
+
+    /**
+     * Closes the cached statements of all connections to the database
+     * before the specified statement is executed if it changes the
+     * schema - objects still referenced by a prepared statement may
+     * not be altered or dropped.
+     */
+    void evictCachedStatements(String sql) {
+
+        if (sql == null || !StatementCache.isSchemaChange(sql)) {
+
+            return;
+        }
+
+        List<PooledConnection> connections;
+        synchronized (CACHING_CONNECTIONS) {
+
+            Set<PooledConnection> registered = CACHING_CONNECTIONS.get(databaseConnection);
+            connections = registered != null
+                    ? new ArrayList<PooledConnection>(registered)
+                    : Collections.singletonList(this);
+        }
+
+        for (PooledConnection connection : connections) {
+
+            connection.statementCache.clear();
+        }
+
+    }
+
+    private void registerStatementCache() {
+
+        if (databaseConnection == null) {
+
+            return;
+        }
+
+        synchronized (CACHING_CONNECTIONS) {
+
+            Set<PooledConnection> connections = CACHING_CONNECTIONS.get(databaseConnection);
+            if (connections == null) {
+
+                connections = Collections.newSetFromMap(new WeakHashMap<PooledConnection, Boolean>());
+                CACHING_CONNECTIONS.put(databaseConnection, connections);
+            }
+            connections.add(this);
+        }
+
+    }
+
+    /**
+     * Closes the cached statements once the real connection is closed.
+     */
+    private void releaseStatementCache() {
+
+        statementCache.clear();
+        if (databaseConnection == null) {
+
+            return;
+        }
+
+        synchronized (CACHING_CONNECTIONS) {
+
+            Set<PooledConnection> connections = CACHING_CONNECTIONS.get(databaseConnection);
+            if (connections != null) {
+
+                connections.remove(this);
+                if (connections.isEmpty()) {
+
+                    CACHING_CONNECTIONS.remove(databaseConnection);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Starts tracking this connection with the leak detector as
+     * borrowed, unless already tracked for an earlier borrower.
+     */
+    void borrowed() {
+
+        if (!LeakDetector.isOpen(leakTracking)) {
+
+            leakTracking = LeakDetector.track(this, LeakDetector.Kind.CONNECTION, leakDescription(), null);
+        }
+
+    }
+
+    LeakDetector.Resource getLeakTracking() {
+
+        return leakTracking;
+    }
+
+    String leakDescription() {
+
+        return databaseConnection != null ? databaseConnection.getName() : "";
+    }
+
+    public ConnectionMetrics getMetrics() {
+
+        return metrics;
+    }
+
     public CallableStatement prepareCall(String sql) throws SQLException {
         checkOpen();
         CallableStatement statement = null;
         lock(true);
         try {
+            long prepareStart = System.nanoTime();
             statement = realConnection.prepareCall(sql);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
             lastStatement = new PooledStatement(this, statement);
             return lastStatement;
         } catch (SQLException e) {
@@ -392,7 +674,9 @@ public class PooledConnection implements Connection {
         CallableStatement statement = null;
         lock(true);
         try {
+            long prepareStart = System.nanoTime();
             statement = realConnection.prepareCall(sql, resultSetType, resultSetConcurrency);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
             lastStatement = new PooledStatement(this, statement);
             return lastStatement;
         } catch (SQLException e) {
@@ -574,7 +858,7 @@ public class PooledConnection implements Connection {
     public void closeDatabaseConnection() {
         GUIUtilities.displayErrorMessage("lost connection to server");
         ConnectionMediator.getInstance().disconnect(databaseConnection);
-        timer.cancel();
+        cancelKeepAlive();
     }
 
     public int getHoldability() throws SQLException {
@@ -659,8 +943,10 @@ public class PooledConnection implements Connection {
         Statement statement = null;
         try {
             lock(true);
+            long prepareStart = System.nanoTime();
             statement = realConnection.prepareStatement(
                     sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
             lastStatement = new PooledStatement(this, statement);
             return lastStatement;
         } catch (SQLException e) {
@@ -677,8 +963,10 @@ public class PooledConnection implements Connection {
         Statement statement = null;
         try {
             lock(true);
+            long prepareStart = System.nanoTime();
             statement = realConnection.prepareCall(
                     sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
             lastStatement = new PooledStatement(this, statement);
             return lastStatement;
         } catch (SQLException e) {
@@ -693,7 +981,9 @@ public class PooledConnection implements Connection {
         PreparedStatement statement = null;
         try {
             lock(true);
+            long prepareStart = System.nanoTime();
             statement = realConnection.prepareStatement(sql, autoGeneratedKeys);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
             lastStatement = new PooledStatement(this, statement);
             return lastStatement;
         } catch (SQLException e) {
@@ -708,7 +998,9 @@ public class PooledConnection implements Connection {
         PreparedStatement statement = null;
         try {
             lock(true);
+            long prepareStart = System.nanoTime();
             statement = realConnection.prepareStatement(sql, columnIndexes);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
             lastStatement = new PooledStatement(this, statement);
             return lastStatement;
         } catch (SQLException e) {
@@ -723,7 +1015,9 @@ public class PooledConnection implements Connection {
         PreparedStatement statement = null;
         try {
             lock(true);
+            long prepareStart = System.nanoTime();
             statement = realConnection.prepareStatement(sql, columnNames);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
             lastStatement = new PooledStatement(this, statement);
             return lastStatement;
         } catch (SQLException e) {
@@ -964,6 +1258,23 @@ public class PooledConnection implements Connection {
         }
     }
 
+    public PooledStatement prepareIndividualStatement(String sql) throws SQLException {
+        checkOpen();
+        PreparedStatement statement = null;
+        try {
+            setAutoCommit(false);
+            long prepareStart = System.nanoTime();
+            statement = realConnection.prepareStatement(sql);
+            metrics.recordSince(ConnectionMetrics.Timing.PREPARE, prepareStart);
+            PooledStatement pooledStatement = new PooledStatement(this, statement);
+            pooledStatement.setIndividual(true);
+            return pooledStatement;
+        } catch (SQLException e) {
+            handleException(e);
+            return null;
+        }
+    }
+
     public PooledStatement getLastStatement() {
         return lastStatement;
     }
@@ -1,11 +1,15 @@
 package org.executequery.datasource;
 
+import org.executequery.datasource.metrics.ConnectionMetrics;
+import org.executequery.datasource.metrics.FetchCounter;
+
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.Calendar;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PooledResultSet implements ResultSet {
 
@@ -13,9 +17,32 @@ public class PooledResultSet implements ResultSet {
 
     private ResultSet _res;
 
+    private ConnectionMetrics metrics;
+
+    private long fetchNanos;
+
+    private long rows;
+
+    private long bytes;
+
+    private boolean fetched;
+
+    private LeakDetector.Resource leakTracking;
+
+    /**
+     * the rows fetched by the running query this result set was opened for
+     */
+    private AtomicLong fetchCounter;
+
     public PooledResultSet(PooledStatement _stmt, ResultSet rs) {
         this._stmt = _stmt;
         this._res = rs;
+        fetchCounter = FetchCounter.current();
+        if (_stmt != null) {
+            metrics = _stmt.getMetrics();
+            leakTracking = LeakDetector.track(this, LeakDetector.Kind.RESULT_SET,
+                    _stmt.leakDescription(), _stmt.getLeakTracking());
+        }
     }
 
     public Statement getStatement() throws SQLException {
@@ -29,13 +56,66 @@ public class PooledResultSet implements ResultSet {
      */
     public void close() throws SQLException {
 
+        fetchFinished();
+        LeakDetector.release(leakTracking, false);
         _res.close();
 
     }
 
 
     public boolean next() throws SQLException {
-        return _res.next();
+        if (metrics == null || fetched) {
+            boolean next = _res.next();
+            if (next && fetchCounter != null)
+                fetchCounter.incrementAndGet();
+            return next;
+        }
+
+        long start = System.nanoTime();
+        boolean next = _res.next();
+        long end = System.nanoTime();
+        fetchNanos += end - start;
+
+        if (next && fetchCounter != null)
+            fetchCounter.incrementAndGet();
+
+        if (next) {
+            if (rows == 0 && _stmt.getExecuteStart() != 0)
+                metrics.record(ConnectionMetrics.Timing.FIRST_ROW, end - _stmt.getExecuteStart());
+            rows++;
+        } else
+            fetchFinished();
+
+        return next;
+    }
+
+    /**
+     * Records the fetch time and counts of this result set once,
+     * when the last row has been read or the result set is closed.
+     */
+    private void fetchFinished() {
+        if (metrics == null || fetched)
+            return;
+
+        fetched = true;
+        if (fetchNanos == 0)
+            return;
+
+        metrics.record(ConnectionMetrics.Timing.FETCH, fetchNanos);
+        metrics.addRows(rows);
+        metrics.addBytes(bytes);
+    }
+
+    private String counted(String value) {
+        if (value != null)
+            bytes += value.length();
+        return value;
+    }
+
+    private byte[] counted(byte[] value) {
+        if (value != null)
+            bytes += value.length;
+        return value;
     }
 
     public boolean wasNull() throws SQLException {
@@ -43,7 +123,7 @@ public class PooledResultSet implements ResultSet {
     }
 
     public String getString(int columnIndex) throws SQLException {
-        return _res.getString(columnIndex);
+        return counted(_res.getString(columnIndex));
     }
 
     public boolean getBoolean(int columnIndex) throws SQLException {
@@ -82,7 +162,7 @@ public class PooledResultSet implements ResultSet {
     }
 
     public byte[] getBytes(int columnIndex) throws SQLException {
-        return _res.getBytes(columnIndex);
+        return counted(_res.getBytes(columnIndex));
     }
 
     public Date getDate(int columnIndex) throws SQLException {
@@ -113,7 +193,7 @@ public class PooledResultSet implements ResultSet {
     }
 
     public String getString(String columnName) throws SQLException {
-        return _res.getString(columnName);
+        return counted(_res.getString(columnName));
     }
 
     public boolean getBoolean(String columnName) throws SQLException {
@@ -152,7 +232,7 @@ public class PooledResultSet implements ResultSet {
     }
 
     public byte[] getBytes(String columnName) throws SQLException {
-        return _res.getBytes(columnName);
+        return counted(_res.getBytes(columnName));
     }
 
     public Date getDate(String columnName) throws SQLException {
@@ -638,7 +718,11 @@ public class PooledResultSet implements ResultSet {
 
     public boolean isClosed() throws SQLException {
 
-        return _res.isClosed();
+        // the driver may close the result set itself once read
+        boolean closed = _res.isClosed();
+        if (closed)
+            LeakDetector.release(leakTracking, false);
+        return closed;
     }
 
 
@@ -1,6 +1,7 @@
 package org.executequery.datasource;
 
 import biz.redsoft.IFBSQLException;
+import org.executequery.datasource.metrics.ConnectionMetrics;
 import org.executequery.log.Log;
 import org.underworldlabs.util.DynamicLibraryLoader;
 
@@ -24,10 +25,27 @@ public class PooledStatement implements CallableStatement {
 
     private boolean closed;
 
+    /**
+     * the key to return the prepared statement to the connection's statement cache
+     */
+    private String cacheKey;
+
+    /**
+     * the start of the last execution, in nanoseconds
+     */
+    private long executeStart;
+
+    /**
+     * the leak detector's handle while the statement is open
+     */
+    private LeakDetector.Resource leakTracking;
+
     public PooledStatement(PooledConnection con, Statement statement) {
         this.connection = con;
         this.statement = statement;
         closed = false;
+        leakTracking = LeakDetector.track(this, LeakDetector.Kind.STATEMENT,
+                con.leakDescription(), con.getLeakTracking());
     }
 
     public PooledStatement(PooledConnection con, PreparedStatement statement) {
@@ -35,6 +53,11 @@ public class PooledStatement implements CallableStatement {
         this.preparedStatement = statement;
     }
 
+    public PooledStatement(PooledConnection con, PreparedStatement statement, String cacheKey) {
+        this(con, statement);
+        this.cacheKey = cacheKey;
+    }
+
     public PooledStatement(PooledConnection con, CallableStatement statement) {
         this(con, (PreparedStatement) statement);
         this.callableStatement = statement;
@@ -44,6 +67,34 @@ public class PooledStatement implements CallableStatement {
         return statement;
     }
 
+    LeakDetector.Resource getLeakTracking() {
+        return leakTracking;
+    }
+
+    String leakDescription() {
+        return connection.leakDescription();
+    }
+
+    ConnectionMetrics getMetrics() {
+        return connection.getMetrics();
+    }
+
+    /**
+     * Returns the start of the last execution in nanoseconds
+     * or zero if the statement has not been executed.
+     */
+    long getExecuteStart() {
+        return executeStart;
+    }
+
+    private void executeStarted() {
+        executeStart = System.nanoTime();
+    }
+
+    private void executeFinished() {
+        connection.getMetrics().recordSince(ConnectionMetrics.Timing.EXECUTE, executeStart);
+    }
+
     protected void handleException(SQLException e) throws SQLException {
         connection.checkConnectionToServer();
         throw e;
@@ -51,21 +102,28 @@ public class PooledStatement implements CallableStatement {
 
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
+        executeStarted();
         try {
             return new PooledResultSet(this, statement.executeQuery(sql));
         } catch (SQLException e) {
             handleException(e);
             return null;
+        } finally {
+            executeFinished();
         }
     }
 
     @Override
     public int executeUpdate(String s) throws SQLException {
+        connection.evictCachedStatements(s);
+        executeStarted();
         try {
             return statement.executeUpdate(s);
         } catch (SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            executeFinished();
         }
     }
 
@@ -176,11 +234,15 @@ public class PooledStatement implements CallableStatement {
 
     @Override
     public boolean execute(String s) throws SQLException {
+        connection.evictCachedStatements(s);
+        executeStarted();
         try {
             return statement.execute(s);
         } catch (SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            executeFinished();
         }
     }
 
@@ -293,11 +355,14 @@ public class PooledStatement implements CallableStatement {
 
     @Override
     public int[] executeBatch() throws SQLException {
+        executeStarted();
         try {
             return statement.executeBatch();
         } catch (SQLException e) {
             handleException(e);
             return null;
+        } finally {
+            executeFinished();
         }
     }
 
@@ -333,62 +398,80 @@ public class PooledStatement implements CallableStatement {
 
     @Override
     public int executeUpdate(String s, int i) throws SQLException {
+        executeStarted();
         try {
             return statement.executeUpdate(s);
         } catch (SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            executeFinished();
         }
     }
 
     @Override
     public int executeUpdate(String s, int[] ints) throws SQLException {
+        executeStarted();
         try {
             return statement.executeUpdate(s, ints);
         } catch (SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            executeFinished();
         }
     }
 
     @Override
     public int executeUpdate(String s, String[] strings) throws SQLException {
+        executeStarted();
         try {
             return statement.executeUpdate(s, strings);
         } catch (SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            executeFinished();
         }
     }
 
     @Override
     public boolean execute(String s, int i) throws SQLException {
+        executeStarted();
         try {
             return statement.execute(s, i);
         } catch (SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            executeFinished();
         }
     }
 
     @Override
     public boolean execute(String s, int[] ints) throws SQLException {
+        executeStarted();
         try {
             return statement.execute(s, ints);
         } catch (SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            executeFinished();
         }
     }
 
 
     @Override
     public boolean execute(String s, String[] strings) throws SQLException {
+        executeStarted();
         try {
             return statement.execute(s, strings);
         } catch (SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            executeFinished();
         }
     }
 
@@ -407,10 +490,11 @@ public class PooledStatement implements CallableStatement {
         try {
             if (!closed) {
                 if (statement != null)
-                    if (!statement.isClosed())
+                    if (!statement.isClosed() && !connection.returnToCache(cacheKey, preparedStatement))
                         statement.close();
                 connection.lock(false);
                 closed = true;
+                LeakDetector.release(leakTracking, true);
             } else {
                 if (!individual)
                     Log.info("Trying to close connection a second time.");
@@ -481,21 +565,27 @@ public class PooledStatement implements CallableStatement {
 
     @Override
     public ResultSet executeQuery() throws SQLException {
+        executeStarted();
         try {
             return new PooledResultSet(this, preparedStatement.executeQuery());
         } catch (SQLException e) {
             handleException(e);
             return null;
+        } finally {
+            executeFinished();
         }
     }
 
     @Override
     public int executeUpdate() throws SQLException {
+        executeStarted();
         try {
             return preparedStatement.executeUpdate();
         } catch (SQLException e) {
             handleException(e);
             return 0;
+        } finally {
+            executeFinished();
         }
     }
 
@@ -701,11 +791,14 @@ public class PooledStatement implements CallableStatement {
 
     @Override
     public boolean execute() throws SQLException {
+        executeStarted();
         try {
             return preparedStatement.execute();
         } catch (SQLException e) {
             handleException(e);
             return false;
+        } finally {
+            executeFinished();
         }
     }
 
@@ -0,0 +1,226 @@
+/*
+ * StatementCache.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource;
+
+import org.executequery.databaseobjects.SystemQuery;
+import org.executequery.log.Log;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of the prepared statements of a single connection.
+ * <p/>
+ * Statements are keyed by their SQL text, result set type and
+ * concurrency. A statement is taken out of the cache while in use
+ * and put back when its pooled statement is closed. The cache lives
+ * as long as the real connection, across returns to the pool. Only the
+ * constant texts of the {@link SystemQuery} queries are cached - those
+ * refer to system tables alone, while a statement prepared on a user
+ * table keeps the table in use, so that other attachments may not
+ * alter or drop it.
+ *
+ * @author Takis Diakoumis
+ */
+class StatementCache {
+
+    private final int maxSize;
+
+    private final Map<String, PreparedStatement> statements;
+
+    StatementCache(int maxSize) {
+
+        this.maxSize = maxSize;
+        statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cache key for the specified statement or
+     * <code>null</code> if the statement may not be cached.
+     */
+    String keyFor(String sql, int resultSetType, int resultSetConcurrency) {
+
+        if (maxSize <= 0 || sql == null || !SystemQuery.isSystemQuery(sql)) {
+
+            return null;
+        }
+
+        return resultSetType + ":" + resultSetConcurrency + ":" + sql;
+    }
+
+    /**
+     * Takes the statement with the specified key out of the cache.
+     *
+     * @return the statement or <code>null</code> if not cached
+     */
+    synchronized PreparedStatement take(String key) {
+
+        return statements.remove(key);
+    }
+
+    /**
+     * Returns a statement no longer in use to the cache,
+     * evicting the least recently used if the cache is full.
+     *
+     * @return whether the statement was cached - the caller
+     * should close it otherwise
+     */
+    boolean put(String key, PreparedStatement statement) {
+
+        try {
+
+            ResultSet resultSet = statement.getResultSet();
+            if (resultSet != null) {
+
+                resultSet.close();
+            }
+
+            statement.clearParameters();
+            statement.clearWarnings();
+            statement.setMaxRows(0);
+
+        } catch (SQLException e) {
+
+            return false;
+        }
+
+        PreparedStatement evicted = null;
+        synchronized (this) {
+
+            if (statements.containsKey(key)) {
+
+                return false;
+            }
+
+            if (statements.size() >= maxSize) {
+
+                Iterator<PreparedStatement> iterator = statements.values().iterator();
+                evicted = iterator.next();
+                iterator.remove();
+            }
+
+            statements.put(key, statement);
+        }
+
+        close(evicted);
+        return true;
+    }
+
+    /**
+     * Closes and removes all cached statements.
+     */
+    void clear() {
+
+        List<PreparedStatement> evicted;
+        synchronized (this) {
+
+            if (statements.isEmpty()) {
+
+                return;
+            }
+
+            evicted = new ArrayList<PreparedStatement>(statements.values());
+            statements.clear();
+        }
+
+        for (PreparedStatement statement : evicted) {
+
+            close(statement);
+        }
+
+    }
+
+    private void close(PreparedStatement statement) {
+
+        if (statement == null) {
+
+            return;
+        }
+
+        try {
+
+            statement.close();
+
+        } catch (SQLException e) {
+
+            Log.debug("Error closing cached statement: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Returns whether the specified statement changes the database schema.
+     */
+    static boolean isSchemaChange(String sql) {
+
+        String word = firstWord(sql);
+        return "CREATE".equals(word) || "ALTER".equals(word) || "RECREATE".equals(word)
+                || "DROP".equals(word) || "DECLARE".equals(word);
+    }
+
+    /**
+     * Returns the upper case first word of the statement, skipping
+     * leading whitespace and comments.
+     */
+    private static String firstWord(String sql) {
+
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+
+                i++;
+
+            } else if (sql.startsWith("--", i)) {
+
+                int end = sql.indexOf('\n', i);
+                i = end == -1 ? length : end + 1;
+
+            } else if (sql.startsWith("/*", i)) {
+
+                int end = sql.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+
+            } else {
+
+                break;
+            }
+
+        }
+
+        int start = i;
+        while (i < length && Character.isLetter(sql.charAt(i))) {
+
+            i++;
+        }
+
+        return sql.substring(start, i).toUpperCase();
+    }
+
+}
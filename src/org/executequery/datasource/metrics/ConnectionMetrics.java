@@ -0,0 +1,168 @@
+/*
+ * ConnectionMetrics.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and fetch counts of the statements run
+ * over the connections to one database.
+ *
+ * @author Takis Diakoumis
+ */
+public class ConnectionMetrics {
+
+    public enum Timing {
+
+        /** waiting for a connection from the pool */
+        BORROW_WAIT,
+
+        /** preparing a statement */
+        PREPARE,
+
+        /** executing a statement */
+        EXECUTE,
+
+        /** from the start of a query's execution to its first row */
+        FIRST_ROW,
+
+        /** fetching all the rows of a result set read */
+        FETCH
+
+    }
+
+    private final String name;
+
+    private final LatencyHistogram[] histograms;
+
+    private final LongAdder rows;
+
+    private final LongAdder bytes;
+
+    private final LongAdder statementCacheHits;
+
+    private final LongAdder statementCacheMisses;
+
+    ConnectionMetrics(String name) {
+
+        this.name = name;
+
+        Timing[] timings = Timing.values();
+        histograms = new LatencyHistogram[timings.length];
+        for (int i = 0; i < timings.length; i++) {
+
+            histograms[i] = new LatencyHistogram();
+        }
+
+        rows = new LongAdder();
+        bytes = new LongAdder();
+        statementCacheHits = new LongAdder();
+        statementCacheMisses = new LongAdder();
+    }
+
+    /**
+     * Returns the name of the connection.
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    public void record(Timing timing, long nanos) {
+
+        histograms[timing.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the time since the specified start time from <code>System.nanoTime()</code>.
+     */
+    public void recordSince(Timing timing, long startNanos) {
+
+        record(timing, System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram getHistogram(Timing timing) {
+
+        return histograms[timing.ordinal()];
+    }
+
+    public void addRows(long count) {
+
+        rows.add(count);
+    }
+
+    public void addBytes(long count) {
+
+        bytes.add(count);
+    }
+
+    public long getRows() {
+
+        return rows.sum();
+    }
+
+    /**
+     * Returns the size of the string and binary values read from result sets.
+     */
+    public long getBytes() {
+
+        return bytes.sum();
+    }
+
+    /**
+     * Records a lookup of a query in the prepared statement cache.
+     */
+    public void statementCacheLookup(boolean hit) {
+
+        if (hit) {
+
+            statementCacheHits.increment();
+
+        } else {
+
+            statementCacheMisses.increment();
+        }
+    }
+
+    public long getStatementCacheHits() {
+
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+
+        return statementCacheMisses.sum();
+    }
+
+    public void reset() {
+
+        for (LatencyHistogram histogram : histograms) {
+
+            histogram.reset();
+        }
+
+        rows.reset();
+        bytes.reset();
+        statementCacheHits.reset();
+        statementCacheMisses.reset();
+    }
+
+}
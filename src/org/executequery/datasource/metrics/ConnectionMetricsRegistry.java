@@ -0,0 +1,214 @@
+/*
+ * ConnectionMetricsRegistry.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource.metrics;
+
+import org.executequery.databasemediators.DatabaseConnection;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the metrics of each database connection and
+ * exports them as JSON or CSV.
+ *
+ * @author Takis Diakoumis
+ */
+public final class ConnectionMetricsRegistry {
+
+    /** the percentiles exported for each timing */
+    public static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final String UNNAMED = "";
+
+    private static final ConcurrentMap<String, ConnectionMetrics> metrics =
+            new ConcurrentHashMap<String, ConnectionMetrics>();
+
+    /**
+     * Returns the metrics of the specified connection, creating them on first use.
+     */
+    public static ConnectionMetrics forConnection(DatabaseConnection databaseConnection) {
+
+        String name = databaseConnection != null ? databaseConnection.getName() : UNNAMED;
+
+        ConnectionMetrics connectionMetrics = metrics.get(name);
+        if (connectionMetrics == null) {
+
+            ConnectionMetrics created = new ConnectionMetrics(name);
+            connectionMetrics = metrics.putIfAbsent(name, created);
+            if (connectionMetrics == null) {
+
+                connectionMetrics = created;
+            }
+
+        }
+
+        return connectionMetrics;
+    }
+
+    /**
+     * Returns the metrics of all connections ordered by name.
+     */
+    public static List<ConnectionMetrics> getAll() {
+
+        List<ConnectionMetrics> all = new ArrayList<ConnectionMetrics>(metrics.values());
+        Collections.sort(all, new Comparator<ConnectionMetrics>() {
+
+            public int compare(ConnectionMetrics o1, ConnectionMetrics o2) {
+
+                return o1.getName().compareToIgnoreCase(o2.getName());
+            }
+
+        });
+
+        return all;
+    }
+
+    public static void resetAll() {
+
+        for (ConnectionMetrics connectionMetrics : metrics.values()) {
+
+            connectionMetrics.reset();
+        }
+
+    }
+
+    /**
+     * Returns the metrics of all connections as a JSON document,
+     * with all timings in microseconds.
+     */
+    public static String toJson() {
+
+        JSONArray connections = new JSONArray();
+        for (ConnectionMetrics connectionMetrics : getAll()) {
+
+            JSONObject timings = new JSONObject();
+            for (ConnectionMetrics.Timing timing : ConnectionMetrics.Timing.values()) {
+
+                LatencyHistogram histogram = connectionMetrics.getHistogram(timing);
+
+                JSONObject values = new JSONObject();
+                values.put("count", histogram.getCount());
+                values.put("mean", micros(histogram.getMean()));
+                values.put("max", micros(histogram.getMax()));
+                for (double percentile : PERCENTILES) {
+
+                    values.put("p" + percentileName(percentile), micros(histogram.getPercentile(percentile)));
+                }
+
+                timings.put(timing.name().toLowerCase(), values);
+            }
+
+            JSONObject connection = new JSONObject();
+            connection.put("connection", connectionMetrics.getName());
+            connection.put("rows", connectionMetrics.getRows());
+            connection.put("bytes", connectionMetrics.getBytes());
+            connection.put("statementCacheHits", connectionMetrics.getStatementCacheHits());
+            connection.put("statementCacheMisses", connectionMetrics.getStatementCacheMisses());
+            connection.put("timingsMicros", timings);
+            connections.put(connection);
+        }
+
+        JSONObject document = new JSONObject();
+        document.put("timestamp", System.currentTimeMillis());
+        document.put("connections", connections);
+        return document.toString(2);
+    }
+
+    /**
+     * Returns the metrics of all connections as CSV with
+     * one row per connection and timing, in microseconds.
+     */
+    public static String toCsv() {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("connection,timing,count,mean_us,max_us");
+        for (double percentile : PERCENTILES) {
+
+            sb.append(",p").append(percentileName(percentile)).append("_us");
+        }
+        sb.append(",rows,bytes,statement_cache_hits,statement_cache_misses\n");
+
+        for (ConnectionMetrics connectionMetrics : getAll()) {
+
+            for (ConnectionMetrics.Timing timing : ConnectionMetrics.Timing.values()) {
+
+                LatencyHistogram histogram = connectionMetrics.getHistogram(timing);
+
+                sb.append(csvValue(connectionMetrics.getName())).append(',')
+                        .append(timing.name().toLowerCase()).append(',')
+                        .append(histogram.getCount()).append(',')
+                        .append(micros(histogram.getMean())).append(',')
+                        .append(micros(histogram.getMax()));
+
+                for (double percentile : PERCENTILES) {
+
+                    sb.append(',').append(micros(histogram.getPercentile(percentile)));
+                }
+
+                sb.append(',').append(connectionMetrics.getRows())
+                        .append(',').append(connectionMetrics.getBytes())
+                        .append(',').append(connectionMetrics.getStatementCacheHits())
+                        .append(',').append(connectionMetrics.getStatementCacheMisses()).append('\n');
+            }
+
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the name of the specified percentile, eg. 99.9 as 99_9.
+     */
+    public static String percentileName(double percentile) {
+
+        if (percentile == Math.rint(percentile)) {
+
+            return String.valueOf((long) percentile);
+        }
+
+        return String.valueOf(percentile).replace('.', '_');
+    }
+
+    private static long micros(long nanos) {
+
+        return nanos / 1000;
+    }
+
+    private static String csvValue(String value) {
+
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+
+            return value;
+        }
+
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private ConnectionMetricsRegistry() {
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * FetchCounter.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the rows fetched by the result sets opened on a thread,
+ * so that the progress of a running query may be shown while its
+ * rows are read.
+ *
+ * @author Takis Diakoumis
+ */
+public final class FetchCounter {
+
+    private static final ThreadLocal<AtomicLong> counter = new ThreadLocal<AtomicLong>();
+
+    /**
+     * Counts the rows of result sets subsequently opened on
+     * the current thread with the specified counter.
+     */
+    public static void bind(AtomicLong rows) {
+
+        counter.set(rows);
+    }
+
+    public static void unbind() {
+
+        counter.remove();
+    }
+
+    /**
+     * Returns the counter bound to the current thread or <code>null</code>.
+     */
+    public static AtomicLong current() {
+
+        return counter.get();
+    }
+
+    private FetchCounter() {
+    }
+
+}
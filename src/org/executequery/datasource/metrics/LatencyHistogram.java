@@ -0,0 +1,185 @@
+/*
+ * LatencyHistogram.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.datasource.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets.
+ * <p/>
+ * As with an HDR histogram each power of two range is divided into
+ * the same number of linear sub-buckets, so any recorded value is
+ * reported to within about 3% at a fixed memory cost. Bucket counts
+ * are striped counters so that recording from many threads at once
+ * does not contend.
+ *
+ * @author Takis Diakoumis
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** values from 2^40 ns (about 18 minutes) are counted in the last bucket */
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+
+    private final LongAdder[] counts;
+
+    private final LongAdder count;
+
+    private final LongAdder sum;
+
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+
+        counts = new LongAdder[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+
+            counts[i] = new LongAdder();
+        }
+
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records the specified duration in nanoseconds.
+     */
+    public void record(long nanos) {
+
+        long value = Math.max(0, nanos);
+
+        counts[indexOf(value)].increment();
+        count.increment();
+        sum.add(value);
+
+        long current;
+        while (value > (current = max.get())) {
+
+            if (max.compareAndSet(current, value)) {
+
+                break;
+            }
+
+        }
+
+    }
+
+    public long getCount() {
+
+        return count.sum();
+    }
+
+    /**
+     * Returns the total of all recorded durations in nanoseconds.
+     */
+    public long getTotal() {
+
+        return sum.sum();
+    }
+
+    public long getMean() {
+
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    public long getMax() {
+
+        return max.get();
+    }
+
+    /**
+     * Returns the duration in nanoseconds that the specified
+     * percentage of the recorded durations did not exceed.
+     */
+    public long getPercentile(double percentile) {
+
+        long n = count.sum();
+        if (n == 0) {
+
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100d));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+
+            seen += counts[i].sum();
+            if (seen >= rank) {
+
+                return Math.min(highestValueOf(i), max.get());
+            }
+
+        }
+
+        return max.get();
+    }
+
+    public void reset() {
+
+        for (LongAdder bucket : counts) {
+
+            bucket.reset();
+        }
+
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+
+            return BUCKET_COUNT - 1;
+        }
+
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueOf(int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * DefaultSchemaChangeEvent.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.event;
+
+import org.executequery.databasemediators.DatabaseConnection;
+
+/**
+ * Defines a change of a schema object made by an executed
+ * and committed DDL statement.
+ *
+ * @author Takis Diakoumis
+ */
+public class DefaultSchemaChangeEvent extends AbstractApplicationEvent
+        implements SchemaChangeEvent {
+
+    private final int queryType;
+
+    private final int objectType;
+
+    private final String objectName;
+
+    public DefaultSchemaChangeEvent(DatabaseConnection databaseConnection, String method,
+                                    int queryType, int objectType, String objectName) {
+
+        super(databaseConnection, method);
+        this.queryType = queryType;
+        this.objectType = objectType;
+        this.objectName = objectName;
+    }
+
+    public DatabaseConnection getDatabaseConnection() {
+
+        return (DatabaseConnection) super.getSource();
+    }
+
+    public int getQueryType() {
+
+        return queryType;
+    }
+
+    public int getObjectType() {
+
+        return objectType;
+    }
+
+    public String getObjectName() {
+
+        return objectName;
+    }
+
+}
+
@@ -0,0 +1,61 @@
+/*
+ * SchemaChangeEvent.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.event;
+
+import org.executequery.databasemediators.DatabaseConnection;
+
+/**
+ * Defines a change of a schema object made by an executed
+ * and committed DDL statement.
+ *
+ * @author Takis Diakoumis
+ */
+public interface SchemaChangeEvent extends ApplicationEvent {
+
+    /**
+     * Method name for schema changed
+     */
+    String SCHEMA_CHANGED = "schemaChanged";
+
+    /**
+     * Returns the connection the statement was executed on.
+     */
+    DatabaseConnection getDatabaseConnection();
+
+    /**
+     * Returns the type of the executed statement as classified
+     * in <code>QueryTypes</code>.
+     */
+    int getQueryType();
+
+    /**
+     * Returns the type of the changed object as defined
+     * in <code>NamedObject</code>.
+     */
+    int getObjectType();
+
+    /**
+     * Returns the name of the changed object.
+     */
+    String getObjectName();
+
+}
+
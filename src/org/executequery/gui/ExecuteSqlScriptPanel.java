@@ -107,7 +107,10 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
 
     private boolean resetButtons;
 
-    private String script = null;
+    /**
+     * Script file too large for the editor - executed straight from disk.
+     */
+    private File scriptFile;
 
     public ExecuteSqlScriptPanel() {
 
@@ -289,12 +292,27 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
         File file = new File(fileNameField.getText());
 
         try {
-            sqlText.setSQLText(FileUtils.loadFile(file.getPath()));
+            loadScript(file);
         } catch (IOException e) {
             GUIUtilities.displayErrorMessage(bundleString("error.load-file"));
         }
     }
 
+    private void loadScript(File file) throws IOException {
+
+        if (file.length() < MAX_LENGTH_TEXT_PANE) {
+
+            scriptFile = null;
+            sqlText.setSQLText(FileUtils.loadFile(file.getPath()));
+
+        } else {
+
+            scriptFile = file;
+            sqlText.setSQLText(bundleString("file-too-large"));
+        }
+
+    }
+
     public boolean logOutput() {
 
         return logOutputCheckBox.isSelected();
@@ -317,10 +335,7 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
 
         File file = fileChooser.getSelectedFile();
         fileNameField.setText(file.getAbsolutePath());
-        script = FileUtils.loadFile(file.getPath());
-        if(script.length()<MAX_LENGTH_TEXT_PANE)
-            sqlText.setSQLText(script);
-        else sqlText.setSQLText("'File is very big.It can not opened in editor'");
+        loadScript(file);
     }
 
     private boolean fieldsValid() {
@@ -551,12 +566,15 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
                 if (selectedHost != null)
                     connection = selectedHost.getDatabaseConnection();
             }
-            if (script == null || script.length() < MAX_LENGTH_TEXT_PANE)
-                script = sqlText.getSQLText();
-            sqlStatementResult = sqlScriptRunner.execute(
-                    connection,
-                    script,
-                    (ActionOnError) actionOnErrorCombo.getSelectedItem());
+            ActionOnError actionOnError = (ActionOnError) actionOnErrorCombo.getSelectedItem();
+            if (scriptFile != null) {
+
+                sqlStatementResult = sqlScriptRunner.execute(connection, scriptFile, actionOnError);
+
+            } else {
+
+                sqlStatementResult = sqlScriptRunner.execute(connection, sqlText.getSQLText(), actionOnError);
+            }
 
         } finally {
 
@@ -683,6 +701,16 @@ public class ExecuteSqlScriptPanel extends DefaultTabViewActionPanel
         });
     }
 
+    public void progress(long position, long length) {
+
+        final int percent = length > 0 ? (int) (position * 100 / length) : 100;
+        GUIUtils.invokeLater(new Runnable() {
+            public void run() {
+                statusBar.setStatusText(Bundles.get(ExecuteSqlScriptPanel.class, "executing-progress", percent));
+            }
+        });
+    }
+
     public void actionMessage(final String message) {
         ThreadUtils.invokeAndWait(new Runnable() {
             public void run() {
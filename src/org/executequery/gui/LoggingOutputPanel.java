@@ -75,6 +75,11 @@ public class LoggingOutputPanel extends JPanel
         }
     }
 
+    public void setMaxLines(int maxLines) {
+
+        outputPane.setMaxLines(maxLines);
+    }
+
     public void append(String text) {
 
         outputPane.append(text);
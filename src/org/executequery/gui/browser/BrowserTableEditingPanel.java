@@ -578,7 +578,7 @@ public class BrowserTableEditingPanel extends AbstractFormObjectViewPanel
 
             table.resetRowsCount();
             updateRowCount(bundleString("quering"));
-            reloadDataRowCount();
+            reloadDataRowCount(true);
         }
     }
 
@@ -905,7 +905,7 @@ public class BrowserTableEditingPanel extends AbstractFormObjectViewPanel
         reloadView();
         if (SystemProperties.getBooleanProperty("user", "browser.query.row.count")) {
 
-            reloadDataRowCount();
+            reloadDataRowCount(false);
         }
 
         stateChanged(null);
@@ -973,7 +973,11 @@ public class BrowserTableEditingPanel extends AbstractFormObjectViewPanel
     private SwingWorker worker;
     private Timer timer;
 
-    private void reloadDataRowCount() {
+    /**
+     * Reloads the data row count - estimated from the index statistics
+     * unless the exact count (a full scan of the table) is requested.
+     */
+    private void reloadDataRowCount(final boolean exact) {
 
         if (timer != null) {
 
@@ -986,19 +990,20 @@ public class BrowserTableEditingPanel extends AbstractFormObjectViewPanel
             @Override
             public void run() {
 
-                updateDataRowCount();
+                updateDataRowCount(exact);
             }
         }, 600);
 
     }
 
-    private void updateDataRowCount() {
+    private void updateDataRowCount(final boolean exact) {
 
         if (worker != null) {
 
             if (loadingRowCount) {
 
                 Log.debug("Interrupting worker for data row count");
+                table.cancelDataRowCount();
             }
             worker.interrupt();
         }
@@ -1014,6 +1019,12 @@ public class BrowserTableEditingPanel extends AbstractFormObjectViewPanel
                         Log.error("Error load data row count:", e);
                     }
 
+                    if (!exact) {
+
+                        long estimate = table.getEstimatedRowCount();
+                        return estimate < 0 ? bundleString("row-count-unknown") : "~" + estimate;
+                    }
+
                     Log.debug("Retrieving data row count for table - " + table.getName());
                     return String.valueOf(table.getDataRowCount());
 
@@ -0,0 +1,606 @@
+/*
+ * ConnectionStatisticsPanel.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.browser;
+
+import org.executequery.GUIUtilities;
+import org.executequery.base.TabView;
+import org.executequery.components.FileChooserDialog;
+import org.executequery.datasource.LeakDetector;
+import org.executequery.datasource.metrics.ConnectionMetrics;
+import org.executequery.datasource.metrics.ConnectionMetricsRegistry;
+import org.executequery.datasource.metrics.LatencyHistogram;
+import org.executequery.localization.Bundles;
+import org.executequery.log.Log;
+import org.executequery.sql.QueryExecutionScheduler;
+import org.executequery.sql.RunningQuery;
+import org.underworldlabs.util.FileUtils;
+
+import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Shows the borrow, prepare, execute and fetch timings
+ * of each connection as recorded in the connection metrics,
+ * the queries running and the resource leaks reported by
+ * the leak detector.
+ *
+ * @author Takis Diakoumis
+ */
+public class ConnectionStatisticsPanel extends JPanel implements TabView {
+
+    public static final String TITLE = Bundles.get(ConnectionStatisticsPanel.class, "title");
+
+    /** the refresh interval of the table in milliseconds */
+    private static final int REFRESH_INTERVAL = 1000;
+
+    private StatisticsTableModel model;
+
+    private LeaksTableModel leaksModel;
+
+    private RunningQueriesTableModel runningModel;
+
+    private JTable runningTable;
+
+    private JLabel openResourcesLabel;
+
+    private Timer refreshTimer;
+
+    public ConnectionStatisticsPanel() {
+
+        super(new BorderLayout());
+        init();
+    }
+
+    private void init() {
+
+        model = new StatisticsTableModel();
+
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.getTableHeader().setReorderingAllowed(false);
+
+        JButton refreshButton = new JButton(bundleString("Refresh"));
+        refreshButton.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                model.refresh();
+            }
+
+        });
+
+        JButton resetButton = new JButton(bundleString("Reset"));
+        resetButton.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                ConnectionMetricsRegistry.resetAll();
+                model.refresh();
+            }
+
+        });
+
+        JButton exportJsonButton = new JButton(bundleString("ExportJson"));
+        exportJsonButton.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                export(ConnectionMetricsRegistry.toJson());
+            }
+
+        });
+
+        JButton exportCsvButton = new JButton(bundleString("ExportCsv"));
+        exportCsvButton.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                export(ConnectionMetricsRegistry.toCsv());
+            }
+
+        });
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(resetButton);
+        buttonPanel.add(exportJsonButton);
+        buttonPanel.add(exportCsvButton);
+
+        JPanel statisticsPanel = new JPanel(new BorderLayout());
+        statisticsPanel.add(buttonPanel, BorderLayout.NORTH);
+        statisticsPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.add(bundleString("Statistics"), statisticsPanel);
+        tabbedPane.add(bundleString("RunningQueries"), createRunningQueriesPanel());
+        tabbedPane.add(bundleString("Leaks"), createLeaksPanel());
+        add(tabbedPane, BorderLayout.CENTER);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL, new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                refresh();
+            }
+
+        });
+
+        refresh();
+        refreshTimer.start();
+    }
+
+    private JPanel createRunningQueriesPanel() {
+
+        runningModel = new RunningQueriesTableModel();
+
+        runningTable = new JTable(runningModel);
+        runningTable.getTableHeader().setReorderingAllowed(false);
+        runningTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+        JButton cancelButton = new JButton(bundleString("Cancel"));
+        cancelButton.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                int row = runningTable.getSelectedRow();
+                if (row != -1) {
+
+                    runningModel.getQuery(row).cancel();
+                    refresh();
+                }
+
+            }
+
+        });
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttonPanel.add(cancelButton);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(buttonPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(runningTable), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private JPanel createLeaksPanel() {
+
+        leaksModel = new LeaksTableModel();
+
+        final JTable table = new JTable(leaksModel);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+        final JTextArea stackArea = new JTextArea();
+        stackArea.setEditable(false);
+        stackArea.setFont(new Font("monospaced", Font.PLAIN, 12));
+
+        table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+
+            public void valueChanged(ListSelectionEvent e) {
+
+                int row = table.getSelectedRow();
+                stackArea.setText(row != -1 ? leaksModel.getLeak(row).getAllocationStack() : "");
+                stackArea.setCaretPosition(0);
+            }
+
+        });
+
+        JButton clearButton = new JButton(bundleString("Clear"));
+        clearButton.addActionListener(new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                LeakDetector.clearLeaks();
+                refresh();
+            }
+
+        });
+
+        openResourcesLabel = new JLabel();
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttonPanel.add(clearButton);
+        buttonPanel.add(openResourcesLabel);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(table), new JScrollPane(stackArea));
+        splitPane.setResizeWeight(0.6);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(buttonPanel, BorderLayout.NORTH);
+        panel.add(splitPane, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private void refresh() {
+
+        model.refresh();
+        leaksModel.refresh();
+
+        // keep the selected query selected as the rows are replaced
+        int row = runningTable.getSelectedRow();
+        long selectedId = row != -1 ? runningModel.getQuery(row).getId() : -1;
+        runningModel.refresh();
+        row = runningModel.indexOf(selectedId);
+        if (row != -1) {
+
+            runningTable.setRowSelectionInterval(row, row);
+        }
+
+        if (LeakDetector.isEnabled()) {
+
+            openResourcesLabel.setText(bundleString("OpenResources") + " " + LeakDetector.getOpenCount());
+
+        } else {
+
+            openResourcesLabel.setText(bundleString("LeakDetectionDisabled"));
+        }
+
+    }
+
+    private void export(String text) {
+
+        FileChooserDialog fileChooser = new FileChooserDialog();
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+        int result = fileChooser.showSaveDialog(this);
+        if (result == JFileChooser.CANCEL_OPTION || fileChooser.getSelectedFile() == null) {
+
+            return;
+        }
+
+        try {
+
+            FileUtils.writeFile(fileChooser.getSelectedFile(), text);
+
+        } catch (IOException e) {
+
+            Log.error("Error writing connection statistics to file", e);
+            GUIUtilities.displayErrorMessage(bundleString("ExportError") + "\n" + e.getMessage());
+        }
+
+    }
+
+    @Override
+    public boolean tabViewClosing() {
+
+        refreshTimer.stop();
+        return true;
+    }
+
+    @Override
+    public boolean tabViewSelected() {
+
+        refresh();
+        refreshTimer.start();
+        return true;
+    }
+
+    @Override
+    public boolean tabViewDeselected() {
+
+        refreshTimer.stop();
+        return true;
+    }
+
+    public static String bundleString(String key) {
+        return Bundles.get(ConnectionStatisticsPanel.class, key);
+    }
+
+    /**
+     * One row per connection and timing, with times in milliseconds.
+     */
+    static class StatisticsTableModel extends AbstractTableModel {
+
+        private final String[] columns;
+
+        private final List<Object[]> rows;
+
+        StatisticsTableModel() {
+
+            double[] percentiles = ConnectionMetricsRegistry.PERCENTILES;
+
+            columns = new String[9 + percentiles.length];
+            columns[0] = bundleString("Connection");
+            columns[1] = bundleString("Timing");
+            columns[2] = bundleString("Count");
+            columns[3] = bundleString("Mean");
+            for (int i = 0; i < percentiles.length; i++) {
+
+                columns[4 + i] = "p" + ConnectionMetricsRegistry.percentileName(percentiles[i]).replace('_', '.');
+            }
+            columns[4 + percentiles.length] = bundleString("Max");
+            columns[5 + percentiles.length] = bundleString("Rows");
+            columns[6 + percentiles.length] = bundleString("Bytes");
+            columns[7 + percentiles.length] = bundleString("CacheHits");
+            columns[8 + percentiles.length] = bundleString("CacheMisses");
+
+            rows = new ArrayList<Object[]>();
+        }
+
+        void refresh() {
+
+            double[] percentiles = ConnectionMetricsRegistry.PERCENTILES;
+
+            rows.clear();
+            for (ConnectionMetrics metrics : ConnectionMetricsRegistry.getAll()) {
+
+                for (ConnectionMetrics.Timing timing : ConnectionMetrics.Timing.values()) {
+
+                    LatencyHistogram histogram = metrics.getHistogram(timing);
+
+                    Object[] row = new Object[columns.length];
+                    row[0] = metrics.getName();
+                    row[1] = bundleString(timing.name());
+                    row[2] = histogram.getCount();
+                    row[3] = millis(histogram.getMean());
+                    for (int i = 0; i < percentiles.length; i++) {
+
+                        row[4 + i] = millis(histogram.getPercentile(percentiles[i]));
+                    }
+                    row[4 + percentiles.length] = millis(histogram.getMax());
+                    row[5 + percentiles.length] = metrics.getRows();
+                    row[6 + percentiles.length] = metrics.getBytes();
+                    row[7 + percentiles.length] = metrics.getStatementCacheHits();
+                    row[8 + percentiles.length] = metrics.getStatementCacheMisses();
+
+                    rows.add(row);
+                }
+
+            }
+
+            fireTableDataChanged();
+        }
+
+        private static Double millis(long nanos) {
+
+            return Math.round(nanos / 1000d) / 1000d;
+        }
+
+        public int getRowCount() {
+
+            return rows.size();
+        }
+
+        public int getColumnCount() {
+
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+
+            return columns[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+
+            if (column < 2) {
+
+                return String.class;
+            }
+
+            if (column == 2 || column >= columns.length - 4) {
+
+                return Long.class;
+            }
+
+            return Double.class;
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+
+            return rows.get(rowIndex)[columnIndex];
+        }
+
+    }
+
+    /**
+     * The queries running or waiting to run, with the elapsed time in seconds.
+     */
+    static class RunningQueriesTableModel extends AbstractTableModel {
+
+        private static final int MAX_QUERY_LENGTH = 200;
+
+        private final String[] columns = {
+                bundleString("Id"),
+                bundleString("Connection"),
+                bundleString("Status"),
+                bundleString("Elapsed"),
+                bundleString("Rows"),
+                bundleString("Query")
+        };
+
+        private List<RunningQuery> queries = new ArrayList<RunningQuery>();
+
+        void refresh() {
+
+            queries = QueryExecutionScheduler.getRunning();
+            fireTableDataChanged();
+        }
+
+        RunningQuery getQuery(int row) {
+
+            return queries.get(row);
+        }
+
+        int indexOf(long id) {
+
+            for (int i = 0; i < queries.size(); i++) {
+
+                if (queries.get(i).getId() == id) {
+
+                    return i;
+                }
+
+            }
+
+            return -1;
+        }
+
+        public int getRowCount() {
+
+            return queries.size();
+        }
+
+        public int getColumnCount() {
+
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+
+            return columns[column];
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+
+            RunningQuery query = queries.get(rowIndex);
+            switch (columnIndex) {
+
+                case 0:
+                    return query.getId();
+
+                case 1:
+                    return query.getConnectionName();
+
+                case 2:
+                    if (query.isCancelled()) {
+
+                        return bundleString("Cancelling");
+                    }
+                    return bundleString(query.isStarted() ? "Running" : "Queued");
+
+                case 3:
+                    return query.getElapsed() / 1000d;
+
+                case 4:
+                    return query.getRows();
+
+                default:
+                    String sql = query.getSql().trim().replaceAll("\\s+", " ");
+                    return sql.length() > MAX_QUERY_LENGTH ? sql.substring(0, MAX_QUERY_LENGTH) + "..." : sql;
+            }
+
+        }
+
+    }
+
+    /**
+     * The reported leaks, most recent first.
+     */
+    static class LeaksTableModel extends AbstractTableModel {
+
+        private final String[] columns = {
+                bundleString("Reported"),
+                bundleString("Kind"),
+                bundleString("Connection"),
+                bundleString("Status"),
+                bundleString("Thread")
+        };
+
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        private List<LeakDetector.Leak> leaks = new ArrayList<LeakDetector.Leak>();
+
+        void refresh() {
+
+            List<LeakDetector.Leak> current = LeakDetector.getLeaks();
+
+            // the rows do not change while the number of leaks does not
+            if (current.size() == leaks.size()
+                    && (current.isEmpty() || current.get(current.size() - 1) == leaks.get(0))) {
+
+                return;
+            }
+
+            leaks = new ArrayList<LeakDetector.Leak>(current.size());
+            for (int i = current.size() - 1; i >= 0; i--) {
+
+                leaks.add(current.get(i));
+            }
+
+            fireTableDataChanged();
+        }
+
+        LeakDetector.Leak getLeak(int row) {
+
+            return leaks.get(row);
+        }
+
+        public int getRowCount() {
+
+            return leaks.size();
+        }
+
+        public int getColumnCount() {
+
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+
+            return columns[column];
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+
+            LeakDetector.Leak leak = leaks.get(rowIndex);
+            switch (columnIndex) {
+
+                case 0:
+                    return dateFormat.format(new Date(leak.getReported()));
+
+                case 1:
+                    return bundleString(leak.getKind().name());
+
+                case 2:
+                    return leak.getDescription();
+
+                case 3:
+                    if (leak.isStillOpen()) {
+
+                        return bundleString("StillOpen") + " " + (leak.getReported() - leak.getAllocated()) + " ms";
+                    }
+                    return bundleString("NotClosed");
+
+                default:
+                    return leak.getThread();
+            }
+
+        }
+
+    }
+
+}
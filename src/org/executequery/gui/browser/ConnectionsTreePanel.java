@@ -66,6 +66,7 @@ import java.util.List;
 public class ConnectionsTreePanel extends TreePanel
         implements ConnectionListener,
         ConnectionRepositoryListener,
+        SchemaChangeListener,
         UserPreferenceListener {
 
   public static final String TITLE = Bundles.get(ConnectionsTreePanel.class, "Connections");
@@ -82,6 +83,8 @@ public class ConnectionsTreePanel extends TreePanel
 
   private BrowserController controller;
 
+  private SchemaChangeRefresher schemaChangeRefresher;
+
   private TreePath oldSelectionPath;
 
   private BrowserTreePopupMenu popupMenu;
@@ -1085,6 +1088,11 @@ public class ConnectionsTreePanel extends TreePanel
     }
 
     nodeStructureChanged(node);
+
+    if (node instanceof DatabaseHostNode) {
+
+      MetaTagLoader.load(this, (DatabaseHostNode) node);
+    }
   }
 
   /**
@@ -1122,9 +1130,21 @@ public class ConnectionsTreePanel extends TreePanel
 
   }
 
+  /**
+   * Indicates a schema object has been changed by an executed
+   * statement - reloading only the object and its folder.
+   *
+   * @param the encapsulating event
+   */
+  public void schemaChanged(SchemaChangeEvent schemaChangeEvent) {
+
+    schemaChangeRefresher.schemaChanged(schemaChangeEvent);
+  }
+
   public boolean canHandleEvent(ApplicationEvent event) {
     return (event instanceof ConnectionEvent)
         || (event instanceof UserPreferenceEvent)
+        || (event instanceof SchemaChangeEvent)
         || (event instanceof ConnectionRepositoryEvent
             && "connectionImported".equals(event.getMethod()));
   }
@@ -1297,6 +1317,13 @@ public class ConnectionsTreePanel extends TreePanel
     return new DatabaseObjectChangeProvider(namedObject);
   }
 
+  /**
+   * Populates the specified node if not yet populated.
+   */
+  void expandNode(DatabaseObjectNode node) {
+    doNodeExpansion(node);
+  }
+
   private synchronized void doNodeExpansion(DatabaseObjectNode node) {
     try {
         if (node.getChildCount() == 0) {
@@ -1378,6 +1405,7 @@ public class ConnectionsTreePanel extends TreePanel
     rootSelectOnDisconnect = false;
 
     controller = new BrowserController(this);
+    schemaChangeRefresher = new SchemaChangeRefresher(this);
     tree = new SchemaTree(createTreeStructure(), this);
 
     MouseHandler mouseHandler = new MouseHandler();
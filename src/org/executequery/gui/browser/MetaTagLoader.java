@@ -0,0 +1,241 @@
+/*
+ * MetaTagLoader.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.browser;
+
+import org.executequery.databaseobjects.DatabaseHost;
+import org.executequery.databaseobjects.DatabaseMetaTag;
+import org.executequery.gui.browser.nodes.DatabaseHostNode;
+import org.executequery.gui.browser.nodes.DatabaseObjectNode;
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+import org.underworldlabs.swing.GUIUtils;
+import org.underworldlabs.util.SystemProperties;
+
+import java.util.Enumeration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the folders of a newly connected host in the background,
+ * several at a time, each merged into the tree as it completes.
+ * <p/>
+ * The number of folders of one host loaded at a time is set by the
+ * user, each load running its queries on its own pooled connection.
+ * The loads of all hosts share a bounded pool of worker threads. With
+ * the number set to zero folders are loaded when first expanded.
+ * Only the objects are loaded by the workers, the loaded nodes added
+ * to the tree on the event dispatch thread.
+ *
+ * @author Takis Diakoumis
+ */
+final class MetaTagLoader {
+
+    private static final String THREADS_KEY = "connection.metadata.load.threads";
+
+    /**
+     * The number of workers shared by the loads of all hosts.
+     */
+    private static final int MAX_THREADS = 8;
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Loads the folders of the specified host node, if enabled.
+     *
+     * @param panel    the tree panel to merge loaded folders into
+     * @param hostNode the connected host node
+     */
+    static void load(final ConnectionsTreePanel panel, final DatabaseHostNode hostNode) {
+
+        final int concurrency = SystemProperties.getIntProperty("user", THREADS_KEY);
+        if (concurrency <= 0) {
+
+            return;
+        }
+
+        executor().execute(new Runnable() {
+
+            public void run() {
+
+                // the folders themselves are created first
+                try {
+
+                    hostNode.getChildObjects();
+
+                } catch (DataSourceException e) {
+
+                    Log.debug("Error loading the folders of " + hostNode + ": " + e.getMessage());
+                    return;
+                }
+
+                final Queue<DatabaseObjectNode> folders = new ConcurrentLinkedQueue<DatabaseObjectNode>();
+                GUIUtils.invokeAndWait(new Runnable() {
+
+                    public void run() {
+
+                        panel.expandNode(hostNode);
+                        for (Enumeration<?> children = hostNode.children(); children.hasMoreElements(); ) {
+
+                            Object child = children.nextElement();
+                            if (child instanceof DatabaseObjectNode
+                                    && ((DatabaseObjectNode) child).getDatabaseObject() instanceof DatabaseMetaTag) {
+
+                                folders.add((DatabaseObjectNode) child);
+                            }
+
+                        }
+
+                    }
+
+                });
+
+                int lanes = Math.min(concurrency, folders.size());
+                if (lanes == 0) {
+
+                    return;
+                }
+
+                AtomicInteger remaining = new AtomicInteger(lanes);
+                long start = System.currentTimeMillis();
+                for (int i = 0; i < lanes; i++) {
+
+                    executor().execute(new Lane(panel, hostNode, folders, remaining, start));
+                }
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Loads folders of one host one after another until none remain.
+     */
+    private static final class Lane implements Runnable {
+
+        private final ConnectionsTreePanel panel;
+
+        private final DatabaseHostNode hostNode;
+
+        private final Queue<DatabaseObjectNode> folders;
+
+        private final AtomicInteger remaining;
+
+        private final long start;
+
+        Lane(ConnectionsTreePanel panel, DatabaseHostNode hostNode,
+             Queue<DatabaseObjectNode> folders, AtomicInteger remaining, long start) {
+
+            this.panel = panel;
+            this.hostNode = hostNode;
+            this.folders = folders;
+            this.remaining = remaining;
+            this.start = start;
+        }
+
+        public void run() {
+
+            DatabaseHost host = (DatabaseHost) hostNode.getDatabaseObject();
+
+            DatabaseObjectNode folder;
+            while (hostNode.isConnected() && (folder = folders.poll()) != null) {
+
+                try {
+
+                    ((DatabaseMetaTag) folder.getDatabaseObject()).getObjects();
+                    host.incCountFinishedMetaTags();
+                    populate(folder);
+
+                } catch (DataSourceException e) {
+
+                    Log.debug("Error loading " + folder + " of " + hostNode + ": " + e.getMessage());
+                }
+
+            }
+
+            if (remaining.decrementAndGet() == 0) {
+
+                Log.debug("Loaded " + host.countFinishedMetaTags() + " folders of " + hostNode
+                        + " in " + (System.currentTimeMillis() - start) + " ms");
+            }
+
+        }
+
+        /**
+         * Adds the nodes of the objects of the specified
+         * folder, already loaded, to the tree.
+         */
+        private void populate(final DatabaseObjectNode folder) {
+
+            GUIUtils.invokeLater(new Runnable() {
+
+                public void run() {
+
+                    // the folder may have been removed by a reload meanwhile
+                    if (folder.getParent() == hostNode) {
+
+                        panel.expandNode(folder);
+                    }
+
+                }
+
+            });
+
+        }
+
+    }
+
+    private static synchronized ThreadPoolExecutor executor() {
+
+        if (executor == null) {
+
+            executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                    THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+
+                    Thread thread = new Thread(runnable, "MetaTagLoader-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        return executor;
+    }
+
+    private MetaTagLoader() {
+    }
+
+}
@@ -0,0 +1,636 @@
+/*
+ * SchemaChangeRefresher.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.browser;
+
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.databasemediators.QueryTypes;
+import org.executequery.databaseobjects.DatabaseMetaTag;
+import org.executequery.databaseobjects.NamedObject;
+import org.executequery.databaseobjects.impl.DefaultDatabaseMetaTag;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshot;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshots;
+import org.executequery.event.SchemaChangeEvent;
+import org.executequery.gui.browser.nodes.DatabaseHostNode;
+import org.executequery.gui.browser.nodes.DatabaseObjectNode;
+import org.executequery.gui.browser.tree.SchemaTree;
+import org.executequery.log.Log;
+import org.underworldlabs.jdbc.DataSourceException;
+import org.underworldlabs.swing.GUIUtils;
+import org.underworldlabs.swing.util.SwingWorker;
+
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies the schema changes made by executed statements to the
+ * connections tree, in place of reloading the whole connection.
+ * <p/>
+ * Only the folders listing a changed object are listed again, the
+ * nodes of unchanged objects kept with whatever they have loaded.
+ * An altered object is reloaded by itself. Folders not yet loaded are
+ * reset to load when next expanded. Expanded nodes and the selection
+ * within a refreshed node are restored by name.
+ * <p/>
+ * Objects are loaded again in the background, the tree read and
+ * changed on the event dispatch thread. Changes arriving together
+ * are applied at once.
+ *
+ * @author Takis Diakoumis
+ */
+final class SchemaChangeRefresher {
+
+    private final ConnectionsTreePanel panel;
+
+    private final List<SchemaChangeEvent> pending = new ArrayList<SchemaChangeEvent>();
+
+    private boolean refreshing;
+
+    SchemaChangeRefresher(ConnectionsTreePanel panel) {
+
+        this.panel = panel;
+    }
+
+    /**
+     * Queues the specified change to be applied to the tree.
+     */
+    void schemaChanged(SchemaChangeEvent event) {
+
+        synchronized (pending) {
+
+            pending.add(event);
+            if (refreshing) {
+
+                return;
+            }
+
+            refreshing = true;
+        }
+
+        new SwingWorker() {
+
+            public Object construct() {
+
+                refreshPending();
+                return null;
+            }
+
+        }.start();
+
+    }
+
+    private void refreshPending() {
+
+        while (true) {
+
+            List<SchemaChangeEvent> events;
+            synchronized (pending) {
+
+                if (pending.isEmpty()) {
+
+                    refreshing = false;
+                    return;
+                }
+
+                events = new ArrayList<SchemaChangeEvent>(pending);
+                pending.clear();
+            }
+
+            try {
+
+                refresh(events);
+
+            } catch (RuntimeException e) {
+
+                Log.error("Error applying schema changes to the connections tree: " + e.getMessage(), e);
+            }
+
+        }
+
+    }
+
+    private void refresh(List<SchemaChangeEvent> events) {
+
+        Map<DatabaseConnection, DatabaseHostNode> hostNodes = hostNodes(events);
+
+        Map<DatabaseHostNode, Changes> changes = new LinkedHashMap<DatabaseHostNode, Changes>();
+        for (SchemaChangeEvent event : events) {
+
+            DatabaseConnection databaseConnection = event.getDatabaseConnection();
+            DatabaseHostNode node = hostNodes.get(databaseConnection);
+            if (node == null) {
+
+                continue;
+            }
+
+            int objectType = event.getObjectType();
+            String objectName = event.getObjectName();
+            invalidateSnapshot(databaseConnection, objectType, objectName);
+
+            Changes hostChanges = changes.get(node);
+            if (hostChanges == null) {
+
+                hostChanges = new Changes();
+                changes.put(node, hostChanges);
+            }
+
+            boolean altered = isAlter(event.getQueryType());
+            for (int folderType : folderTypes(objectType)) {
+
+                hostChanges.add(altered ? hostChanges.altered : hostChanges.listed, folderType, objectName);
+            }
+
+            // indices and triggers of relations are listed by folders of their own
+            if (objectType == NamedObject.TABLE) {
+
+                hostChanges.add(hostChanges.listed, NamedObject.INDEX, null);
+            }
+
+            if (!altered && (objectType == NamedObject.TABLE || objectType == NamedObject.VIEW)) {
+
+                hostChanges.add(hostChanges.listed, NamedObject.TRIGGER, null);
+            }
+
+        }
+
+        for (Map.Entry<DatabaseHostNode, Changes> entry : changes.entrySet()) {
+
+            refresh(entry.getKey(), entry.getValue());
+        }
+
+    }
+
+    /**
+     * Returns the connected host nodes of the connections
+     * of the specified changes.
+     */
+    private Map<DatabaseConnection, DatabaseHostNode> hostNodes(final List<SchemaChangeEvent> events) {
+
+        final Map<DatabaseConnection, DatabaseHostNode> hostNodes = new HashMap<DatabaseConnection, DatabaseHostNode>();
+        GUIUtils.invokeAndWait(new Runnable() {
+
+            public void run() {
+
+                for (SchemaChangeEvent event : events) {
+
+                    DatabaseConnection databaseConnection = event.getDatabaseConnection();
+                    DatabaseObjectNode node = panel.getHostNode(databaseConnection);
+                    if (node instanceof DatabaseHostNode && ((DatabaseHostNode) node).isConnected()) {
+
+                        hostNodes.put(databaseConnection, (DatabaseHostNode) node);
+                    }
+
+                }
+
+            }
+
+        });
+
+        return hostNodes;
+    }
+
+    private void refresh(final DatabaseHostNode hostNode, final Changes changes) {
+
+        // folders and objects with nothing loaded are reset right away,
+        // the others collected to be loaded again
+        final Map<DatabaseObjectNode, Set<String>> relisted = new LinkedHashMap<DatabaseObjectNode, Set<String>>();
+        final List<DatabaseObjectNode> reloaded = new ArrayList<DatabaseObjectNode>();
+        GUIUtils.invokeAndWait(new Runnable() {
+
+            public void run() {
+
+                for (Enumeration<?> children = hostNode.children(); children.hasMoreElements(); ) {
+
+                    Object child = children.nextElement();
+                    if (!(child instanceof DatabaseObjectNode)
+                            || !(((DatabaseObjectNode) child).getDatabaseObject() instanceof DatabaseMetaTag)) {
+
+                        continue;
+                    }
+
+                    DatabaseObjectNode folder = (DatabaseObjectNode) child;
+                    int folderType = ((DatabaseMetaTag) folder.getDatabaseObject()).getSubType();
+
+                    Set<String> listed = changes.listed.get(folderType);
+                    Set<String> altered = changes.altered.get(folderType);
+                    if (listed != null) {
+
+                        if (altered != null) {
+
+                            listed.addAll(altered);
+                        }
+
+                        if (folder.getChildCount() == 0 && !tree().isExpanded(new TreePath(folder.getPath()))) {
+
+                            resetFolder(folder);
+
+                        } else {
+
+                            relisted.put(folder, listed);
+                        }
+
+                    } else if (altered != null) {
+
+                        for (String name : altered) {
+
+                            DatabaseObjectNode node = childNamed(folder, name);
+                            if (node == null) {
+
+                                continue;
+                            }
+
+                            if (node.getChildCount() == 0) {
+
+                                reset(node);
+                                reselect(node);
+
+                            } else {
+
+                                reloaded.add(node);
+                            }
+
+                        }
+
+                    }
+
+                }
+
+            }
+
+        });
+
+        for (Map.Entry<DatabaseObjectNode, Set<String>> entry : relisted.entrySet()) {
+
+            relist(entry.getKey(), entry.getValue());
+        }
+
+        for (DatabaseObjectNode node : reloaded) {
+
+            reload(node);
+        }
+
+    }
+
+    /**
+     * Lists the objects of the specified folder again, keeping the
+     * nodes of objects other than those specified.
+     */
+    private void relist(final DatabaseObjectNode folder, final Set<String> changed) {
+
+        resetObjects(folder);
+
+        final List<DatabaseObjectNode> nodes = childObjects(folder);
+        if (nodes == null) {
+
+            return;
+        }
+
+        GUIUtils.invokeAndWait(new Runnable() {
+
+            public void run() {
+
+                Map<String, DatabaseObjectNode> existing = new HashMap<String, DatabaseObjectNode>();
+                for (Enumeration<?> children = folder.children(); children.hasMoreElements(); ) {
+
+                    Object child = children.nextElement();
+                    if (child instanceof DatabaseObjectNode) {
+
+                        DatabaseObjectNode node = (DatabaseObjectNode) child;
+                        existing.put(nameOf(node), node);
+                    }
+
+                }
+
+                for (int i = 0; i < nodes.size(); i++) {
+
+                    String name = nameOf(nodes.get(i));
+                    DatabaseObjectNode node = existing.get(name);
+                    if (node != null && !changed.contains(name)) {
+
+                        nodes.set(i, node);
+                    }
+
+                }
+
+                replaceChildren(folder, nodes);
+            }
+
+        });
+
+    }
+
+    /**
+     * Reloads the specified object node and loads its children again.
+     */
+    private void reload(final DatabaseObjectNode node) {
+
+        node.getDatabaseObject().reset();
+
+        final List<DatabaseObjectNode> nodes = childObjects(node);
+        GUIUtils.invokeAndWait(new Runnable() {
+
+            public void run() {
+
+                if (nodes != null) {
+
+                    replaceChildren(node, nodes);
+                }
+
+                reselect(node);
+            }
+
+        });
+
+    }
+
+    /**
+     * Loads the view of the specified node again if it is selected.
+     */
+    private void reselect(DatabaseObjectNode node) {
+
+        TreePath selection = tree().getSelectionPath();
+        if (selection != null && selection.getLastPathComponent() == node) {
+
+            panel.valueChanged(node);
+        }
+
+    }
+
+    private void reset(DatabaseObjectNode node) {
+
+        node.reset();
+        panel.nodeStructureChanged(node);
+    }
+
+    private void resetFolder(DatabaseObjectNode folder) {
+
+        resetObjects(folder);
+        folder.resetChildren();
+        panel.nodeStructureChanged(folder);
+    }
+
+    /**
+     * Marks the objects of the specified folder to be listed again,
+     * keeping the metadata snapshot the changes were applied to.
+     */
+    private static void resetObjects(DatabaseObjectNode folder) {
+
+        NamedObject tag = folder.getDatabaseObject();
+        if (tag instanceof DefaultDatabaseMetaTag) {
+
+            ((DefaultDatabaseMetaTag) tag).resetObjects();
+
+        } else {
+
+            tag.reset();
+        }
+
+    }
+
+    private void replaceChildren(DatabaseObjectNode node, List<DatabaseObjectNode> children) {
+
+        SchemaTree tree = tree();
+        TreePath path = new TreePath(node.getPath());
+        boolean expanded = tree.isExpanded(path);
+
+        List<List<String>> expandedPaths = new ArrayList<List<String>>();
+        Enumeration<TreePath> descendants = tree.getExpandedDescendants(path);
+        if (descendants != null) {
+
+            while (descendants.hasMoreElements()) {
+
+                TreePath descendant = descendants.nextElement();
+                if (!descendant.equals(path)) {
+
+                    expandedPaths.add(namesBelow(path, descendant));
+                }
+
+            }
+
+        }
+
+        TreePath selection = tree.getSelectionPath();
+        List<String> selectedNames = selection != null && path.isDescendant(selection)
+                && !selection.equals(path) ? namesBelow(path, selection) : null;
+
+        node.removeAllChildren();
+        for (DatabaseObjectNode child : children) {
+
+            node.add(child);
+        }
+
+        panel.nodeStructureChanged(node);
+        if (expanded) {
+
+            tree.expandPath(path);
+        }
+
+        for (List<String> names : expandedPaths) {
+
+            TreePath restored = resolve(path, names);
+            if (restored != null) {
+
+                tree.expandPath(restored);
+            }
+
+        }
+
+        if (selectedNames != null && tree.getSelectionPath() == null) {
+
+            TreePath restored = resolve(path, selectedNames);
+            tree.setSelectionPath(restored != null ? restored : path);
+        }
+
+    }
+
+    private List<DatabaseObjectNode> childObjects(DatabaseObjectNode node) {
+
+        try {
+
+            return node.getChildObjects();
+
+        } catch (DataSourceException e) {
+
+            Log.debug("Error reloading " + node + ": " + e.getMessage());
+            return null;
+        }
+
+    }
+
+    private SchemaTree tree() {
+
+        return panel.getTree();
+    }
+
+    /**
+     * Invalidates those objects of the metadata snapshot of the
+     * specified connection the change may have affected, to be read
+     * again by their own query. Other kinds of object are not held
+     * by the snapshot.
+     */
+    private static void invalidateSnapshot(DatabaseConnection databaseConnection, int objectType, String objectName) {
+
+        if (objectType == NamedObject.TABLE || objectType == NamedObject.GLOBAL_TEMPORARY
+                || objectType == NamedObject.VIEW) {
+
+            // constraints add indices, dropped relations drop their triggers
+            MetadataSnapshots.invalidateRelation(databaseConnection, objectName);
+            MetadataSnapshots.invalidate(databaseConnection, MetadataSnapshot.Kind.RELATIONS,
+                    MetadataSnapshot.Kind.KEYS, MetadataSnapshot.Kind.INDICES, MetadataSnapshot.Kind.TRIGGERS);
+
+        } else if (objectType == NamedObject.DOMAIN) {
+
+            // the fields of relations using the domain change their checksum
+            MetadataSnapshots.invalidate(databaseConnection, MetadataSnapshot.Kind.RELATIONS);
+
+        } else if (objectType == NamedObject.INDEX) {
+
+            MetadataSnapshots.invalidate(databaseConnection, MetadataSnapshot.Kind.INDICES);
+
+        } else if (objectType == NamedObject.TRIGGER) {
+
+            MetadataSnapshots.invalidate(databaseConnection, MetadataSnapshot.Kind.TRIGGERS);
+
+        } else if (objectType == NamedObject.PROCEDURE) {
+
+            MetadataSnapshots.invalidate(databaseConnection, MetadataSnapshot.Kind.PROCEDURES);
+        }
+
+    }
+
+    private static boolean isAlter(int queryType) {
+
+        return queryType == QueryTypes.ALTER_TABLE
+                || queryType == QueryTypes.ALTER_OBJECT
+                || queryType == QueryTypes.COMMENT;
+    }
+
+    /**
+     * Returns the types of the folders an object of
+     * the specified type may be listed in.
+     */
+    private static int[] folderTypes(int objectType) {
+
+        if (objectType == NamedObject.TABLE) {
+
+            return new int[]{NamedObject.TABLE, NamedObject.GLOBAL_TEMPORARY};
+
+        } else if (objectType == NamedObject.TRIGGER) {
+
+            return new int[]{NamedObject.TRIGGER, NamedObject.DDL_TRIGGER, NamedObject.DATABASE_TRIGGER};
+
+        } else if (objectType == NamedObject.FUNCTION) {
+
+            return new int[]{NamedObject.FUNCTION, NamedObject.UDF};
+        }
+
+        return new int[]{objectType};
+    }
+
+    private static DatabaseObjectNode childNamed(DatabaseObjectNode parent, String name) {
+
+        for (Enumeration<?> children = parent.children(); children.hasMoreElements(); ) {
+
+            Object child = children.nextElement();
+            if (child instanceof DatabaseObjectNode && name.equals(nameOf((DatabaseObjectNode) child))) {
+
+                return (DatabaseObjectNode) child;
+            }
+
+        }
+
+        return null;
+    }
+
+    private static String nameOf(DatabaseObjectNode node) {
+
+        String name = node.getName();
+        return name != null ? name.trim() : null;
+    }
+
+    private static List<String> namesBelow(TreePath ancestor, TreePath path) {
+
+        List<String> names = new ArrayList<String>();
+        for (int i = ancestor.getPathCount(); i < path.getPathCount(); i++) {
+
+            Object node = path.getPathComponent(i);
+            names.add(node instanceof DatabaseObjectNode ? nameOf((DatabaseObjectNode) node) : String.valueOf(node));
+        }
+
+        return names;
+    }
+
+    private static TreePath resolve(TreePath ancestor, List<String> names) {
+
+        TreePath path = ancestor;
+        for (String name : names) {
+
+            TreeNode parent = (TreeNode) path.getLastPathComponent();
+            DatabaseObjectNode child = parent instanceof DatabaseObjectNode && name != null
+                    ? childNamed((DatabaseObjectNode) parent, name) : null;
+            if (child == null) {
+
+                return null;
+            }
+
+            path = path.pathByAddingChild(child);
+        }
+
+        return path;
+    }
+
+    /**
+     * The folders of one host to be listed again and the
+     * objects to be reloaded, by folder type.
+     */
+    private static final class Changes {
+
+        final Map<Integer, Set<String>> listed = new HashMap<Integer, Set<String>>();
+
+        final Map<Integer, Set<String>> altered = new HashMap<Integer, Set<String>>();
+
+        void add(Map<Integer, Set<String>> changes, int folderType, String name) {
+
+            Set<String> names = changes.get(folderType);
+            if (names == null) {
+
+                names = new HashSet<String>();
+                changes.put(folderType, names);
+            }
+
+            if (name != null) {
+
+                names.add(name);
+            }
+
+        }
+
+    }
+
+}
+
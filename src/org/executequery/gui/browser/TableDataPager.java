@@ -0,0 +1,483 @@
+/*
+ * TableDataPager.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.browser;
+
+import org.apache.commons.lang.StringUtils;
+import org.executequery.databaseobjects.DatabaseObject;
+import org.executequery.gui.resultset.RecordDataItem;
+import org.executequery.gui.resultset.ResultSetColumnHeader;
+import org.underworldlabs.jdbc.DataSourceException;
+import org.underworldlabs.util.MiscUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the queries for browsing table data with the grid filter
+ * pushed down to the server as a parameterized WHERE condition and,
+ * for tables with a primary key, paging by keyset predicates on the key.
+ * <p/>
+ * The first key of recently visited pages is cached so that moving back,
+ * jumping to a row or to the last page is a single indexed query.
+ *
+ * @author Takis Diakoumis
+ */
+class TableDataPager {
+
+    private static final int CACHED_PAGE_STARTS = 64;
+
+    private static final int UNKNOWN_PAGE = -1;
+
+    private final DatabaseObject databaseObject;
+
+    private final List<ResultSetColumnHeader> columnHeaders;
+
+    private final List<String> keyColumns;
+
+    private final int[] keyIndexes;
+
+    private final Map<Integer, Object[]> pageStarts;
+
+    private int pageSize;
+
+    private String filter;
+
+    private List<Object> filterParameters;
+
+    private int pageIndex;
+
+    private Object[] firstKey;
+
+    private Object[] lastKey;
+
+    TableDataPager(DatabaseObject databaseObject,
+                   List<ResultSetColumnHeader> columnHeaders, List<String> primaryKeyColumns) {
+
+        this.databaseObject = databaseObject;
+        this.columnHeaders = columnHeaders;
+
+        keyColumns = new ArrayList<String>();
+        keyIndexes = new int[primaryKeyColumns.size()];
+        for (int i = 0; i < keyIndexes.length; i++) {
+
+            keyIndexes[i] = headerIndex(primaryKeyColumns.get(i));
+            if (keyIndexes[i] == -1) {
+
+                keyColumns.clear();
+                break;
+            }
+
+            keyColumns.add(MiscUtils.getFormattedObject(primaryKeyColumns.get(i)));
+        }
+
+        pageStarts = new LinkedHashMap<Integer, Object[]>(CACHED_PAGE_STARTS, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+                return size() > CACHED_PAGE_STARTS;
+            }
+
+        };
+
+        filterParameters = Collections.emptyList();
+        pageIndex = UNKNOWN_PAGE;
+    }
+
+    private int headerIndex(String name) {
+
+        for (int i = 0, n = columnHeaders.size(); i < n; i++) {
+
+            if (columnHeaders.get(i).getName().equals(name)) {
+
+                return i;
+            }
+
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns whether keyset paging is available - ie. the table
+     * has a primary key and all key columns are selected.
+     */
+    boolean canPage() {
+
+        return !keyColumns.isEmpty();
+    }
+
+    void setPageSize(int pageSize) {
+
+        this.pageSize = Math.max(1, pageSize);
+        pageStarts.clear();
+    }
+
+    int getPageSize() {
+
+        return pageSize;
+    }
+
+    /**
+     * Returns the zero based index of the current page or -1
+     * where not known (eg. after moving to the last page).
+     */
+    int getPageIndex() {
+
+        return pageIndex;
+    }
+
+    boolean hasFilter() {
+
+        return filter != null;
+    }
+
+    /**
+     * Sets the text to filter rows by - a row matches when any of its
+     * character columns contains the text (case insensitive).
+     */
+    void setFilter(String text) {
+
+        pageStarts.clear();
+        pageIndex = UNKNOWN_PAGE;
+        firstKey = null;
+        lastKey = null;
+
+        if (StringUtils.isBlank(text)) {
+
+            filter = null;
+            filterParameters = Collections.emptyList();
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        List<Object> parameters = new ArrayList<Object>();
+        for (ResultSetColumnHeader header : columnHeaders) {
+
+            if (isSearchable(header.getDataType())) {
+
+                if (sb.length() > 0) {
+
+                    sb.append(" OR ");
+                }
+
+                sb.append(MiscUtils.getFormattedObject(header.getName())).append(" CONTAINING ?");
+                parameters.add(text);
+            }
+
+        }
+
+        filter = sb.length() > 0 ? "(" + sb + ")" : null;
+        filterParameters = parameters;
+    }
+
+    /**
+     * Only character columns are matched - CONTAINING on other types
+     * would compare against the server's own string conversion of the
+     * value (dates, numbers), which differs from what the grid shows.
+     */
+    private boolean isSearchable(int dataType) {
+
+        switch (dataType) {
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return true;
+
+            default:
+                return false;
+        }
+
+    }
+
+    /**
+     * Returns all filtered rows in the specified order - for
+     * browsing through a single cursor.
+     */
+    ResultSet select(String orderBy) throws DataSourceException {
+
+        return databaseObject.getData("*", filter, orderBy, null, filterParameters);
+    }
+
+    ResultSet firstPage() throws DataSourceException {
+
+        pageIndex = 0;
+        return pageFrom(null, false);
+    }
+
+    ResultSet nextPage() throws DataSourceException {
+
+        if (lastKey == null) {
+
+            return firstPage();
+        }
+
+        if (pageIndex != UNKNOWN_PAGE) {
+
+            pageIndex++;
+        }
+
+        return pageFrom(lastKey, false);
+    }
+
+    ResultSet previousPage() throws DataSourceException {
+
+        if (pageIndex == 0 || firstKey == null) {
+
+            return firstPage();
+        }
+
+        if (pageIndex != UNKNOWN_PAGE && pageStarts.containsKey(pageIndex - 1)) {
+
+            return page(pageIndex - 1);
+        }
+
+        // the previous page starts at the smallest of the preceding page size keys
+        Object[] start = readKey(keyCondition(firstKey, "<"), keyParameters(firstKey), descendingKeyOrder(), String.valueOf(pageSize), true);
+        if (start == null) {
+
+            return firstPage();
+        }
+
+        if (pageIndex != UNKNOWN_PAGE) {
+
+            pageIndex--;
+        }
+
+        return pageFrom(start, true);
+    }
+
+    ResultSet lastPage() throws DataSourceException {
+
+        Object[] start = readKey(null, Collections.emptyList(), descendingKeyOrder(), String.valueOf(pageSize), true);
+        if (start == null) {
+
+            return firstPage();
+        }
+
+        pageIndex = UNKNOWN_PAGE;
+        return pageFrom(start, true);
+    }
+
+    /**
+     * Moves to the page with the specified zero based index - seeking from
+     * the nearest cached page start before it - or to the last page where
+     * the index is past the end of the data.
+     */
+    ResultSet page(int index) throws DataSourceException {
+
+        if (index <= 0) {
+
+            return firstPage();
+        }
+
+        Object[] start = pageStarts.get(index);
+        if (start == null) {
+
+            int nearest = 0;
+            Object[] nearestStart = null;
+            for (Map.Entry<Integer, Object[]> entry : pageStarts.entrySet()) {
+
+                if (entry.getKey() < index && entry.getKey() > nearest) {
+
+                    nearest = entry.getKey();
+                    nearestStart = entry.getValue();
+                }
+
+            }
+
+            long offset = (long) (index - nearest) * pageSize + 1;
+            String rows = offset + " TO " + offset;
+            start = nearestStart != null
+                    ? readKey(keyCondition(nearestStart, ">="), keyParameters(nearestStart), keyOrder(), rows, false)
+                    : readKey(null, Collections.emptyList(), keyOrder(), rows, false);
+
+            if (start == null) {
+
+                return lastPage();
+            }
+        }
+
+        pageIndex = index;
+        return pageFrom(start, true);
+    }
+
+    /**
+     * Records the key bounds of the page just loaded.
+     */
+    void pageLoaded(List<RecordDataItem> firstRow, List<RecordDataItem> lastRow) {
+
+        firstKey = firstRow != null ? keyOf(firstRow) : null;
+        lastKey = lastRow != null ? keyOf(lastRow) : null;
+
+        if (firstKey != null && pageIndex != UNKNOWN_PAGE) {
+
+            pageStarts.put(pageIndex, firstKey);
+        }
+    }
+
+    private Object[] keyOf(List<RecordDataItem> row) {
+
+        Object[] key = new Object[keyIndexes.length];
+        for (int i = 0; i < keyIndexes.length; i++) {
+
+            key[i] = row.get(keyIndexes[i]).getValue();
+        }
+
+        return key;
+    }
+
+    private ResultSet pageFrom(Object[] start, boolean inclusive) throws DataSourceException {
+
+        String condition = null;
+        List<Object> parameters = Collections.emptyList();
+        if (start != null) {
+
+            condition = keyCondition(start, inclusive ? ">=" : ">");
+            parameters = keyParameters(start);
+        }
+
+        return databaseObject.getData("*", and(condition), keyOrder(), String.valueOf(pageSize), withFilterParameters(parameters));
+    }
+
+    /**
+     * Reads the key columns of the rows selected and returns
+     * the key of the first or last row read.
+     */
+    private Object[] readKey(String condition, List<Object> parameters,
+                             String orderBy, String rows, boolean last) throws DataSourceException {
+
+        ResultSet resultSet = databaseObject.getData(
+                StringUtils.join(keyColumns, ", "), and(condition), orderBy, rows, withFilterParameters(parameters));
+
+        Object[] key = null;
+        try {
+
+            while (resultSet.next()) {
+
+                key = new Object[keyColumns.size()];
+                for (int i = 0; i < key.length; i++) {
+
+                    key[i] = resultSet.getObject(i + 1);
+                }
+
+                if (!last) {
+
+                    break;
+                }
+
+            }
+
+            return key;
+
+        } catch (SQLException e) {
+
+            throw new DataSourceException(e);
+
+        } finally {
+
+            databaseObject.releaseResources();
+        }
+
+    }
+
+    private String and(String condition) {
+
+        if (condition == null) {
+
+            return filter;
+        }
+
+        return filter != null ? filter + " AND (" + condition + ")" : condition;
+    }
+
+    private List<Object> withFilterParameters(List<Object> parameters) {
+
+        List<Object> values = new ArrayList<Object>(filterParameters);
+        values.addAll(parameters);
+        return values;
+    }
+
+    /**
+     * Builds the row value comparison of the key columns against a key -
+     * (k1, k2) > (?, ?) is expanded as k1 > ? OR (k1 = ? AND k2 > ?).
+     */
+    private String keyCondition(Object[] key, String operator) {
+
+        String strict = operator.substring(0, 1);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < key.length; i++) {
+
+            if (i > 0) {
+
+                sb.append(" OR ");
+            }
+
+            sb.append("(");
+            for (int j = 0; j < i; j++) {
+
+                sb.append(keyColumns.get(j)).append(" = ? AND ");
+            }
+
+            sb.append(keyColumns.get(i)).append(" ").append(i == key.length - 1 ? operator : strict).append(" ?)");
+        }
+
+        return sb.toString();
+    }
+
+    private List<Object> keyParameters(Object[] key) {
+
+        List<Object> parameters = new ArrayList<Object>();
+        for (int i = 0; i < key.length; i++) {
+
+            for (int j = 0; j <= i; j++) {
+
+                parameters.add(key[j]);
+            }
+
+        }
+
+        return parameters;
+    }
+
+    private String keyOrder() {
+
+        return StringUtils.join(keyColumns, ", ");
+    }
+
+    private String descendingKeyOrder() {
+
+        return StringUtils.join(keyColumns, " DESC, ") + " DESC";
+    }
+
+}
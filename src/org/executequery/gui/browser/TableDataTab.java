@@ -89,6 +89,11 @@ public class TableDataTab extends JPanel
     private GridBagConstraints rowCountPanelConstraints;
     private GridBagConstraints canEditTableNoteConstraints;
     private DisabledField rowCountField;
+    private DisabledField totalRowCountField;
+    private JButton countRowsButton;
+    private SwingWorker countWorker;
+    private DatabaseObject countedObject;
+    private String estimatedRowCountText;
     private JPanel rowCountPanel;
     private List<TableDataChange> tableDataChanges;
 
@@ -111,6 +116,19 @@ public class TableDataTab extends JPanel
     private List<org.executequery.databaseobjects.impl.ColumnConstraint> foreigns;
     private Timer timer;
 
+    private static final int FILTERED_DATA = 0;
+    private static final int FIRST_PAGE = 1;
+    private static final int PREVIOUS_PAGE = 2;
+    private static final int NEXT_PAGE = 3;
+    private static final int LAST_PAGE = 4;
+    private static final int ROW_PAGE = 5;
+
+    private TableDataPager pager;
+    private DefaultTextField filterField;
+    private JCheckBox pagedCheckBox;
+    private NumberTextField goToRowField;
+    private List<JComponent> pageControls;
+
     public TableDataTab(boolean displayRowCount) {
 
         super(new GridBagLayout());
@@ -313,6 +331,15 @@ public class TableDataTab extends JPanel
         primaryKeyColumns.clear();
         foreignKeyColumns.clear();
 
+        if (this.databaseObject != databaseObject) {
+
+            filterField.setText("");
+            pagedCheckBox.setSelected(false);
+            if (displayRowCount) {
+
+                cancelRowCount();
+            }
+        }
         this.databaseObject = databaseObject;
         try {
 
@@ -388,21 +415,48 @@ public class TableDataTab extends JPanel
                     }
                 }
             tableModel.setNonEditableColumns(nonEditableCols);
+            createPager();
 
             TableSorter sorter = new TableSorter(tableModel);
             sorter.addSortingListener(new SortingListener() {
                 @Override
                 public void presorting(SortingEvent e) {
-                            tableModel.setFetchAll(true);
-                            tableModel.fetchMoreData();
-                            if (displayRowCount) {
-                                rowCountField.setText(String.valueOf(tableModel.getRowCount()));
-                            }
+
+                    // sort on the server unless all rows are already here
+                    boolean sortOnServer = !tableModel.isResultSetClose() && !hasChanges();
+                    e.getSorter().setPresorted(sortOnServer);
+                    if (!sortOnServer) {
+
+                        tableModel.setFetchAll(true);
+                        tableModel.fetchMoreData();
+                        if (displayRowCount) {
+                            rowCountField.setText(String.valueOf(tableModel.getRowCount()));
+                        }
+                    }
                 }
 
                 @Override
                 public void postsorting(SortingEvent e) {
 
+                    TableSorter sorter = e.getSorter();
+                    if (sorter.isPresorted()) {
+
+                        String orderBy = orderByForSorting(sorter);
+                        if (orderBy != null) {
+
+                            reloadSorted(orderBy);
+
+                        } else {
+
+                            sorter.setPresorted(false);
+                            tableModel.setFetchAll(true);
+                            tableModel.fetchMoreData();
+
+                            if (displayRowCount) {
+                                rowCountField.setText(String.valueOf(tableModel.getRowCount()));
+                            }
+                        }
+                    }
                 }
 
                 @Override
@@ -513,6 +567,10 @@ public class TableDataTab extends JPanel
 
                 add(rowCountPanel, rowCountPanelConstraints);
                 rowCountField.setText(String.valueOf(sorter.getRowCount()));
+                if (countWorker == null) {
+
+                    updateEstimatedRowCount();
+                }
             }
 
         } catch (DataSourceException e) {
@@ -538,6 +596,295 @@ public class TableDataTab extends JPanel
         return "done";
     }
 
+    /**
+     * Builds the ORDER BY list for the sorter's columns by result set
+     * position, or returns <code>null</code> when a sorting column
+     * cannot be ordered by the server (LOB columns).
+     */
+    private String orderByForSorting(TableSorter sorter) {
+
+        StringBuilder sb = new StringBuilder();
+        for (int column : sorter.getSortingColumns()) {
+
+            ResultSetColumnHeader header = tableModel.getVisibleColumnHeader(column);
+            switch (header.getDataType()) {
+
+                case Types.BLOB:
+                case Types.CLOB:
+                case Types.LONGVARCHAR:
+                case Types.LONGVARBINARY:
+                case Types.ARRAY:
+                    return null;
+            }
+
+            if (sb.length() > 0) {
+
+                sb.append(", ");
+            }
+
+            sb.append(header.getOriginalIndex() + 1);
+            if (sorter.getSortingStatus(column) == TableSorter.DESCENDING) {
+
+                sb.append(" DESC");
+            }
+
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Re-issues the query ordered as specified in the background - the
+     * rows are replaced on the event dispatch thread once it returns.
+     */
+    private void reloadSorted(final String orderBy) {
+
+        Log.debug("Retrieving data for table - " + databaseObject.getName() + " ordered by " + orderBy);
+        if (worker != null) {
+
+            cancel();
+            worker.interrupt();
+        }
+
+        worker = new SwingWorker() {
+
+            public Object construct() {
+
+                try {
+
+                    executing = true;
+                    tableModel.closeResultSet();
+                    return pager.select(orderBy);
+
+                } catch (Exception e) {
+
+                    return e;
+                }
+            }
+
+            public void finished() {
+
+                executing = false;
+                try {
+
+                    Object value = getValue();
+                    if (value instanceof Exception) {
+
+                        throw (Exception) value;
+                    }
+
+                    if (value == null) {
+
+                        return;
+
+                    } else if (cancelled) {
+
+                        ((ResultSet) value).close();
+
+                    } else {
+
+                        tableModel.reloadData((ResultSet) value);
+                    }
+
+                } catch (Exception e) {
+
+                    GUIUtilities.displayExceptionErrorDialog("Error loading data", e);
+
+                } finally {
+
+                    cancelled = false;
+                }
+
+                if (displayRowCount) {
+
+                    rowCountField.setText(String.valueOf(tableModel.getRowCount()));
+                }
+            }
+
+        };
+        worker.start();
+    }
+
+    private void createPager() {
+
+        pager = new TableDataPager(databaseObject, tableModel.getColumnHeaders(), primaryKeyColumns);
+        pager.setPageSize(SystemProperties.getIntProperty("user", "results.table.fetch.size"));
+        pager.setFilter(filterField.getText());
+
+        pagedCheckBox.setEnabled(pager.canPage());
+        if (!pager.canPage()) {
+
+            pagedCheckBox.setSelected(false);
+        }
+        updatePageControls();
+
+        // data for a filter or page kept across a reload of the same object
+        if (isPaged()) {
+
+            browse(FIRST_PAGE, 0);
+
+        } else if (pager.hasFilter()) {
+
+            browse(FILTERED_DATA, 0);
+        }
+    }
+
+    private boolean isPaged() {
+
+        return pager != null && pager.canPage() && pagedCheckBox.isSelected();
+    }
+
+    private void updatePageControls() {
+
+        boolean paged = isPaged();
+        for (JComponent component : pageControls) {
+
+            component.setEnabled(paged);
+        }
+    }
+
+    /**
+     * Replaces the rows in the model with the filtered data or the requested
+     * page - a page is read completely and its key bounds passed to the pager.
+     */
+    private void browse(int target, int row) {
+
+        try {
+
+            tableModel.closeResultSet();
+
+            ResultSet resultSet;
+            switch (target) {
+
+                case FIRST_PAGE:
+                    resultSet = pager.firstPage();
+                    break;
+
+                case PREVIOUS_PAGE:
+                    resultSet = pager.previousPage();
+                    break;
+
+                case NEXT_PAGE:
+                    resultSet = pager.nextPage();
+                    break;
+
+                case LAST_PAGE:
+                    resultSet = pager.lastPage();
+                    break;
+
+                case ROW_PAGE:
+                    resultSet = pager.page((row - 1) / pager.getPageSize());
+                    break;
+
+                default:
+                    resultSet = pager.select(serverOrderBy());
+            }
+
+            tableModel.reloadData(resultSet);
+            if (isPaged()) {
+
+                tableModel.setFetchAll(true);
+                tableModel.fetchMoreData();
+
+                int rowCount = tableModel.getRowCount();
+                pager.pageLoaded(rowCount > 0 ? tableModel.peekRowDataForRow(0) : null,
+                        rowCount > 0 ? tableModel.peekRowDataForRow(rowCount - 1) : null);
+
+                // pages come in key order - any header sort applies within the page
+                if (table != null && table.getModel() instanceof TableSorter) {
+
+                    ((TableSorter) table.getModel()).setPresorted(false);
+                }
+            }
+
+        } catch (Exception e) {
+
+            GUIUtilities.displayExceptionErrorDialog("Error loading data", e);
+        }
+
+    }
+
+    private String serverOrderBy() {
+
+        if (table != null && table.getModel() instanceof TableSorter) {
+
+            TableSorter sorter = (TableSorter) table.getModel();
+            if (sorter.isPresorted()) {
+
+                return orderByForSorting(sorter);
+            }
+        }
+
+        return null;
+    }
+
+    private void browseInBackground(final int target, final int row) {
+
+        if (pager == null) {
+
+            return;
+        }
+
+        SwingWorker browseWorker = new SwingWorker() {
+
+            public Object construct() {
+
+                browse(target, row);
+                return "done";
+            }
+
+            public void finished() {
+
+                if (displayRowCount) {
+
+                    rowCountField.setText(String.valueOf(tableModel.getRowCount()));
+                }
+
+                if (target == ROW_PAGE) {
+
+                    int index = (row - 1) % pager.getPageSize();
+                    if (pager.getPageIndex() == (row - 1) / pager.getPageSize() && index < table.getRowCount()) {
+
+                        table.setRowSelectionInterval(index, index);
+                        table.scrollRectToVisible(table.getCellRect(index, 0, true));
+                    }
+                }
+            }
+
+        };
+        browseWorker.start();
+    }
+
+    private RolloverButton createPageButton(String icon, String key, final int target) {
+
+        RolloverButton button = new RolloverButton();
+        if (icon != null) {
+
+            button.setIcon(GUIUtilities.loadIcon(icon));
+
+        } else {
+
+            button.setText(bundleString(key));
+        }
+        button.setToolTipText(bundleString(key));
+        button.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+
+                // a short page is the last one
+                if (target == NEXT_PAGE && tableModel.getRowCount() < pager.getPageSize()) {
+
+                    return;
+                }
+
+                browseInBackground(target, 0);
+            }
+        });
+
+        pageControls.add(button);
+        return button;
+    }
+
     void rebuildDataFromMetadata(List<ColumnData> columnDataList) {
         Log.error("Error retrieving data for table - " + databaseObject.getName() + ". Try to rebuild table model.");
         databaseObject.releaseResources();
@@ -1001,9 +1348,63 @@ public class TableDataTab extends JPanel
             }
         });
         bar.add(fetchAllRolloverButton);
+
+        pageControls = new ArrayList<JComponent>();
+        bar.addSeparator();
+        pagedCheckBox = new JCheckBox(bundleString("PagedBrowsing"));
+        pagedCheckBox.setToolTipText(bundleString("PagedBrowsingToolTip"));
+        pagedCheckBox.setEnabled(false);
+        pagedCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                updatePageControls();
+                browseInBackground(isPaged() ? FIRST_PAGE : FILTERED_DATA, 0);
+            }
+        });
+        bar.add(pagedCheckBox);
+        bar.add(createPageButton(null, "FirstPage", FIRST_PAGE));
+        bar.add(createPageButton("Previous16.png", "PreviousPage", PREVIOUS_PAGE));
+        bar.add(createPageButton("Forward16.png", "NextPage", NEXT_PAGE));
+        bar.add(createPageButton(null, "LastPage", LAST_PAGE));
+
+        goToRowField = new NumberTextField();
+        goToRowField.setColumns(6);
+        goToRowField.setToolTipText(bundleString("GoToRow"));
+        goToRowField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                int row = goToRowField.getValue();
+                if (row > 0) {
+                    browseInBackground(ROW_PAGE, row);
+                }
+            }
+        });
+        pageControls.add(goToRowField);
+        bar.add(goToRowField);
+        updatePageControls();
+
         GridBagConstraints gbc3 = new GridBagConstraints(4, 0, 1, 1, 1.0, 1.0,
                 GridBagConstraints.CENTER, GridBagConstraints.HORIZONTAL, new Insets(0, 0, 0, 0), 0, 0);
         buttonsEditingPanel.add(bar, gbc3);
+
+        filterField = new DefaultTextField();
+        filterField.setColumns(20);
+        filterField.setToolTipText(bundleString("FilterToolTip"));
+        filterField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                if (pager != null) {
+                    pager.setFilter(filterField.getText());
+                    browseInBackground(isPaged() ? FIRST_PAGE : FILTERED_DATA, 0);
+                }
+            }
+        });
+        GridBagConstraints gbc4 = new GridBagConstraints(5, 0, 1, 1, 0, 1.0,
+                GridBagConstraints.EAST, GridBagConstraints.HORIZONTAL, new Insets(0, 5, 0, 5), 0, 0);
+        buttonsEditingPanel.add(new JLabel(GUIUtilities.loadIcon("Find16.png")), gbc4);
+        gbc4.gridx++;
+        gbc4.insets.left = 0;
+        buttonsEditingPanel.add(filterField, gbc4);
     }
 
     public void stopEditing() {
@@ -1028,6 +1429,119 @@ public class TableDataTab extends JPanel
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.insets.right = 0;
         rowCountPanel.add(rowCountField, gbc);
+
+        totalRowCountField = new DisabledField();
+        countRowsButton = new JButton(bundleString("CountRows"));
+        countRowsButton.setToolTipText(bundleString("CountRowsToolTip"));
+        countRowsButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+
+                if (countWorker != null) {
+
+                    cancelRowCount();
+
+                } else {
+
+                    countRows();
+                }
+            }
+        });
+
+        gbc.gridx = 3;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        rowCountPanel.add(new JLabel(bundleString("TotalRows")), gbc);
+        gbc.gridx = 4;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        rowCountPanel.add(totalRowCountField, gbc);
+        gbc.gridx = 5;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        rowCountPanel.add(countRowsButton, gbc);
+    }
+
+    /**
+     * Shows the row count estimated from the index statistics of the
+     * table - the exact count is only run on request.
+     */
+    private void updateEstimatedRowCount() {
+
+        try {
+
+            long estimate = databaseObject.getEstimatedRowCount();
+            estimatedRowCountText = estimate < 0 ? bundleString("RowCountUnknown") : "~" + estimate;
+
+        } catch (DataSourceException e) {
+
+            Log.debug("Error estimating row count for table - " + databaseObject.getName() + ": " + e.getMessage());
+            estimatedRowCountText = bundleString("RowCountUnknown");
+        }
+
+        totalRowCountField.setText(estimatedRowCountText);
+    }
+
+    private void countRows() {
+
+        if (databaseObject == null) {
+
+            return;
+        }
+
+        final DatabaseObject object = databaseObject;
+        countedObject = object;
+        totalRowCountField.setText(bundleString("CountingRows"));
+        countRowsButton.setText(Bundles.get("common.cancel.button"));
+
+        countWorker = new SwingWorker() {
+            @Override
+            public Object construct() {
+
+                try {
+
+                    Log.debug("Retrieving data row count for table - " + object.getName());
+                    object.resetRowsCount();
+                    return String.valueOf(object.getDataRowCount());
+
+                } catch (DataSourceException e) {
+
+                    return "Error: " + e.getMessage();
+                }
+            }
+
+            @Override
+            public void finished() {
+
+                if (countWorker != this) {
+
+                    return;
+                }
+
+                countWorker = null;
+                countedObject = null;
+                countRowsButton.setText(bundleString("CountRows"));
+                totalRowCountField.setText(get().toString());
+            }
+        };
+        countWorker.start();
+    }
+
+    private void cancelRowCount() {
+
+        if (countWorker == null) {
+
+            return;
+        }
+
+        Log.debug("Cancelling data row count for table - " + countedObject.getName());
+        countedObject.cancelDataRowCount();
+        countWorker.interrupt();
+        countWorker = null;
+        countedObject = null;
+
+        countRowsButton.setText(bundleString("CountRows"));
+        totalRowCountField.setText(estimatedRowCountText);
     }
 
 
@@ -1176,12 +1690,8 @@ public class TableDataTab extends JPanel
     }
 
     public void closeResultSet() {
-        try {
-            if (tableModel != null)
-                tableModel.closeResultSet();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        if (tableModel != null)
+            tableModel.close();
     }
 
     private String bundleString(String key) {
@@ -1,6 +1,7 @@
 package org.executequery.gui.browser.comparer;
 
 import org.executequery.databasemediators.spi.StatementExecutor;
+import org.executequery.databaseobjects.SystemQuery;
 
 import java.sql.ResultSet;
 import java.util.ArrayList;
@@ -42,22 +43,10 @@ public class Table {
     public ArrayList<String> getFields(StatementExecutor con, String table) {
         ArrayList<String> infoFields = new ArrayList<>();
 
-        query = "select rdb$relation_fields.rdb$field_name, rdb$relation_fields.rdb$field_name\n"
-                + "from rdb$relation_fields\n"
-                + "inner join rdb$fields on rdb$fields.rdb$field_name = rdb$relation_fields.rdb$field_source\n"
-                + "where rdb$relation_fields.rdb$relation_name = '" + table + "' and rdb$fields.rdb$computed_source is null\n"
-                + "\n"
-                + "union all\n"
-                + "\n"
-                + "select iif(rdb$dependencies.rdb$field_name is null,  '', rdb$dependencies.rdb$field_name),\n"
-                + "       rdb$relation_fields.rdb$field_name\n"
-                + "from rdb$relation_fields\n"
-                + "inner join rdb$fields on rdb$fields.rdb$field_name = rdb$relation_fields.rdb$field_source\n"
-                + "left outer join rdb$dependencies on rdb$dependencies.rdb$dependent_name = rdb$fields.rdb$field_name\n"
-                + "where rdb$relation_fields.rdb$relation_name = '" + table + "' and rdb$fields.rdb$computed_source is not null";
+        query = SystemQuery.RELATION_FIELD_DEPENDENCIES.getSql();
 
         try {
-            ResultSet rs = con.execute(query, true).getResultSet();
+            ResultSet rs = con.getResultSet(-1, SystemQuery.RELATION_FIELD_DEPENDENCIES.prepare(con, table, table)).getResultSet();
 
 
             ArrayList<ArrayList<String>> list = new ArrayList<>();
@@ -106,24 +95,10 @@ public class Table {
             System.out.println("table 89: " + e + query);
         }
 
-        query = "select rdb$relation_fields.rdb$field_name, \n" + //1
-                "rdb$fields.rdb$field_type, \n" + //2
-                "rdb$fields.rdb$character_length, \n" + //3
-                "rdb$fields.rdb$field_sub_type, \n" + //4
-                "rdb$fields.rdb$segment_length, \n" + //5
-                "rdb$fields.rdb$field_precision, \n" + //6
-                "abs(rdb$fields.rdb$field_scale), \n" + //7
-                "rdb$relation_fields.rdb$null_flag, \n" + //8
-                "rdb$relation_fields.rdb$field_source, \n" + //9
-                "rdb$relation_fields.rdb$default_source, \n" + //10
-                "rdb$fields.rdb$computed_source \n" + //11
-                "from rdb$relation_fields \n"
-                + "inner join rdb$fields on rdb$fields.rdb$field_name = rdb$relation_fields.rdb$field_source \n"
-                + "where rdb$relation_fields.rdb$relation_name = '" + table
-                + "' and rdb$relation_fields.rdb$field_name = '" + field + "'";
+        query = SystemQuery.RELATION_FIELD_DEFINITION.getSql();
 
         try {
-            ResultSet rs = con.execute(query, true).getResultSet();
+            ResultSet rs = con.getResultSet(-1, SystemQuery.RELATION_FIELD_DEFINITION.prepare(con, table, field)).getResultSet();
 
 
             while (rs.next()) {
@@ -167,16 +142,10 @@ public class Table {
 
             ArrayList<ArrayList<String>> depTables = new ArrayList<>();
 
-            query = "select distinct rdb$dependencies.rdb$field_name,\n"
-                    + "       rdb$dependencies.rdb$depended_on_name\n"
-                    + "from rdb$dependencies\n"
-                    + "inner join rdb$relation_fields on rdb$relation_fields.rdb$field_source = rdb$dependencies.rdb$dependent_name\n"
-                    + "where rdb$dependencies.rdb$depended_on_type = 0\n"
-                    + "and rdb$dependencies.rdb$dependent_type = 3\n"
-                    + "and rdb$relation_fields.rdb$relation_name = '" + table + "'";
+            query = SystemQuery.RELATION_COMPUTED_DEPENDENCIES.getSql();
 
             try {
-                ResultSet rs = firstConnection.execute(query, true).getResultSet();
+                ResultSet rs = firstConnection.getResultSet(-1, SystemQuery.RELATION_COMPUTED_DEPENDENCIES.prepare(firstConnection, table)).getResultSet();
 
 
                 while (rs.next()) {
@@ -387,19 +356,10 @@ public class Table {
 
                         if (fN.equals(d.get(2))) {
 
-                            query = "select rdb$fields.rdb$field_type,\n"
-                                    + "       rdb$fields.rdb$field_length / 4,\n"
-                                    + "       rdb$fields.rdb$field_scale,\n"
-                                    + "       rdb$fields.rdb$field_sub_type,\n"
-                                    + "       rdb$fields.rdb$field_precision,\n"
-                                    + "       rdb$fields.rdb$segment_length\n"
-                                    + "from rdb$fields\n"
-                                    + "inner join rdb$relation_fields on rdb$relation_fields.rdb$field_source = rdb$fields.rdb$field_name\n"
-                                    + "where rdb$relation_fields.rdb$field_name = '" + d.get(2) + "'\n"
-                                    + "and rdb$relation_fields.rdb$relation_name = '" + table + "'";
+                            query = SystemQuery.RELATION_FIELD_TYPE.getSql();
 
                             try {
-                                ResultSet rs = secondConnection.execute(query, true).getResultSet();
+                                ResultSet rs = secondConnection.getResultSet(-1, SystemQuery.RELATION_FIELD_TYPE.prepare(secondConnection, d.get(2), table)).getResultSet();
 
 
                                 while (rs.next()) {
@@ -440,19 +400,10 @@ public class Table {
 
                         if (fN.equals(d.get(2))) {
 
-                            query = "select rdb$fields.rdb$field_type,\n"
-                                    + "       rdb$fields.rdb$field_length / 4,\n"
-                                    + "       rdb$fields.rdb$field_scale,\n"
-                                    + "       rdb$fields.rdb$field_sub_type,\n"
-                                    + "       rdb$fields.rdb$field_precision,\n"
-                                    + "       rdb$fields.rdb$segment_length\n"
-                                    + "from rdb$fields\n"
-                                    + "inner join rdb$relation_fields on rdb$relation_fields.rdb$field_source = rdb$fields.rdb$field_name\n"
-                                    + "where rdb$relation_fields.rdb$field_name = '" + d.get(2) + "'\n"
-                                    + "and rdb$relation_fields.rdb$relation_name = '" + table + "'";
+                            query = SystemQuery.RELATION_FIELD_TYPE.getSql();
 
                             try {
-                                ResultSet rs = secondConnection.execute(query, true).getResultSet();
+                                ResultSet rs = secondConnection.getResultSet(-1, SystemQuery.RELATION_FIELD_TYPE.prepare(secondConnection, d.get(2), table)).getResultSet();
 
 
                                 while (rs.next()) {
@@ -511,16 +462,10 @@ public class Table {
 
         ArrayList<ArrayList<String>> depTables = new ArrayList<>();
 
-        query = "select distinct rdb$dependencies.rdb$field_name,\n"
-                + "       rdb$dependencies.rdb$depended_on_name\n"
-                + "from rdb$dependencies\n"
-                + "inner join rdb$relation_fields on rdb$relation_fields.rdb$field_source = rdb$dependencies.rdb$dependent_name\n"
-                + "where rdb$dependencies.rdb$depended_on_type = 0\n"
-                + "and rdb$dependencies.rdb$dependent_type = 3\n"
-                + "and rdb$relation_fields.rdb$relation_name = '" + table + "'";
+        query = SystemQuery.RELATION_COMPUTED_DEPENDENCIES.getSql();
 
         try {
-            ResultSet rs = firstConnection.execute(query, true).getResultSet();
+            ResultSet rs = firstConnection.getResultSet(-1, SystemQuery.RELATION_COMPUTED_DEPENDENCIES.prepare(firstConnection, table)).getResultSet();
 
 
             while (rs.next()) {
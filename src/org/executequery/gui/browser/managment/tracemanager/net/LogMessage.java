@@ -6,17 +6,36 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.executequery.gui.browser.managment.tracemanager.LogConstants;
 import org.executequery.log.Log;
+import org.executequery.sql.ParsingService;
 import org.underworldlabs.traceparser.RedTraceBaseListener;
-import org.underworldlabs.traceparser.RedTraceLexer;
 import org.underworldlabs.traceparser.RedTraceParser;
+import org.underworldlabs.util.ThreadLocalParser;
 
 import java.sql.Timestamp;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
 public class LogMessage {
+
+    private static final ThreadLocalParser.Rule<RedTraceParser> PARSE = new ThreadLocalParser.Rule<RedTraceParser>() {
+        public ParseTree parse(RedTraceParser parser) {
+            return parser.parse();
+        }
+    };
+
+    private static final ThreadLocalParser.Rule<RedTraceParser> GLOBAL_COUNTERS = new ThreadLocalParser.Rule<RedTraceParser>() {
+        public ParseTree parse(RedTraceParser parser) {
+            return parser.global_counters();
+        }
+    };
+
+    private static final ThreadLocalParser.Rule<RedTraceParser> RECORDS_FETCHED = new ThreadLocalParser.Rule<RedTraceParser>() {
+        public ParseTree parse(RedTraceParser parser) {
+            return parser.records_fetched();
+        }
+    };
+
     private int id;
     private Timestamp timestamp;
     private String idProcess;
@@ -80,9 +99,8 @@ public class LogMessage {
 
     private void init(String body) {
         this.setBody(body);
-        RedTraceParser parser = buildParser(body);
         try {
-            ParseTree tree = parser.parse();
+            ParseTree tree = ParsingService.TRACE.parse(body, PARSE);
             ParseTreeWalker walker = new ParseTreeWalker();
             walker.walk(new RedTraceBaseListener() {
                 @Override
@@ -383,8 +401,7 @@ public class LogMessage {
                     }
                     if (isFindOfRegex("[\\d]+ ms.+\n", query)) {
                         String global_counters = findOfRegex("[\\d]+ ms.+\n", query);
-                        RedTraceParser redTraceParser = buildParser(global_counters);
-                        ParseTree redTree = redTraceParser.global_counters();
+                        ParseTree redTree = ParsingService.TRACE.parse(global_counters, GLOBAL_COUNTERS);
                         ParseTreeWalker redWalker = new ParseTreeWalker();
                         redWalker.walk(new RedTraceBaseListener() {
                             @Override
@@ -396,8 +413,7 @@ public class LogMessage {
                     }
                     if (isFindOfRegex("[\\d]+ records fetched", query)) {
                         String records_fetched = findOfRegex("[\\d]+ records fetched", query);
-                        RedTraceParser redTraceParser = buildParser(records_fetched);
-                        ParseTree redTree = redTraceParser.records_fetched();
+                        ParseTree redTree = ParsingService.TRACE.parse(records_fetched, RECORDS_FETCHED);
                         ParseTreeWalker redWalker = new ParseTreeWalker();
                         redWalker.walk(new RedTraceBaseListener() {
                             @Override
@@ -462,23 +478,6 @@ public class LogMessage {
         return (m.find());
     }
 
-    private RedTraceParser buildParser(String str) {
-        RedTraceLexer lexer = new RedTraceLexer(CharStreams.fromString(str));
-        List<? extends ANTLRErrorListener> listeners = lexer.getErrorListeners();
-        for (int i = 0; i < listeners.size(); i++) {
-            if (listeners.get(i) instanceof ConsoleErrorListener)
-                lexer.removeErrorListener(listeners.get(i));
-        }
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        RedTraceParser parser = new RedTraceParser(tokens);
-        listeners = parser.getErrorListeners();
-        for (int i = 0; i < listeners.size(); i++) {
-            if (listeners.get(i) instanceof ConsoleErrorListener)
-                parser.removeErrorListener(listeners.get(i));
-        }
-        return parser;
-    }
-
     public int getId() {
         return id;
     }
@@ -4,13 +4,19 @@ import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.antlr.v4.runtime.tree.TerminalNode;
+import org.executequery.sql.ParsingService;
 import org.underworldlabs.traceparser.RedTraceBaseListener;
-import org.underworldlabs.traceparser.RedTraceLexer;
 import org.underworldlabs.traceparser.RedTraceParser;
-
-import java.util.List;
+import org.underworldlabs.util.ThreadLocalParser;
 
 public class SessionInfo {
+
+    private static final ThreadLocalParser.Rule<RedTraceParser> SESSION_INFO = new ThreadLocalParser.Rule<RedTraceParser>() {
+        public ParseTree parse(RedTraceParser parser) {
+            return parser.session_info();
+        }
+    };
+
     private String id;
     private String name;
     private String user;
@@ -24,9 +30,8 @@ public class SessionInfo {
 
     private void init(String body) {
         this.setBody(body);
-        RedTraceParser parser = buildParser(body);
         try {
-            ParseTree tree = parser.session_info();
+            ParseTree tree = ParsingService.TRACE.parse(body, SESSION_INFO);
             ParseTreeWalker walker = new ParseTreeWalker();
             walker.walk(new RedTraceBaseListener() {
 
@@ -92,23 +97,6 @@ public class SessionInfo {
         this.body = body;
     }
 
-    private RedTraceParser buildParser(String str) {
-        RedTraceLexer lexer = new RedTraceLexer(CharStreams.fromString(str));
-        List<? extends ANTLRErrorListener> listeners = lexer.getErrorListeners();
-        for (int i = 0; i < listeners.size(); i++) {
-            if (listeners.get(i) instanceof ConsoleErrorListener)
-                lexer.removeErrorListener(listeners.get(i));
-        }
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        RedTraceParser parser = new RedTraceParser(tokens);
-        listeners = parser.getErrorListeners();
-        for (int i = 0; i < listeners.size(); i++) {
-            if (listeners.get(i) instanceof ConsoleErrorListener)
-                parser.removeErrorListener(listeners.get(i));
-        }
-        return parser;
-    }
-
     private String textFromRuleContext(ParserRuleContext ctx) {
         try {
             return ctx.getText();
@@ -257,6 +257,14 @@ public class DatabaseObjectNode extends DefaultMutableTreeNode {
      */
     public void reset() {
         databaseObject.reset();
+        resetChildren();
+    }
+
+    /**
+     * Removes all children from this node, to be
+     * retrieved again when next expanded.
+     */
+    public void resetChildren() {
         removeAllChildren();
         childrenRetrieved = false;
     }
@@ -32,12 +32,13 @@ import org.executequery.gui.resultset.ClobRecordDataItem;
 import org.executequery.gui.resultset.LobRecordDataItem;
 import org.executequery.gui.resultset.RecordDataItem;
 import org.executequery.gui.table.CreateTableSQLSyntax;
-import org.executequery.io.ByteArrayFileWriter;
 import org.executequery.localization.Bundles;
 import org.executequery.log.Log;
 import org.underworldlabs.swing.hexeditor.AKDockLayout;
 import org.underworldlabs.swing.hexeditor.HexEditor;
 import org.underworldlabs.swing.hexeditor.bdoc.AnnotatedBinaryDocument;
+import org.underworldlabs.swing.hexeditor.bdoc.BinaryDocument;
+import org.underworldlabs.swing.hexeditor.bdoc.ByteSource;
 import org.underworldlabs.util.MiscUtils;
 
 import javax.swing.*;
@@ -46,8 +47,10 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.List;
 
 public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
@@ -55,6 +58,13 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
 
     private static final String CANNOT_DISPLAY_BINARY_DATA_AS_TEXT = "\n  Cannot display binary data as text";
 
+    /**
+     * Largest LOB shown (and editable) in the text tab.
+     */
+    private static final int MAX_TEXT_LENGTH = 4 * 1024 * 1024;
+
+    private static final int SAVE_CHUNK_SIZE = 64 * 1024;
+
     private JTextArea textArea;
 
     /*private JTextArea binaryStringTextArea;
@@ -81,6 +91,10 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
     List<RecordDataItem> row;
     boolean readOnly;
 
+    private String loadedText;
+
+    private boolean dataChanged;
+
     public LobDataItemViewerPanel(ActionContainer parent, LobRecordDataItem recordDataItem, DatabaseTableObject table, List<RecordDataItem> row) {
 
         this.parent = parent;
@@ -126,7 +140,7 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
 
         JPanel binaryPanel = new JPanel(new AKDockLayout());
 
-        binaryStringTextArea = new HexEditor(new AnnotatedBinaryDocument(recordDataItemByteArray(), readOnly), charset);
+        binaryStringTextArea = new HexEditor(new AnnotatedBinaryDocument(new RecordDataItemByteSource(recordDataItem), readOnly), charset);
         imageScroll = new JScrollPane();
 
         if (isImage()) {
@@ -207,20 +221,29 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
         StringBuilder sb = new StringBuilder();
 
         sb.append("LOB Data Type: ").append(recordDataItem.getLobRecordItemName());
-        sb.append("   Total Size: ").append(recordDataItem.length()).append(" bytes");
+        sb.append("   Total Size: ").append(recordDataItem.getLobLength()).append(" bytes");
 
         return sb.toString();
     }
 
-    private byte[] recordDataItemByteArray() {
+    /**
+     * Reads up to the specified number of bytes from
+     * the start of the document shown in the binary tab.
+     */
+    private byte[] documentBytes(long maxLength) {
+
+        BinaryDocument document = binaryStringTextArea.getDocument();
+        byte[] data = new byte[(int) Math.min(document.length(), maxLength)];
+        int len = data.length > 0 ? document.read(document.createOffset(0), data) : 0;
 
-        return recordDataItem.getData() != null ? recordDataItem.getData() : new byte[0];
+        return len == data.length ? data : Arrays.copyOf(data, Math.max(0, len));
     }
 
     private void loadTextData() {
 
         String dataAsText = null;
-        byte[] data = binaryStringTextArea.getDocument().getData();
+        byte[] data = documentBytes(MAX_TEXT_LENGTH);
+        boolean complete = binaryStringTextArea.getDocument().length() <= MAX_TEXT_LENGTH;
         boolean isValidText = true;
 
         if (data != null) {
@@ -255,11 +278,13 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
         if (isValidText) {
 
             setTextAreaText(textArea, dataAsText);
-            textArea.setEditable(true);
+            textArea.setEditable(complete);
+            loadedText = complete ? dataAsText : null;
 
         } else {
 
             setTextAreaText(textArea, CANNOT_DISPLAY_BINARY_DATA_AS_TEXT);
+            loadedText = null;
         }
 
     }
@@ -286,7 +311,7 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
     private boolean isImage() {
 
         if (isBlob())
-            return SUPPORTED_IMAGES.contains(((BlobRecordDataItem) recordDataItem).getLobRecordItemName(binaryStringTextArea.getDocument().getData()));
+            return SUPPORTED_IMAGES.contains(((BlobRecordDataItem) recordDataItem).getLobRecordItemName(documentBytes(BlobRecordDataItem.MIME_SNIFF_LENGTH)));
         return SUPPORTED_IMAGES.contains(recordDataItem.getLobRecordItemName());
     }
 
@@ -299,7 +324,7 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
 
         if (isBlob()) {
 
-            byte[] data = binaryStringTextArea.getDocument().getData();
+            byte[] data = documentBytes(Integer.MAX_VALUE - 8);
             return new ImageIcon(data);
         }
 
@@ -323,8 +348,7 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
 
                 GUIUtilities.showWaitCursor();
 
-                new ByteArrayFileWriter().write(
-                        fileChooser.getSelectedFile(), recordDataItemByteArray());
+                writeToFile(fileChooser.getSelectedFile());
 
             } catch (IOException e) {
 
@@ -347,6 +371,40 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
         close();
     }
 
+    /**
+     * Writes the LOB data to the file a chunk at a time.
+     */
+    private void writeToFile(File file) throws IOException {
+
+        FileOutputStream out = null;
+        try {
+
+            out = new FileOutputStream(file);
+
+            long position = 0;
+            long length = recordDataItem.getLobLength();
+            while (position < length) {
+
+                byte[] bytes = recordDataItem.getBytes(position, SAVE_CHUNK_SIZE);
+                if (bytes.length == 0) {
+
+                    break;
+                }
+
+                out.write(bytes);
+                position += bytes.length;
+            }
+
+        } finally {
+
+            if (out != null) {
+
+                out.close();
+            }
+        }
+
+    }
+
     public void close() {
 
         parent.finished();
@@ -356,17 +414,8 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
         if (!readOnly) {
             int selectedIndex = tabbedPane.getSelectedIndex();
             if (selectedIndex == 0)
-                if (!textArea.getText().equals(CANNOT_DISPLAY_BINARY_DATA_AS_TEXT)) {
-                    if (charset.equals(CreateTableSQLSyntax.NONE))
-                        binaryStringTextArea.setData(textArea.getText().getBytes());
-                    else try {
-                        binaryStringTextArea.setData(textArea.getText().getBytes(charset));
-                    } catch (UnsupportedEncodingException e1) {
-                        e1.printStackTrace();
-                        binaryStringTextArea.setData(textArea.getText().getBytes());
-                    }
-                }
-            if (!recordDataItemByteArray().equals(binaryStringTextArea.getDocument().getData())) {
+                applyTextChanges();
+            if (dataChanged || binaryStringTextArea.getDocument().isModified()) {
                 recordDataItem.valueChanged(binaryStringTextArea.getDocument().getData());
                 table.addTableDataChange(new TableDataChange(row));
             }
@@ -381,6 +430,7 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
             File file = fileChooser.getSelectedFile();
             try {
                 binaryStringTextArea = new HexEditor(new AnnotatedBinaryDocument(file), charset);
+                dataChanged = true;
                 scrollPane.setViewportView(binaryStringTextArea);
                 loadTextData();
                 if (isImage()) {
@@ -413,23 +463,67 @@ public class LobDataItemViewerPanel extends DefaultActionButtonsPanel
             textArea.requestFocus();
         }
         if (selectedIndex == 2) {
-            if (!textArea.getText().equals(CANNOT_DISPLAY_BINARY_DATA_AS_TEXT)) {
-                if (charset.equals(CreateTableSQLSyntax.NONE))
-                    binaryStringTextArea.setData(textArea.getText().getBytes());
-                else try {
-                    binaryStringTextArea.setData(textArea.getText().getBytes(charset));
-                } catch (UnsupportedEncodingException e1) {
-                    e1.printStackTrace();
-                    binaryStringTextArea.setData(textArea.getText().getBytes());
-                }
-            }
+            applyTextChanges();
         }
     }
 
-}
+    /**
+     * Copies the text tab into the binary document where it was edited.
+     */
+    private void applyTextChanges() {
+
+        String text = textArea.getText();
+        if (loadedText == null || text.equals(loadedText)) {
+
+            return;
+        }
+
+        if (charset.equals(CreateTableSQLSyntax.NONE))
+            binaryStringTextArea.setData(text.getBytes());
+        else try {
+            binaryStringTextArea.setData(text.getBytes(charset));
+        } catch (UnsupportedEncodingException e1) {
+            e1.printStackTrace();
+            binaryStringTextArea.setData(text.getBytes());
+        }
+        loadedText = text;
+    }
+
+    /**
+     * Reads the LOB data of the record item on demand for the binary document.
+     */
+    private static class RecordDataItemByteSource implements ByteSource {
+
+        private final LobRecordDataItem recordDataItem;
 
+        private final long length;
 
+        RecordDataItemByteSource(LobRecordDataItem recordDataItem) {
 
+            this.recordDataItem = recordDataItem;
+            length = recordDataItem.getLobLength();
+        }
+
+        @Override
+        public long length() {
+
+            return length;
+        }
+
+        @Override
+        public int read(long offset, byte[] b, int off, int len) {
+
+            byte[] bytes = recordDataItem.getBytes(offset, len);
+            if (bytes.length == 0) {
 
+                return -1;
+            }
+
+            System.arraycopy(bytes, 0, b, off, bytes.length);
+            return bytes.length;
+        }
 
+    }
+
+}
 
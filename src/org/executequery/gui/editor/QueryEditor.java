@@ -1252,6 +1252,22 @@ public class QueryEditor extends DefaultTabView
         delegate.executeQuery(getSelectedConnection(), query, executeAsBlock);
     }
 
+    /**
+     * Executes the editor text in a new session of its own
+     * committed once executed.
+     */
+    public void executeInNewSession() {
+
+        preExecute();
+
+        String query = editorPanel.getQueryAreaText();
+
+        editorPanel.resetExecutingLine();
+        boolean executeAsBlock = new SqlParser(query).isExecuteBlock();
+
+        delegate.executeQueryInNewSession(getSelectedConnection(), query, executeAsBlock);
+    }
+
     public void executeSQLScript(String script) {
 
         preExecute();
@@ -171,6 +171,29 @@ public class QueryEditorDelegate implements QueryDelegate {
 
     }
 
+    public void executeQueryInNewSession(DatabaseConnection selectedConnection,
+                                         String query, boolean executeAsBlock) {
+
+        if (dispatcher.isExecuting()) {
+
+            return;
+        }
+
+        if (query == null) {
+
+            query = queryEditor.getEditorText();
+        }
+
+        if (StringUtils.isNotBlank(query)) {
+
+            currentStatementHistoryIndex = -1;
+            queryEditor.setHasPreviousStatement(true);
+            queryEditor.setHasNextStatement(false);
+            dispatcher.executeSQLQueryInNewSession(selectedConnection, query, executeAsBlock);
+        }
+
+    }
+
     public void executeScript(DatabaseConnection selectedConnection,
                               String script) {
 
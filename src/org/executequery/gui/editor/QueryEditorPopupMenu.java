@@ -64,6 +64,7 @@ public class QueryEditorPopupMenu extends JPopupMenu
         //add(createPartialExecuteMenuItem());
         add(createExecuteSelectionMenuItem());
         add(createExecuteBlockMenuItem());
+        add(createExecuteActionMenuItem("execute-in-new-session-command", bundleString("execute-in-new-session-command")));
         add(createStopMenuItem());
 
         addSeparator();
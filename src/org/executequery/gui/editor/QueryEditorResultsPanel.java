@@ -36,6 +36,7 @@ import org.underworldlabs.swing.plaf.TabRollOverListener;
 import org.underworldlabs.swing.plaf.TabRolloverEvent;
 import org.underworldlabs.swing.plaf.TabSelectionListener;
 import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.SystemProperties;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -131,6 +132,7 @@ public class QueryEditorResultsPanel extends SimpleCloseTabbedPane
 
         outputTextPane = new LoggingOutputPanel();
         outputTextPane.setBorder(null);
+        outputTextPane.setMaxLines(SystemProperties.getIntProperty("user", "editor.output.max.lines"));
 
         outputTabIcon = GUIUtilities.loadIcon("SystemOutput.png", true);
         resultSetTabIcon = GUIUtilities.loadIcon("FrameIcon16.png", true);
@@ -287,6 +289,20 @@ public class QueryEditorResultsPanel extends SimpleCloseTabbedPane
         setVisible(true);
     }
 
+    @Override
+    public void removeTabAt(int index) {
+
+        Component component = getComponentAt(index);
+        super.removeTabAt(index);
+
+        // a closed results tab releases its model
+        if (component instanceof ResultSetPanel) {
+
+            ((ResultSetPanel) component).destroyTable();
+        }
+
+    }
+
     public boolean hasOutputPane() {
 
         return getResultSetTabCount() == (getTabCount() - 1);
@@ -365,6 +381,7 @@ public class QueryEditorResultsPanel extends SimpleCloseTabbedPane
         int rowCount = getResultSetRowCount(model, showRowNumber);
         if (rowCount == 0) {
 
+            model.close();
             return rowCount;
         }
 
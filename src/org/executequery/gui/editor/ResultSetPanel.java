@@ -129,6 +129,9 @@ public class ResultSetPanel extends JPanel {
     }
 
     public void destroyTable() {
+        if (model != null) {
+            model.close();
+        }
         table = null;
         if (popupMenu != null) {
             popupMenu.removeAll();
@@ -147,12 +150,12 @@ public class ResultSetPanel extends JPanel {
         List<List<RecordDataItem>> filteredRows = new ArrayList<List<RecordDataItem>>();
         for (int i = 0, n = model.getRowCount(); i < n; i++) {
 
-            List<RecordDataItem> row = model.getRowDataForRow(i);
+            List<RecordDataItem> row = model.peekRowDataForRow(i);
             for (RecordDataItem recordDataItem : row) {
 
                 if (recordDataItem.valueContains(pattern)) {
 
-                    filteredRows.add(row);
+                    filteredRows.add(model.getRowDataForRow(i));
                     break;
                 }
 
@@ -164,6 +167,9 @@ public class ResultSetPanel extends JPanel {
 
     public int setResultSet(ResultSetTableModel model, boolean showRowNumber) {
 
+        if (this.model != null && this.model != model) {
+            this.model.close();
+        }
         this.model = model;
 
         int rowCount = model.getRowCount();
@@ -21,122 +21,117 @@
 package org.executequery.gui.editor;
 
 import org.executequery.Constants;
+import org.executequery.sql.SqlLexer;
 import org.underworldlabs.util.MiscUtils;
 
+import java.io.IOException;
+
+/**
+ * Finds the query around a position in the editor text.
+ * <p/>
+ * Queries are separated by blank lines. Blank lines within strings,
+ * comments and BEGIN...END blocks do not separate queries.
+ *
+ * @author Takis Diakoumis
+ */
 public class SQLQueryFilter {
 
     public String extractQueryAt(String text, int position) {
 
+        return queryAt(text, position).getQuery();
+    }
+
+    /**
+     * Returns the query around the specified position or, where the position
+     * is between queries, the query before it (the first query if none).
+     */
+    public QueryWithPosition queryAt(String text, int position) {
+
         if (MiscUtils.isNull(text)) {
 
-            return Constants.EMPTY;
+            return new QueryWithPosition(0, 0, 0, Constants.EMPTY);
         }
 
-        char[] chars = text.toCharArray();
-
-        if (position == chars.length) {
+        if (position == text.length()) {
 
             position--;
         }
 
         int start = -1;
         int end = -1;
-        boolean wasSpaceChar = false;
-
-        // determine the start point
-        for (int i = position; i >= 0; i--) {
+        int queryStart = -1;
+        int queryEnd = -1;
 
-            if (chars[i] == Constants.NEW_LINE_CHAR) {
+        SqlLexer lexer = new SqlLexer(text);
+        try {
 
-                if (i == 0 || wasSpaceChar) {
+            int type;
+            while ((type = lexer.next()) != SqlLexer.END) {
 
-                    break;
+                if (type == SqlLexer.WHITESPACE) {
 
-                } else if (start != -1) {
+                    if (start != -1 && lexer.getDepth() == 0 && isBlankLine(lexer.getText())) {
 
-                    if (chars[i - 1] == Constants.NEW_LINE_CHAR) {
-
-                        break;
+                        if (start > position && queryStart != -1) {
 
-                    } else if (Character.isSpaceChar(chars[i - 1])) {
+                            break;
+                        }
 
-                        wasSpaceChar = true;
-                        i--;
+                        queryStart = start;
+                        queryEnd = end;
+                        start = -1;
                     }
 
+                    continue;
                 }
 
-            } else if (!Character.isSpaceChar(chars[i])) {
+                if (start == -1) {
 
-                wasSpaceChar = false;
-                start = i;
-            }
-
-        }
-
-        if (start < 0) { // text not found
-
-            for (int j = 0; j < chars.length; j++) {
+                    if (lexer.getTokenStart() > position && queryStart != -1) {
 
-                if (!Character.isWhitespace(chars[j])) {
+                        break;
+                    }
 
-                    start = j;
-                    break;
+                    start = (int) lexer.getTokenStart();
                 }
 
+                end = (int) lexer.getTokenEnd();
             }
 
-        }
-
-        // determine the end point 
-        for (int i = start; i < chars.length; i++) {
+        } catch (IOException e) {
 
-            if (chars[i] == Constants.NEW_LINE_CHAR) {
-
-                if (i == chars.length - 1 || wasSpaceChar) {
+            // not thrown reading text held in memory
+            throw new IllegalStateException(e);
+        }
 
-                    if (end == -1) {
+        if (start != -1 && (start <= position || queryStart == -1)) {
 
-                        end = i;
-                    }
-                    break;
-
-                } else if (end != -1) {
+            queryStart = start;
+            queryEnd = end;
+        }
 
-                    if (chars[i + 1] == Constants.NEW_LINE_CHAR) {
+        if (queryStart == -1) {
 
-                        break;
+            return new QueryWithPosition(position, 0, 0, Constants.EMPTY);
+        }
 
-                    } else if (Character.isSpaceChar(chars[i + 1])) {
+        return new QueryWithPosition(position, queryStart, queryEnd, text.substring(queryStart, queryEnd));
+    }
 
-                        wasSpaceChar = true;
-                        i++;
-                    }
+    private boolean isBlankLine(CharSequence whitespace) {
 
-                }
+        int lines = 0;
+        for (int i = 0, n = whitespace.length(); i < n; i++) {
 
-            } else if (!Character.isSpaceChar(chars[i])) {
+            if (whitespace.charAt(i) == Constants.NEW_LINE_CHAR && ++lines == 2) {
 
-                end = i;
-                wasSpaceChar = false;
+                return true;
             }
 
         }
 
-        String query = text.substring(start, end + 1);
-
-        if ((MiscUtils.isNull(query) && start != 0) || start == end) {
-
-            return extractQueryAt(text, start);
-        }
-
-        return query;
+        return false;
     }
 
 }
 
-
-
-
-
-
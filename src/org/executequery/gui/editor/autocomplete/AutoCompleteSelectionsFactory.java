@@ -24,21 +24,21 @@ import biz.redsoft.IFBDatabaseConnection;
 import org.apache.commons.lang.StringUtils;
 import org.executequery.databasemediators.DatabaseConnection;
 import org.executequery.databasemediators.DatabaseDriver;
+import org.executequery.databaseobjects.DatabaseColumn;
 import org.executequery.databaseobjects.DatabaseHost;
 import org.executequery.databaseobjects.DatabaseSource;
 import org.executequery.databaseobjects.impl.ColumnInformation;
 import org.executequery.databaseobjects.impl.ColumnInformationFactory;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshot;
+import org.executequery.databaseobjects.snapshot.MetadataSnapshots;
 import org.executequery.datasource.DefaultDriverLoader;
 import org.executequery.gui.editor.QueryEditor;
 import org.executequery.gui.text.SQLTextPane;
 import org.executequery.log.Log;
 import org.executequery.repository.KeywordRepository;
 import org.executequery.repository.RepositoryCache;
-import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.DynamicLibraryLoader;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.*;
 import java.util.*;
 
@@ -101,22 +101,11 @@ public class AutoCompleteSelectionsFactory {
                         e.printStackTrace();
                     }
 
-                    URL[] urls = new URL[0];
-                    Class clazzdb = null;
                     Object odb = null;
                     try {
-                        urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                        ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-                        clazzdb = cl.loadClass("biz.redsoft.FBDatabaseConnectionImpl");
-                        odb = clazzdb.newInstance();
+                        odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBDatabaseConnectionImpl");
                     } catch (ClassNotFoundException e) {
                         e.printStackTrace();
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    } catch (InstantiationException e) {
-                        e.printStackTrace();
-                    } catch (MalformedURLException e) {
-                        e.printStackTrace();
                     }
 
                     IFBDatabaseConnection db = (IFBDatabaseConnection) odb;
@@ -182,22 +171,11 @@ public class AutoCompleteSelectionsFactory {
                         e.printStackTrace();
                     }
 
-                    URL[] urls = new URL[0];
-                    Class clazzdb = null;
                     Object odb = null;
                     try {
-                        urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                        ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-                        clazzdb = cl.loadClass("biz.redsoft.FBDatabaseConnectionImpl");
-                        odb = clazzdb.newInstance();
+                        odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBDatabaseConnectionImpl");
                     } catch (ClassNotFoundException e) {
                         e.printStackTrace();
-                    } catch (IllegalAccessException e) {
-                        e.printStackTrace();
-                    } catch (InstantiationException e) {
-                        e.printStackTrace();
-                    } catch (MalformedURLException e) {
-                        e.printStackTrace();
                     }
 
                     IFBDatabaseConnection db = (IFBDatabaseConnection) odb;
@@ -324,6 +302,22 @@ public class AutoCompleteSelectionsFactory {
 
         trace("Building autocomplete object list using [ " + databaseHost.getName() + " ] for type - " + type);
 
+        MetadataSnapshot snapshot = MetadataSnapshots.get(databaseHost.getDatabaseConnection());
+        if (snapshot != null && MetadataSnapshot.isRelationType(type)) {
+
+            List<String> tableNames = new ArrayList<String>();
+            for (MetadataSnapshot.Relation relation : snapshot.getRelations(type)) {
+
+                tableNames.add(relation.getName());
+            }
+
+            addTablesToProvider(databaseObjectDescription, autocompleteType,
+                    tableNames, new ArrayList<AutoCompleteListItem>());
+
+            trace("Finished autocomplete object list using [ " + databaseHost.getName() + " ] for type - " + type);
+            return;
+        }
+
         ResultSet rs = null;
         DatabaseMetaData databaseMetaData = databaseHost.getDatabaseMetaData();
         try {
@@ -667,18 +661,36 @@ public class AutoCompleteSelectionsFactory {
 
         try {
 
-            rs = dmd.getColumns(catalog, schema, tableString, null);
-            while (rs.next()) {
+            if (MetadataSnapshots.get(databaseHost.getDatabaseConnection()) != null) {
 
-                String name = rs.getString(4);
-                columns.add(columnInformationFactory.build(
-                        tableString,
-                        name,
-                        rs.getString(6),
-                        rs.getInt(5),
-                        rs.getInt(7),
-                        rs.getInt(9),
-                        rs.getInt(11) == DatabaseMetaData.columnNoNulls));
+                // read from the host's metadata snapshot
+                for (DatabaseColumn column : databaseHost.getColumns(catalog, schema, tableString)) {
+
+                    columns.add(columnInformationFactory.build(
+                            tableString,
+                            column.getName(),
+                            column.getTypeName(),
+                            column.getTypeInt(),
+                            column.getColumnSize(),
+                            column.getColumnScale(),
+                            column.isRequired()));
+                }
+
+            } else {
+
+                rs = dmd.getColumns(catalog, schema, tableString, null);
+                while (rs.next()) {
+
+                    String name = rs.getString(4);
+                    columns.add(columnInformationFactory.build(
+                            tableString,
+                            name,
+                            rs.getString(6),
+                            rs.getInt(5),
+                            rs.getInt(7),
+                            rs.getInt(9),
+                            rs.getInt(11) == DatabaseMetaData.columnNoNulls));
+                }
             }
 
             for (ColumnInformation column : columns) {
@@ -234,20 +234,10 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             */
             // ----------------------------------------------------------------
 
-            // modified above to regex below
+            // modified above to the regex in createValuePattern
             // added the look-ahead after the close quote
             // and removed the quote from the last regex pattern
 
-            String escapedDelim = escapeDelim(delim);
-
-            String regex =
-                    "(?:^|" +
-                            escapedDelim +
-                            ") (?: \" ( (?> [^\"]*+ ) (?> \"\" [^\"]*+ )*+ ) \"(?=" +
-                            escapedDelim +
-                            "?) | ( [^" +
-                            escapedDelim + "]*+ ) )";
-
             // ----------------------------------------------------------------
             // changed above to the following - seems to work for now
             // regex pattern in full - where <delim> is the delimiter to use
@@ -256,7 +246,7 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
             // fixed oreilly one - not running this one
             // ----------------------------------------------------------------
 
-            Matcher matcher = Pattern.compile(regex, Pattern.COMMENTS).matcher("");
+            Matcher matcher = createValuePattern(delim).matcher("");
             Matcher qMatcher = Pattern.compile("\"\"", Pattern.COMMENTS).matcher("");
 
             // ----------------------------------------
@@ -959,7 +949,29 @@ public class ImportDelimitedWorker extends AbstractImportExportWorker {
         return processResult;
     }
 
-    private String escapeDelim(String delim) {
+    /**
+     * Creates the pattern matching the next value of a delimited row -
+     * group 1 is a quoted value (with any quotes doubled), group 2 a plain value.
+     *
+     * @param delim the value delimiter
+     * @return the delimited value pattern
+     */
+    public static Pattern createValuePattern(String delim) {
+
+        String escapedDelim = escapeDelim(delim);
+
+        String regex =
+                "(?:^|" +
+                        escapedDelim +
+                        ") (?: \" ( (?> [^\"]*+ ) (?> \"\" [^\"]*+ )*+ ) \"(?=" +
+                        escapedDelim +
+                        "?) | ( [^" +
+                        escapedDelim + "]*+ ) )";
+
+        return Pattern.compile(regex, Pattern.COMMENTS);
+    }
+
+    private static String escapeDelim(String delim) {
 
         String escape = "\\";
 
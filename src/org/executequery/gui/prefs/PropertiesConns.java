@@ -69,6 +69,41 @@ public class PropertiesConns extends AbstractPropertiesBasePanel {
                 bundledString("Connection.shutdown.timeout"),
                 Integer.valueOf(SystemProperties.getProperty("user", key))));
 
+        key = "connection.statement.cache.size";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("StatementCacheSize"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.leak.detection";
+        list.add(new UserPreference(
+                UserPreference.BOOLEAN_TYPE,
+                key,
+                bundledString("LeakDetection"),
+                Boolean.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.leak.threshold";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("LeakThreshold"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.metadata.cache";
+        list.add(new UserPreference(
+                UserPreference.BOOLEAN_TYPE,
+                key,
+                bundledString("MetadataCache"),
+                Boolean.valueOf(SystemProperties.getProperty("user", key))));
+
+        key = "connection.metadata.load.threads";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                key,
+                bundledString("MetadataLoadThreads"),
+                Integer.valueOf(SystemProperties.getProperty("user", key))));
+
         key = "startup.connection.name";
         list.add(new UserPreference(
                 UserPreference.STRING_TYPE,
@@ -128,6 +128,30 @@ public class PropertiesEditorGeneral extends AbstractPropertiesBasePanel {
                 bundledString("RemoveCommentsForExecution"),
                 Boolean.valueOf(stringUserProperty(key))));
 
+        key = "editor.execute.batch.size";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                6,
+                key,
+                bundledString("ScriptBatchSize"),
+                stringUserProperty(key)));
+
+        key = "editor.output.max.lines";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                7,
+                key,
+                bundledString("OutputPaneMaxLines"),
+                stringUserProperty(key)));
+
+        key = "editor.execution.threads";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                3,
+                key,
+                bundledString("ExecutionThreads"),
+                stringUserProperty(key)));
+
         key = "editor.max.records";
         list.add(new UserPreference(
                 UserPreference.INTEGER_TYPE,
@@ -154,6 +154,21 @@ public class PropertiesResultSetTableGeneral extends AbstractPropertiesBasePanel
                 bundledString("FetchSize"),
                 Integer.valueOf(stringUserProperty(key))));
 
+        key = "results.table.prefetch";
+        list.add(new UserPreference(
+                UserPreference.BOOLEAN_TYPE,
+                key,
+                bundledString("PrefetchRecordsInBackground"),
+                Boolean.valueOf(stringUserProperty(key))));
+
+        key = "results.table.memory.budget";
+        list.add(new UserPreference(
+                UserPreference.INTEGER_TYPE,
+                5,
+                key,
+                bundledString("ResultSetMemoryBudget"),
+                SystemProperties.getProperty("user", key)));
+
         UserPreference[] preferences =
                 list.toArray(new UserPreference[list.size()]);
         preferencesPanel = new SimplePreferencesPanel(preferences);
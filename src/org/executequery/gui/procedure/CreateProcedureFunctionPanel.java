@@ -1,9 +1,5 @@
 package org.executequery.gui.procedure;
 
-import org.antlr.v4.runtime.ANTLRErrorListener;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.ConsoleErrorListener;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.executequery.GUIUtilities;
@@ -21,12 +17,13 @@ import org.executequery.gui.text.SimpleTextArea;
 import org.executequery.gui.text.TextEditor;
 import org.executequery.gui.text.TextEditorContainer;
 import org.executequery.log.Log;
+import org.executequery.sql.ParsingService;
 import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.procedureParser.ProcedureParserBaseListener;
-import org.underworldlabs.procedureParser.ProcedureParserLexer;
 import org.underworldlabs.procedureParser.ProcedureParserParser;
 import org.underworldlabs.swing.GUIUtils;
 import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.ThreadLocalParser;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -152,15 +149,11 @@ public abstract class CreateProcedureFunctionPanel extends AbstractCreateObjectP
 
         String fullProcedureBody = getFullSourceBody();
         if (fullProcedureBody != null && !fullProcedureBody.isEmpty()) {
-            ProcedureParserLexer lexer = new ProcedureParserLexer(CharStreams.fromString(fullProcedureBody));
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-            ProcedureParserParser sqlparser = new ProcedureParserParser(tokens);
-            List<? extends ANTLRErrorListener> listeners = sqlparser.getErrorListeners();
-            for (int i = 0; i < listeners.size(); i++) {
-                if (listeners.get(i) instanceof ConsoleErrorListener)
-                    sqlparser.removeErrorListener(listeners.get(i));
-            }
-            ParseTree tree = sqlparser.declare_block_without_params();
+            ParseTree tree = ParsingService.PROCEDURE.parse(fullProcedureBody, new ThreadLocalParser.Rule<ProcedureParserParser>() {
+                public ParseTree parse(ProcedureParserParser parser) {
+                    return parser.declare_block_without_params();
+                }
+            });
             ParseTreeWalker walker = new ParseTreeWalker();
             walker.walk(new ProcedureParserBaseListener() {
                 @Override
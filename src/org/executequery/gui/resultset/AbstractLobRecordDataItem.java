@@ -20,9 +20,24 @@
 
 package org.executequery.gui.resultset;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
 public abstract class AbstractLobRecordDataItem extends AbstractRecordDataItem
         implements LobRecordDataItem {
 
+    /**
+     * Size of the chunks LOB data is read in.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Largest LOB that may be loaded into a single array.
+     */
+    static final int MAX_LOADED_LENGTH = Integer.MAX_VALUE - 8;
+
     private byte[] data;
 
     public AbstractLobRecordDataItem(String name, int dataType, String dataTypeName) {
@@ -36,6 +51,29 @@ public abstract class AbstractLobRecordDataItem extends AbstractRecordDataItem
         return (data == null ? 0 : data.length);
     }
 
+    @Override
+    public long getLobLength() {
+
+        if (data == null && !isNew()) {
+
+            return isValueNull() ? 0 : readLobLength();
+        }
+
+        return data == null ? 0 : data.length;
+    }
+
+    @Override
+    public byte[] getBytes(long position, int length) {
+
+        if (data == null && !isNew()) {
+
+            byte[] bytes = isValueNull() ? null : readLob(position, length);
+            return bytes != null ? bytes : new byte[0];
+        }
+
+        return slice(data, position, length);
+    }
+
     @Override
     public byte[] getData() {
 
@@ -85,6 +123,79 @@ public abstract class AbstractLobRecordDataItem extends AbstractRecordDataItem
 
     abstract byte[] readLob();
 
+    /**
+     * Reads up to <code>length</code> bytes of the LOB
+     * from the specified zero based position.
+     */
+    abstract byte[] readLob(long position, int length);
+
+    abstract long readLobLength();
+
+    @Override
+    public void releaseLob() {
+
+        if (!isValueNull()) {
+
+            closeLob();
+        }
+    }
+
+    /**
+     * Closes the LOB handle held as the value, if any.
+     */
+    abstract void closeLob();
+
+    static byte[] slice(byte[] bytes, long position, int length) {
+
+        if (bytes == null) {
+
+            return new byte[0];
+        }
+
+        int from = (int) Math.min(position, bytes.length);
+        return Arrays.copyOfRange(bytes, from, (int) Math.min(bytes.length, from + (long) length));
+    }
+
+    /**
+     * Reads up to <code>length</code> bytes from the stream after
+     * skipping to the specified position.
+     */
+    static byte[] readStream(InputStream in, long position, int length) throws IOException {
+
+        long skipped = 0;
+        while (skipped < position) {
+
+            long count = in.skip(position - skipped);
+            if (count <= 0) {
+
+                if (in.read() == -1) {
+
+                    return new byte[0];
+                }
+                count = 1;
+            }
+            skipped += count;
+        }
+
+        byte[] b = new byte[Math.min(length, CHUNK_SIZE)];
+        ByteArrayOutputStream result = new ByteArrayOutputStream(b.length);
+
+        int remaining = length;
+        while (remaining > 0) {
+
+            int count = in.read(b, 0, Math.min(b.length, remaining));
+            if (count == -1) {
+
+                break;
+            }
+
+            result.write(b, 0, count);
+            remaining -= count;
+        }
+
+        return result.toByteArray();
+    }
+
     @Override
     public String asBinaryString() {
 
@@ -92,6 +203,7 @@ public abstract class AbstractLobRecordDataItem extends AbstractRecordDataItem
         String stripPrefix = "ffffff";
 
         int defaultBytesToProcess = 496;
+        byte[] data = getBytes(0, defaultBytesToProcess);
         int bytesToProcess = Math.min(data.length, defaultBytesToProcess);
 
         StringBuilder sb = new StringBuilder();
@@ -35,6 +35,11 @@ public class BlobRecordDataItem extends AbstractLobRecordDataItem {
 
     private static final String BLOB_DATA_OBJECT = "<BLOB Data Object>";
 
+    /**
+     * Number of leading bytes read to determine the MIME type.
+     */
+    public static final int MIME_SNIFF_LENGTH = 4096;
+
     public BlobRecordDataItem(String name, int dataType, String dataTypeName) {
 
         super(name, dataType, dataTypeName);
@@ -54,7 +59,7 @@ public class BlobRecordDataItem extends AbstractLobRecordDataItem {
     @Override
     public String getLobRecordItemName() {
 
-        MimeType mimeType = mimeTypeFromByteArray(getData());
+        MimeType mimeType = mimeTypeFromByteArray(getBytes(0, MIME_SNIFF_LENGTH));
         if (mimeType != null) {
 
             return mimeType.getName();
@@ -83,16 +88,32 @@ public class BlobRecordDataItem extends AbstractLobRecordDataItem {
     @Override
     protected byte[] readLob() {
 
+        if (isValueNull())
+            return null;
+
+        long length = readLobLength();
+        if (length > MAX_LOADED_LENGTH) {
+
+            Log.error("BLOB data of " + length + " bytes is too large to be loaded into memory");
+            return new byte[0];
+        }
+
+        return readLob(0, (int) length);
+    }
+
+    @Override
+    byte[] readLob(long position, int length) {
+
         if (isValueNull())
             return null;
         Object value = getValue();
         if (value instanceof String) { // eg. oracle RAW type
 
-            return ((String) getValue()).getBytes();
+            return slice(((String) value).getBytes(), position, length);
 
         } else if (value instanceof byte[]) {
 
-            return (byte[]) value;
+            return slice((byte[]) value, position, length);
         }
 
         byte[] blobBytes = new byte[0];
@@ -100,8 +121,10 @@ public class BlobRecordDataItem extends AbstractLobRecordDataItem {
         if (value.getClass().getName().contains("FBBlobImpl")) {
             IFBBlob ifbBlob = (IFBBlob) value;
             try {
-                blobBytes = ifbBlob.getBytes(1, (int) ifbBlob.lenght());
-                ifbBlob.close();
+                int count = chunkLength(ifbBlob.lenght(), position, length);
+                if (count > 0) {
+                    blobBytes = ifbBlob.getBytes(position + 1, count);
+                }
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -109,7 +132,10 @@ public class BlobRecordDataItem extends AbstractLobRecordDataItem {
             Blob blob = (Blob) value;
             try {
 
-                blobBytes = blob.getBytes(1, (int) blob.length());
+                int count = chunkLength(blob.length(), position, length);
+                if (count > 0) {
+                    blobBytes = blob.getBytes(position + 1, count);
+                }
                 //executor.releaseResources();
 
             } catch (SQLException e) {
@@ -126,6 +152,60 @@ public class BlobRecordDataItem extends AbstractLobRecordDataItem {
         return blobBytes;
     }
 
+    @Override
+    long readLobLength() {
+
+        Object value = getValue();
+        if (value instanceof String) {
+
+            return ((String) value).getBytes().length;
+
+        } else if (value instanceof byte[]) {
+
+            return ((byte[]) value).length;
+
+        } else if (value.getClass().getName().contains("FBBlobImpl")) {
+
+            return ((IFBBlob) value).lenght();
+        }
+
+        try {
+
+            return ((Blob) value).length();
+
+        } catch (SQLException e) {
+
+            if (Log.isDebugEnabled()) {
+
+                Log.debug("Error reading BLOB length", e);
+            }
+
+            return 0;
+        }
+    }
+
+    @Override
+    void closeLob() {
+
+        Object value = getValue();
+        if (value.getClass().getName().contains("FBBlobImpl")) {
+
+            try {
+
+                ((IFBBlob) value).close();
+
+            } catch (SQLException e) {
+
+                Log.debug("Error closing BLOB", e);
+            }
+        }
+    }
+
+    private int chunkLength(long lobLength, long position, int length) {
+
+        return (int) Math.max(0, Math.min(length, lobLength - position));
+    }
+
     private MimeType mimeTypeFromByteArray(byte[] data) {
 
         return MimeTypes.get().getMimeType(data);
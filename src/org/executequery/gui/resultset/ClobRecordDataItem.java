@@ -28,8 +28,6 @@ import org.executequery.log.Log;
 import org.underworldlabs.util.SystemProperties;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.sql.Clob;
 import java.sql.SQLException;
@@ -123,150 +121,100 @@ public class ClobRecordDataItem extends AbstractLobRecordDataItem {
     @Override
     protected byte[] readLob() {
 
+        return readLob(0, MAX_LOADED_LENGTH);
+    }
+
+    protected byte[] readLob(int displayLength) {
+
+        return readLob(0, displayLength);
+    }
+
+    @Override
+    byte[] readLob(long position, int length) {
+
         if (isValueNull())
             return null;
 
         Object value = getValue();
         if (value instanceof String) {
 
-            return ((String) value).getBytes();
+            return slice(((String) value).getBytes(), position, length);
         }
 
-        if (value.getClass().getName().contains("FBClobImpl")) {
-            IFBClob ifbClob = (IFBClob) value;
-            InputStream as;
-            try {
-                as = ifbClob.open();
-                byte[] b = new byte[1024];
-                ByteArrayOutputStream result = new ByteArrayOutputStream();
-                int length;
-                while ((length = as.read(b)) != -1) {
-                    result.write(b, 0, length);
-                }
-                as.close();
-                ifbClob.close();
-                return result.toByteArray();
+        try {
 
+            if (value.getClass().getName().contains("FBClobImpl")) {
 
-                //reader = clob.getCharacterStream();
+                IFBClob ifbClob = (IFBClob) value;
+                int count = (int) Math.max(0, Math.min(length, ifbClob.length() - position));
+                return count > 0 ? ifbClob.getBytes(position + 1, count) : new byte[0];
 
-            } catch (SQLException e) {
+            } else {
 
-                if (Log.isDebugEnabled()) {
-
-                    Log.debug("Error reading CLOB data", e);
-                }
-
-                return e.getMessage().getBytes();
-            } catch (Exception e) {
-                Log.error("Error reading CLOB data:" + e.getMessage());
-                return "Error reading CLOB data:".getBytes();
+                Clob clob = (Clob) value;
+                return readStream(clob.getAsciiStream(), position, length);
             }
-        } else {
 
-            Clob clob = (Clob) value;
-            InputStream as;
-            try {
-                as = clob.getAsciiStream();
-                byte[] b = new byte[1024];
-                ByteArrayOutputStream result = new ByteArrayOutputStream();
-                int length;
-                while ((length = as.read(b)) != -1) {
-                    result.write(b, 0, length);
-                }
-                return result.toByteArray();
+            //reader = clob.getCharacterStream();
 
+        } catch (SQLException e) {
 
-                //reader = clob.getCharacterStream();
+            if (Log.isDebugEnabled()) {
 
-            } catch (SQLException e) {
+                Log.debug("Error reading CLOB data", e);
+            }
 
-                if (Log.isDebugEnabled()) {
+            return e.getMessage().getBytes();
 
-                    Log.debug("Error reading CLOB data", e);
-                }
+        } catch (Exception e) {
 
-                return e.getMessage().getBytes();
-            } catch (Exception e) {
-                Log.error("Error reading CLOB data:" + e.getMessage());
-                return "Error reading CLOB data:".getBytes();
-            }
+            Log.error("Error reading CLOB data:" + e.getMessage());
+            return "Error reading CLOB data:".getBytes();
         }
     }
 
-    protected byte[] readLob(int displayLength) {
-
-        if (isValueNull())
-            return null;
+    @Override
+    long readLobLength() {
 
         Object value = getValue();
         if (value instanceof String) {
 
-            return ((String) value).getBytes();
+            return ((String) value).getBytes().length;
         }
 
-        if (value.getClass().getName().contains("FBClobImpl")) {
-            IFBClob ifbClob = (IFBClob) value;
-            InputStream as;
-            try {
-                as = ifbClob.open();
-                byte[] b = new byte[1024];
-                ByteArrayOutputStream result = new ByteArrayOutputStream();
-                int length;
-                int i = 0;
-                while ((length = as.read(b)) != -1 && i < displayLength) {
-                    result.write(b, 0, length);
-                    i += length;
-                }
-                as.close();
-                ifbClob.close();
-                return result.toByteArray();
+        try {
 
+            if (value.getClass().getName().contains("FBClobImpl")) {
 
-                //reader = clob.getCharacterStream();
+                return ((IFBClob) value).length();
+            }
 
-            } catch (SQLException e) {
+            return ((Clob) value).length();
 
-                if (Log.isDebugEnabled()) {
+        } catch (SQLException e) {
 
-                    Log.debug("Error reading CLOB data", e);
-                }
+            if (Log.isDebugEnabled()) {
 
-                return e.getMessage().getBytes();
-            } catch (Exception e) {
-                Log.error("Error reading CLOB data:" + e.getMessage());
-                return "Error reading CLOB data:".getBytes();
+                Log.debug("Error reading CLOB length", e);
             }
-        } else {
 
-            Clob clob = (Clob) value;
-            InputStream as;
-            try {
-                as = clob.getAsciiStream();
-                byte[] b = new byte[1024];
-                ByteArrayOutputStream result = new ByteArrayOutputStream();
-                int i = 0;
-                int length;
-                while ((length = as.read(b)) != -1 && i < displayLength) {
-                    result.write(b, 0, length);
-                    i += length;
-                }
-                return result.toByteArray();
+            return 0;
+        }
+    }
 
+    @Override
+    void closeLob() {
 
-                //reader = clob.getCharacterStream();
+        Object value = getValue();
+        if (value.getClass().getName().contains("FBClobImpl")) {
 
-            } catch (SQLException e) {
+            try {
 
-                if (Log.isDebugEnabled()) {
+                ((IFBClob) value).close();
 
-                    Log.debug("Error reading CLOB data", e);
-                }
+            } catch (SQLException e) {
 
-                return e.getMessage().getBytes();
-            } catch (Exception e) {
-                Log.error("Error reading CLOB data:" + e.getMessage());
-                return "Error reading CLOB data:".getBytes();
+                Log.debug("Error closing CLOB", e);
             }
         }
     }
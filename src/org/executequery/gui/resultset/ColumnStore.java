@@ -0,0 +1,461 @@
+/*
+ * ColumnStore.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only storage for the values of a single result set column.
+ * <p/>
+ * Numeric columns are held in primitive arrays with a null bitmap,
+ * character columns are dictionary encoded and binary columns share
+ * a single byte buffer. A typed store falls back to plain object
+ * storage when the driver hands back a value it was not built for.
+ *
+ * @author Takis Diakoumis
+ */
+abstract class ColumnStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    protected int size;
+
+    static ColumnStore forType(int dataType) {
+
+        switch (dataType) {
+
+            case Types.INTEGER:
+                return new IntColumnStore();
+
+            case Types.BIGINT:
+                return new LongColumnStore();
+
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleColumnStore();
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+                return new StringColumnStore();
+
+            case Types.LONGVARBINARY:
+            case Types.VARBINARY:
+            case Types.BINARY:
+                return new BinaryColumnStore();
+
+            default:
+                return new ObjectColumnStore();
+        }
+
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Appends the specified value, returning the store that now holds
+     * the column - either this store or an object store it was promoted to.
+     */
+    ColumnStore add(Object value) {
+
+        if (value == null) {
+
+            addNull();
+            size++;
+            return this;
+        }
+
+        if (!accepts(value)) {
+
+            return promote().add(value);
+        }
+
+        addValue(value);
+        size++;
+        return this;
+    }
+
+    abstract Object get(int index);
+
+    abstract boolean accepts(Object value);
+
+    abstract void addValue(Object value);
+
+    abstract void addNull();
+
+    abstract void clear();
+
+    private ColumnStore promote() {
+
+        ObjectColumnStore store = new ObjectColumnStore();
+        for (int i = 0; i < size; i++) {
+
+            store.add(get(i));
+        }
+
+        return store;
+    }
+
+    static int grow(int capacity, int required) {
+
+        return Math.max(required, Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1)));
+    }
+
+    private abstract static class PrimitiveColumnStore extends ColumnStore {
+
+        private final BitSet nulls = new BitSet();
+
+        @Override
+        void addNull() {
+
+            ensureCapacity(size + 1);
+            nulls.set(size);
+        }
+
+        @Override
+        Object get(int index) {
+
+            return nulls.get(index) ? null : box(index);
+        }
+
+        @Override
+        void clear() {
+
+            nulls.clear();
+            size = 0;
+        }
+
+        abstract Object box(int index);
+
+        abstract void ensureCapacity(int required);
+
+    }
+
+    private static final class IntColumnStore extends PrimitiveColumnStore {
+
+        private int[] values = new int[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Integer;
+        }
+
+        @Override
+        void addValue(Object value) {
+
+            ensureCapacity(size + 1);
+            values[size] = (Integer) value;
+        }
+
+        @Override
+        Object box(int index) {
+            return values[index];
+        }
+
+        @Override
+        void ensureCapacity(int required) {
+
+            if (required > values.length) {
+
+                values = Arrays.copyOf(values, grow(values.length, required));
+            }
+        }
+
+    }
+
+    private static final class LongColumnStore extends PrimitiveColumnStore {
+
+        private long[] values = new long[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Long;
+        }
+
+        @Override
+        void addValue(Object value) {
+
+            ensureCapacity(size + 1);
+            values[size] = (Long) value;
+        }
+
+        @Override
+        Object box(int index) {
+            return values[index];
+        }
+
+        @Override
+        void ensureCapacity(int required) {
+
+            if (required > values.length) {
+
+                values = Arrays.copyOf(values, grow(values.length, required));
+            }
+        }
+
+    }
+
+    private static final class DoubleColumnStore extends PrimitiveColumnStore {
+
+        private double[] values = new double[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        void addValue(Object value) {
+
+            ensureCapacity(size + 1);
+            values[size] = (Double) value;
+        }
+
+        @Override
+        Object box(int index) {
+            return values[index];
+        }
+
+        @Override
+        void ensureCapacity(int required) {
+
+            if (required > values.length) {
+
+                values = Arrays.copyOf(values, grow(values.length, required));
+            }
+        }
+
+    }
+
+    /**
+     * Dictionary encoded strings. Once the dictionary stops paying for
+     * itself (mostly distinct values) new values are stored without lookup.
+     */
+    private static final class StringColumnStore extends ColumnStore {
+
+        private static final int DICTIONARY_CHECK_SIZE = 4096;
+
+        private static final int NULL_CODE = -1;
+
+        private int[] codes = new int[0];
+
+        private List<String> values = new ArrayList<String>();
+
+        private Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof String;
+        }
+
+        @Override
+        void addValue(Object value) {
+
+            ensureCapacity(size + 1);
+            codes[size] = encode((String) value);
+        }
+
+        @Override
+        void addNull() {
+
+            ensureCapacity(size + 1);
+            codes[size] = NULL_CODE;
+        }
+
+        @Override
+        Object get(int index) {
+
+            int code = codes[index];
+            return code == NULL_CODE ? null : values.get(code);
+        }
+
+        @Override
+        void clear() {
+
+            values.clear();
+            dictionary = new HashMap<String, Integer>();
+            size = 0;
+        }
+
+        private int encode(String value) {
+
+            if (dictionary != null) {
+
+                Integer code = dictionary.get(value);
+                if (code != null) {
+
+                    return code;
+                }
+
+                dictionary.put(value, values.size());
+                if (size >= DICTIONARY_CHECK_SIZE && dictionary.size() > size / 2) {
+
+                    dictionary = null;
+                }
+            }
+
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        private void ensureCapacity(int required) {
+
+            if (required > codes.length) {
+
+                codes = Arrays.copyOf(codes, grow(codes.length, required));
+            }
+        }
+
+    }
+
+    /**
+     * Binary values packed into one shared buffer and addressed by offset.
+     */
+    private static final class BinaryColumnStore extends ColumnStore {
+
+        private static final int NULL_LENGTH = -1;
+
+        private byte[] buffer = new byte[0];
+
+        private int bufferSize;
+
+        private int[] offsets = new int[0];
+
+        private int[] lengths = new int[0];
+
+        @Override
+        boolean accepts(Object value) {
+
+            return value instanceof byte[]
+                    && (long) bufferSize + ((byte[]) value).length < Integer.MAX_VALUE - 8;
+        }
+
+        @Override
+        void addValue(Object value) {
+
+            byte[] bytes = (byte[]) value;
+
+            ensureCapacity(size + 1);
+            if (bufferSize + bytes.length > buffer.length) {
+
+                buffer = Arrays.copyOf(buffer, (int) Math.min(
+                        Integer.MAX_VALUE - 8, Math.max(bufferSize + bytes.length, (long) grow(buffer.length, 0))));
+            }
+
+            System.arraycopy(bytes, 0, buffer, bufferSize, bytes.length);
+            offsets[size] = bufferSize;
+            lengths[size] = bytes.length;
+            bufferSize += bytes.length;
+        }
+
+        @Override
+        void addNull() {
+
+            ensureCapacity(size + 1);
+            lengths[size] = NULL_LENGTH;
+        }
+
+        @Override
+        Object get(int index) {
+
+            int length = lengths[index];
+            if (length == NULL_LENGTH) {
+
+                return null;
+            }
+
+            int offset = offsets[index];
+            return Arrays.copyOfRange(buffer, offset, offset + length);
+        }
+
+        @Override
+        void clear() {
+
+            buffer = new byte[0];
+            bufferSize = 0;
+            size = 0;
+        }
+
+        private void ensureCapacity(int required) {
+
+            if (required > offsets.length) {
+
+                int capacity = grow(offsets.length, required);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+        }
+
+    }
+
+    private static final class ObjectColumnStore extends ColumnStore {
+
+        private Object[] values = new Object[0];
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void addValue(Object value) {
+
+            ensureCapacity(size + 1);
+            values[size] = value;
+        }
+
+        @Override
+        void addNull() {
+
+            ensureCapacity(size + 1);
+            values[size] = null;
+        }
+
+        @Override
+        Object get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void clear() {
+
+            values = new Object[0];
+            size = 0;
+        }
+
+        private void ensureCapacity(int required) {
+
+            if (required > values.length) {
+
+                values = Arrays.copyOf(values, grow(values.length, required));
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,480 @@
+/*
+ * ColumnarTableData.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import org.executequery.log.Log;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column oriented row storage backing the result set table model.
+ * <p/>
+ * Fetched values live in per-column {@link ColumnStore}s. Record data
+ * items are built on demand - rows that are edited, deleted, added or
+ * otherwise handed out as a list are materialized once and pinned so
+ * that callers tracking row identity see the same items afterwards.
+ * <p/>
+ * Once the estimated size of the fetched values exceeds the memory
+ * budget, further rows are written to a {@link SpillPageStore}.
+ *
+ * @author Takis Diakoumis
+ */
+class ColumnarTableData {
+
+    private final RecordDataItemFactory recordDataItemFactory;
+
+    private List<ResultSetColumnHeader> columnHeaders;
+
+    private ColumnStore[] columns;
+
+    private boolean[] itemColumns;
+
+    private String[] charsets;
+
+    /**
+     * Row handles in display order - non-negative values index the
+     * column stores (or the spill store past <code>spillStart</code>),
+     * negative values identify rows added by the user.
+     */
+    private int[] rows;
+
+    private int rowCount;
+
+    private int nextAddedRowId;
+
+    private Map<Integer, List<RecordDataItem>> pinnedRows;
+
+    private long memoryBudget;
+
+    private long memoryUsed;
+
+    private boolean spillable;
+
+    private int fetchedCount;
+
+    /**
+     * Fetched rows from this row id onwards are held in the spill store.
+     */
+    private int spillStart;
+
+    private SpillPageStore spillStore;
+
+    /**
+     * The last error reading spilled rows back, logged once.
+     */
+    private String spillError;
+
+    ColumnarTableData(RecordDataItemFactory recordDataItemFactory) {
+
+        this.recordDataItemFactory = recordDataItemFactory;
+        reset(new ArrayList<ResultSetColumnHeader>(0));
+    }
+
+    void reset(List<ResultSetColumnHeader> columnHeaders) {
+
+        closeSpillStore();
+        releaseLobHandles();
+        this.columnHeaders = columnHeaders;
+
+        int count = columnHeaders.size();
+        columns = new ColumnStore[count];
+        itemColumns = new boolean[count];
+        for (int i = 0; i < count; i++) {
+
+            int dataType = columnHeaders.get(i).getDataType();
+            itemColumns[i] = isLobHandle(dataType);
+            columns[i] = itemColumns[i] ? ColumnStore.forType(Types.OTHER) : ColumnStore.forType(dataType);
+        }
+
+        spillable = count > 0;
+        for (int i = 0; i < count; i++) {
+
+            spillable &= SpillPageStore.canSpill(columnHeaders.get(i).getDataType());
+        }
+
+        charsets = null;
+        rows = new int[0];
+        rowCount = 0;
+        nextAddedRowId = -1;
+        pinnedRows = new HashMap<Integer, List<RecordDataItem>>();
+        memoryUsed = 0;
+        fetchedCount = 0;
+        spillStart = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Sets the approximate number of bytes fetched values may
+     * occupy before rows are spilled to disk - zero for no limit.
+     */
+    void setMemoryBudget(long memoryBudget) {
+
+        this.memoryBudget = memoryBudget;
+    }
+
+    boolean isSpilled() {
+
+        return spillStore != null;
+    }
+
+    void close() {
+
+        closeSpillStore();
+        releaseLobHandles();
+    }
+
+    /**
+     * Frees the fetched LOB items once their rows are discarded. The
+     * items hold no server transaction while their rows are viewed,
+     * each chunk being read in a short transaction of its own.
+     */
+    private void releaseLobHandles() {
+
+        if (columns == null) {
+
+            return;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+
+            if (itemColumns[i]) {
+
+                for (int j = 0, n = columns[i].size(); j < n; j++) {
+
+                    Object item = columns[i].get(j);
+                    if (item instanceof LobRecordDataItem) {
+
+                        ((LobRecordDataItem) item).releaseLob();
+                    }
+                }
+            }
+        }
+    }
+
+    private void closeSpillStore() {
+
+        if (spillStore != null) {
+
+            spillStore.close();
+            spillStore = null;
+        }
+    }
+
+    /**
+     * LOB handles carry state (detached blobs, cached data) and
+     * are kept as items rather than re-created for every view.
+     */
+    private boolean isLobHandle(int dataType) {
+
+        return dataType == Types.BLOB || dataType == Types.CLOB || dataType == Types.LONGVARCHAR;
+    }
+
+    void clear() {
+
+        reset(columnHeaders);
+    }
+
+    void setCharsets(String[] charsets) {
+
+        this.charsets = charsets;
+    }
+
+    boolean isItemColumn(int column) {
+
+        return itemColumns[column];
+    }
+
+    int size() {
+
+        return rowCount;
+    }
+
+    boolean isEmpty() {
+
+        return rowCount == 0;
+    }
+
+    /**
+     * Appends one fetched row - values are the raw column values or,
+     * for item columns, the record data item holding the LOB handle.
+     */
+    void addFetchedRow(Object[] values) {
+
+        int rowId = fetchedCount;
+        if (spillStore != null || (spillable && memoryBudget > 0 && memoryUsed > memoryBudget && startSpilling())) {
+
+            try {
+
+                spillStore.add(values);
+                fetchedCount++;
+                addHandle(rowId);
+                return;
+
+            } catch (IOException e) {
+
+                Log.error("Error writing result set rows to disk - " + e.getMessage(), e);
+                throw new IllegalStateException(e);
+            }
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+
+            columns[i] = columns[i].add(values[i]);
+            memoryUsed += estimateSize(values[i]);
+        }
+
+        fetchedCount++;
+        addHandle(rowId);
+    }
+
+    private boolean startSpilling() {
+
+        try {
+
+            spillStore = new SpillPageStore(columns.length);
+            spillStart = fetchedCount;
+            Log.debug("Result set memory budget reached at row " + fetchedCount + " - spilling further rows to disk");
+            return true;
+
+        } catch (IOException e) {
+
+            Log.error("Unable to create result set page file - " + e.getMessage(), e);
+            spillable = false;
+            return false;
+        }
+    }
+
+    /**
+     * Returns the approximate heap size of a fetched value.
+     */
+    static long estimateSize(Object value) {
+
+        if (value == null) {
+
+            return 4;
+
+        } else if (value instanceof String) {
+
+            return 40 + 2L * ((String) value).length();
+
+        } else if (value instanceof byte[]) {
+
+            return 16 + ((byte[]) value).length;
+
+        } else if (value instanceof Number) {
+
+            return 16;
+        }
+
+        return 64;
+    }
+
+    void addRow(List<RecordDataItem> row) {
+
+        int rowId = nextAddedRowId--;
+        pinnedRows.put(rowId, row);
+        addHandle(rowId);
+    }
+
+    List<RecordDataItem> removeRow(int row) {
+
+        List<RecordDataItem> removed = getRow(row);
+        pinnedRows.remove(rows[row]);
+
+        System.arraycopy(rows, row + 1, rows, row, rowCount - row - 1);
+        rowCount--;
+
+        return removed;
+    }
+
+    /**
+     * Returns the items for the specified row, materializing
+     * and pinning them on first access.
+     */
+    List<RecordDataItem> getRow(int row) {
+
+        int rowId = rows[row];
+        List<RecordDataItem> rowData = pinnedRows.get(rowId);
+        if (rowData == null) {
+
+            rowData = createRow(rowId);
+            pinnedRows.put(rowId, rowData);
+        }
+
+        return rowData;
+    }
+
+    /**
+     * Returns the items for the specified row without pinning them.
+     */
+    List<RecordDataItem> peekRow(int row) {
+
+        int rowId = rows[row];
+        List<RecordDataItem> rowData = pinnedRows.get(rowId);
+        if (rowData == null) {
+
+            rowData = createRow(rowId);
+        }
+
+        return rowData;
+    }
+
+    RecordDataItem getCell(int row, int column) {
+
+        int rowId = rows[row];
+        List<RecordDataItem> rowData = pinnedRows.get(rowId);
+        if (rowData != null) {
+
+            return column < rowData.size() ? rowData.get(column) : null;
+        }
+
+        return createItem(rowId, column);
+    }
+
+    int columnCount(int row) {
+
+        List<RecordDataItem> rowData = pinnedRows.get(rows[row]);
+        return rowData != null ? rowData.size() : columns.length;
+    }
+
+    private List<RecordDataItem> createRow(int rowId) {
+
+        List<RecordDataItem> rowData = new ArrayList<RecordDataItem>(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+
+            rowData.add(createItem(rowId, i));
+        }
+
+        return rowData;
+    }
+
+    private RecordDataItem createItem(int rowId, int column) {
+
+        Object value = readValue(rowId, column);
+        if (itemColumns[column]) {
+
+            return (RecordDataItem) value;
+        }
+
+        RecordDataItem item = recordDataItemFactory.create(columnHeaders.get(column));
+        item.setValue(value);
+        if (value == null) {
+
+            item.setNull();
+        }
+
+        return item;
+    }
+
+    /**
+     * Returns the values of the specified column to sort by, one per row,
+     * without creating items for them. Rows are read in order, so that
+     * spilled rows are read from disk page by page rather than a page per
+     * comparison of the sort.
+     */
+    Object[] sortKeys(int column) {
+
+        Object[] keys = new Object[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+
+            int rowId = rows[row];
+            List<RecordDataItem> rowData = pinnedRows.get(rowId);
+            Object value;
+            if (rowData != null) {
+
+                value = column < rowData.size() ? rowData.get(column) : null;
+
+            } else {
+
+                value = readValue(rowId, column);
+            }
+
+            keys[row] = value instanceof RecordDataItem ? ((RecordDataItem) value).getValue() : value;
+        }
+
+        return keys;
+    }
+
+    private Object readValue(int rowId, int column) {
+
+        Object value;
+        if (rowId >= spillStart) {
+
+            try {
+
+                value = spillStore.get(rowId - spillStart, column);
+
+            } catch (IOException e) {
+
+                // shown in the cell rather than as a null value
+                String message = String.valueOf(e.getMessage());
+                if (!message.equals(spillError)) {
+
+                    spillError = message;
+                    Log.error("Error reading result set rows from disk - " + message, e);
+                }
+                value = "<Error - " + message + ">";
+            }
+
+        } else {
+
+            value = columns[column].get(rowId);
+        }
+
+        return value;
+    }
+
+    /**
+     * Creates the record data item for a LOB cell at fetch time.
+     */
+    RecordDataItem createItemValue(int column, Object value) {
+
+        RecordDataItem item = recordDataItemFactory.create(columnHeaders.get(column));
+        item.setValue(value);
+        if (value == null) {
+
+            item.setNull();
+        }
+
+        if (item instanceof ClobRecordDataItem && charsets != null) {
+
+            ((ClobRecordDataItem) item).setCharset(charsets[column]);
+        }
+
+        return item;
+    }
+
+    private void addHandle(int rowId) {
+
+        if (rowCount == rows.length) {
+
+            rows = Arrays.copyOf(rows, ColumnStore.grow(rows.length, rowCount + 1));
+        }
+
+        rows[rowCount++] = rowId;
+    }
+
+}
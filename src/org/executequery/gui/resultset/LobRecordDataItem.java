@@ -25,6 +25,17 @@ public interface LobRecordDataItem extends RecordDataItem {
 
     int length();
 
+    /**
+     * Returns the length of the LOB data in bytes without reading the data.
+     */
+    long getLobLength();
+
+    /**
+     * Reads up to <code>length</code> bytes of the LOB data
+     * starting at the specified zero based position.
+     */
+    byte[] getBytes(long position, int length);
+
     byte[] getData();
 
     String getLobRecordItemName();
@@ -33,6 +44,12 @@ public interface LobRecordDataItem extends RecordDataItem {
 
     void setData(byte[] data);
 
+    /**
+     * Releases the server side handle of the LOB - the
+     * value can not be read from the server afterwards.
+     */
+    void releaseLob();
+
 }
 
 
@@ -0,0 +1,381 @@
+/*
+ * ResultSetPrefetcher.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import org.executequery.log.Log;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reads ahead on an open result set from a background thread.
+ * <p/>
+ * Rows are decoded into blocks of the configured fetch size and queued
+ * while the user reads the current page. The read-ahead depth is bounded
+ * by an approximate memory budget derived from the decoded row width and
+ * grows while the consumer keeps finding the queue empty (fast scrolling).
+ * <p/>
+ * Only the raw column values are read here - the consumer turns them
+ * into model items.
+ *
+ * @author Takis Diakoumis
+ */
+class ResultSetPrefetcher implements Runnable {
+
+    /**
+     * Decodes the current row of the result set into column values.
+     */
+    interface RowDecoder {
+
+        Object[] decode(ResultSet resultSet) throws SQLException;
+    }
+
+    private static final int MIN_DEPTH = 2;
+
+    private static final int MAX_DEPTH = 32;
+
+    private static final long BUFFER_BUDGET_BYTES = 8L * 1024 * 1024;
+
+    private static final long IDLE_DECAY_MILLIS = 5000;
+
+    private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+    private final ResultSet resultSet;
+
+    private final RowDecoder rowDecoder;
+
+    private final int blockSize;
+
+    private final Deque<List<Object[]>> blocks;
+
+    private final Thread thread;
+
+    private int depth;
+
+    private int maxDepth;
+
+    private boolean drainAll;
+
+    private boolean finished;
+
+    private boolean stopped;
+
+    private boolean reading;
+
+    private boolean closeOnExit;
+
+    private Exception error;
+
+    private long lastTake;
+
+    ResultSetPrefetcher(ResultSet resultSet, RowDecoder rowDecoder, int blockSize) {
+
+        this.resultSet = resultSet;
+        this.rowDecoder = rowDecoder;
+        this.blockSize = Math.max(1, blockSize);
+
+        blocks = new ArrayDeque<List<Object[]>>();
+        depth = MIN_DEPTH;
+        maxDepth = MAX_DEPTH;
+        lastTake = System.currentTimeMillis();
+
+        thread = new Thread(this, "ResultSetPrefetcher");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+
+        try {
+
+            prefetch();
+
+        } finally {
+
+            closeIfHandedOff();
+        }
+
+    }
+
+    private void prefetch() {
+
+        try {
+
+            while (true) {
+
+                synchronized (this) {
+
+                    while (!stopped && !drainAll && blocks.size() >= depth) {
+
+                        wait();
+                    }
+
+                    if (stopped) {
+
+                        return;
+                    }
+
+                    reading = true;
+                }
+
+                List<Object[]> block = readBlock();
+                synchronized (this) {
+
+                    reading = false;
+
+                    if (!block.isEmpty()) {
+
+                        blocks.addLast(block);
+                        if (blocks.size() == 1) {
+
+                            adjustMaxDepth(block);
+                        }
+                    }
+
+                    if (block.size() < blockSize) {
+
+                        finished = true;
+                    }
+
+                    notifyAll();
+                    if (finished) {
+
+                        return;
+                    }
+                }
+
+            }
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        } catch (Exception e) {
+
+            synchronized (this) {
+
+                reading = false;
+                if (!stopped) {
+
+                    Log.debug("Error prefetching result set rows - " + e.getMessage(), e);
+                    error = e;
+                }
+
+                finished = true;
+                notifyAll();
+            }
+
+        }
+
+    }
+
+    private List<Object[]> readBlock() throws SQLException {
+
+        List<Object[]> block = new ArrayList<Object[]>(blockSize);
+        while (block.size() < blockSize && !isStopped() && resultSet.next()) {
+
+            block.add(rowDecoder.decode(resultSet));
+        }
+
+        return block;
+    }
+
+    /**
+     * Returns the next block of decoded rows, waiting for the reader if
+     * required, or <code>null</code> when the result set is exhausted.
+     */
+    synchronized List<Object[]> take() throws SQLException, InterruptedException {
+
+        long now = System.currentTimeMillis();
+        if (blocks.isEmpty() && !finished) {
+
+            // consumer caught up with the reader - read further ahead
+            depth = Math.min(maxDepth, depth + 1);
+
+        } else if (now - lastTake > IDLE_DECAY_MILLIS) {
+
+            depth = Math.max(MIN_DEPTH, depth - 1);
+        }
+        lastTake = now;
+        notifyAll();
+
+        while (blocks.isEmpty() && !finished) {
+
+            wait();
+        }
+
+        if (!blocks.isEmpty()) {
+
+            List<Object[]> block = blocks.removeFirst();
+            notifyAll();
+            return block;
+        }
+
+        if (error != null) {
+
+            Exception e = error;
+            error = null;
+            if (e instanceof SQLException) {
+
+                throw (SQLException) e;
+            }
+            throw new SQLException(e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Lifts the read-ahead bound so the remaining rows are read without pausing.
+     */
+    synchronized void drainAll() {
+
+        drainAll = true;
+        notifyAll();
+    }
+
+    synchronized boolean isExhausted() {
+
+        return finished && blocks.isEmpty();
+    }
+
+    /**
+     * Stops reading, cancelling the statement of a read in progress,
+     * and waits a bounded time for the reader to leave the result set.
+     * <p/>
+     * Returns whether the reader has left, so that the result set may
+     * be closed by the caller. Otherwise the reader is still blocked on
+     * the server and closes the result set itself once it returns.
+     */
+    boolean stop() {
+
+        boolean cancel;
+        synchronized (this) {
+
+            stopped = true;
+            cancel = reading;
+            blocks.clear();
+            notifyAll();
+        }
+
+        if (!thread.isAlive() || thread == Thread.currentThread()) {
+
+            return true;
+        }
+
+        if (cancel) {
+
+            cancelStatement();
+        }
+
+        try {
+
+            thread.join(STOP_TIMEOUT_MILLIS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+
+            if (thread.isAlive()) {
+
+                Log.debug("Result set prefetch still waiting on the server - closing the result set when it returns");
+                closeOnExit = true;
+                return false;
+            }
+
+        }
+
+        return true;
+    }
+
+    private void cancelStatement() {
+
+        try {
+
+            Statement statement = resultSet.getStatement();
+            if (statement != null) {
+
+                statement.cancel();
+            }
+
+        } catch (SQLException e) {
+
+            Log.debug("Error cancelling prefetch statement - " + e.getMessage(), e);
+        }
+
+    }
+
+    private void closeIfHandedOff() {
+
+        synchronized (this) {
+
+            if (!closeOnExit) {
+
+                return;
+            }
+
+        }
+
+        try {
+
+            resultSet.close();
+
+        } catch (SQLException e) {
+
+            Log.debug("Error closing prefetched result set - " + e.getMessage(), e);
+        }
+
+    }
+
+    private synchronized boolean isStopped() {
+
+        return stopped;
+    }
+
+    private void adjustMaxDepth(List<Object[]> block) {
+
+        long blockBytes = 0;
+        for (Object[] row : block) {
+
+            for (Object value : row) {
+
+                blockBytes += ColumnarTableData.estimateSize(value);
+            }
+        }
+
+        maxDepth = (int) Math.max(MIN_DEPTH, Math.min(MAX_DEPTH, BUFFER_BUDGET_BYTES / Math.max(1, blockBytes)));
+        depth = Math.min(depth, maxDepth);
+    }
+
+}
@@ -37,14 +37,12 @@ import org.executequery.util.UserProperties;
 import org.underworldlabs.jdbc.DataSourceException;
 import org.underworldlabs.swing.table.AbstractSortableTableModel;
 import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.PluginBridgeRegistry;
 import org.underworldlabs.util.SystemProperties;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.*;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -79,7 +77,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     /**
      * The table values
      */
-    private List<List<RecordDataItem>> tableData;
+    private ColumnarTableData tableData;
 
     /**
      * result set meta data model
@@ -119,8 +117,8 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
         columnHeaders = new ArrayList<ResultSetColumnHeader>();
         visibleColumnHeaders = new ArrayList<ResultSetColumnHeader>();
 
-        tableData = new ArrayList<List<RecordDataItem>>();
         recordDataItemFactory = new RecordDataItemFactory();
+        tableData = new ColumnarTableData(recordDataItemFactory);
 
         holdMetaData = UserProperties.getInstance().getBooleanProperty("editor.results.metadata");
 
@@ -133,8 +131,15 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     public ResultSetTableModel(List<String> columnHeaders, List<List<RecordDataItem>> tableData) {
 
-        this.tableData = tableData;
         this.columnHeaders = createHeaders(columnHeaders);
+        recordDataItemFactory = new RecordDataItemFactory();
+        this.tableData = new ColumnarTableData(recordDataItemFactory);
+        this.tableData.reset(this.columnHeaders);
+        for (List<RecordDataItem> row : tableData) {
+
+            this.tableData.addRow(row);
+        }
+
         visibleColumnHeaders = new ArrayList<ResultSetColumnHeader>();
         resetVisibleColumnHeaders();
     }
@@ -164,7 +169,6 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
         createTable(resultSet, null);
     }
 
-    int zeroBaseIndex;
     int fetchSize;
     boolean rsClose;
     ResultSet rs;
@@ -179,13 +183,13 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             return;
         }
 
+        stopPrefetcher();
         try {
             resetMetaData();
             ResultSetMetaData rsmd = resultSet.getMetaData();
 
             columnHeaders.clear();
             visibleColumnHeaders.clear();
-            tableData.clear();
 
             int zeroBaseIndex = 0;
             int count = rsmd.getColumnCount();
@@ -200,6 +204,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
                                 rsmd.getColumnType(i),
                                 rsmd.getColumnTypeName(i)));
             }
+            tableData.reset(columnHeaders);
             interrupted = false;
 
             if (holdMetaData) {
@@ -263,20 +268,48 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     private boolean fetchAll = false;
     private boolean cancelled = false;
+    private ResultSetPrefetcher prefetcher;
 
     public synchronized void getDataForTable(ResultSet resultSet, int count, List<ColumnData> columnDataList) throws SQLException, InterruptedException {
-        recordCount = 0;
+        stopPrefetcher();
         this.columnDataList = columnDataList;
+        this.count = count;
+        loadRecords(resultSet);
+        fireTableStructureChanged();
+
+    }
+
+    /**
+     * Replaces the rows with those of the specified result set keeping the
+     * current columns - for the same query re-issued in a different order.
+     * The previous result set is expected to be closed by the caller.
+     */
+    public synchronized void reloadData(ResultSet resultSet) throws SQLException, InterruptedException {
+        stopPrefetcher();
+        tableData.clear();
+        interrupted = false;
+        cancelled = false;
+        fetchAll = false;
+        loadRecords(resultSet);
+        fireTableDataChanged();
+    }
+
+    private void loadRecords(ResultSet resultSet) throws SQLException, InterruptedException {
+        recordCount = 0;
+        tableData.setCharsets(charsetsFor(count, columnDataList));
+        tableData.setMemoryBudget(SystemProperties.getIntProperty("user", "results.table.memory.budget") * 1024L * 1024L);
         long time = System.currentTimeMillis();
         fetchSize = SystemProperties.getIntProperty("user", "results.table.fetch.size");
         rsClose = false;
         rs = resultSet;
-        this.count = count;
-        if (isTable)
+        if (isTable) {
             for (int i = 0; i < fetchSize && !rsClose; i++) {
                 fetchOneRecord(resultSet, count);
             }
-        else if (maxRecords > 0) {
+            if (!rsClose && SystemProperties.getBooleanProperty("user", "results.table.prefetch")) {
+                startPrefetcher(resultSet, count);
+            }
+        } else if (maxRecords > 0) {
             for (int i = 0; i < maxRecords && !rsClose; i++) {
                 fetchOneRecord(resultSet, count);
             }
@@ -287,9 +320,18 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             Log.trace("Finished populating table model - " + recordCount + " rows - [ "
                     + MiscUtils.formatDuration(System.currentTimeMillis() - time) + "]");
         }
+    }
 
-        fireTableStructureChanged();
+    private String[] charsetsFor(int count, List<ColumnData> columnDataList) {
 
+        String[] charsets = new String[count];
+        for (int i = 0; i < count; i++) {
+
+            charsets[i] = columnDataList != null && i < columnDataList.size()
+                    ? columnDataList.get(i).getCharset() : CreateTableSQLSyntax.NONE;
+        }
+
+        return charsets;
     }
 
     public void setFetchAll(boolean fetchAll) {
@@ -303,7 +345,9 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     public void fetchMoreData() {
         if (!rsClose)
             try {
-                if (fetchAll) {
+                if (prefetcher != null) {
+                    fetchPrefetchedRecords();
+                } else if (fetchAll) {
                     fetchAllRecords(rs, count);
                 } else {
                     for (int i = 0; i < fetchSize && !rsClose; i++) {
@@ -313,6 +357,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
                 }
             } catch (Exception e) {
                 rsClose = true;
+                stopPrefetcher();
                 if (cancelled) {
                     cancelled = false;
                     fetchAll = false;
@@ -322,6 +367,86 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             }
     }
 
+    private void startPrefetcher(ResultSet resultSet, final int count) {
+
+        prefetcher = new ResultSetPrefetcher(resultSet, new ResultSetPrefetcher.RowDecoder() {
+
+            @Override
+            public Object[] decode(ResultSet resultSet) throws SQLException {
+                return readValues(resultSet, count);
+            }
+
+        }, fetchSize);
+        prefetcher.start();
+    }
+
+    /**
+     * Stops the prefetcher, if any, returning whether the result set may
+     * be closed here - otherwise the prefetcher, still waiting on the
+     * server, closes it once the server returns.
+     */
+    private boolean stopPrefetcher() {
+
+        if (prefetcher != null) {
+
+            boolean released = prefetcher.stop();
+            prefetcher = null;
+            if (!released) {
+
+                rs = null;
+                rsClose = true;
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void fetchPrefetchedRecords() throws SQLException, InterruptedException {
+
+        if (fetchAll) {
+
+            prefetcher.drainAll();
+            List<Object[]> block;
+            while ((block = prefetcher.take()) != null) {
+
+                addRecords(block);
+            }
+            fireTableDataChanged();
+
+        } else {
+
+            List<Object[]> block = prefetcher.take();
+            if (block != null && !block.isEmpty()) {
+
+                int firstRow = tableData.size();
+                addRecords(block);
+                fireTableRowsInserted(firstRow, tableData.size() - 1);
+            }
+        }
+
+        if (prefetcher.isExhausted()) {
+
+            stopPrefetcher();
+            rs.close();
+            rsClose = true;
+        }
+    }
+
+    private void addRecords(List<Object[]> block) throws InterruptedException {
+
+        for (Object[] rowData : block) {
+
+            if (interrupted || Thread.interrupted()) {
+
+                throw new InterruptedException();
+            }
+
+            recordCount++;
+            tableData.addFetchedRow(toItemValues(rowData));
+        }
+    }
+
     private void fetchOneRecord(ResultSet resultSet, int count) throws SQLException, InterruptedException {
         if (resultSet.next())
             addingRecord(resultSet, count);
@@ -353,7 +478,6 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
             columnHeaders.clear();
             visibleColumnHeaders.clear();
-            tableData.clear();
             String tableName = "";
             int zeroBaseIndex = 0;
             int g = 1;
@@ -378,7 +502,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
                 }
             int count = g - 1;
 
-            int recordCount = 0;
+            tableData.reset(columnHeaders);
             interrupted = false;
 
             /*if (holdMetaData) {
@@ -442,7 +566,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     }
 
-    private void asStringOrObject(RecordDataItem value, ResultSet resultSet, int column) throws SQLException {
+    private String asStringOrObject(ResultSet resultSet, int column) throws SQLException {
 
         // often getString returns a more useful representation
         // return using getString where object.toString is the default impl
@@ -460,7 +584,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             }
         }
 
-        value.setValue(valueAsString);
+        return valueAsString;
     }
 
     private boolean isOpenAndValid(ResultSet resultSet) {
@@ -500,15 +624,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     private void clearData() {
 
-        if (tableData != null) {
-
-            tableData.clear();
-
-        } else {
-
-            tableData = new ArrayList<List<RecordDataItem>>(0);
-        }
-
+        tableData.clear();
         fireTableStructureChanged();
     }
 
@@ -521,14 +637,45 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             }
 
             recordCount++;
-            List<RecordDataItem> rowData = new ArrayList<RecordDataItem>(count);
+            tableData.addFetchedRow(readRecord(resultSet, count));
+    }
+
+    private Object[] readRecord(ResultSet resultSet, int count) throws SQLException {
+
+        return toItemValues(readValues(resultSet, count));
+    }
+
+    /**
+     * Replaces the values of item columns with their record data items -
+     * done by the consumer, not the prefetch thread, as items belong to
+     * the model.
+     */
+    private Object[] toItemValues(Object[] rowData) {
+
+        for (int i = 0; i < rowData.length; i++) {
+
+            if (tableData.isItemColumn(i)) {
+
+                // LOB handles are kept as items - values are
+                // stored column-wise and viewed on demand
+
+                rowData[i] = tableData.createItemValue(i, rowData[i]);
+            }
+        }
+
+        return rowData;
+    }
+
+    private Object[] readValues(ResultSet resultSet, int count) throws SQLException {
+
+            Object[] rowData = new Object[count];
 
             for (int i = 1; i <= count; i++) {
 
-                zeroBaseIndex = i - 1;
+                int zeroBaseIndex = i - 1;
 
                 ResultSetColumnHeader header = columnHeaders.get(zeroBaseIndex);
-                RecordDataItem value = recordDataItemFactory.create(header);
+                Object value;
 
                 try {
 
@@ -543,80 +690,55 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
                         case Types.CHAR:
                         case Types.VARCHAR:
-                            value.setValue(resultSet.getString(i));
+                            value = resultSet.getString(i);
                             break;
                         case Types.DATE:
-                            value.setValue(resultSet.getDate(i));
+                            value = resultSet.getDate(i);
                             break;
                         case Types.TIME:
-                            value.setValue(resultSet.getTime(i));
+                            value = resultSet.getTime(i);
                             break;
                         case Types.TIMESTAMP:
-                            value.setValue(resultSet.getTimestamp(i));
+                            value = resultSet.getTimestamp(i);
                             break;
                         case Types.LONGVARCHAR:
                         case Types.CLOB:
                             Clob clob = resultSet.getClob(i);
                             if (clob != null && clob.getClass().getName().contains("org.firebirdsql.jdbc")) {
-                                URL[] urls = new URL[0];
-                                Class clazzdb = null;
                                 Object odb = null;
                                 try {
-                                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                                    ClassLoader cl = new URLClassLoader(urls, resultSet.getStatement().getConnection().getClass().getClassLoader());
-                                    clazzdb = cl.loadClass("biz.redsoft.FBClobImpl");
-                                    odb = clazzdb.newInstance();
+                                    odb = PluginBridgeRegistry.newInstance(resultSet.getStatement().getConnection(), "FBClobImpl");
                                 } catch (ClassNotFoundException e) {
                                     e.printStackTrace();
-                                } catch (IllegalAccessException e) {
-                                    e.printStackTrace();
-                                } catch (InstantiationException e) {
-                                    e.printStackTrace();
-                                } catch (MalformedURLException e) {
-                                    e.printStackTrace();
                                 }
 
                                 IFBClob ifbClob = (IFBClob) odb;
                                 ifbClob.detach(clob);
-                                value.setValue(ifbClob);
+                                value = ifbClob;
                             } else {
-                                value.setValue(clob);
+                                value = clob;
                             }
-                            if (columnDataList != null) {
-                                ((ClobRecordDataItem) value).setCharset(columnDataList.get(i - 1).getCharset());
-                            } else ((ClobRecordDataItem) value).setCharset(CreateTableSQLSyntax.NONE);
                             break;
                         case Types.LONGVARBINARY:
                         case Types.VARBINARY:
                         case Types.BINARY:
-                            value.setValue(resultSet.getBytes(i));
+                            value = resultSet.getBytes(i);
                             break;
                         case Types.BLOB:
                             Blob blob = resultSet.getBlob(i);
                             if (blob != null && blob.getClass().getName().contains("org.firebirdsql.jdbc")) {
-                                URL[] urls = new URL[0];
-                                Class clazzdb = null;
                                 Object odb = null;
                                 try {
-                                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                                    ClassLoader cl = new URLClassLoader(urls, resultSet.getStatement().getConnection().getClass().getClassLoader());
-                                    clazzdb = cl.loadClass("biz.redsoft.FBBlobImpl");
-                                    odb = clazzdb.newInstance();
+                                    odb = PluginBridgeRegistry.newInstance(resultSet.getStatement().getConnection(), "FBBlobImpl");
                                 } catch (ClassNotFoundException e) {
                                     e.printStackTrace();
-                                } catch (IllegalAccessException e) {
-                                    e.printStackTrace();
-                                } catch (InstantiationException e) {
-                                    e.printStackTrace();
-                                } catch (MalformedURLException e) {
-                                    e.printStackTrace();
                                 }
 
                                 IFBBlob ifbBlob = (IFBBlob) odb;
                                 ifbBlob.detach(blob);
-                                value.setValue(ifbBlob);
+                                value = ifbBlob;
                             } else {
-                                value.setValue(blob);
+                                value = blob;
                             }
                             break;
                         case Types.BIT:
@@ -647,14 +769,14 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
                             // use getObject for all other known types
 
-                            value.setValue(resultSet.getObject(i));
+                            value = resultSet.getObject(i);
                             break;
 
                         default:
 
                             // otherwise try as string
 
-                            asStringOrObject(value, resultSet, i);
+                            value = asStringOrObject(resultSet, i);
                             break;
                     }
 
@@ -663,7 +785,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
                     try {
 
                         // ... and on dump, resort to string
-                        value.setValue(resultSet.getString(i));
+                        value = resultSet.getString(i);
 
                     } catch (SQLException sqlException) {
 
@@ -671,19 +793,19 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
                         // noticed with invalid date formatted values in mysql
 
-                        value.setValue("<Error - " + sqlException.getMessage() + ">");
+                        value = "<Error - " + sqlException.getMessage() + ">";
                     }
                 }
 
                 if (resultSet.wasNull()) {
 
-                    value.setNull();
+                    value = null;
                 }
 
-                rowData.add(value);
+                rowData[zeroBaseIndex] = value;
             }
 
-            tableData.add(rowData);
+            return rowData;
     }
 
     public void cancelFetch() {
@@ -859,10 +981,6 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     @Override
     public int getRowCount() {
 
-        if (tableData == null) {
-
-            return 0;
-        }
         return tableData.size();
     }
 
@@ -877,15 +995,28 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
         return list;
     }
 
+    /**
+     * Returns the record data items for the specified row. The items
+     * are retained by the model so changes made to them are kept.
+     */
     public List<RecordDataItem> getRowDataForRow(int row) {
 
-        return tableData.get(row);
+        return tableData.getRow(row);
+    }
+
+    /**
+     * Returns the record data items for the specified row without
+     * retaining them - for read-only scans over the whole result.
+     */
+    public List<RecordDataItem> peekRowDataForRow(int row) {
+
+        return tableData.peekRow(row);
     }
 
     @Override
     public void setValueAt(Object value, int row, int column) {
 
-        List<RecordDataItem> rowData = tableData.get(row);
+        List<RecordDataItem> rowData = tableData.getRow(row);
         if (column < rowData.size()) {
 
             try {
@@ -909,6 +1040,14 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
         }
     }
 
+    /**
+     * Returns the header of the specified visible column.
+     */
+    public ResultSetColumnHeader getVisibleColumnHeader(int column) {
+
+        return visibleColumnHeaders.get(column);
+    }
+
     private int asVisibleColumnIndex(int column) {
 
         ResultSetColumnHeader columnHeader = visibleColumnHeaders.get(column);
@@ -929,19 +1068,24 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
         if (row < tableData.size()) {
 
-            List<RecordDataItem> rowData = tableData.get(row);
-            if (column < rowData.size()) {
+            if (column < tableData.columnCount(row)) {
 
-                return rowData.get(asVisibleColumnIndex(column));
+                return tableData.getCell(row, asVisibleColumnIndex(column));
             }
         }
 
         return null;
     }
 
+    @Override
+    public Object[] getSortKeys(int column) {
+
+        return tableData.sortKeys(asVisibleColumnIndex(column));
+    }
+
     public Object getRowValueAt(int row) {
 
-        return tableData.get(row);
+        return tableData.getRow(row);
     }
 
     private boolean cellsEditable;
@@ -953,7 +1097,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     @Override
     public boolean isCellEditable(int row, int column) {
-        RecordDataItem recordDataItem = tableData.get(row).get(asVisibleColumnIndex(column));
+        RecordDataItem recordDataItem = tableData.getCell(row, asVisibleColumnIndex(column));
 
         if (!visibleColumnHeaders.get(column).isEditable()) {
             return recordDataItem.isNew() && cellsEditable;
@@ -998,7 +1142,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     }
 
     public void AddRow(List<RecordDataItem> row) {
-        tableData.add(row);
+        tableData.addRow(row);
     }
 
     public void AddRow() {
@@ -1019,10 +1163,9 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
 
     public void deleteRow(int rowNumber) {
         if (rowNumber >= 0 && rowNumber < tableData.size()) {
-            List<RecordDataItem> row = tableData.get(rowNumber);
+            List<RecordDataItem> row = tableData.getRow(rowNumber);
             if (row.get(0).isNew()) {
-                deletedRow = tableData.get(rowNumber);
-                tableData.remove(rowNumber);
+                deletedRow = tableData.removeRow(rowNumber);
                 fireTableRowsDeleted(rowNumber, rowNumber);
             } else {
                 for (int i = 0; i < row.size(); i++) {
@@ -1056,7 +1199,7 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
             return String.class;
         }
 
-        RecordDataItem recordDataItem = tableData.get(0).get(column);
+        RecordDataItem recordDataItem = tableData.getCell(0, column);
         if (recordDataItem.isDisplayValueNull()) {
 
             return String.class;
@@ -1108,9 +1251,22 @@ public class ResultSetTableModel extends AbstractSortableTableModel {
     }
 
     public void closeResultSet() throws SQLException {
-        if (rs != null && !rs.isClosed())
+        if (stopPrefetcher() && rs != null && !rs.isClosed())
             rs.close();
     }
+
+    /**
+     * Releases the resources of this model once discarded - the open
+     * result set and any rows spilled to disk.
+     */
+    public void close() {
+        try {
+            closeResultSet();
+        } catch (SQLException e) {
+            Log.debug("Error closing result set - " + e.getMessage(), e);
+        }
+        tableData.close();
+    }
 }
 
 
@@ -0,0 +1,428 @@
+/*
+ * SpillPageStore.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.gui.resultset;
+
+import org.executequery.log.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores result set rows beyond the model's memory budget in a temporary file.
+ * <p/>
+ * Rows are encoded into a compact tagged binary format and written in pages
+ * of {@link #PAGE_ROWS} rows. Pages are read back into a heap buffer and
+ * kept decoded in a small LRU cache while the grid scrolls over them. A page
+ * that can not be read is reported to the caller and not cached, so that
+ * it is read again when next requested.
+ *
+ * @author Takis Diakoumis
+ */
+class SpillPageStore {
+
+    static final int PAGE_ROWS = 1024;
+
+    private static final int CACHED_PAGES = 16;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte DECIMAL = 9;
+    private static final byte BYTES = 10;
+    private static final byte DATE = 11;
+    private static final byte TIME = 12;
+    private static final byte TIMESTAMP = 13;
+
+    private final int columnCount;
+
+    private final File file;
+
+    private final RandomAccessFile randomAccessFile;
+
+    private final FileChannel channel;
+
+    private final List<long[]> pages;
+
+    private final List<Object[]> pendingRows;
+
+    private final Map<Integer, Object[][]> pageCache;
+
+    private final ByteArrayOutputStream pageBytes;
+
+    private final DataOutputStream pageOutput;
+
+    private long fileSize;
+
+    private int rowCount;
+
+    SpillPageStore(int columnCount) throws IOException {
+
+        this.columnCount = columnCount;
+
+        file = File.createTempFile("resultset", ".page");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+
+        pages = new ArrayList<long[]>();
+        pendingRows = new ArrayList<Object[]>(PAGE_ROWS);
+        pageBytes = new ByteArrayOutputStream();
+        pageOutput = new DataOutputStream(pageBytes);
+        pageCache = new LinkedHashMap<Integer, Object[][]>(CACHED_PAGES, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > CACHED_PAGES;
+            }
+
+        };
+    }
+
+    /**
+     * Returns whether values of the specified SQL type
+     * can be written to and read back from a page.
+     */
+    static boolean canSpill(int dataType) {
+
+        switch (dataType) {
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return true;
+
+            default:
+                return false;
+        }
+
+    }
+
+    synchronized int size() {
+
+        return rowCount;
+    }
+
+    synchronized void add(Object[] values) throws IOException {
+
+        for (Object value : values) {
+
+            write(value);
+        }
+
+        pendingRows.add(values);
+        rowCount++;
+
+        if (pendingRows.size() == PAGE_ROWS) {
+
+            flushPage();
+        }
+    }
+
+    synchronized Object get(int row, int column) throws IOException {
+
+        return getRow(row)[column];
+    }
+
+    synchronized Object[] getRow(int row) throws IOException {
+
+        int pageIndex = row / PAGE_ROWS;
+        if (pageIndex == pages.size()) {
+
+            return pendingRows.get(row % PAGE_ROWS);
+        }
+
+        Object[][] page = pageCache.get(pageIndex);
+        if (page == null) {
+
+            page = readPage(pageIndex);
+            pageCache.put(pageIndex, page);
+        }
+
+        return page[row % PAGE_ROWS];
+    }
+
+    synchronized void close() {
+
+        pageCache.clear();
+        pendingRows.clear();
+        try {
+
+            channel.close();
+            randomAccessFile.close();
+
+        } catch (IOException e) {
+
+            Log.debug("Error closing result set page file - " + e.getMessage(), e);
+        }
+
+        if (!file.delete()) {
+
+            Log.debug("Unable to delete result set page file " + file);
+        }
+    }
+
+    private void flushPage() throws IOException {
+
+        pageOutput.flush();
+        byte[] bytes = pageBytes.toByteArray();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = fileSize;
+        while (buffer.hasRemaining()) {
+
+            position += channel.write(buffer, position);
+        }
+
+        pages.add(new long[]{fileSize, bytes.length});
+        fileSize = position;
+
+        pageBytes.reset();
+        pendingRows.clear();
+    }
+
+    private Object[][] readPage(int pageIndex) throws IOException {
+
+        long[] page = pages.get(pageIndex);
+        ByteBuffer buffer = ByteBuffer.allocate((int) page[1]);
+        long position = page[0];
+        while (buffer.hasRemaining()) {
+
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+
+                throw new IOException("Unexpected end of result set page file " + file);
+            }
+            position += read;
+        }
+        buffer.flip();
+
+        Object[][] rows = new Object[PAGE_ROWS][];
+        try {
+
+            for (int i = 0; i < PAGE_ROWS; i++) {
+
+                Object[] row = new Object[columnCount];
+                for (int j = 0; j < columnCount; j++) {
+
+                    row[j] = read(buffer);
+                }
+                rows[i] = row;
+            }
+
+        } catch (RuntimeException e) {
+
+            // buffer underflow or an unknown tag - the page is corrupt
+            throw new IOException("Corrupt result set page " + pageIndex + " in " + file, e);
+        }
+
+        return rows;
+    }
+
+    private void write(Object value) throws IOException {
+
+        DataOutputStream out = pageOutput;
+        if (value == null) {
+
+            out.writeByte(NULL);
+
+        } else if (value instanceof String) {
+
+            writeBytes(STRING, ((String) value).getBytes(StandardCharsets.UTF_8));
+
+        } else if (value instanceof Integer) {
+
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+
+        } else if (value instanceof Long) {
+
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+
+        } else if (value instanceof Double) {
+
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+
+        } else if (value instanceof Float) {
+
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+
+        } else if (value instanceof Short) {
+
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+
+        } else if (value instanceof Byte) {
+
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+
+        } else if (value instanceof Boolean) {
+
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+
+        } else if (value instanceof BigDecimal) {
+
+            BigDecimal decimal = (BigDecimal) value;
+            writeBytes(DECIMAL, decimal.unscaledValue().toByteArray());
+            out.writeInt(decimal.scale());
+
+        } else if (value instanceof byte[]) {
+
+            writeBytes(BYTES, (byte[]) value);
+
+        } else if (value instanceof Timestamp) {
+
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+
+        } else if (value instanceof Time) {
+
+            out.writeByte(TIME);
+            out.writeLong(((Time) value).getTime());
+
+        } else if (value instanceof Date) {
+
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+
+        } else {
+
+            writeBytes(STRING, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+    }
+
+    private void writeBytes(byte tag, byte[] bytes) throws IOException {
+
+        pageOutput.writeByte(tag);
+        pageOutput.writeInt(bytes.length);
+        pageOutput.write(bytes);
+    }
+
+    private Object read(ByteBuffer buffer) {
+
+        byte tag = buffer.get();
+        switch (tag) {
+
+            case NULL:
+                return null;
+
+            case STRING:
+                return new String(readBytes(buffer), StandardCharsets.UTF_8);
+
+            case INTEGER:
+                return buffer.getInt();
+
+            case LONG:
+                return buffer.getLong();
+
+            case DOUBLE:
+                return buffer.getDouble();
+
+            case FLOAT:
+                return buffer.getFloat();
+
+            case SHORT:
+                return buffer.getShort();
+
+            case BYTE:
+                return buffer.get();
+
+            case BOOLEAN:
+                return buffer.get() != 0;
+
+            case DECIMAL:
+                BigInteger unscaled = new BigInteger(readBytes(buffer));
+                return new BigDecimal(unscaled, buffer.getInt());
+
+            case BYTES:
+                return readBytes(buffer);
+
+            case DATE:
+                return new Date(buffer.getLong());
+
+            case TIME:
+                return new Time(buffer.getLong());
+
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                return timestamp;
+
+            default:
+                throw new IllegalStateException("Unknown value tag in result set page: " + tag);
+        }
+
+    }
+
+    private byte[] readBytes(ByteBuffer buffer) {
+
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,640 @@
+/*
+ * DmlBatch.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.executequery.databasemediators.QueryTypes;
+import org.executequery.databasemediators.spi.StatementExecutor;
+import org.executequery.log.Log;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects runs of structurally identical DML statements from a script -
+ * statements differing only in their string and numeric literals - and
+ * executes each run as one parameterized JDBC batch.
+ * <p/>
+ * Statements are added while they continue the current run. Anything
+ * else - another statement, a COMMIT or the end of the script - must
+ * flush the batch first, as must reaching the batch size. Runs of a single
+ * statement, and runs whose literals do not match the parameter types
+ * the server describes, are executed statement by statement as written.
+ *
+ * @author Takis Diakoumis
+ */
+public class DmlBatch {
+
+    public static final String BATCH_SIZE_KEY = "editor.execute.batch.size";
+
+    /**
+     * Receives the statements of a batch that failed.
+     */
+    public interface ErrorHandler {
+
+        /**
+         * Called for a failed statement.
+         *
+         * @return whether to continue with the remaining statements
+         * @throws SQLException to abort the batch
+         */
+        boolean statementFailed(DerivedQuery query, SQLException e) throws SQLException;
+
+    }
+
+    private final int maxSize;
+
+    private final Set<String> unbatchable;
+
+    private final List<DerivedQuery> queries;
+
+    private final List<List<Object>> values;
+
+    private String sql;
+
+    /**
+     * Creates a batch of up to the specified number of statements -
+     * a size below 2 disables batching.
+     */
+    public DmlBatch(int maxSize) {
+
+        this.maxSize = maxSize;
+
+        unbatchable = new HashSet<String>();
+        queries = new ArrayList<DerivedQuery>();
+        values = new ArrayList<List<Object>>();
+    }
+
+    public boolean isEmpty() {
+
+        return queries.isEmpty();
+    }
+
+    public int size() {
+
+        return queries.size();
+    }
+
+    /**
+     * Returns the statements collected so far, in script order.
+     */
+    public List<DerivedQuery> getQueries() {
+
+        return Collections.unmodifiableList(queries);
+    }
+
+    public boolean isFull() {
+
+        return queries.size() >= maxSize;
+    }
+
+    /**
+     * Returns the query type of the statements in the batch.
+     */
+    public int getQueryType() {
+
+        return queries.isEmpty() ? QueryTypes.UNKNOWN : queries.get(0).getQueryType();
+    }
+
+    /**
+     * Adds the statement to the batch where it continues the current run.
+     *
+     * @return whether the statement was added - otherwise the batch is
+     * to be flushed before the statement is executed or added again
+     */
+    public boolean add(DerivedQuery query) {
+
+        if (maxSize < 2 || isFull()) {
+
+            return false;
+        }
+
+        Template template = Template.parse(query);
+        if (template == null || unbatchable.contains(template.sql)
+                || (sql != null && !sql.equals(template.sql))) {
+
+            return false;
+        }
+
+        sql = template.sql;
+        queries.add(query);
+        values.add(template.values);
+        return true;
+    }
+
+    public void clear() {
+
+        sql = null;
+        queries.clear();
+        values.clear();
+    }
+
+    /**
+     * Executes and clears the batch.
+     *
+     * @return the total update count
+     */
+    public int execute(StatementExecutor executor, ErrorHandler errorHandler) throws SQLException {
+
+        try {
+
+            if (queries.size() == 1) {
+
+                return executeSingly(executor, errorHandler);
+            }
+
+            PreparedStatement statement;
+            try {
+
+                statement = executor.getPreparedStatement(sql);
+
+            } catch (SQLException e) {
+
+                // let each statement report the error
+                return executeSingly(executor, errorHandler);
+            }
+
+            if (statement == null) {
+
+                throw new SQLException("Not Connected");
+            }
+
+            try {
+
+                if (!parameterTypesMatch(statement)) {
+
+                    unbatchable.add(sql);
+                    return executeSingly(executor, errorHandler);
+                }
+
+                return executeBatch(executor, statement, errorHandler);
+
+            } finally {
+
+                close(statement);
+            }
+
+        } finally {
+
+            clear();
+        }
+
+    }
+
+    private int executeBatch(StatementExecutor executor, PreparedStatement statement, ErrorHandler errorHandler)
+            throws SQLException {
+
+        int updateCount = 0;
+        int from = 0;
+        while (from < queries.size()) {
+
+            for (int i = from, n = queries.size(); i < n; i++) {
+
+                List<Object> parameters = values.get(i);
+                for (int j = 0, k = parameters.size(); j < k; j++) {
+
+                    Object value = parameters.get(j);
+                    if (value instanceof BigDecimal) {
+
+                        statement.setBigDecimal(j + 1, (BigDecimal) value);
+
+                    } else {
+
+                        statement.setString(j + 1, (String) value);
+                    }
+
+                }
+
+                statement.addBatch();
+            }
+
+            try {
+
+                return updateCount + sum(statement.executeBatch());
+
+            } catch (BatchUpdateException e) {
+
+                statement.clearBatch();
+                if (statement.getConnection().getAutoCommit()) {
+
+                    // the driver ran the batch in one transaction and rolled it
+                    // all back - execute its statements one by one instead
+                    return updateCount + executeSingly(executor, errorHandler, from);
+                }
+
+                int[] counts = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+                if (counts.length == queries.size() - from) {
+
+                    // the driver continued past the failures
+                    for (int i = 0; i < counts.length; i++) {
+
+                        if (counts[i] == Statement.EXECUTE_FAILED) {
+
+                            if (!errorHandler.statementFailed(queries.get(from + i), e)) {
+
+                                break;
+                            }
+
+                        } else {
+
+                            updateCount += Math.max(0, counts[i]);
+                        }
+
+                    }
+
+                    return updateCount;
+                }
+
+                // statements up to the first failure were executed - continue after it
+                updateCount += sum(counts);
+                int failed = from + counts.length;
+                if (!errorHandler.statementFailed(queries.get(failed), e)) {
+
+                    return updateCount;
+                }
+
+                from = failed + 1;
+            }
+
+        }
+
+        return updateCount;
+    }
+
+    private int sum(int[] counts) {
+
+        int sum = 0;
+        for (int count : counts) {
+
+            if (count == Statement.SUCCESS_NO_INFO) {
+
+                // one row per statement of a literal DML run is the common case
+                sum += 1;
+
+            } else if (count > 0) {
+
+                sum += count;
+            }
+
+        }
+
+        return sum;
+    }
+
+    private int executeSingly(StatementExecutor executor, ErrorHandler errorHandler) throws SQLException {
+
+        return executeSingly(executor, errorHandler, 0);
+    }
+
+    /**
+     * Executes the statements of the batch from the specified index
+     * one by one, as written.
+     */
+    private int executeSingly(StatementExecutor executor, ErrorHandler errorHandler, int from) throws SQLException {
+
+        int updateCount = 0;
+        for (DerivedQuery query : queries.subList(from, queries.size())) {
+
+            PreparedStatement statement = null;
+            try {
+
+                statement = executor.getPreparedStatement(query.getDerivedQuery());
+                if (statement == null) {
+
+                    throw new SQLException("Not Connected");
+                }
+
+                updateCount += Math.max(0, statement.executeUpdate());
+
+            } catch (SQLException e) {
+
+                if (!errorHandler.statementFailed(query, e)) {
+
+                    break;
+                }
+
+            } finally {
+
+                close(statement);
+            }
+
+        }
+
+        return updateCount;
+    }
+
+    /**
+     * Checks the server's parameter types can take the literals of every
+     * statement as bound - a string bound to a date parameter, for example,
+     * would be parsed by the driver rather than by the server as it is when
+     * written inline. Statements of a run may write a string where others
+     * write a number at the same position.
+     */
+    private boolean parameterTypesMatch(PreparedStatement statement) {
+
+        try {
+
+            ParameterMetaData metaData = statement.getParameterMetaData();
+            int count = metaData.getParameterCount();
+            int[] types = new int[count];
+            for (int i = 0; i < count; i++) {
+
+                types[i] = metaData.getParameterType(i + 1);
+            }
+
+            for (List<Object> parameters : values) {
+
+                if (parameters.size() != count) {
+
+                    return false;
+                }
+
+                for (int i = 0; i < count; i++) {
+
+                    boolean matches = parameters.get(i) instanceof BigDecimal ? isNumeric(types[i]) : isCharacter(types[i]);
+                    if (!matches) {
+
+                        return false;
+                    }
+
+                }
+
+            }
+
+            return true;
+
+        } catch (SQLException e) {
+
+            Log.debug("Unable to describe the parameters of " + sql + " - " + e.getMessage());
+            return false;
+        }
+
+    }
+
+    private boolean isNumeric(int type) {
+
+        switch (type) {
+
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+                return true;
+
+            default:
+                return false;
+        }
+
+    }
+
+    private boolean isCharacter(int type) {
+
+        switch (type) {
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.CLOB:
+                return true;
+
+            default:
+                return false;
+        }
+
+    }
+
+    private void close(PreparedStatement statement) {
+
+        if (statement != null) {
+
+            try {
+
+                statement.close();
+
+            } catch (SQLException e) {
+
+                Log.debug("Error closing batch statement - " + e.getMessage());
+            }
+
+        }
+
+    }
+
+    /**
+     * A DML statement with its literals replaced by parameters.
+     */
+    static class Template {
+
+        final String sql;
+
+        final List<Object> values;
+
+        private Template(String sql, List<Object> values) {
+
+            this.sql = sql;
+            this.values = values;
+        }
+
+        /**
+         * Returns the template of the specified statement or <code>null</code>
+         * where it is not an INSERT, UPDATE or DELETE or already has parameters.
+         * <p/>
+         * Only literals standing alone as a value - after an opening bracket,
+         * comma or comparison and before a closing bracket, comma, keyword or
+         * the end of the statement - are replaced. Literals within expressions
+         * or after a type (eg. DATE '2017-01-01') remain part of the template.
+         */
+        static Template parse(DerivedQuery query) {
+
+            int queryType = query.getQueryType();
+            if (queryType != QueryTypes.INSERT && queryType != QueryTypes.UPDATE && queryType != QueryTypes.DELETE) {
+
+                return null;
+            }
+
+            List<Integer> types = new ArrayList<Integer>();
+            List<String> texts = new ArrayList<String>();
+            try {
+
+                SqlLexer lexer = new SqlLexer(query.getDerivedQuery());
+                int type;
+                while ((type = lexer.next()) != SqlLexer.END) {
+
+                    if (type == SqlLexer.LINE_COMMENT || type == SqlLexer.BLOCK_COMMENT) {
+
+                        type = SqlLexer.WHITESPACE;
+                    }
+
+                    if (type == SqlLexer.DELIMITER || type == SqlLexer.SET_TERM) {
+
+                        return null;
+                    }
+
+                    types.add(type);
+                    texts.add(type == SqlLexer.WHITESPACE ? " " : lexer.getText().toString());
+                }
+
+            } catch (IOException e) {
+
+                // not thrown reading text held in memory
+                return null;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            List<Object> values = new ArrayList<Object>();
+            for (int i = 0, n = types.size(); i < n; i++) {
+
+                int type = types.get(i);
+                String text = texts.get(i);
+
+                if (type == SqlLexer.OPERATOR && "?".equals(text)) {
+
+                    return null;
+
+                } else if (type == SqlLexer.WHITESPACE) {
+
+                    if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+
+                        sb.append(' ');
+                    }
+                    continue;
+
+                } else if (type == SqlLexer.STRING && standsAlone(types, texts, i, i)) {
+
+                    if (text.length() < 2 || !text.endsWith("'")) {
+
+                        return null;
+                    }
+
+                    sb.append('?');
+                    values.add(text.substring(1, text.length() - 1).replace("''", "'"));
+                    continue;
+
+                } else if (isNumber(types, texts, i)) {
+
+                    int first = i;
+                    int last = i;
+                    String number = text;
+                    if (isDigits(text) && i + 2 < n && ".".equals(texts.get(i + 1)) && isDigits(texts.get(i + 2))) {
+
+                        number += "." + texts.get(i + 2);
+                        last = i + 2;
+                    }
+
+                    boolean signed = i > 0 && types.get(i - 1) == SqlLexer.OPERATOR && "-".equals(texts.get(i - 1));
+                    if (signed) {
+
+                        first--;
+                    }
+
+                    if (isDigits(text) && standsAlone(types, texts, first, last)) {
+
+                        if (signed) {
+
+                            // replace the sign already appended
+                            sb.setLength(sb.length() - 1);
+                            number = "-" + number;
+                        }
+
+                        sb.append('?');
+                        values.add(new BigDecimal(number));
+
+                    } else {
+
+                        sb.append(number);
+                    }
+
+                    i = last;
+                    continue;
+                }
+
+                sb.append(text);
+            }
+
+            return new Template(sb.toString().trim(), values);
+        }
+
+        private static boolean isNumber(List<Integer> types, List<String> texts, int index) {
+
+            return types.get(index) == SqlLexer.WORD && Character.isDigit(texts.get(index).charAt(0));
+        }
+
+        private static boolean isDigits(String text) {
+
+            for (int i = 0, n = text.length(); i < n; i++) {
+
+                if (!Character.isDigit(text.charAt(i))) {
+
+                    return false;
+                }
+
+            }
+
+            return text.length() > 0;
+        }
+
+        private static boolean standsAlone(List<Integer> types, List<String> texts, int first, int last) {
+
+            int previous = significant(types, first - 1, -1);
+            if (previous == -1 || types.get(previous) != SqlLexer.OPERATOR
+                    || !"(,=<>".contains(texts.get(previous))) {
+
+                return false;
+            }
+
+            int next = significant(types, last + 1, 1);
+            return next == -1 || types.get(next) == SqlLexer.WORD
+                    || (types.get(next) == SqlLexer.OPERATOR && ",)".contains(texts.get(next)));
+        }
+
+        private static int significant(List<Integer> types, int from, int step) {
+
+            for (int i = from; i >= 0 && i < types.size(); i += step) {
+
+                if (types.get(i) != SqlLexer.WHITESPACE) {
+
+                    return i;
+                }
+
+            }
+
+            return -1;
+        }
+
+    }
+
+}
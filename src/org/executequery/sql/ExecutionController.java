@@ -32,6 +32,11 @@ public interface ExecutionController {
 
     void message(String message);
 
+    /**
+     * Reports how much of the script has been read.
+     */
+    void progress(long position, long length);
+
     boolean logOutput();
 
 }
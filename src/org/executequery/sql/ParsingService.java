@@ -0,0 +1,202 @@
+/*
+ * ParsingService.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.underworldlabs.procedureParser.ProcedureParserLexer;
+import org.underworldlabs.procedureParser.ProcedureParserParser;
+import org.underworldlabs.sqlParser.REDDATABASESqlBaseListener;
+import org.underworldlabs.sqlParser.REDDATABASESqlLexer;
+import org.underworldlabs.sqlParser.REDDATABASESqlParser;
+import org.underworldlabs.traceparser.RedTraceLexer;
+import org.underworldlabs.traceparser.RedTraceParser;
+import org.underworldlabs.util.ThreadLocalParser;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsing with the SQL, trace and procedure grammars.
+ * <p/>
+ * Each grammar is parsed with per thread lexer and parser
+ * instances, SLL prediction first. The variables declared by
+ * statements are cached by statement text so that a statement
+ * executed repeatedly is parsed once.
+ *
+ * @author Takis Diakoumis
+ */
+public final class ParsingService {
+
+    private static final int MAX_CACHED_STATEMENTS = 256;
+
+    public static final ThreadLocalParser<REDDATABASESqlParser> SQL =
+            new ThreadLocalParser<REDDATABASESqlParser>() {
+
+                protected Lexer createLexer(CharStream input) {
+
+                    return new REDDATABASESqlLexer(input);
+                }
+
+                protected REDDATABASESqlParser createParser(CommonTokenStream tokens) {
+
+                    return new REDDATABASESqlParser(tokens);
+                }
+
+            };
+
+    public static final ThreadLocalParser<RedTraceParser> TRACE =
+            new ThreadLocalParser<RedTraceParser>() {
+
+                protected Lexer createLexer(CharStream input) {
+
+                    return new RedTraceLexer(input);
+                }
+
+                protected RedTraceParser createParser(CommonTokenStream tokens) {
+
+                    return new RedTraceParser(tokens);
+                }
+
+            };
+
+    public static final ThreadLocalParser<ProcedureParserParser> PROCEDURE =
+            new ThreadLocalParser<ProcedureParserParser>() {
+
+                protected Lexer createLexer(CharStream input) {
+
+                    return new ProcedureParserLexer(input);
+                }
+
+                protected ProcedureParserParser createParser(CommonTokenStream tokens) {
+
+                    return new ProcedureParserParser(tokens);
+                }
+
+            };
+
+    private static final ThreadLocalParser.Rule<REDDATABASESqlParser> EXECUTE_BLOCK =
+            new ThreadLocalParser.Rule<REDDATABASESqlParser>() {
+
+                public ParseTree parse(REDDATABASESqlParser parser) {
+
+                    return parser.execute_block_stmt();
+                }
+
+            };
+
+    private static final ThreadLocalParser.Rule<REDDATABASESqlParser> PROCEDURE_OR_FUNCTION =
+            new ThreadLocalParser.Rule<REDDATABASESqlParser>() {
+
+                public ParseTree parse(REDDATABASESqlParser parser) {
+
+                    return parser.create_or_alter_procedure_stmt();
+                }
+
+            };
+
+    private static final Map<String, String> executeBlockVariables = newCache();
+
+    private static final Map<String, String> procedureVariables = newCache();
+
+    /**
+     * Returns the parameters and variables declared by the specified
+     * <code>EXECUTE BLOCK</code> statement, each name in angle brackets.
+     */
+    public static String executeBlockVariables(String sql) {
+
+        return declaredVariables(sql, EXECUTE_BLOCK, executeBlockVariables);
+    }
+
+    /**
+     * Returns the parameters and variables declared by the specified
+     * create or alter procedure or function statement, each name in
+     * angle brackets.
+     */
+    public static String procedureVariables(String sql) {
+
+        return declaredVariables(sql, PROCEDURE_OR_FUNCTION, procedureVariables);
+    }
+
+    private static String declaredVariables(String sql,
+                                            ThreadLocalParser.Rule<REDDATABASESqlParser> rule, Map<String, String> cache) {
+
+        String variables = cache.get(sql);
+        if (variables == null) {
+
+            variables = collectVariables(SQL.parse(sql, rule));
+            cache.put(sql, variables);
+        }
+
+        return variables;
+    }
+
+    private static String collectVariables(ParseTree tree) {
+
+        final StringBuilder variables = new StringBuilder();
+        new ParseTreeWalker().walk(new REDDATABASESqlBaseListener() {
+
+            @Override
+            public void enterDeclare_block(REDDATABASESqlParser.Declare_blockContext ctx) {
+
+                List<REDDATABASESqlParser.Input_parameterContext> in_pars = ctx.input_parameter();
+                for (int i = 0; i < in_pars.size(); i++) {
+                    variables.append("<").append(in_pars.get(i).desciption_parameter().parameter_name().getRuleContext().getText()).append(">");
+                }
+                List<REDDATABASESqlParser.Output_parameterContext> out_pars = ctx.output_parameter();
+                for (int i = 0; i < out_pars.size(); i++) {
+                    variables.append("<").append(out_pars.get(i).desciption_parameter().parameter_name().getRuleContext().getText()).append(">");
+                }
+                List<REDDATABASESqlParser.Local_variableContext> vars = ctx.local_variable();
+                for (int i = 0; i < vars.size(); i++) {
+                    variables.append("<").append(vars.get(i).variable_name().getRuleContext().getText()).append(">");
+                }
+            }
+
+        }, tree);
+
+        return variables.toString();
+    }
+
+    private static Map<String, String> newCache() {
+
+        // keyed by the statement text - its hash locates the entry
+        // and the text itself rules out collisions
+        return Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+
+                return size() > MAX_CACHED_STATEMENTS;
+            }
+
+        });
+    }
+
+    private ParsingService() {
+    }
+
+}
@@ -22,12 +22,6 @@ package org.executequery.sql;
 
 import biz.redsoft.IFBDatabasePerformance;
 import biz.redsoft.IFBPerformanceInfo;
-import org.antlr.v4.runtime.ANTLRErrorListener;
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.ConsoleErrorListener;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.executequery.Constants;
 import org.executequery.databasemediators.DatabaseConnection;
 import org.executequery.databasemediators.DatabaseDriver;
@@ -43,19 +37,12 @@ import org.executequery.gui.editor.QueryEditorHistory;
 import org.executequery.gui.editor.autocomplete.Parameter;
 import org.executequery.log.Log;
 import org.executequery.util.ThreadUtils;
-import org.executequery.util.ThreadWorker;
 import org.executequery.util.UserProperties;
-import org.underworldlabs.sqlParser.REDDATABASESqlBaseListener;
-import org.underworldlabs.sqlParser.REDDATABASESqlLexer;
-import org.underworldlabs.sqlParser.REDDATABASESqlParser;
 import org.underworldlabs.sqlParser.SqlParser;
 import org.underworldlabs.util.DynamicLibraryLoader;
 import org.underworldlabs.util.MiscUtils;
 import org.underworldlabs.util.SystemProperties;
 
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -77,9 +64,9 @@ public class QueryDispatcher {
     private QueryDelegate delegate;
 
     /**
-     * thread worker object
+     * the query submitted for execution
      */
-    private ThreadWorker worker;
+    private RunningQuery worker;
 
     /**
      * the query sender database mediator
@@ -111,8 +98,18 @@ public class QueryDispatcher {
      */
     private boolean statementCancelled;
 
+    /**
+     * indicates that an error was output by the current execution
+     */
+    private boolean executionFailed;
+
     private QueryTokenizer queryTokenizer;
 
+    /**
+     * output of the executing query waiting for the EDT
+     */
+    private QueryOutputQueue outputQueue;
+
     private boolean waiting;
 
     /**
@@ -120,6 +117,12 @@ public class QueryDispatcher {
      */
     private int transactionLevel;
 
+    /**
+     * the schema changes of executed statements awaiting commit - a new
+     * session records its changes with a tracker of its own
+     */
+    private final SchemaChangeTracker schemaChanges = new SchemaChangeTracker();
+
     // ------------------------------------------------
     // static string outputs
     // ------------------------------------------------
@@ -147,6 +150,22 @@ public class QueryDispatcher {
             initialiseLogging();
 
             queryTokenizer = new QueryTokenizer();
+
+            outputQueue = new QueryOutputQueue(new QueryOutputQueue.Target() {
+
+                public void setOutputMessage(int type, String text, boolean selectTab) {
+                    delegate.setOutputMessage(type, text, selectTab);
+                }
+
+                public void setStatusMessage(String text) {
+                    delegate.setStatusMessage(text);
+                }
+
+                public void setResult(int result, int type) {
+                    delegate.setResult(result, type);
+                }
+
+            });
         } catch (NoClassDefFoundError e) {
             e.printStackTrace();
         }
@@ -179,6 +198,11 @@ public class QueryDispatcher {
         this.autoCommit = autoCommit;
 
         querySender.setCommitMode(autoCommit);
+        if (autoCommit) {
+
+            // switching to auto-commit commits the open transaction
+            schemaChanges.committed();
+        }
 
         delegate.commitModeChanged(autoCommit);
     }
@@ -190,6 +214,7 @@ public class QueryDispatcher {
     public void closeConnection() {
         try {
             if (querySender != null) {
+                schemaChanges.rolledBack();
                 querySender.closeConnection();
             }
         } catch (SQLException sqlExc) {
@@ -203,6 +228,7 @@ public class QueryDispatcher {
      * @param dc connection thats been closed
      */
     public void disconnected(DatabaseConnection dc) {
+        schemaChanges.rolledBack();
         querySender.disconnected(dc);
     }
 
@@ -242,6 +268,32 @@ public class QueryDispatcher {
                                 final String query,
                                 final boolean executeAsBlock) {
 
+        executeSQLQuery(dc, query, executeAsBlock, false);
+    }
+
+    /**
+     * Executes the query(ies) as specified in a new session - with
+     * its own connection and a single transaction committed once all
+     * statements have executed, or rolled back on an error or cancel.
+     * The session of this object and any transaction open in it are
+     * not affected.
+     *
+     * @param dc             connection object
+     * @param query          query string
+     * @param executeAsBlock to execute in entirety, false otherwise
+     */
+    public void executeSQLQueryInNewSession(DatabaseConnection dc,
+                                            final String query,
+                                            final boolean executeAsBlock) {
+
+        executeSQLQuery(dc, query, executeAsBlock, true);
+    }
+
+    private void executeSQLQuery(DatabaseConnection dc,
+                                 final String query,
+                                 final boolean executeAsBlock,
+                                 final boolean newSession) {
+
         if (!ConnectionManager.hasConnections()) {
 
             setOutputMessage(SqlMessages.PLAIN_MESSAGE, "Not Connected");
@@ -260,39 +312,63 @@ public class QueryDispatcher {
             querySender.setDatabaseConnection(dc);
         }
 
-        querySender.setTransactionIsolation(transactionLevel);
+        // a new session runs on an executor and tracker of its own,
+        // leaving those of this object to anything run meanwhile
+        final StatementExecutor executor;
+        final SchemaChangeTracker tracker;
+        if (newSession) {
+
+            executor = new DefaultStatementExecutor(querySender.getDatabaseConnection(), true);
+            executor.setCommitMode(false);
+            tracker = new SchemaChangeTracker();
+
+        } else {
+
+            executor = querySender;
+            tracker = schemaChanges;
+        }
+
+        executor.setTransactionIsolation(transactionLevel);
 
         statementCancelled = false;
+        executionFailed = false;
 
-        worker = new ThreadWorker() {
+        QueryExecutionScheduler.Task task = new QueryExecutionScheduler.Task() {
 
             public Object construct() {
 
-                return executeSQL(query, executeAsBlock);
+                Object result = executeSQL(executor, tracker, query, executeAsBlock);
+                if (newSession) {
+
+                    endSession(executor, tracker);
+                }
+
+                return result;
             }
 
             public void finished() {
 
-                delegate.finished(duration);
+                executionFinished(executor);
+                if (newSession) {
 
-                if (statementCancelled) {
-
-                    setOutputMessage(SqlMessages.PLAIN_MESSAGE,
-                            "Statement cancelled");
-                    delegate.setStatusMessage(" Statement cancelled");
+                    closeSession(executor);
                 }
 
-                querySender.releaseResources();
-                executing = false;
+            }
+
+            public void cancel() {
+
+                cancelStatement(executor);
             }
 
         };
 
-        setOutputMessage(SqlMessages.PLAIN_MESSAGE, "---\nUsing connection: " + dc);
+        setOutputMessage(SqlMessages.PLAIN_MESSAGE, "---\nUsing connection: " + dc
+                + (newSession ? " (new session)" : Constants.EMPTY));
 
         delegate.executing();
         delegate.setStatusMessage(Constants.EMPTY);
-        worker.start();
+        worker = QueryExecutionScheduler.submit(connectionName(), query, task);
     }
 
     public void executeSQLScript(DatabaseConnection dc,
@@ -319,8 +395,9 @@ public class QueryDispatcher {
         querySender.setTransactionIsolation(transactionLevel);
 
         statementCancelled = false;
+        executionFailed = false;
 
-        worker = new ThreadWorker() {
+        QueryExecutionScheduler.Task task = new QueryExecutionScheduler.Task() {
 
             public Object construct() {
 
@@ -329,17 +406,12 @@ public class QueryDispatcher {
 
             public void finished() {
 
-                delegate.finished(duration);
-
-                if (statementCancelled) {
+                executionFinished(querySender);
+            }
 
-                    setOutputMessage(SqlMessages.PLAIN_MESSAGE,
-                            "Statement cancelled");
-                    delegate.setStatusMessage(" Statement cancelled");
-                }
+            public void cancel() {
 
-                querySender.releaseResources();
-                executing = false;
+                cancelStatement(querySender);
             }
 
         };
@@ -348,7 +420,90 @@ public class QueryDispatcher {
 
         delegate.executing();
         delegate.setStatusMessage(Constants.EMPTY);
-        worker.start();
+        worker = QueryExecutionScheduler.submit(connectionName(), script, task);
+    }
+
+    private void executionFinished(StatementExecutor executor) {
+
+        outputQueue.flush();
+        delegate.finished(duration);
+
+        if (statementCancelled || worker.isCancelled()) {
+
+            setOutputMessage(SqlMessages.PLAIN_MESSAGE,
+                    "Statement cancelled");
+            delegate.setStatusMessage(" Statement cancelled");
+        }
+
+        executor.releaseResources();
+        executing = false;
+    }
+
+    /**
+     * Commits the transaction of a new session if all statements
+     * executed, otherwise rolls it back.
+     */
+    private void endSession(StatementExecutor executor, SchemaChangeTracker tracker) {
+
+        Connection connection = executor.getConnection();
+        if (connection == null) {
+
+            return;
+        }
+
+        try {
+
+            if (statementCancelled || worker.isCancelled() || executionFailed) {
+
+                setOutputMessage(SqlMessages.ACTION_MESSAGE, ROLLING_BACK_LAST);
+                connection.rollback();
+                tracker.rolledBack();
+
+            } else {
+
+                setOutputMessage(SqlMessages.ACTION_MESSAGE, COMMITTING_LAST);
+                connection.commit();
+                tracker.committed();
+            }
+
+        } catch (SQLException e) {
+
+            processException(e);
+        }
+
+    }
+
+    /**
+     * Closes the connection of a new session once it has ended.
+     */
+    private void closeSession(StatementExecutor executor) {
+
+        try {
+
+            executor.destroyConnection();
+
+        } catch (SQLException e) {
+
+            Log.debug("Error closing session connection: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Records the schema change of the specified executed statement,
+     * if any, with the specified tracker to be published once committed -
+     * at once in auto-commit mode, unless run in a new session.
+     */
+    private void schemaChanged(StatementExecutor executor, SchemaChangeTracker tracker, DerivedQuery query) {
+
+        tracker.executed(executor.getDatabaseConnection(),
+                query.getQueryType(), query.getDerivedQuery(), autoCommit && tracker == schemaChanges);
+    }
+
+    private String connectionName() {
+
+        DatabaseConnection databaseConnection = querySender.getDatabaseConnection();
+        return databaseConnection != null ? databaseConnection.getName() : Constants.EMPTY;
     }
 
     public void printExecutedPlan(DatabaseConnection dc,
@@ -376,7 +531,7 @@ public class QueryDispatcher {
 
         try {
             Statement statement = querySender.getPreparedStatement(query);
-            printPlan(statement);
+            printPlan(querySender, statement);
         } catch (SQLException e) {
             setOutputMessage(SqlMessages.ERROR_MESSAGE, e.getMessage());
         } finally {
@@ -389,32 +544,34 @@ public class QueryDispatcher {
      */
     public void interruptStatement() {
 
-        ThreadUtils.startWorker(new Runnable() {
+        if (worker != null) {
 
-            public void run() {
+            // cancels the statement off the EDT
+            worker.cancel();
+        }
 
-                if (Log.isDebugEnabled()) {
+    }
 
-                    Log.debug("QueryAnalyser: interruptStatement()");
-                    Log.debug("Was currently executing " + executing);
-                }
+    private void cancelStatement(StatementExecutor executor) {
 
-                if (!executing) {
+        if (Log.isDebugEnabled()) {
 
-                    return;
-                }
+            Log.debug("QueryAnalyser: interruptStatement()");
+            Log.debug("Was currently executing " + executing);
+        }
 
-                if (querySender != null) {
+        if (!executing) {
 
-                    querySender.cancelCurrentStatement();
-                }
+            return;
+        }
 
-                executing = false;
-                statementCancelled = true;
-            }
+        if (executor != null) {
 
-        });
+            executor.cancelCurrentStatement();
+        }
 
+        executing = false;
+        statementCancelled = true;
     }
 
     public void pauseExecution() {
@@ -468,7 +625,8 @@ public class QueryDispatcher {
      * @param sql            query string
      * @param executeAsBlock to execute in entirety, false otherwise
      */
-    private Object executeSQL(String sql, boolean executeAsBlock) {
+    private Object executeSQL(StatementExecutor executor, SchemaChangeTracker tracker,
+                              String sql, boolean executeAsBlock) {
 
         IFBPerformanceInfo before, after;
         before = null;
@@ -491,36 +649,9 @@ public class QueryDispatcher {
                 executing = true;
 
                 start = System.currentTimeMillis();
-                REDDATABASESqlLexer lexer = new REDDATABASESqlLexer(CharStreams.fromString(sql));
-                CommonTokenStream tokens = new CommonTokenStream(lexer);
-                REDDATABASESqlParser sqlparser = new REDDATABASESqlParser(tokens);
-                List<? extends ANTLRErrorListener> listeners = sqlparser.getErrorListeners();
-                for (int i = 0; i < listeners.size(); i++) {
-                    if (listeners.get(i) instanceof ConsoleErrorListener)
-                        sqlparser.removeErrorListener(listeners.get(i));
-                }
-                ParseTree tree = sqlparser.execute_block_stmt();
-                ParseTreeWalker walker = new ParseTreeWalker();
-                StringBuilder variables = new StringBuilder();
-                walker.walk(new REDDATABASESqlBaseListener() {
-                    @Override
-                    public void enterDeclare_block(REDDATABASESqlParser.Declare_blockContext ctx) {
-                        List<REDDATABASESqlParser.Input_parameterContext> in_pars = ctx.input_parameter();
-                        for (int i = 0; i < in_pars.size(); i++) {
-                            variables.append("<").append(in_pars.get(i).desciption_parameter().parameter_name().getRuleContext().getText()).append(">");
-                        }
-                        List<REDDATABASESqlParser.Output_parameterContext> out_pars = ctx.output_parameter();
-                        for (int i = 0; i < out_pars.size(); i++) {
-                            variables.append("<").append(out_pars.get(i).desciption_parameter().parameter_name().getRuleContext().getText()).append(">");
-                        }
-                        List<REDDATABASESqlParser.Local_variableContext> vars = ctx.local_variable();
-                        for (int i = 0; i < vars.size(); i++) {
-                            variables.append("<").append(vars.get(i).variable_name().getRuleContext().getText()).append(">");
-                        }
-                    }
-                }, tree);
-                PreparedStatement statement = prepareStatementWithParameters(sql, variables.toString());
-                SqlStatementResult result = querySender.execute(statement, true);
+                String variables = ParsingService.executeBlockVariables(sql);
+                PreparedStatement statement = prepareStatementWithParameters(executor, sql, variables);
+                SqlStatementResult result = executor.execute(statement, true);
                 //SqlStatementResult result = querySender.execute(sql, true);
 
                 if (Thread.interrupted()) {
@@ -556,6 +687,7 @@ public class QueryDispatcher {
                     } else {
 
                         setResult(updateCount, QueryTypes.UNKNOWN);
+                        schemaChanged(executor, tracker, new DerivedQuery(sql));
                     }
 
                 }
@@ -579,7 +711,7 @@ public class QueryDispatcher {
             // check if its a procedure creation or execution
             if (isCreateProcedureOrFunction(procQuery)) {
 
-                return executeProcedureOrFunction(sql, procQuery);
+                return executeProcedureOrFunction(executor, sql, procQuery);
             }
 
             List<DerivedQuery> queries = queryTokenizer.tokenize(sql);
@@ -624,7 +756,7 @@ public class QueryDispatcher {
                 }
 
                 try {
-                    DatabaseConnection databaseConnection = this.querySender.getDatabaseConnection();
+                    DatabaseConnection databaseConnection = executor.getDatabaseConnection();
                     Map<String, Driver> loadedDrivers = DefaultDriverLoader.getLoadedDrivers();
                     DatabaseDriver jdbcDriver = databaseConnection.getJDBCDriver();
                     Driver driver = loadedDrivers.get(jdbcDriver.getId() + "-" + jdbcDriver.getClassName());
@@ -633,7 +765,7 @@ public class QueryDispatcher {
 
                         Connection connection = null;
                         try {
-                            connection = querySender.getConnection().unwrap(Connection.class);
+                            connection = executor.getConnection().unwrap(Connection.class);
                         } catch (SQLException e) {
                             e.printStackTrace();
                         }
@@ -658,18 +790,18 @@ public class QueryDispatcher {
                 CallableStatement callableStatement = null;
                 SqlStatementResult result;
                 if (queryToExecute.toLowerCase().trim().contentEquals("commit") || queryToExecute.toLowerCase().trim().contentEquals("rollback"))
-                    statement = querySender.getPreparedStatement(queryToExecute);
+                    statement = executor.getPreparedStatement(queryToExecute);
                 else {
                     if (query.getQueryType() != QueryTypes.CALL) {
-                        statement = prepareStatementWithParameters(queryToExecute, "");
+                        statement = prepareStatementWithParameters(executor, queryToExecute, "");
                     } else {
-                        callableStatement = prepareCallableStatementWithParameters(queryToExecute, "");
+                        callableStatement = prepareCallableStatementWithParameters(executor, queryToExecute, "");
                     }
                 }
                 if (statement != null)
-                    result = querySender.execute(type, statement);
+                    result = executor.execute(type, statement);
                 else
-                    result = querySender.execute(type, callableStatement);
+                    result = executor.execute(type, callableStatement);
 
                 if (statementCancelled || Thread.interrupted()) {
 
@@ -694,7 +826,7 @@ public class QueryDispatcher {
 
                         }
 
-                        printExecutionPlan(before, after);
+                        printExecutionPlan(executor, before, after);
 
                         setOutputMessage(SqlMessages.ERROR_MESSAGE,
                                 message, true);
@@ -704,11 +836,11 @@ public class QueryDispatcher {
 
                         // Trying to get execution plan of firebird statement
 
-                        printPlan(rset);
+                        printPlan(executor, rset);
 
                         setResultSet(rset, query.getOriginalQuery());
 
-                        printExecutionPlan(before, after);
+                        printExecutionPlan(executor, before, after);
                     }
 
                     end = System.currentTimeMillis();
@@ -723,7 +855,7 @@ public class QueryDispatcher {
                         int updateCount = result.getUpdateCount();
                         if (updateCount == -1) {
 
-                            printExecutionPlan(before, after);
+                            printExecutionPlan(executor, before, after);
 
                             setOutputMessage(SqlMessages.ERROR_MESSAGE,
                                     result.getErrorMessage(), true);
@@ -733,13 +865,14 @@ public class QueryDispatcher {
 
                             if (result.isException()) {
 
-                                printExecutionPlan(before, after);
+                                printExecutionPlan(executor, before, after);
 
                                 setOutputMessage(SqlMessages.ERROR_MESSAGE, result.getErrorMessage(), true);
                             } else {
 
                                 type = result.getType();
                                 setResultText(updateCount, type);
+                                schemaChanged(executor, tracker, query);
 
 
                                 if (type == QueryTypes.COMMIT || type == QueryTypes.ROLLBACK) {
@@ -747,7 +880,7 @@ public class QueryDispatcher {
                                     setStatusMessage(" " + result.getMessage());
                                 }
 
-                                printExecutionPlan(before, after);
+                                printExecutionPlan(executor, before, after);
 
                             }
                         }
@@ -759,14 +892,14 @@ public class QueryDispatcher {
 
                         if (results == null) {
 
-                            printExecutionPlan(before, after);
+                            printExecutionPlan(executor, before, after);
 
                             setOutputMessage(SqlMessages.ERROR_MESSAGE, result.getErrorMessage(), true);
                             setStatusMessage(ERROR_EXECUTING);
 
                         } else {
 
-                            printExecutionPlan(before, after);
+                            printExecutionPlan(executor, before, after);
 
                             setOutputMessage(SqlMessages.PLAIN_MESSAGE, "Call executed successfully.");
                             int updateCount = result.getUpdateCount();
@@ -925,6 +1058,7 @@ public class QueryDispatcher {
             start = System.currentTimeMillis();
             boolean stopOnError = SystemProperties.getBooleanProperty("user", "editor.stop.on.error");
             boolean error = false;
+            DmlBatch dmlBatch = new DmlBatch(SystemProperties.getIntProperty("user", DmlBatch.BATCH_SIZE_KEY));
             for (int i = 0; i < executableQueries.size(); i++) {
                 try {
                     DerivedQuery query = executableQueries.get(i);
@@ -932,9 +1066,31 @@ public class QueryDispatcher {
                             SqlMessages.ACTION_MESSAGE, (i + 1) + " query");
                     if (statementCancelled || Thread.interrupted()) {
 
+                        reportNotExecuted(dmlBatch);
                         throw new InterruptedException();
                     }
 
+                    boolean batched = dmlBatch.add(query);
+                    if (!batched && !dmlBatch.isEmpty()) {
+
+                        error = !executeBatch(querySender, dmlBatch, stopOnError);
+                        if (error && stopOnError) {
+
+                            break;
+                        }
+
+                        batched = dmlBatch.add(query);
+                    }
+
+                    if (batched) {
+
+                        if (dmlBatch.isFull()) {
+
+                            error = !executeBatch(querySender, dmlBatch, stopOnError);
+                        }
+                        continue;
+                    }
+
                     String queryToExecute = query.getDerivedQuery();
 
                     int type = query.getQueryType();
@@ -989,7 +1145,7 @@ public class QueryDispatcher {
 
                             }
 
-                            printExecutionPlan(before, after);
+                            printExecutionPlan(querySender, before, after);
 
                             setOutputMessage(SqlMessages.ERROR_MESSAGE,
                                     message, true);
@@ -1000,11 +1156,11 @@ public class QueryDispatcher {
 
                             // Trying to get execution plan of firebird statement
 
-                            printPlan(rset);
+                            printPlan(querySender, rset);
 
                             setResultSet(rset, query.getOriginalQuery());
 
-                            printExecutionPlan(before, after);
+                            printExecutionPlan(querySender, before, after);
                         }
 
                         end = System.currentTimeMillis();
@@ -1038,6 +1194,7 @@ public class QueryDispatcher {
 
                                     type = result.getType();
                                     setResultText(updateCount, type);
+                                    schemaChanged(querySender, schemaChanges, query);
 
 
                                     if (type == QueryTypes.COMMIT || type == QueryTypes.ROLLBACK) {
@@ -1045,7 +1202,7 @@ public class QueryDispatcher {
                                         setStatusMessage(" " + result.getMessage());
                                     }
 
-                                    printExecutionPlan(before, after);
+                                    printExecutionPlan(querySender, before, after);
 
                                 }
                             }
@@ -1065,7 +1222,7 @@ public class QueryDispatcher {
 
                             } else {
 
-                                printExecutionPlan(before, after);
+                                printExecutionPlan(querySender, before, after);
 
                                 setOutputMessage(SqlMessages.PLAIN_MESSAGE, "Call executed successfully.");
                                 int updateCount = result.getUpdateCount();
@@ -1133,6 +1290,21 @@ public class QueryDispatcher {
                 }
 
             }
+
+            if (!dmlBatch.isEmpty()) {
+
+                try {
+
+                    executeBatch(querySender, dmlBatch, stopOnError);
+
+                } finally {
+
+                    querySender.releaseResources();
+                }
+
+                end = System.currentTimeMillis();
+            }
+
             if (end == 0) {
 
                 end = System.currentTimeMillis();
@@ -1178,10 +1350,78 @@ public class QueryDispatcher {
         return DONE;
     }
 
-    PreparedStatement prepareStatementWithParameters(String sql, String variables) throws SQLException {
+    /**
+     * Executes the DML statements collected from the script as one batch.
+     *
+     * @return whether all statements were executed successfully
+     */
+    private boolean executeBatch(StatementExecutor executor, DmlBatch dmlBatch, boolean stopOnError) throws SQLException {
+
+        for (DerivedQuery query : dmlBatch.getQueries()) {
+
+            logExecution(query.getDerivedQuery());
+        }
+
+        int type = dmlBatch.getQueryType();
+        BatchErrorHandler errorHandler = new BatchErrorHandler(stopOnError);
+
+        int updateCount = dmlBatch.execute(executor, errorHandler);
+        setResultText(updateCount, type);
+
+        return !errorHandler.failed;
+    }
+
+    /**
+     * Reports the statements still waiting in the batch when
+     * execution is cancelled - they are not executed.
+     */
+    private void reportNotExecuted(DmlBatch dmlBatch) {
+
+        if (!dmlBatch.isEmpty()) {
+
+            setOutputMessage(SqlMessages.WARNING_MESSAGE, "Cancelled - " + dmlBatch.size()
+                    + " batched queries were not executed:");
+            for (DerivedQuery query : dmlBatch.getQueries()) {
+
+                setOutputMessage(SqlMessages.WARNING_MESSAGE_PREFORMAT, query.getDerivedQuery());
+            }
+            dmlBatch.clear();
+        }
+    }
+
+    /**
+     * Reports the statements of a batch that failed as they
+     * would be reported when executed singly.
+     */
+    private class BatchErrorHandler implements DmlBatch.ErrorHandler {
+
+        private final boolean stopOnError;
+
+        private boolean failed;
+
+        BatchErrorHandler(boolean stopOnError) {
+
+            this.stopOnError = stopOnError;
+        }
+
+        public boolean statementFailed(DerivedQuery query, SQLException e) {
+
+            failed = true;
+
+            setOutputMessage(SqlMessages.ERROR_MESSAGE, "Error executing query:", true);
+            setOutputMessage(SqlMessages.ACTION_MESSAGE_PREFORMAT, query.getDerivedQuery());
+            processException(e);
+            setStatusMessage(ERROR_EXECUTING);
+
+            return !stopOnError;
+        }
+
+    }
+
+    PreparedStatement prepareStatementWithParameters(StatementExecutor executor, String sql, String variables) throws SQLException {
         SqlParser parser = new SqlParser(sql, variables);
         String queryToExecute = parser.getProcessedSql();
-        PreparedStatement statement = querySender.getPreparedStatement(queryToExecute);
+        PreparedStatement statement = executor.getPreparedStatement(queryToExecute);
         statement.setEscapeProcessing(true);
         ParameterMetaData pmd = statement.getParameterMetaData();
         List<Parameter> params = parser.getParameters();
@@ -1190,8 +1430,8 @@ public class QueryDispatcher {
                 params.get(i).setType(pmd.getParameterType(i + 1));
                 params.get(i).setTypeName(pmd.getParameterTypeName(i + 1));
             }
-        if (QueryEditorHistory.getHistoryParameters().containsKey(querySender.getDatabaseConnection())) {
-            List<Parameter> oldParams = QueryEditorHistory.getHistoryParameters().get(querySender.getDatabaseConnection());
+        if (QueryEditorHistory.getHistoryParameters().containsKey(executor.getDatabaseConnection())) {
+            List<Parameter> oldParams = QueryEditorHistory.getHistoryParameters().get(executor.getDatabaseConnection());
             for (int i = 0; i < displayParams.size(); i++) {
                 Parameter dp = displayParams.get(i);
                 for (int g = 0; g < oldParams.size(); g++) {
@@ -1214,14 +1454,14 @@ public class QueryDispatcher {
             else
                 statement.setObject(i + 1, params.get(i).getPreparedValue());
         }
-        QueryEditorHistory.getHistoryParameters().put(querySender.getDatabaseConnection(), displayParams);
+        QueryEditorHistory.getHistoryParameters().put(executor.getDatabaseConnection(), displayParams);
         return statement;
     }
 
-    private CallableStatement prepareCallableStatementWithParameters(String sql, String parameters) throws SQLException {
+    private CallableStatement prepareCallableStatementWithParameters(StatementExecutor executor, String sql, String parameters) throws SQLException {
         SqlParser parser = new SqlParser(sql, parameters);
         String queryToExecute = parser.getProcessedSql();
-        CallableStatement statement = querySender.getCallableStatement(queryToExecute);
+        CallableStatement statement = executor.getCallableStatement(queryToExecute);
         statement.setEscapeProcessing(true);
         ParameterMetaData pmd = statement.getParameterMetaData();
         List<Parameter> params = parser.getParameters();
@@ -1230,8 +1470,8 @@ public class QueryDispatcher {
             params.get(i).setType(pmd.getParameterType(i + 1));
             params.get(i).setTypeName(pmd.getParameterTypeName(i + 1));
         }
-        if (QueryEditorHistory.getHistoryParameters().containsKey(querySender.getDatabaseConnection())) {
-            List<Parameter> oldParams = QueryEditorHistory.getHistoryParameters().get(querySender.getDatabaseConnection());
+        if (QueryEditorHistory.getHistoryParameters().containsKey(executor.getDatabaseConnection())) {
+            List<Parameter> oldParams = QueryEditorHistory.getHistoryParameters().get(executor.getDatabaseConnection());
             for (int i = 0; i < displayParams.size(); i++) {
                 Parameter dp = displayParams.get(i);
                 for (int g = 0; g < oldParams.size(); g++) {
@@ -1254,13 +1494,13 @@ public class QueryDispatcher {
             else
                 statement.setObject(i + 1, params.get(i).getPreparedValue());
         }
-        QueryEditorHistory.getHistoryParameters().put(querySender.getDatabaseConnection(), displayParams);
+        QueryEditorHistory.getHistoryParameters().put(executor.getDatabaseConnection(), displayParams);
         return statement;
     }
 
-    private void printExecutionPlan(IFBPerformanceInfo before, IFBPerformanceInfo after) {
+    private void printExecutionPlan(StatementExecutor executor, IFBPerformanceInfo before, IFBPerformanceInfo after) {
         // Trying to get execution plan of firebird statement
-        DatabaseConnection databaseConnection = this.querySender.getDatabaseConnection();
+        DatabaseConnection databaseConnection = executor.getDatabaseConnection();
         DefaultDriverLoader driverLoader = new DefaultDriverLoader();
         Map<String, Driver> loadedDrivers = DefaultDriverLoader.getLoadedDrivers();
         DatabaseDriver jdbcDriver = databaseConnection.getJDBCDriver();
@@ -1270,27 +1510,16 @@ public class QueryDispatcher {
 
             Connection connection = null;
             try {
-                connection = querySender.getConnection().unwrap(Connection.class);
+                connection = executor.getConnection().unwrap(Connection.class);
             } catch (SQLException e) {
                 e.printStackTrace();
             }
 
-            URL[] urls = new URL[0];
-            Class clazzdb = null;
             Object odb = null;
             try {
-                urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                ClassLoader cl = new URLClassLoader(urls, connection.getClass().getClassLoader());
-                clazzdb = cl.loadClass("biz.redsoft.FBDatabasePerformanceImpl");
-                odb = clazzdb.newInstance();
+                odb = DynamicLibraryLoader.loadingObjectFromClassLoader(connection, "FBDatabasePerformanceImpl");
             } catch (ClassNotFoundException e) {
                 e.printStackTrace();
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (InstantiationException e) {
-                e.printStackTrace();
-            } catch (MalformedURLException e) {
-                e.printStackTrace();
             }
 
             IFBDatabasePerformance db = (IFBDatabasePerformance) odb;
@@ -1312,9 +1541,9 @@ public class QueryDispatcher {
 
     }
 
-    private void printPlan(ResultSet rs) {
+    private void printPlan(StatementExecutor executor, ResultSet rs) {
         try {
-            DatabaseConnection databaseConnection = this.querySender.getDatabaseConnection();
+            DatabaseConnection databaseConnection = executor.getDatabaseConnection();
             DefaultDriverLoader driverLoader = new DefaultDriverLoader();
             Map<String, Driver> loadedDrivers = DefaultDriverLoader.getLoadedDrivers();
             DatabaseDriver jdbcDriver = databaseConnection.getJDBCDriver();
@@ -1330,22 +1559,11 @@ public class QueryDispatcher {
                     e.printStackTrace();
                 }
 
-                URL[] urls = new URL[0];
-                Class clazzdb = null;
                 Object odb = null;
                 try {
-                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                    ClassLoader cl = new URLClassLoader(urls, resultSet.getClass().getClassLoader());
-                    clazzdb = cl.loadClass("biz.redsoft.FBDatabasePerformanceImpl");
-                    odb = clazzdb.newInstance();
+                    odb = DynamicLibraryLoader.loadingObjectFromClassLoader(resultSet, "FBDatabasePerformanceImpl");
                 } catch (ClassNotFoundException e) {
                     e.printStackTrace();
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                } catch (InstantiationException e) {
-                    e.printStackTrace();
-                } catch (MalformedURLException e) {
-                    e.printStackTrace();
                 }
 
                 IFBDatabasePerformance db = (IFBDatabasePerformance) odb;
@@ -1363,9 +1581,9 @@ public class QueryDispatcher {
         }
     }
 
-    private void printPlan(Statement st) {
+    private void printPlan(StatementExecutor executor, Statement st) {
         try {
-            DatabaseConnection databaseConnection = this.querySender.getDatabaseConnection();
+            DatabaseConnection databaseConnection = executor.getDatabaseConnection();
             DefaultDriverLoader driverLoader = new DefaultDriverLoader();
             Map<String, Driver> loadedDrivers = DefaultDriverLoader.getLoadedDrivers();
             DatabaseDriver jdbcDriver = databaseConnection.getJDBCDriver();
@@ -1381,22 +1599,11 @@ public class QueryDispatcher {
                     e.printStackTrace();
                 }
 
-                URL[] urls = new URL[0];
-                Class clazzdb = null;
                 Object odb = null;
                 try {
-                    urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-                    ClassLoader cl = new URLClassLoader(urls, statement.getClass().getClassLoader());
-                    clazzdb = cl.loadClass("biz.redsoft.FBDatabasePerformanceImpl");
-                    odb = clazzdb.newInstance();
+                    odb = DynamicLibraryLoader.loadingObjectFromClassLoader(statement, "FBDatabasePerformanceImpl");
                 } catch (ClassNotFoundException e) {
                     e.printStackTrace();
-                } catch (IllegalAccessException e) {
-                    e.printStackTrace();
-                } catch (InstantiationException e) {
-                    e.printStackTrace();
-                } catch (MalformedURLException e) {
-                    e.printStackTrace();
                 }
 
                 IFBDatabasePerformance db = (IFBDatabasePerformance) odb;
@@ -1421,7 +1628,7 @@ public class QueryDispatcher {
 
     private void setResult(int updateCount, int type) {
 
-        delegate.setResult(updateCount, type);
+        outputQueue.addResult(updateCount, type);
     }
 
     private void statementExecuted(String sql) {
@@ -1429,43 +1636,16 @@ public class QueryDispatcher {
         delegate.statementExecuted(sql);
     }
 
-    private Object executeProcedureOrFunction(String sql, String procQuery)
+    private Object executeProcedureOrFunction(StatementExecutor executor, String sql, String procQuery)
             throws SQLException {
 
         logExecution(sql.trim());
 
         long start = System.currentTimeMillis();
 
-        REDDATABASESqlLexer lexer = new REDDATABASESqlLexer(CharStreams.fromString(sql));
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        REDDATABASESqlParser sqlparser = new REDDATABASESqlParser(tokens);
-        List<? extends ANTLRErrorListener> listeners = sqlparser.getErrorListeners();
-        for (int i = 0; i < listeners.size(); i++) {
-            if (listeners.get(i) instanceof ConsoleErrorListener)
-                sqlparser.removeErrorListener(listeners.get(i));
-        }
-        ParseTree tree = sqlparser.create_or_alter_procedure_stmt();
-        ParseTreeWalker walker = new ParseTreeWalker();
-        StringBuilder variables = new StringBuilder();
-        walker.walk(new REDDATABASESqlBaseListener() {
-            @Override
-            public void enterDeclare_block(REDDATABASESqlParser.Declare_blockContext ctx) {
-                List<REDDATABASESqlParser.Input_parameterContext> in_pars = ctx.input_parameter();
-                for (int i = 0; i < in_pars.size(); i++) {
-                    variables.append("<").append(in_pars.get(i).desciption_parameter().parameter_name().getRuleContext().getText()).append(">");
-                }
-                List<REDDATABASESqlParser.Output_parameterContext> out_pars = ctx.output_parameter();
-                for (int i = 0; i < out_pars.size(); i++) {
-                    variables.append("<").append(out_pars.get(i).desciption_parameter().parameter_name().getRuleContext().getText()).append(">");
-                }
-                List<REDDATABASESqlParser.Local_variableContext> vars = ctx.local_variable();
-                for (int i = 0; i < vars.size(); i++) {
-                    variables.append("<").append(vars.get(i).variable_name().getRuleContext().getText()).append(">");
-                }
-            }
-        }, tree);
-        PreparedStatement statement = prepareStatementWithParameters(sql, variables.toString());
-        SqlStatementResult result = querySender.execute(QueryTypes.CREATE_PROCEDURE, statement);
+        String variables = ParsingService.procedureVariables(sql);
+        PreparedStatement statement = prepareStatementWithParameters(executor, sql, variables);
+        SqlStatementResult result = executor.execute(QueryTypes.CREATE_PROCEDURE, statement);
 
         if (result.getUpdateCount() == -1) {
 
@@ -1573,19 +1753,11 @@ public class QueryDispatcher {
     }
 
     private void setResultText(final int result, final int type) {
-        ThreadUtils.invokeAndWait(new Runnable() {
-            public void run() {
-                delegate.setResult(result, type);
-            }
-        });
+        outputQueue.addResult(result, type);
     }
 
     private void setStatusMessage(final String text) {
-        ThreadUtils.invokeAndWait(new Runnable() {
-            public void run() {
-                delegate.setStatusMessage(text);
-            }
-        });
+        outputQueue.addStatusMessage(text);
     }
 
     private void setOutputMessage(final int type, final String text) {
@@ -1594,14 +1766,13 @@ public class QueryDispatcher {
     }
 
     private void setOutputMessage(final int type, final String text, final boolean selectTab) {
-        ThreadUtils.invokeAndWait(new Runnable() {
-            public void run() {
-                delegate.setOutputMessage(type, text, selectTab);
-                if (text != null) {
-                    logOutput(text);
-                }
-            }
-        });
+        if (type == SqlMessages.ERROR_MESSAGE) {
+            executionFailed = true;
+        }
+        outputQueue.addOutputMessage(type, text, selectTab);
+        if (text != null) {
+            logOutput(text);
+        }
     }
 
     private void setResultSet(final ResultSet rs, final String query) {
@@ -1616,6 +1787,8 @@ public class QueryDispatcher {
             }
         });
 */
+        // show the output of preceding statements first
+        outputQueue.flush();
         try {
             delegate.setResultSet(rs, query);
         } catch (SQLException e) {
@@ -1634,7 +1807,7 @@ public class QueryDispatcher {
      *
      * @param text - the text to log
      */
-    private void logOutput(String text) {
+    private synchronized void logOutput(String text) {
 
         if (delegate.isLogEnabled()) {
 
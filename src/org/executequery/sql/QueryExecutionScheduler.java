@@ -0,0 +1,201 @@
+/*
+ * QueryExecutionScheduler.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.executequery.datasource.metrics.FetchCounter;
+import org.executequery.log.Log;
+import org.underworldlabs.util.SystemProperties;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the queries of all query editors on a bounded pool of
+ * worker threads and keeps the list of queries running.
+ * <p/>
+ * Queries submitted while all workers are busy wait for a free
+ * worker. The rows fetched on a worker are counted against the
+ * query it is running.
+ *
+ * @author Takis Diakoumis
+ */
+public final class QueryExecutionScheduler {
+
+    /**
+     * The work of a query - constructed on a worker thread and
+     * finished on the EDT as with a <code>SwingWorker</code>.
+     */
+    public abstract static class Task {
+
+        public abstract Object construct();
+
+        /**
+         * Called on the EDT once constructed, or in place
+         * of construct if cancelled before it started.
+         */
+        public void finished() {
+        }
+
+        /**
+         * Called off the EDT to cancel the executing statement.
+         */
+        public void cancel() {
+        }
+
+    }
+
+    private static final String THREADS_KEY = "editor.execution.threads";
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    private static final Set<RunningQuery> running =
+            Collections.newSetFromMap(new ConcurrentHashMap<RunningQuery, Boolean>());
+
+    private static ThreadPoolExecutor executor;
+
+    /**
+     * Submits the specified task for execution.
+     *
+     * @param connectionName the name of the connection the query runs on
+     * @param sql            the query text
+     * @param task           the work of the query
+     * @return the submitted query
+     */
+    public static RunningQuery submit(String connectionName, String sql, final Task task) {
+
+        final RunningQuery query = new RunningQuery(ids.incrementAndGet(), connectionName, sql, task);
+        running.add(query);
+
+        executor().execute(new Runnable() {
+
+            public void run() {
+
+                query.started();
+                FetchCounter.bind(query.rowCounter());
+                try {
+
+                    if (!query.isCancelled()) {
+
+                        task.construct();
+                    }
+
+                } catch (RuntimeException e) {
+
+                    Log.error("Error executing query: " + e.getMessage(), e);
+
+                } finally {
+
+                    FetchCounter.unbind();
+                    running.remove(query);
+
+                    SwingUtilities.invokeLater(new Runnable() {
+
+                        public void run() {
+
+                            task.finished();
+                        }
+
+                    });
+                }
+
+            }
+
+        });
+
+        return query;
+    }
+
+    /**
+     * Returns the queries running or waiting for a worker in order of submission.
+     */
+    public static List<RunningQuery> getRunning() {
+
+        List<RunningQuery> queries = new ArrayList<RunningQuery>(running);
+        Collections.sort(queries, new Comparator<RunningQuery>() {
+
+            public int compare(RunningQuery o1, RunningQuery o2) {
+
+                return Long.compare(o1.getId(), o2.getId());
+            }
+
+        });
+
+        return queries;
+    }
+
+    private static synchronized ThreadPoolExecutor executor() {
+
+        int threads = Math.max(1, SystemProperties.getIntProperty("user", THREADS_KEY));
+        if (executor == null) {
+
+            executor = new ThreadPoolExecutor(threads, threads,
+                    THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+
+                    Thread thread = new Thread(runnable, "QueryExecution-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+
+            });
+
+            executor.allowCoreThreadTimeOut(true);
+
+        } else if (executor.getMaximumPoolSize() != threads) {
+
+            // the core size may not exceed the maximum at any point
+            if (threads > executor.getMaximumPoolSize()) {
+
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+
+            } else {
+
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+
+        }
+
+        return executor;
+    }
+
+    private QueryExecutionScheduler() {
+    }
+
+}
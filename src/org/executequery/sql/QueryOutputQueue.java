@@ -0,0 +1,248 @@
+/*
+ * QueryOutputQueue.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.executequery.Constants;
+import org.executequery.util.ThreadUtils;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queues the output of an executing query for the EDT.
+ * <p/>
+ * Messages are added from any thread without blocking and are
+ * drained on the EDT at a fixed frame rate. When drained, consecutive
+ * output messages of the same type are appended as one block of text
+ * and only the last status message is shown.
+ *
+ * @author Takis Diakoumis
+ */
+public class QueryOutputQueue {
+
+    /**
+     * Receives the drained output on the EDT.
+     */
+    public interface Target {
+
+        void setOutputMessage(int type, String text, boolean selectTab);
+
+        void setStatusMessage(String text);
+
+        void setResult(int result, int type);
+
+    }
+
+    private static final int FRAME_INTERVAL = 40;
+
+    private static final int OUTPUT = 0;
+
+    private static final int STATUS = 1;
+
+    private static final int RESULT = 2;
+
+    private final Target target;
+
+    private final Queue<Message> queue;
+
+    private final AtomicBoolean draining;
+
+    private final Timer timer;
+
+    private final StringBuilder text;
+
+    public QueryOutputQueue(Target target) {
+
+        this.target = target;
+
+        queue = new ConcurrentLinkedQueue<Message>();
+        draining = new AtomicBoolean();
+        text = new StringBuilder();
+
+        timer = new Timer(FRAME_INTERVAL, new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+
+                frame();
+            }
+
+        });
+    }
+
+    public void addOutputMessage(int type, String text, boolean selectTab) {
+
+        add(new Message(OUTPUT, type, text, selectTab, 0));
+    }
+
+    public void addStatusMessage(String text) {
+
+        add(new Message(STATUS, 0, text, false, 0));
+    }
+
+    public void addResult(int result, int type) {
+
+        add(new Message(RESULT, type, null, false, result));
+    }
+
+    private void add(Message message) {
+
+        queue.add(message);
+        if (draining.compareAndSet(false, true)) {
+
+            timer.start();
+        }
+
+    }
+
+    /**
+     * Drains all queued messages now, waiting for the EDT if
+     * called from another thread.
+     */
+    public void flush() {
+
+        if (queue.isEmpty()) {
+
+            return;
+        }
+
+        ThreadUtils.invokeAndWait(new Runnable() {
+
+            public void run() {
+
+                drain();
+            }
+
+        });
+    }
+
+    private void frame() {
+
+        drain();
+
+        // stop before clearing the flag - a message added after
+        // the flag is cleared will always restart the timer
+        timer.stop();
+        draining.set(false);
+
+        if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+
+            timer.start();
+        }
+
+    }
+
+    private void drain() {
+
+        String status = null;
+
+        Message pending = null;
+        Message message;
+        while ((message = queue.poll()) != null) {
+
+            if (message.kind == STATUS) {
+
+                status = message.text;
+                continue;
+            }
+
+            if (pending != null && message.canJoin(pending)) {
+
+                if (text.length() == 0) {
+
+                    text.append(pending.text);
+                }
+
+                // the output pane separates each message with a blank line
+                text.append(Constants.NEW_LINE_CHAR).append(Constants.NEW_LINE_CHAR).append(message.text);
+                continue;
+            }
+
+            output(pending);
+            pending = message;
+        }
+
+        output(pending);
+
+        if (status != null) {
+
+            target.setStatusMessage(status);
+        }
+
+    }
+
+    private void output(Message message) {
+
+        if (message == null) {
+
+            return;
+        }
+
+        if (message.kind == RESULT) {
+
+            target.setResult(message.result, message.type);
+
+        } else if (text.length() > 0) {
+
+            target.setOutputMessage(message.type, text.toString(), message.selectTab);
+            text.setLength(0);
+
+        } else {
+
+            target.setOutputMessage(message.type, message.text, message.selectTab);
+        }
+
+    }
+
+    static final class Message {
+
+        final int kind;
+
+        final int type;
+
+        final String text;
+
+        final boolean selectTab;
+
+        final int result;
+
+        Message(int kind, int type, String text, boolean selectTab, int result) {
+
+            this.kind = kind;
+            this.type = type;
+            this.text = text;
+            this.selectTab = selectTab;
+            this.result = result;
+        }
+
+        boolean canJoin(Message previous) {
+
+            return kind == OUTPUT && previous.kind == OUTPUT
+                    && type == previous.type && selectTab == previous.selectTab
+                    && text != null && previous.text != null;
+        }
+
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * RunningQuery.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.executequery.util.ThreadUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A query submitted to the query execution scheduler.
+ *
+ * @author Takis Diakoumis
+ */
+public class RunningQuery {
+
+    private final long id;
+
+    private final String connectionName;
+
+    private final String sql;
+
+    private final QueryExecutionScheduler.Task task;
+
+    private final long submitted;
+
+    private volatile long started;
+
+    private final AtomicLong rows;
+
+    private final AtomicBoolean cancelled;
+
+    RunningQuery(long id, String connectionName, String sql, QueryExecutionScheduler.Task task) {
+
+        this.id = id;
+        this.connectionName = connectionName;
+        this.sql = sql;
+        this.task = task;
+
+        submitted = System.currentTimeMillis();
+        rows = new AtomicLong();
+        cancelled = new AtomicBoolean();
+    }
+
+    public long getId() {
+
+        return id;
+    }
+
+    public String getConnectionName() {
+
+        return connectionName;
+    }
+
+    public String getSql() {
+
+        return sql;
+    }
+
+    /**
+     * Returns whether the query is executing rather than
+     * waiting for a free worker.
+     */
+    public boolean isStarted() {
+
+        return started != 0;
+    }
+
+    /**
+     * Returns the time in milliseconds the query has been executing,
+     * or waiting for a worker if not yet started.
+     */
+    public long getElapsed() {
+
+        long since = started != 0 ? started : submitted;
+        return System.currentTimeMillis() - since;
+    }
+
+    /**
+     * Returns the number of rows fetched so far.
+     */
+    public long getRows() {
+
+        return rows.get();
+    }
+
+    public boolean isCancelled() {
+
+        return cancelled.get();
+    }
+
+    /**
+     * Cancels the query. The statement is cancelled on another
+     * thread so that the caller, typically the EDT, is not blocked
+     * by the server. A query not yet started is not executed.
+     */
+    public void cancel() {
+
+        if (!cancelled.compareAndSet(false, true) || !isStarted()) {
+
+            return;
+        }
+
+        ThreadUtils.startWorker(new Runnable() {
+
+            public void run() {
+
+                task.cancel();
+            }
+
+        });
+    }
+
+    void started() {
+
+        started = System.currentTimeMillis();
+    }
+
+    AtomicLong rowCounter() {
+
+        return rows;
+    }
+
+    QueryExecutionScheduler.Task getTask() {
+
+        return task;
+    }
+
+}
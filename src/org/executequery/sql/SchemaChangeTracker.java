@@ -0,0 +1,404 @@
+/*
+ * SchemaChangeTracker.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import org.executequery.EventMediator;
+import org.executequery.databasemediators.DatabaseConnection;
+import org.executequery.databasemediators.QueryTypes;
+import org.executequery.databaseobjects.NamedObject;
+import org.executequery.event.DefaultSchemaChangeEvent;
+import org.executequery.event.SchemaChangeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the schema objects changed by executed DDL statements and
+ * publishes a schema change event for each once its transaction is
+ * committed. Changes of a rolled back transaction are discarded.
+ * <p/>
+ * The changed object is taken from the leading words of the
+ * statement - the action, the object type and the object name.
+ * Statements naming no single object, such as those executed
+ * within a block, publish nothing.
+ *
+ * @author Takis Diakoumis
+ */
+class SchemaChangeTracker {
+
+    /**
+     * The most leading words of a statement read.
+     */
+    private static final int MAX_WORDS = 8;
+
+    private final List<SchemaChangeEvent> pending = new ArrayList<SchemaChangeEvent>();
+
+    /**
+     * Records the specified successfully executed statement.
+     *
+     * @param databaseConnection the connection executed on
+     * @param queryType          the statement type
+     * @param query              the statement executed
+     * @param autoCommit         whether the statement was committed on execution
+     */
+    void executed(DatabaseConnection databaseConnection, int queryType, String query, boolean autoCommit) {
+
+        if (queryType == QueryTypes.COMMIT) {
+
+            committed();
+            return;
+        }
+
+        if (queryType == QueryTypes.ROLLBACK) {
+
+            rolledBack();
+            return;
+        }
+
+        SchemaChangeEvent event = schemaChange(databaseConnection, queryType, query);
+        if (event != null) {
+
+            synchronized (pending) {
+
+                pending.add(event);
+            }
+
+            if (autoCommit) {
+
+                committed();
+            }
+
+        }
+
+    }
+
+    /**
+     * Publishes the changes recorded since the last commit or rollback.
+     */
+    void committed() {
+
+        List<SchemaChangeEvent> events;
+        synchronized (pending) {
+
+            if (pending.isEmpty()) {
+
+                return;
+            }
+
+            events = new ArrayList<SchemaChangeEvent>(pending);
+            pending.clear();
+        }
+
+        for (SchemaChangeEvent event : events) {
+
+            EventMediator.fireEvent(event);
+        }
+
+    }
+
+    /**
+     * Discards the changes recorded since the last commit or rollback.
+     */
+    void rolledBack() {
+
+        synchronized (pending) {
+
+            pending.clear();
+        }
+
+    }
+
+    private static SchemaChangeEvent schemaChange(
+            DatabaseConnection databaseConnection, int queryType, String query) {
+
+        if (databaseConnection == null || query == null || !isDdl(queryType)) {
+
+            return null;
+        }
+
+        List<String> words = leadingWords(query);
+        int index;
+        String action = word(words, 0);
+        if ("CREATE".equals(action)) {
+
+            index = "OR".equals(word(words, 1)) && "ALTER".equals(word(words, 2)) ? 3 : 1;
+
+        } else if ("ALTER".equals(action) || "RECREATE".equals(action)
+                || "DROP".equals(action) || "DECLARE".equals(action)) {
+
+            index = 1;
+
+        } else if ("COMMENT".equals(action) && "ON".equals(word(words, 1))) {
+
+            index = 2;
+
+        } else {
+
+            return null;
+        }
+
+        // modifiers of tables and indices
+        while (isModifier(word(words, index))) {
+
+            index++;
+        }
+
+        String keyword = word(words, index++);
+        if ("EXTERNAL".equals(keyword) || "PACKAGE".equals(keyword)) {
+
+            // external function, package body
+            String next = word(words, index);
+            if ("FUNCTION".equals(next) || "BODY".equals(next)) {
+
+                index++;
+            }
+
+        }
+
+        int objectType = objectType(keyword);
+        if (objectType == -1) {
+
+            return null;
+        }
+
+        if ("IF".equals(word(words, index))) {
+
+            // if [not] exists
+            index += "NOT".equals(word(words, index + 1)) ? 3 : 2;
+        }
+
+        String name = name(words, index);
+        if (name == null) {
+
+            return null;
+        }
+
+        return new DefaultSchemaChangeEvent(databaseConnection,
+                SchemaChangeEvent.SCHEMA_CHANGED, queryType, objectType, name);
+    }
+
+    private static boolean isDdl(int queryType) {
+
+        switch (queryType) {
+
+            case QueryTypes.CREATE_TABLE:
+            case QueryTypes.ALTER_TABLE:
+            case QueryTypes.DROP_TABLE:
+            case QueryTypes.CREATE_SEQUENCE:
+            case QueryTypes.CREATE_PROCEDURE:
+            case QueryTypes.CREATE_FUNCTION:
+            case QueryTypes.CREATE_TRIGGER:
+            case QueryTypes.CREATE_SYNONYM:
+            case QueryTypes.CREATE_ROLE:
+            case QueryTypes.DROP_OBJECT:
+            case QueryTypes.COMMENT:
+            case QueryTypes.CREATE_OBJECT:
+            case QueryTypes.CREATE_OR_ALTER:
+            case QueryTypes.ALTER_OBJECT:
+            case QueryTypes.RECREATE_OBJECT:
+            case QueryTypes.UNKNOWN:
+                return true;
+
+            default:
+                return false;
+        }
+
+    }
+
+    private static boolean isModifier(String word) {
+
+        return "GLOBAL".equals(word)
+                || "TEMPORARY".equals(word)
+                || "UNIQUE".equals(word)
+                || "ASC".equals(word)
+                || "ASCENDING".equals(word)
+                || "DESC".equals(word)
+                || "DESCENDING".equals(word);
+    }
+
+    private static int objectType(String keyword) {
+
+        if (keyword == null) {
+
+            return -1;
+        }
+
+        if (keyword.equals("TABLE") || keyword.equals("COLUMN")) {
+
+            // the relation of a commented column
+            return NamedObject.TABLE;
+
+        } else if (keyword.equals("VIEW")) {
+
+            return NamedObject.VIEW;
+
+        } else if (keyword.equals("PROCEDURE")) {
+
+            return NamedObject.PROCEDURE;
+
+        } else if (keyword.equals("FUNCTION")) {
+
+            return NamedObject.FUNCTION;
+
+        } else if (keyword.equals("EXTERNAL")) {
+
+            return NamedObject.UDF;
+
+        } else if (keyword.equals("PACKAGE")) {
+
+            return NamedObject.PACKAGE;
+
+        } else if (keyword.equals("TRIGGER")) {
+
+            return NamedObject.TRIGGER;
+
+        } else if (keyword.equals("SEQUENCE") || keyword.equals("GENERATOR")) {
+
+            return NamedObject.SEQUENCE;
+
+        } else if (keyword.equals("EXCEPTION")) {
+
+            return NamedObject.EXCEPTION;
+
+        } else if (keyword.equals("DOMAIN")) {
+
+            return NamedObject.DOMAIN;
+
+        } else if (keyword.equals("ROLE")) {
+
+            return NamedObject.ROLE;
+
+        } else if (keyword.equals("INDEX")) {
+
+            return NamedObject.INDEX;
+
+        } else if (keyword.equals("SYNONYM")) {
+
+            return NamedObject.SYNONYM;
+        }
+
+        return -1;
+    }
+
+    private static String word(List<String> words, int index) {
+
+        if (index >= words.size()) {
+
+            return null;
+        }
+
+        String word = words.get(index);
+        return word.startsWith("\"") ? null : word.toUpperCase();
+    }
+
+    private static String name(List<String> words, int index) {
+
+        if (index >= words.size()) {
+
+            return null;
+        }
+
+        String word = words.get(index);
+        if (word.startsWith("\"")) {
+
+            // quoted names keep their case
+            return word.substring(1, word.length() - 1).replace("\"\"", "\"");
+        }
+
+        return word.toUpperCase();
+    }
+
+    /**
+     * Returns the leading words of the specified statement, skipping
+     * comments and punctuation. Quoted names are returned quoted.
+     */
+    private static List<String> leadingWords(String query) {
+
+        List<String> words = new ArrayList<String>();
+        int length = query.length();
+        int i = 0;
+        while (i < length && words.size() < MAX_WORDS) {
+
+            char c = query.charAt(i);
+            if (c == '-' && i + 1 < length && query.charAt(i + 1) == '-') {
+
+                int end = query.indexOf('\n', i);
+                i = end == -1 ? length : end + 1;
+
+            } else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+
+                int end = query.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+
+            } else if (c == '"') {
+
+                int end = i + 1;
+                while (end < length) {
+
+                    if (query.charAt(end) == '"') {
+
+                        if (end + 1 < length && query.charAt(end + 1) == '"') {
+
+                            end += 2;
+                            continue;
+                        }
+
+                        break;
+                    }
+
+                    end++;
+                }
+
+                if (end >= length) {
+
+                    break;
+                }
+
+                words.add(query.substring(i, end + 1));
+                i = end + 1;
+
+            } else if (isWordChar(c)) {
+
+                int start = i;
+                while (i < length && isWordChar(query.charAt(i))) {
+
+                    i++;
+                }
+
+                words.add(query.substring(start, i));
+
+            } else {
+
+                i++;
+            }
+
+        }
+
+        return words;
+    }
+
+    private static boolean isWordChar(char c) {
+
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+}
+
@@ -0,0 +1,430 @@
+/*
+ * SqlLexer.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import java.io.IOException;
+
+/**
+ * Single pass lexer splitting SQL text into tokens and statements.
+ * <p/>
+ * Each character is read once. Strings, quoted identifiers and comments
+ * are returned as single tokens so that anything within them is ignored.
+ * The statement delimiter is returned as a {@link #DELIMITER} token only
+ * where it terminates a statement - not within a declare section or,
+ * for the default delimiter, within a BEGIN...END or CASE...END block
+ * (eg. an EXECUTE BLOCK or procedure body). A SET TERM command changes
+ * the delimiter as it is terminated and is returned as {@link #SET_TERM}.
+ *
+ * @author Takis Diakoumis
+ */
+public class SqlLexer {
+
+    /**
+     * Source of the characters to tokenize.
+     */
+    public interface CharSource {
+
+        /**
+         * Returns the character the specified number of characters past
+         * the current position without consuming it, or -1 past the end.
+         */
+        int peek(int offset) throws IOException;
+
+        /**
+         * Consumes and returns the next character, or -1 at the end.
+         */
+        int read() throws IOException;
+
+    }
+
+    public static final String DEFAULT_DELIMITER = ";";
+
+    /** the end of the text */
+    public static final int END = -1;
+
+    /** a run of whitespace */
+    public static final int WHITESPACE = 0;
+
+    /** a keyword, identifier or number */
+    public static final int WORD = 1;
+
+    /** a single quoted string literal */
+    public static final int STRING = 2;
+
+    /** a double quoted identifier */
+    public static final int QUOTED_IDENTIFIER = 3;
+
+    /** a -- comment up to, not including, the end of the line */
+    public static final int LINE_COMMENT = 4;
+
+    /** a slash-star comment */
+    public static final int BLOCK_COMMENT = 5;
+
+    /** any other single character */
+    public static final int OPERATOR = 6;
+
+    /** the delimiter terminating a statement */
+    public static final int DELIMITER = 7;
+
+    /** the delimiter terminating a SET TERM command - the delimiter has changed */
+    public static final int SET_TERM = 8;
+
+    private final CharSource source;
+
+    private final StringBuilder text;
+
+    private final StringBuilder newDelimiter;
+
+    private String delimiter;
+
+    private long offset;
+
+    private long tokenStart;
+
+    private int depth;
+
+    private boolean inDeclare;
+
+    private boolean afterDeclare;
+
+    private boolean setTerm;
+
+    private int statementTokens;
+
+    public SqlLexer(CharSequence text) {
+
+        this(new TextSource(text));
+    }
+
+    public SqlLexer(CharSource source) {
+
+        this.source = source;
+
+        text = new StringBuilder();
+        newDelimiter = new StringBuilder();
+        delimiter = DEFAULT_DELIMITER;
+    }
+
+    public String getDelimiter() {
+
+        return delimiter;
+    }
+
+    public void setDelimiter(String delimiter) {
+
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Returns the text of the current token - valid until the next call to {@link #next()}.
+     */
+    public CharSequence getText() {
+
+        return text;
+    }
+
+    /**
+     * Returns the offset in characters of the start of the current token.
+     */
+    public long getTokenStart() {
+
+        return tokenStart;
+    }
+
+    /**
+     * Returns the offset in characters past the end of the current token.
+     */
+    public long getTokenEnd() {
+
+        return offset;
+    }
+
+    /**
+     * Returns the BEGIN/CASE...END nesting depth within the current statement.
+     */
+    public int getDepth() {
+
+        return depth;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the token type or {@link #END} at the end of the text
+     */
+    public int next() throws IOException {
+
+        text.setLength(0);
+        tokenStart = offset;
+
+        int c = read();
+        if (c == -1) {
+
+            return END;
+        }
+
+        if (Character.isWhitespace(c)) {
+
+            while (Character.isWhitespace(peek(0))) {
+
+                read();
+            }
+
+            return WHITESPACE;
+        }
+
+        if (c == '-' && peek(0) == '-') {
+
+            while (peek(0) != -1 && peek(0) != '\n') {
+
+                read();
+            }
+
+            return LINE_COMMENT;
+        }
+
+        if (c == '/' && peek(0) == '*') {
+
+            read();
+            while ((c = read()) != -1) {
+
+                if (c == '*' && peek(0) == '/') {
+
+                    read();
+                    break;
+                }
+
+            }
+
+            return BLOCK_COMMENT;
+        }
+
+        if (c == '\'' || c == '"') {
+
+            readQuoted((char) c);
+            return statementToken(c == '\'' ? STRING : QUOTED_IDENTIFIER);
+        }
+
+        if (c == delimiter.charAt(0) && matchesDelimiter()) {
+
+            if (isStatementEnd()) {
+
+                for (int i = 1, n = delimiter.length(); i < n; i++) {
+
+                    read();
+                }
+
+                return endStatement();
+            }
+
+            inDeclare = false;
+            return statementToken(OPERATOR);
+        }
+
+        if (isWordPart(c)) {
+
+            while (isWordPart(peek(0))) {
+
+                read();
+            }
+
+            word();
+            return statementToken(WORD);
+        }
+
+        return statementToken(OPERATOR);
+    }
+
+    private void readQuoted(char quote) throws IOException {
+
+        int c;
+        while ((c = read()) != -1) {
+
+            if (c == quote) {
+
+                if (peek(0) != quote) {
+
+                    return;
+                }
+
+                // escaped quote
+                read();
+            }
+
+        }
+
+    }
+
+    private boolean matchesDelimiter() throws IOException {
+
+        for (int i = 1, n = delimiter.length(); i < n; i++) {
+
+            if (peek(i - 1) != delimiter.charAt(i)) {
+
+                return false;
+            }
+
+        }
+
+        return true;
+    }
+
+    private boolean isStatementEnd() {
+
+        if (!DEFAULT_DELIMITER.equals(delimiter)) {
+
+            // an explicit SET TERM delimiter is never part of a block
+            return true;
+        }
+
+        return depth == 0 && !inDeclare;
+    }
+
+    private void word() {
+
+        if (isWord("BEGIN") || isWord("CASE")) {
+
+            depth++;
+
+        } else if (isWord("END")) {
+
+            depth = Math.max(0, depth - 1);
+
+        } else if (afterDeclare && depth == 0) {
+
+            // top level DECLARE EXTERNAL FUNCTION and DECLARE FILTER
+            // statements end at the delimiter as usual
+            inDeclare = !isWord("EXTERNAL") && !isWord("FILTER");
+        }
+
+        afterDeclare = isWord("DECLARE");
+    }
+
+    private boolean isWord(String word) {
+
+        if (text.length() != word.length()) {
+
+            return false;
+        }
+
+        for (int i = 0, n = word.length(); i < n; i++) {
+
+            if (Character.toUpperCase(text.charAt(i)) != word.charAt(i)) {
+
+                return false;
+            }
+
+        }
+
+        return true;
+    }
+
+    /**
+     * Tracks the leading tokens of the statement for a SET TERM command.
+     */
+    private int statementToken(int type) {
+
+        if (statementTokens == 0) {
+
+            setTerm = isWord("SET");
+
+        } else if (statementTokens == 1) {
+
+            setTerm &= isWord("TERM");
+
+        } else if (setTerm) {
+
+            newDelimiter.append(text);
+        }
+
+        statementTokens++;
+        return type;
+    }
+
+    private int endStatement() {
+
+        int type = DELIMITER;
+        if (setTerm && statementTokens > 2) {
+
+            delimiter = newDelimiter.toString();
+            type = SET_TERM;
+        }
+
+        newDelimiter.setLength(0);
+        statementTokens = 0;
+        setTerm = false;
+        depth = 0;
+        inDeclare = false;
+        afterDeclare = false;
+
+        return type;
+    }
+
+    private boolean isWordPart(int c) {
+
+        return c != -1 && (Character.isLetterOrDigit(c) || c == '_' || c == '$');
+    }
+
+    private int peek(int offset) throws IOException {
+
+        return source.peek(offset);
+    }
+
+    private int read() throws IOException {
+
+        int c = source.read();
+        if (c != -1) {
+
+            text.append((char) c);
+            offset++;
+        }
+
+        return c;
+    }
+
+    /**
+     * Reads characters from text held in memory.
+     */
+    static class TextSource implements CharSource {
+
+        private final CharSequence text;
+
+        private int position;
+
+        TextSource(CharSequence text) {
+
+            this.text = text;
+        }
+
+        public int peek(int offset) {
+
+            int index = position + offset;
+            return index < text.length() ? text.charAt(index) : -1;
+        }
+
+        public int read() {
+
+            return position < text.length() ? text.charAt(position++) : -1;
+        }
+
+    }
+
+}
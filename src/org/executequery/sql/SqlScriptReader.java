@@ -0,0 +1,281 @@
+/*
+ * SqlScriptReader.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.executequery.sql;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads the statements of an SQL script one at a time.
+ * <p/>
+ * Files are memory mapped in windows and decoded into a fixed size
+ * char buffer, so only the statement being read is held in memory
+ * regardless of the size of the script. Statements are split by
+ * the {@link SqlLexer} as the script is read.
+ *
+ * @author Takis Diakoumis
+ */
+public class SqlScriptReader implements Closeable {
+
+    private static final int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+
+    private final SqlLexer lexer;
+
+    private final MappedFileSource fileSource;
+
+    private final long length;
+
+    private final StringBuilder query;
+
+    private final StringBuilder queryWithoutComments;
+
+    /**
+     * Creates a reader over the specified script file.
+     */
+    public SqlScriptReader(File file, Charset charset) throws IOException {
+
+        fileSource = new MappedFileSource(file, charset);
+        length = fileSource.length();
+        lexer = new SqlLexer(fileSource);
+
+        query = new StringBuilder();
+        queryWithoutComments = new StringBuilder();
+    }
+
+    /**
+     * Creates a reader over script text already in memory.
+     */
+    public SqlScriptReader(CharSequence script) {
+
+        fileSource = null;
+        length = script.length();
+        lexer = new SqlLexer(script);
+
+        query = new StringBuilder();
+        queryWithoutComments = new StringBuilder();
+    }
+
+    /**
+     * Returns the length of the script - in bytes for a file
+     * and in characters for text read from memory.
+     */
+    public long getLength() {
+
+        return length;
+    }
+
+    /**
+     * Returns how much of the script has been read, in the same unit as the length.
+     */
+    public long getPosition() {
+
+        if (fileSource == null) {
+
+            return lexer.getTokenEnd();
+        }
+
+        return fileSource.position();
+    }
+
+    public String getDelimiter() {
+
+        return lexer.getDelimiter();
+    }
+
+    public void setDelimiter(String delimiter) {
+
+        lexer.setDelimiter(delimiter);
+    }
+
+    /**
+     * Reads the next statement of the script.
+     *
+     * @return the statement or <code>null</code> at the end of the script
+     */
+    public DerivedQuery next() throws IOException {
+
+        query.setLength(0);
+        queryWithoutComments.setLength(0);
+
+        int type;
+        while ((type = lexer.next()) != SqlLexer.END) {
+
+            switch (type) {
+
+                case SqlLexer.DELIMITER:
+                    return createQuery();
+
+                case SqlLexer.SET_TERM:
+                    query.setLength(0);
+                    queryWithoutComments.setLength(0);
+                    break;
+
+                case SqlLexer.LINE_COMMENT:
+                case SqlLexer.BLOCK_COMMENT:
+                    query.append(lexer.getText());
+                    break;
+
+                default:
+                    query.append(lexer.getText());
+                    queryWithoutComments.append(lexer.getText());
+            }
+
+        }
+
+        if (queryWithoutComments.toString().trim().isEmpty()) {
+
+            return null;
+        }
+
+        return createQuery();
+    }
+
+    private DerivedQuery createQuery() {
+
+        return new DerivedQuery(query.toString(), queryWithoutComments.toString().trim());
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (fileSource != null) {
+
+            fileSource.close();
+        }
+
+    }
+
+    /**
+     * Decodes a file through a sliding memory mapped window.
+     */
+    private static class MappedFileSource implements SqlLexer.CharSource {
+
+        private final FileChannel channel;
+
+        private final CharsetDecoder decoder;
+
+        private final long length;
+
+        private ByteBuffer window;
+
+        private long windowStart;
+
+        private final CharBuffer chars;
+
+        private boolean endOfInput;
+
+        MappedFileSource(File file, Charset charset) throws IOException {
+
+            channel = new RandomAccessFile(file, "r").getChannel();
+            length = channel.size();
+            decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+            window = ByteBuffer.allocate(0);
+            chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+            chars.flip();
+        }
+
+        long length() {
+
+            return length;
+        }
+
+        long position() {
+
+            return Math.min(length, windowStart + window.position());
+        }
+
+        public int read() throws IOException {
+
+            int c = peek(0);
+            if (c != -1) {
+
+                chars.position(chars.position() + 1);
+            }
+
+            return c;
+        }
+
+        public int peek(int offset) throws IOException {
+
+            if (chars.remaining() <= offset && !endOfInput) {
+
+                fill();
+            }
+
+            return chars.remaining() > offset ? chars.get(chars.position() + offset) : -1;
+        }
+
+        private void fill() throws IOException {
+
+            chars.compact();
+            try {
+
+                while (chars.hasRemaining() && !endOfInput) {
+
+                    CoderResult result = decoder.decode(window, chars, false);
+                    if (result.isOverflow()) {
+
+                        break;
+                    }
+
+                    if (windowStart + window.limit() >= length) {
+
+                        decoder.decode(window, chars, true);
+                        decoder.flush(chars);
+                        endOfInput = true;
+                        break;
+                    }
+
+                    // window exhausted bar a split multi-byte character - map the next one from there
+                    windowStart += window.position();
+                    window = channel.map(FileChannel.MapMode.READ_ONLY,
+                            windowStart, Math.min(MAPPED_WINDOW_SIZE, length - windowStart));
+                }
+
+            } finally {
+
+                chars.flip();
+            }
+
+        }
+
+        void close() throws IOException {
+
+            channel.close();
+        }
+
+    }
+
+}
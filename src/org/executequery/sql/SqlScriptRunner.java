@@ -30,24 +30,33 @@ import org.executequery.databasemediators.spi.DefaultDatabaseDriver;
 import org.executequery.databasemediators.spi.DefaultStatementExecutor;
 import org.executequery.datasource.SimpleDataSource;
 import org.executequery.log.Log;
+import org.underworldlabs.util.DynamicLibraryLoader;
+import org.underworldlabs.util.EncodingDetector;
 import org.underworldlabs.util.MiscUtils;
+import org.underworldlabs.util.SystemProperties;
 
 import javax.resource.ResourceException;
+import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SqlScriptRunner {
 
+    /**
+     * Number of steps over the script length at which progress is reported.
+     */
+    private static final int PROGRESS_STEPS = 1000;
+
     private Connection connection;
 
     DefaultStatementExecutor querySender;
@@ -56,10 +65,17 @@ public class SqlScriptRunner {
 
     private boolean cancel;
 
+    /**
+     * Number of queries of the running script sent for execution.
+     */
+    private int count;
+
     private SimpleDataSource localDataSource;
 
     boolean needCloseDatabase;
 
+    private final SchemaChangeTracker schemaChanges = new SchemaChangeTracker();
+
     public SqlScriptRunner(ExecutionController executionController) {
 
         super();
@@ -74,7 +90,49 @@ public class SqlScriptRunner {
     public SqlStatementResult execute(DatabaseConnection databaseConnection,
                                       String script, ActionOnError actionOnError) {
 
-        int count = 0;
+        return execute(databaseConnection, new SqlScriptReader(script), actionOnError);
+    }
+
+    /**
+     * Executes the script file reading its statements as they are executed
+     * rather than loading the whole file, so that the memory required does
+     * not depend on the size of the script.
+     */
+    public SqlStatementResult execute(DatabaseConnection databaseConnection,
+                                      File scriptFile, ActionOnError actionOnError) {
+
+        SqlScriptReader scriptReader;
+        try {
+
+            scriptReader = new SqlScriptReader(scriptFile, scriptCharset(scriptFile));
+
+        } catch (IOException e) {
+
+            Log.error("Error opening script file " + scriptFile + " - " + e.getMessage(), e);
+
+            SqlStatementResult sqlStatementResult = new SqlStatementResult();
+            sqlStatementResult.setOtherException(e);
+            return sqlStatementResult;
+        }
+
+        return execute(databaseConnection, scriptReader, actionOnError);
+    }
+
+    private Charset scriptCharset(File scriptFile) throws IOException {
+
+        String charset = new EncodingDetector().detectCharset(scriptFile);
+        if (StringUtils.isNotBlank(charset) && Charset.isSupported(charset)) {
+
+            return Charset.forName(charset);
+        }
+
+        return Charset.defaultCharset();
+    }
+
+    private SqlStatementResult execute(DatabaseConnection databaseConnection,
+                                       SqlScriptReader scriptReader, ActionOnError actionOnError) {
+
+        count = 0;
         int result = 0;
 
         PreparedStatement statement = null;
@@ -86,52 +144,58 @@ public class SqlScriptRunner {
 
             cancel = false;
 
-            executionController.message("Scanning and tokenizing queries...");
-            QueryTokenizer queryTokenizer = new QueryTokenizer();
-            //List<DerivedQuery> queries =
-
             close();
             if (databaseConnection != null) {
                 querySender.setDatabaseConnection(databaseConnection);
             }
 
-            List<DerivedQuery> executableQueries = new ArrayList<DerivedQuery>();
             DerivedQuery createDBQuery = null;
             String sqlDialect = "3";
-            String delimiter = ";";
-            //queries.clear();
-
 
-
-            //executionController.message("Found " + executableQueries.size() + " executable queries");
             executionController.message("Executing...");
 
-            /*if (connection == null)
-                throw new SQLException("There is no connection. Select a connection from the available connections " +
-                        "list or add a database creation statement.");*/
-
             long start = 0L;
             long end = 0L;
             int thisResult = 0;
             boolean logOutput = executionController.logOutput();
-            int startIndex = 0;
-            String lowQuery = script.toLowerCase();
-            executionController.message("Start extracting comments and String constants");
-            queryTokenizer.extractTokens(script);
-            executionController.message("Finish extracting comments and String constants");
-            while (script!=null &&!script.isEmpty()) {
-                QueryTokenizer.QueryTokenized fquery=queryTokenizer.tokenizeFirstQuery(script,lowQuery,startIndex,delimiter);
-                script= fquery.script;
-                delimiter = fquery.delimiter;
-                DerivedQuery query =  fquery.query;
-                lowQuery = fquery.lowScript;
-                startIndex = fquery.startIndex;
-                if(query==null||!query.isExecutable())
+            long length = scriptReader.getLength();
+            int reportedProgress = -1;
+            DmlBatch dmlBatch = new DmlBatch(SystemProperties.getIntProperty("user", DmlBatch.BATCH_SIZE_KEY));
+
+            DerivedQuery query;
+            while ((query = scriptReader.next()) != null) {
+
+                int progress = length > 0 ? (int) (scriptReader.getPosition() * PROGRESS_STEPS / length) : PROGRESS_STEPS;
+                if (progress != reportedProgress) {
+
+                    reportedProgress = progress;
+                    executionController.progress(scriptReader.getPosition(), length);
+                }
+
+                if (!query.isExecutable())
                     continue;
                 if (shouldNotContinue()) {
 
+                    reportNotExecuted(dmlBatch);
                     throw new InterruptedException();
                 }
+
+                boolean batched = dmlBatch.add(query);
+                if (!batched && !dmlBatch.isEmpty()) {
+
+                    result += executeBatch(dmlBatch, actionOnError, logOutput);
+                    batched = dmlBatch.add(query);
+                }
+
+                if (batched) {
+
+                    if (dmlBatch.isFull()) {
+
+                        result += executeBatch(dmlBatch, actionOnError, logOutput);
+                    }
+                    continue;
+                }
+
                 if (query.getQueryType() == QueryTypes.CREATE_DATABASE) {
                     createDBQuery = query;
                     localDataSource = createDatabase(createDBQuery, sqlDialect);
@@ -169,6 +233,10 @@ public class SqlScriptRunner {
                         if (sqlStatementResult.getSqlException() != null)
                             throw sqlStatementResult.getSqlException();
                     result += sqlStatementResult.getUpdateCount();
+                    if (!needCloseDatabase) {
+
+                        schemaChanges.executed(databaseConnection, query.getQueryType(), derivedQuery, false);
+                    }
 
                 } catch (SQLException e) {
 
@@ -205,6 +273,13 @@ public class SqlScriptRunner {
 
             }
 
+            if (!dmlBatch.isEmpty()) {
+
+                result += executeBatch(dmlBatch, actionOnError, logOutput);
+            }
+
+            executionController.progress(length, length);
+
         } catch (SQLException e) {
 
             sqlStatementResult.setSqlException(e);
@@ -217,13 +292,28 @@ public class SqlScriptRunner {
 
             sqlStatementResult.setOtherException(e);
 
+        } catch (IOException e) {
+
+            Log.error("Error reading script - " + e.getMessage(), e);
+            sqlStatementResult.setOtherException(e);
+
         } finally {
+
+            try {
+                scriptReader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
             if (needCloseDatabase) {
                 try {
                     localDataSource.close();
                 } catch (ResourceException e) {
                     e.printStackTrace();
                 }
+            } else if (isAutoCommit()) {
+
+                // published once for the whole script
+                schemaChanges.committed();
             }
             System.gc();
         }
@@ -234,6 +324,66 @@ public class SqlScriptRunner {
         return sqlStatementResult;
     }
 
+    /**
+     * Executes the statements collected in the batch reporting
+     * each failed statement as it would be executed singly.
+     */
+    private int executeBatch(DmlBatch dmlBatch, final ActionOnError actionOnError, boolean logOutput) throws SQLException {
+
+        int size = dmlBatch.size();
+        for (DerivedQuery query : dmlBatch.getQueries()) {
+
+            count++;
+            if (logOutput) {
+
+                executionController.message("Executing query " + count + ":");
+                executionController.queryMessage(query.getDerivedQuery());
+            }
+        }
+
+        long start = System.currentTimeMillis();
+
+        int updateCount = dmlBatch.execute(querySender, new DmlBatch.ErrorHandler() {
+
+            public boolean statementFailed(DerivedQuery query, SQLException e) throws SQLException {
+
+                executionController.errorMessage("Error executing statement:");
+                executionController.actionMessage(query.getDerivedQuery());
+
+                if (actionOnError != ActionOnError.CONTINUE) {
+
+                    throw e;
+                }
+
+                executionController.errorMessage(e.getMessage());
+                return true;
+            }
+
+        });
+
+        if (logOutput) {
+
+            executionController.message("Executed " + size + " queries in batch\nRecords affected: " + updateCount
+                    + "\nDuration: " + MiscUtils.formatDuration(System.currentTimeMillis() - start));
+        }
+
+        return updateCount;
+    }
+
+    /**
+     * Reports the statements still waiting in the batch
+     * when the script is cancelled - they are not executed.
+     */
+    private void reportNotExecuted(DmlBatch dmlBatch) {
+
+        if (!dmlBatch.isEmpty()) {
+
+            executionController.warningMessage("Cancelled - " + dmlBatch.size()
+                    + " batched queries following query " + count + " were not executed");
+            dmlBatch.clear();
+        }
+    }
+
     public boolean isNeedCloseDatabase() {
         return needCloseDatabase;
     }
@@ -311,8 +461,6 @@ public class SqlScriptRunner {
 
         URL[] urlDriver = new URL[0];
         Class clazzDriver = null;
-        URL[] urls = new URL[0];
-        Class clazzdb = null;
         Object odb = null;
         try {
             urlDriver = MiscUtils.loadURLs("./lib/jaybird-3.jar"); // TODO Must use DriverLoader
@@ -330,10 +478,7 @@ public class SqlScriptRunner {
                 throw new SQLException(sb.toString());
             }
 
-            urls = MiscUtils.loadURLs("./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar");
-            ClassLoader cl = new URLClassLoader(urls, o.getClass().getClassLoader());
-            clazzdb = cl.loadClass("biz.redsoft.FBCreateDatabaseImpl");
-            odb = clazzdb.newInstance();
+            odb = DynamicLibraryLoader.loadingObjectFromClassLoader(o, "FBCreateDatabaseImpl");
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         } catch (IllegalAccessException e) {
@@ -423,6 +568,7 @@ public class SqlScriptRunner {
 
             connection.rollback();
         }
+        schemaChanges.rolledBack();
     }
 
     public void commit() throws SQLException {
@@ -431,6 +577,22 @@ public class SqlScriptRunner {
 
             connection.commit();
         }
+        schemaChanges.committed();
+    }
+
+    private boolean isAutoCommit() {
+
+        try {
+
+            Connection executorConnection = querySender.getConnection();
+            return executorConnection != null && executorConnection.getAutoCommit();
+
+        } catch (SQLException e) {
+
+            Log.debug("Error reading commit mode: " + e.getMessage());
+            return false;
+        }
+
     }
 
 
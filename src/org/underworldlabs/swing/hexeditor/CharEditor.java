@@ -189,7 +189,7 @@ public class CharEditor extends TextGrid implements BinaryEditor {
         }
 
         public int getRowCount() {
-            return (int) document.length() / bytesPerRow + 1;
+            return (int) (document.length() / bytesPerRow) + 1;
         }
 
         public char getCharAt(int row, int col) {
@@ -34,6 +34,13 @@ public class AnnotatedBinaryDocument extends BinaryDocument {
         properties = new HashMap();
     }
 
+    public AnnotatedBinaryDocument(ByteSource source, boolean readOnly) {
+        super(source, readOnly);
+        indexMap = new TreeMap();
+        keyMap = new HashMap();
+        properties = new HashMap();
+    }
+
     public AnnotatedBinaryDocument(File file, boolean readOnly) throws IOException {
         super(file, readOnly);
         indexMap = new TreeMap();
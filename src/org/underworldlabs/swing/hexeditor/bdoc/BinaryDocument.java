@@ -19,6 +19,14 @@ public class BinaryDocument extends Observable {
     // Used for O(1) access to positions.
     private HashMap anchor2Offset;
 
+    // Content read on demand in chunks until the document is first modified.
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CACHED_CHUNKS = 32;
+
+    private ByteSource source;
+    private long sourceLength;
+    private Map<Long, byte[]> chunks;
+
     // CONSTRUCTORS
 
     /**
@@ -102,12 +110,40 @@ public class BinaryDocument extends Observable {
         this.data = data.clone();
     }
 
+    /**
+     * Construct a read on demand binary document over the specified source.
+     * Content is read in chunks as it is accessed and only loaded into
+     * memory as a whole when the document is first modified.
+     *
+     * @param source   The source of the document content.
+     * @param readOnly True if the document should be opened in read-only mode.
+     */
+    public BinaryDocument(ByteSource source, boolean readOnly) {
+        this.file = null;
+        this.readOnly = readOnly;
+        this.modified = false;
+
+        anchor2Offset = new HashMap();
+
+        this.source = source;
+        sourceLength = source.length();
+        chunks = new LinkedHashMap<Long, byte[]>(CACHED_CHUNKS, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > CACHED_CHUNKS;
+            }
+        };
+    }
+
     public byte[] getData() {
+        loadSource();
         return Arrays.copyOfRange(data, 0, occupied);
     }
 
     public void setData(byte[] data) {
 
+        source = null;
+        chunks = null;
+        modified = true;
 
         anchor2Offset = new HashMap();
 
@@ -135,9 +171,7 @@ public class BinaryDocument extends Observable {
             throw new DocumentSaveException(this,
                     "Cannot call save() on a new document. Try saveAs(File).");
 
-        RandomAccessFile ioFile = new RandomAccessFile(file, "rw");
-        ioFile.write(data, 0, (int) length());
-        ioFile.close();
+        writeTo(file);
 
         modified = false;
     }
@@ -153,13 +187,31 @@ public class BinaryDocument extends Observable {
     public void saveAs(File file) throws IOException {
         this.file = file;
 
-        RandomAccessFile ioFile = new RandomAccessFile(file, "rw");
-        ioFile.write(data, 0, (int) length());
-        ioFile.close();
+        writeTo(file);
 
         modified = false;
     }
 
+    private void writeTo(File file) throws IOException {
+        RandomAccessFile ioFile = new RandomAccessFile(file, "rw");
+        try {
+            ioFile.setLength(0);
+            if (source != null) {
+                byte[] b = new byte[CHUNK_SIZE];
+                for (long offset = 0; offset < sourceLength; offset += CHUNK_SIZE) {
+                    int len = readSource(offset, b, 0, (int) Math.min(CHUNK_SIZE, sourceLength - offset));
+                    if (len < 1)
+                        break;
+                    ioFile.write(b, 0, len);
+                }
+            } else {
+                ioFile.write(data, 0, (int) length());
+            }
+        } finally {
+            ioFile.close();
+        }
+    }
+
     /**
      * Close a document, releasing all resources.
      * Once a document is closed, it can not be re-opened and this instance
@@ -168,6 +220,8 @@ public class BinaryDocument extends Observable {
      * @throws IOException if an exception occured while closing the source file.
      */
     public void close() throws IOException {
+        source = null;
+        chunks = null;
         data = null;
         occupied = 0;
         modified = false;
@@ -179,7 +233,7 @@ public class BinaryDocument extends Observable {
      * Returns the length of document.
      */
     public long length() {
-        return occupied;
+        return source != null ? sourceLength : occupied;
     }
 
     /**
@@ -281,14 +335,17 @@ public class BinaryDocument extends Observable {
 
     public int read(Location loc, byte[] b, int off, int len) {
         long offset = loc.getOffset();
-        int bytesRemaining = (int) (length() - offset);
+        long bytesRemaining = length() - offset;
 
         if (len > bytesRemaining)
-            len = bytesRemaining;
+            len = (int) bytesRemaining;
 
         if (len < 1)
             return -1;
 
+        if (source != null)
+            return readSource(offset, b, off, len);
+
         for (int i = 0; i < len; i++)
             b[off + i] = data[(int) (offset + i)];
 
@@ -307,6 +364,7 @@ public class BinaryDocument extends Observable {
     }
 
     public void write(Location loc, byte[] b, int off, int len) {
+        loadSource();
         modified = true;
 
         long offset = loc.getOffset();
@@ -344,6 +402,7 @@ public class BinaryDocument extends Observable {
     }
 
     public void insert(Location loc, byte[] b, int off, int len) {
+        loadSource();
         modified = true;
 
         long offset = loc.getOffset();
@@ -380,6 +439,7 @@ public class BinaryDocument extends Observable {
 
     // DELETE
     public int delete(Location loc, int len) {
+        loadSource();
         modified = true;
 
         long offset = loc.getOffset();
@@ -423,6 +483,67 @@ public class BinaryDocument extends Observable {
         return len;
     }
 
+    // ON DEMAND CONTENT
+
+    private int readSource(long offset, byte[] b, int off, int len) {
+        int read = 0;
+        while (read < len) {
+            long position = offset + read;
+            byte[] chunk = chunk(position / CHUNK_SIZE);
+            int chunkOffset = (int) (position % CHUNK_SIZE);
+            int count = Math.min(len - read, chunk.length - chunkOffset);
+            if (count < 1)
+                break;
+
+            System.arraycopy(chunk, chunkOffset, b, off + read, count);
+            read += count;
+        }
+        return read > 0 ? read : -1;
+    }
+
+    private byte[] chunk(long index) {
+        byte[] chunk = chunks.get(index);
+        if (chunk == null) {
+            long start = index * CHUNK_SIZE;
+            chunk = new byte[(int) Math.max(0, Math.min(CHUNK_SIZE, sourceLength - start))];
+            try {
+                int read = 0;
+                while (read < chunk.length) {
+                    int count = source.read(start + read, chunk, read, chunk.length - read);
+                    if (count < 0)
+                        break;
+                    read += count;
+                }
+                if (read < chunk.length)
+                    chunk = Arrays.copyOf(chunk, read);
+            } catch (IOException e) {
+                throw new BinaryDocumentException(this, "Error reading document content: " + e.getMessage());
+            }
+            chunks.put(index, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Loads on demand content into memory ahead of the first modification.
+     */
+    private void loadSource() {
+        if (source == null)
+            return;
+
+        if (sourceLength > Integer.MAX_VALUE - 512)
+            throw new BinaryDocumentException(this,
+                    "Document of " + sourceLength + " bytes is too large to be modified in memory.");
+
+        byte[] content = new byte[(int) sourceLength + 256];
+        int len = (int) sourceLength > 0 ? readSource(0, content, 0, (int) sourceLength) : 0;
+
+        data = content;
+        occupied = Math.max(0, len);
+        source = null;
+        chunks = null;
+    }
+
     ////// PACKAGE PROTECTED
     void removeAnchor(PositionAnchor anchor) {
         Long offset = (Long) anchor2Offset.get(anchor);
@@ -0,0 +1,24 @@
+package org.underworldlabs.swing.hexeditor.bdoc;
+
+import java.io.IOException;
+
+/**
+ * Random access source of the content of a binary document that
+ * is read on demand rather than held in memory.
+ */
+public interface ByteSource {
+
+    /**
+     * Returns the length of the content in bytes.
+     */
+    long length();
+
+    /**
+     * Reads up to len bytes from the specified zero based offset.
+     *
+     * @return the number of bytes read or -1 past the end of the content.
+     * @throws IOException if the content can not be read.
+     */
+    int read(long offset, byte[] b, int off, int len) throws IOException;
+
+}
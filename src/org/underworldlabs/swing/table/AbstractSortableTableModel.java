@@ -32,6 +32,18 @@ public abstract class AbstractSortableTableModel extends AbstractTableModel
         return true;
     }
 
+    public Object[] getSortKeys(int column) {
+
+        Object[] keys = new Object[getRowCount()];
+        for (int row = 0; row < keys.length; row++) {
+
+            Object value = getValueAt(row, column);
+            keys[row] = value instanceof TableCellValue ? ((TableCellValue) value).getValue() : value;
+        }
+
+        return keys;
+    }
+
     protected String bundleString(String key) {
         return Bundles.get(getClass(), key);
     }
@@ -26,6 +26,12 @@ public interface SortableTableModel extends TableModel {
 
     boolean canSortColumn(int column);
 
+    /**
+     * Returns the values to sort the specified column by,
+     * one for each row in model order.
+     */
+    Object[] getSortKeys(int column);
+
 }
 
 
@@ -122,6 +122,8 @@ public class TableSorter extends AbstractTableModel {
     private TableModelListener tableModelListener;
     private Map columnComparators = new HashMap();
     private List sortingColumns = new ArrayList();
+    private boolean presorted;
+    private Object[][] sortKeys;
 
     public TableSorter(SortableTableModel tableModel) {
 
@@ -206,6 +208,31 @@ public class TableSorter extends AbstractTableModel {
         return sortingColumns.size() != 0;
     }
 
+    /**
+     * Returns the model indexes of the sorting columns in order of precedence.
+     */
+    public int[] getSortingColumns() {
+        int[] columns = new int[sortingColumns.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ((Directive) sortingColumns.get(i)).column;
+        }
+        return columns;
+    }
+
+    /**
+     * Sets whether the underlying model already delivers its rows in the
+     * current sorting order (eg. sorted by the database). The sorting state
+     * is then only tracked and rendered in the header - rows are not sorted here.
+     */
+    public void setPresorted(boolean presorted) {
+        this.presorted = presorted;
+        clearSortingState();
+    }
+
+    public boolean isPresorted() {
+        return presorted;
+    }
+
     private Directive getDirective(int column) {
         for (int i = 0, n = sortingColumns.size(); i < n; i++) {
             Directive directive = (Directive) sortingColumns.get(i);
@@ -303,9 +330,24 @@ public class TableSorter extends AbstractTableModel {
                 viewToModel[row] = new Row(row);
             }
 
-            if (isSorting()) {
+            if (isSorting() && !presorted) {
+
+                // read the sort values once, in row order, rather than
+                // from the model for each comparison
+                sortKeys = new Object[sortingColumns.size()][];
+                for (int i = 0; i < sortKeys.length; i++) {
+
+                    sortKeys[i] = tableModel.getSortKeys(((Directive) sortingColumns.get(i)).column);
+                }
+
+                try {
+
+                    Arrays.sort(viewToModel);
 
-                Arrays.sort(viewToModel);
+                } finally {
+
+                    sortKeys = null;
+                }
             }
 
         }
@@ -420,14 +462,14 @@ public class TableSorter extends AbstractTableModel {
             int row1 = modelIndex;
             int row2 = ((Row) o).modelIndex;
 
-            for (Iterator it = sortingColumns.iterator(); it.hasNext(); ) {
+            for (int i = 0; i < sortingColumns.size(); i++) {
 
-                Directive directive = (Directive) it.next();
+                Directive directive = (Directive) sortingColumns.get(i);
 
                 int column = directive.column;
 
-                Object o1 = valueToCompareFromModel(row1, column);
-                Object o2 = valueToCompareFromModel(row2, column);
+                Object o1 = sortKeys[i][row1];
+                Object o2 = sortKeys[i][row2];
 
                 int comparison = 0;
 
@@ -578,18 +620,6 @@ public class TableSorter extends AbstractTableModel {
                 return -1;
         }
 
-        private Object valueToCompareFromModel(int row, int column) {
-
-            Object object = tableModel.getValueAt(row, column);
-
-            if (object instanceof TableCellValue) {
-
-                object = ((TableCellValue) object).getValue();
-            }
-
-            return object;
-        }
-
     } // class Row
 
     private class TableModelHandler implements TableModelListener {
@@ -612,6 +642,13 @@ public class TableSorter extends AbstractTableModel {
                 return;
             }
 
+            // Rows are kept in model order - map events straight through.
+            if (presorted) {
+                clearSortingState();
+                fireTableChanged(e);
+                return;
+            }
+
             // We can map a cell event through to the view without widening
             // when the following conditions apply:
             //
@@ -0,0 +1,205 @@
+/*
+ * PluginBridgeRegistry.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.underworldlabs.util;
+
+import org.executequery.log.Log;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared registry of plugin bridges - the class loaders over the
+ * plugin implementation jar (fbplugin-impl) and the constructors of
+ * the <code>biz.redsoft.IFB*</code> implementations loaded through them.
+ * <p/>
+ * Bridges are keyed by the driver's class loader so a plugin class
+ * is loaded once per driver and creating a wrapper is a plain
+ * constructor call, looked up without locking. A bridge's class loader
+ * has the driver's class loader as parent and so keeps it reachable -
+ * the bridges of a driver are held until the driver is unloaded, when
+ * they are removed and their class loaders closed.
+ *
+ * @author Takis Diakoumis
+ */
+public final class PluginBridgeRegistry {
+
+    public static final String PLUGIN_PACKAGE = "biz.redsoft.";
+
+    public static final String PLUGIN_JAR_PATH = "./lib/fbplugin-impl.jar;../lib/fbplugin-impl.jar";
+
+    private static final Class<?>[] NO_TYPES = new Class<?>[0];
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private static final ConcurrentMap<ClassLoader, ConcurrentMap<String, Bridge>> BRIDGES =
+            new ConcurrentHashMap<ClassLoader, ConcurrentMap<String, Bridge>>();
+
+    private PluginBridgeRegistry() {
+    }
+
+    /**
+     * Creates a new instance of the specified plugin class using
+     * the class loader of the specified driver object as parent.
+     *
+     * @param driverObject   an object loaded by the driver's class loader
+     * @param shortClassName the plugin class name without package
+     */
+    public static Object newInstance(Object driverObject, String shortClassName) throws ClassNotFoundException {
+
+        return newInstance(driverObject, PLUGIN_PACKAGE + shortClassName, PLUGIN_JAR_PATH, NO_TYPES, NO_ARGS);
+    }
+
+    public static Object newInstance(Object driverObject, String className, String jarPath,
+                                     Class<?>[] types, Object[] args) throws ClassNotFoundException {
+
+        Constructor<?> constructor = bridgeFor(classLoaderOf(driverObject), jarPath).constructor(className, types);
+        try {
+
+            return constructor.newInstance(args);
+
+        } catch (Exception e) {
+
+            throw new ClassNotFoundException("Error creating instance of " + className, e);
+        }
+    }
+
+    /**
+     * Removes the bridges of the specified driver class loader and closes
+     * their class loaders - for use when the driver is unloaded. Bridges
+     * over the system class loader are shared by drivers and are kept.
+     */
+    public static void release(ClassLoader driverClassLoader) {
+
+        if (driverClassLoader == null || driverClassLoader == ClassLoader.getSystemClassLoader()) {
+
+            return;
+        }
+
+        Map<String, Bridge> bridges = BRIDGES.remove(driverClassLoader);
+        if (bridges != null) {
+
+            for (Bridge bridge : bridges.values()) {
+
+                bridge.close();
+            }
+
+        }
+
+    }
+
+    private static ClassLoader classLoaderOf(Object driverObject) {
+
+        ClassLoader classLoader = driverObject.getClass().getClassLoader();
+        return classLoader != null ? classLoader : ClassLoader.getSystemClassLoader();
+    }
+
+    private static Bridge bridgeFor(ClassLoader driverClassLoader, String jarPath) throws ClassNotFoundException {
+
+        ConcurrentMap<String, Bridge> bridges = BRIDGES.get(driverClassLoader);
+        if (bridges == null) {
+
+            ConcurrentMap<String, Bridge> created = new ConcurrentHashMap<String, Bridge>();
+            bridges = BRIDGES.putIfAbsent(driverClassLoader, created);
+            if (bridges == null) {
+
+                bridges = created;
+            }
+
+        }
+
+        Bridge bridge = bridges.get(jarPath);
+        if (bridge == null) {
+
+            try {
+
+                bridge = new Bridge(new URLClassLoader(MiscUtils.loadURLs(jarPath), driverClassLoader));
+
+            } catch (Exception e) {
+
+                throw new ClassNotFoundException("Error loading plugin classes from " + jarPath, e);
+            }
+
+            // another thread may have created the bridge meanwhile
+            Bridge existing = bridges.putIfAbsent(jarPath, bridge);
+            if (existing != null) {
+
+                bridge.close();
+                bridge = existing;
+            }
+
+        }
+
+        return bridge;
+    }
+
+    private static final class Bridge {
+
+        private final URLClassLoader classLoader;
+
+        private final Map<String, Constructor<?>> constructors = new ConcurrentHashMap<String, Constructor<?>>();
+
+        Bridge(URLClassLoader classLoader) {
+
+            this.classLoader = classLoader;
+        }
+
+        Constructor<?> constructor(String className, Class<?>[] types) throws ClassNotFoundException {
+
+            String key = types.length == 0 ? className : className + Arrays.toString(types);
+            Constructor<?> constructor = constructors.get(key);
+            if (constructor == null) {
+
+                try {
+
+                    constructor = classLoader.loadClass(className).getConstructor(types);
+
+                } catch (NoSuchMethodException e) {
+
+                    throw new ClassNotFoundException("No matching constructor for " + className, e);
+                }
+
+                constructors.put(key, constructor);
+            }
+
+            return constructor;
+        }
+
+        void close() {
+
+            try {
+
+                classLoader.close();
+
+            } catch (IOException e) {
+
+                Log.warning("Error closing plugin class loader: " + e.getMessage());
+            }
+
+        }
+
+    }
+
+}
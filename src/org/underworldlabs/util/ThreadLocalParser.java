@@ -0,0 +1,133 @@
+/*
+ * ThreadLocalParser.java
+ *
+ * Copyright (C) 2002-2017 Takis Diakoumis
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.underworldlabs.util;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+/**
+ * The lexer and parser of an ANTLR grammar, created once per
+ * thread and reused for each text parsed on that thread.
+ * <p/>
+ * Text is parsed with SLL prediction, bailing out on the first
+ * syntax error, and parsed again with full LL prediction only when
+ * that fails. As SLL is exact for all but a few ambiguous inputs, the
+ * second parse is needed for erroneous text only. Syntax errors are
+ * not written to the console.
+ *
+ * @author Takis Diakoumis
+ */
+public abstract class ThreadLocalParser<P extends Parser> {
+
+    /**
+     * The start rule of a parse.
+     */
+    public interface Rule<P extends Parser> {
+
+        ParseTree parse(P parser);
+
+    }
+
+    private final ThreadLocal<Instance<P>> instances = new ThreadLocal<Instance<P>>() {
+
+        @Override
+        protected Instance<P> initialValue() {
+
+            return new Instance<P>(ThreadLocalParser.this);
+        }
+
+    };
+
+    protected abstract Lexer createLexer(CharStream input);
+
+    protected abstract P createParser(CommonTokenStream tokens);
+
+    /**
+     * Parses the specified text from the specified rule. The tree returned
+     * remains valid after the next parse on this thread.
+     *
+     * @param text the text to parse
+     * @param rule the start rule
+     * @return the parse tree
+     */
+    public ParseTree parse(String text, Rule<P> rule) {
+
+        Instance<P> instance = instances.get();
+
+        instance.lexer.setInputStream(CharStreams.fromString(text));
+        instance.tokens.setTokenSource(instance.lexer);
+        instance.parser.setTokenStream(instance.tokens);
+
+        P parser = instance.parser;
+        try {
+
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(instance.bailStrategy);
+            return rule.parse(parser);
+
+        } catch (ParseCancellationException e) {
+
+            // rewinds the token stream already read
+            parser.reset();
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(instance.defaultStrategy);
+            return rule.parse(parser);
+        }
+
+    }
+
+    static final class Instance<P extends Parser> {
+
+        private final Lexer lexer;
+
+        private final CommonTokenStream tokens;
+
+        private final P parser;
+
+        private final BailErrorStrategy bailStrategy;
+
+        private final DefaultErrorStrategy defaultStrategy;
+
+        Instance(ThreadLocalParser<P> factory) {
+
+            lexer = factory.createLexer(CharStreams.fromString(""));
+            lexer.removeErrorListener(ConsoleErrorListener.INSTANCE);
+
+            tokens = new CommonTokenStream(lexer);
+            parser = factory.createParser(tokens);
+            parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
+
+            bailStrategy = new BailErrorStrategy();
+            defaultStrategy = new DefaultErrorStrategy();
+        }
+
+    }
+
+}